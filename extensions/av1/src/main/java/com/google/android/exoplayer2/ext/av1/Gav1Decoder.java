@@ -16,6 +16,8 @@
 package com.google.android.exoplayer2.ext.av1;
 
 import static androidx.annotation.VisibleForTesting.PACKAGE_PRIVATE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.Runtime.getRuntime;
 
 import android.view.Surface;
@@ -25,6 +27,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.decoder.SimpleDecoder;
 import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.ReferenceCountedDecoderContext;
 import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
 import java.nio.ByteBuffer;
@@ -38,11 +41,18 @@ public final class Gav1Decoder
   private static final int GAV1_ERROR = 0;
   private static final int GAV1_OK = 1;
   private static final int GAV1_DECODE_ONLY = 2;
+  private static final int GAV1_TRY_AGAIN = 3;
   // LINT.ThenChange(../../../../../../../jni/gav1_jni.cc)
 
+  /** The maximum number of frames decoded concurrently in frame parallel mode. */
+  private static final int MAX_FRAMES_IN_FLIGHT = 8;
+
   private final long gav1DecoderContext;
+  private final ReferenceCountedDecoderContext decoderContext;
+  private final int framesInFlight;
 
   @C.VideoOutputMode private volatile int outputMode;
+  private volatile boolean zeroCopyYuvOutputEnabled;
 
   /**
    * Creates a Gav1Decoder.
@@ -58,9 +68,44 @@ public final class Gav1Decoder
   public Gav1Decoder(
       int numInputBuffers, int numOutputBuffers, int initialInputBufferSize, int threads)
       throws Gav1DecoderException {
+    this(
+        numInputBuffers,
+        numOutputBuffers,
+        initialInputBufferSize,
+        threads,
+        /* frameParallel= */ false);
+  }
+
+  /**
+   * Creates a Gav1Decoder.
+   *
+   * <p>In frame parallel mode, up to {@link #getFramesInFlight()} frames are decoded concurrently,
+   * and the decoder allocates that many input and output buffers on top of {@code numInputBuffers}
+   * and {@code numOutputBuffers} so that the renderer can hold on to buffers while frames are in
+   * flight.
+   *
+   * @param numInputBuffers Number of input buffers, excluding those used for frames in flight.
+   * @param numOutputBuffers Number of output buffers, excluding those used for frames in flight.
+   * @param initialInputBufferSize The initial size of each input buffer, in bytes.
+   * @param threads Number of threads libgav1 will use to decode. If {@link
+   *     Libgav1VideoRenderer#THREAD_COUNT_AUTODETECT} is passed, then this class will auto detect
+   *     the number of threads to be used.
+   * @param frameParallel Whether to decode several frames concurrently, rather than only
+   *     parallelizing the decoding of each frame (e.g. across tiles).
+   * @throws Gav1DecoderException Thrown if an exception occurs when initializing the decoder.
+   */
+  public Gav1Decoder(
+      int numInputBuffers,
+      int numOutputBuffers,
+      int initialInputBufferSize,
+      int threads,
+      boolean frameParallel)
+      throws Gav1DecoderException {
     super(
-        new VideoDecoderInputBuffer[numInputBuffers],
-        new VideoDecoderOutputBuffer[numOutputBuffers]);
+        new VideoDecoderInputBuffer
+            [numInputBuffers + getFramesInFlight(threads, frameParallel) - 1],
+        new VideoDecoderOutputBuffer
+            [numOutputBuffers + getFramesInFlight(threads, frameParallel) - 1]);
     if (!Gav1Library.isAvailable()) {
       throw new Gav1DecoderException("Failed to load decoder native library.");
     }
@@ -74,12 +119,28 @@ public final class Gav1Decoder
       }
     }
 
-    gav1DecoderContext = gav1Init(threads);
+    framesInFlight = getFramesInFlight(threads, frameParallel);
+    gav1DecoderContext = gav1Init(threads, frameParallel);
     if (gav1DecoderContext == GAV1_ERROR || gav1CheckError(gav1DecoderContext) == GAV1_ERROR) {
       throw new Gav1DecoderException(
           "Failed to initialize decoder. Error: " + gav1GetErrorMessage(gav1DecoderContext));
     }
+    decoderContext =
+        new ReferenceCountedDecoderContext(
+            /* frameReleaser= */ outputBuffer -> gav1ReleaseFrame(gav1DecoderContext, outputBuffer),
+            /* contextCloser= */ () -> gav1Close(gav1DecoderContext));
     setInitialInputBufferSize(initialInputBufferSize);
+    // Frames are only decoded concurrently if they're enqueued together, so the decoder receives
+    // input in batches of up to the number of frames in flight.
+    setMaxBatchSize(framesInFlight);
+  }
+
+  /**
+   * Returns the maximum number of frames that are decoded concurrently. This is 1 unless frame
+   * parallel mode is enabled.
+   */
+  public int getFramesInFlight() {
+    return framesInFlight;
   }
 
   @Override
@@ -101,26 +162,73 @@ public final class Gav1Decoder
   @Nullable
   protected Gav1DecoderException decode(
       VideoDecoderInputBuffer inputBuffer, VideoDecoderOutputBuffer outputBuffer, boolean reset) {
-    ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
-    int inputSize = inputData.limit();
-    if (gav1Decode(gav1DecoderContext, inputData, inputSize) == GAV1_ERROR) {
+    if (enqueueFrame(inputBuffer) != GAV1_OK) {
       return new Gav1DecoderException(
           "gav1Decode error: " + gav1GetErrorMessage(gav1DecoderContext));
     }
+    return dequeueFrame(inputBuffer, outputBuffer);
+  }
+
+  @Override
+  @Nullable
+  protected Gav1DecoderException decode(
+      VideoDecoderInputBuffer[] inputBuffers,
+      VideoDecoderOutputBuffer[] outputBuffers,
+      int count,
+      boolean reset) {
+    // Enqueue as many frames as libgav1 accepts, so that they're decoded concurrently, and dequeue
+    // the decoded frames in order.
+    int enqueuedCount = 0;
+    int dequeuedCount = 0;
+    while (dequeuedCount < count) {
+      if (enqueuedCount < count) {
+        int result = enqueueFrame(inputBuffers[enqueuedCount]);
+        if (result == GAV1_OK) {
+          enqueuedCount++;
+          continue;
+        } else if (result != GAV1_TRY_AGAIN || enqueuedCount == dequeuedCount) {
+          return new Gav1DecoderException(
+              "gav1Decode error: " + gav1GetErrorMessage(gav1DecoderContext));
+        }
+        // Too many frames are in flight. Dequeue the oldest one before enqueuing more.
+      }
+      @Nullable
+      Gav1DecoderException exception =
+          dequeueFrame(inputBuffers[dequeuedCount], outputBuffers[dequeuedCount]);
+      if (exception != null) {
+        return exception;
+      }
+      dequeuedCount++;
+    }
+    return null;
+  }
+
+  private int enqueueFrame(VideoDecoderInputBuffer inputBuffer) {
+    ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
+    return gav1Decode(gav1DecoderContext, inputData, inputData.limit());
+  }
 
+  @Nullable
+  private Gav1DecoderException dequeueFrame(
+      VideoDecoderInputBuffer inputBuffer, VideoDecoderOutputBuffer outputBuffer) {
     boolean decodeOnly = inputBuffer.isDecodeOnly();
     if (!decodeOnly) {
       outputBuffer.init(inputBuffer.timeUs, outputMode, /* supplementalData= */ null);
     }
     // We need to dequeue the decoded frame from the decoder even when the input data is
     // decode-only.
-    int getFrameResult = gav1GetFrame(gav1DecoderContext, outputBuffer, decodeOnly);
+    int getFrameResult =
+        gav1GetFrame(gav1DecoderContext, outputBuffer, decodeOnly, zeroCopyYuvOutputEnabled);
     if (getFrameResult == GAV1_ERROR) {
       return new Gav1DecoderException(
           "gav1GetFrame error: " + gav1GetErrorMessage(gav1DecoderContext));
     }
     if (getFrameResult == GAV1_DECODE_ONLY) {
       outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+    } else if (!decodeOnly
+        && (outputBuffer.mode == C.VIDEO_OUTPUT_MODE_SURFACE_YUV
+            || outputBuffer.hasDecoderOwnedYuvPlanes())) {
+      decoderContext.onFrameReferenced(outputBuffer);
     }
     if (!decodeOnly) {
       outputBuffer.format = inputBuffer.format;
@@ -137,16 +245,18 @@ public final class Gav1Decoder
   @Override
   public void release() {
     super.release();
-    gav1Close(gav1DecoderContext);
+    // Release the frames referenced by output buffers that were never dequeued.
+    flush();
+    // The native context is closed once output buffers that are still held no longer reference
+    // its frames.
+    decoderContext.release();
   }
 
   @Override
   protected void releaseOutputBuffer(VideoDecoderOutputBuffer buffer) {
-    // Decode only frames do not acquire a reference on the internal decoder buffer and thus do not
-    // require a call to gav1ReleaseFrame.
-    if (buffer.mode == C.VIDEO_OUTPUT_MODE_SURFACE_YUV && !buffer.isDecodeOnly()) {
-      gav1ReleaseFrame(gav1DecoderContext, buffer);
-    }
+    // Only buffers that reference a frame of the internal decoder require a call to
+    // gav1ReleaseFrame. Decode only frames do not acquire a reference.
+    decoderContext.releaseFrame(buffer);
     super.releaseOutputBuffer(buffer);
   }
 
@@ -159,6 +269,18 @@ public final class Gav1Decoder
     this.outputMode = outputMode;
   }
 
+  /**
+   * Sets whether frames output in {@link C#VIDEO_OUTPUT_MODE_YUV} reference libgav1's frame
+   * buffers directly, rather than being copied into {@link VideoDecoderOutputBuffer#data}. If
+   * enabled, {@link VideoDecoderOutputBuffer#yuvPlanes} are only valid until the output buffer is
+   * released. Frames that aren't 8-bit 4:2:0 are always copied.
+   *
+   * @param zeroCopyYuvOutputEnabled Whether zero-copy YUV output is enabled.
+   */
+  public void setZeroCopyYuvOutputEnabled(boolean zeroCopyYuvOutputEnabled) {
+    this.zeroCopyYuvOutputEnabled = zeroCopyYuvOutputEnabled;
+  }
+
   /**
    * Renders output buffer to the given surface. Must only be called when in {@link
    * C#VIDEO_OUTPUT_MODE_SURFACE_YUV} mode.
@@ -179,13 +301,24 @@ public final class Gav1Decoder
     }
   }
 
+  private static int getFramesInFlight(int threads, boolean frameParallel) {
+    if (!frameParallel) {
+      return 1;
+    }
+    if (threads == Libgav1VideoRenderer.THREAD_COUNT_AUTODETECT) {
+      threads = getRuntime().availableProcessors();
+    }
+    return max(1, min(threads, MAX_FRAMES_IN_FLIGHT));
+  }
+
   /**
    * Initializes a libgav1 decoder.
    *
    * @param threads Number of threads to be used by a libgav1 decoder.
+   * @param frameParallel Whether to decode several frames concurrently.
    * @return The address of the decoder context or {@link #GAV1_ERROR} if there was an error.
    */
-  private native long gav1Init(int threads);
+  private native long gav1Init(int threads, boolean frameParallel);
 
   /**
    * Deallocates the decoder context.
@@ -200,7 +333,8 @@ public final class Gav1Decoder
    * @param context Decoder context.
    * @param encodedData Encoded data.
    * @param length Length of the data buffer.
-   * @return {@link #GAV1_OK} if successful, {@link #GAV1_ERROR} if an error occurred.
+   * @return {@link #GAV1_OK} if successful, {@link #GAV1_TRY_AGAIN} if too many frames are in
+   *     flight in frame parallel mode, {@link #GAV1_ERROR} if an error occurred.
    */
   private native int gav1Decode(long context, ByteBuffer encodedData, int length);
 
@@ -209,11 +343,17 @@ public final class Gav1Decoder
    *
    * @param context Decoder context.
    * @param outputBuffer Output buffer for the decoded frame.
+   * @param decodeOnly Whether the frame is decode-only.
+   * @param zeroCopyYuvOutput Whether frames output in {@link C#VIDEO_OUTPUT_MODE_YUV} should
+   *     reference libgav1's frame buffers directly, if possible.
    * @return {@link #GAV1_OK} if successful, {@link #GAV1_DECODE_ONLY} if successful but the frame
    *     is decode-only, {@link #GAV1_ERROR} if an error occurred.
    */
   private native int gav1GetFrame(
-      long context, VideoDecoderOutputBuffer outputBuffer, boolean decodeOnly);
+      long context,
+      VideoDecoderOutputBuffer outputBuffer,
+      boolean decodeOnly,
+      boolean zeroCopyYuvOutput);
 
   /**
    * Renders the frame to the surface. Used with {@link C#VIDEO_OUTPUT_MODE_SURFACE_YUV} only.
@@ -227,7 +367,8 @@ public final class Gav1Decoder
       long context, Surface surface, VideoDecoderOutputBuffer outputBuffer);
 
   /**
-   * Releases the frame. Used with {@link C#VIDEO_OUTPUT_MODE_SURFACE_YUV} only.
+   * Releases the frame. Used with {@link C#VIDEO_OUTPUT_MODE_SURFACE_YUV}, or with {@link
+   * C#VIDEO_OUTPUT_MODE_YUV} if the frame's planes are owned by the decoder.
    *
    * @param context Decoder context.
    * @param outputBuffer Output buffer.
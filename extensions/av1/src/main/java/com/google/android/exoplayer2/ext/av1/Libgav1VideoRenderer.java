@@ -62,6 +62,8 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
 
   private final int threads;
 
+  private boolean frameParallelDecodingEnabled;
+  private boolean zeroCopyYuvOutputEnabled;
   @Nullable private Gav1Decoder decoder;
 
   /**
@@ -120,6 +122,37 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
     this.numOutputBuffers = numOutputBuffers;
   }
 
+  /**
+   * Sets whether libgav1 should decode several frames concurrently, in addition to parallelizing
+   * the decoding of each frame. Frame parallel decoding can use more cores than tile parallel
+   * decoding, but increases memory usage because more input and output buffers are in use. The
+   * number of buffers is increased automatically to match the number of frames in flight.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release. It should
+   * only be called before the renderer is used.
+   *
+   * @param enabled Whether frame parallel decoding is enabled.
+   */
+  public void experimentalSetFrameParallelDecodingEnabled(boolean enabled) {
+    frameParallelDecodingEnabled = enabled;
+  }
+
+  /**
+   * Sets whether frames output to a {@link
+   * com.google.android.exoplayer2.video.VideoDecoderOutputBufferRenderer} should reference
+   * libgav1's frame buffers directly, rather than being copied. This avoids a copy of every 8-bit
+   * frame, but libgav1 may need to allocate additional frame buffers while output frames are held
+   * by the output buffer renderer.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release. It should
+   * only be called before the renderer is used.
+   *
+   * @param enabled Whether zero-copy YUV output is enabled.
+   */
+  public void experimentalSetZeroCopyYuvOutputEnabled(boolean enabled) {
+    zeroCopyYuvOutputEnabled = enabled;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -146,7 +179,13 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
     int initialInputBufferSize =
         format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
     Gav1Decoder decoder =
-        new Gav1Decoder(numInputBuffers, numOutputBuffers, initialInputBufferSize, threads);
+        new Gav1Decoder(
+            numInputBuffers,
+            numOutputBuffers,
+            initialInputBufferSize,
+            threads,
+            frameParallelDecodingEnabled);
+    decoder.setZeroCopyYuvOutputEnabled(zeroCopyYuvOutputEnabled);
     this.decoder = decoder;
     TraceUtil.endSection();
     return decoder;
@@ -84,6 +84,7 @@ const int kColorSpaceUnknown = 0;
 const int kStatusError = 0;
 const int kStatusOk = 1;
 const int kStatusDecodeOnly = 2;
+const int kStatusTryAgain = 3;
 // LINT.ThenChange(../java/com/google/android/exoplayer2/ext/av1/Gav1Decoder.java)
 
 // Status codes specific to the JNI wrapper code.
@@ -305,6 +306,7 @@ struct JniContext {
   jfieldID data_field;
   jmethodID init_for_private_frame_method;
   jmethodID init_for_yuv_frame_method;
+  jmethodID init_for_decoder_owned_yuv_frame_method;
 
   JniBufferManager buffer_manager;
   // The libgav1 decoder instance has to be deleted before |buffer_manager| is
@@ -509,7 +511,7 @@ void Convert10BitFrameTo8BitDataBufferNeon(
 
 }  // namespace
 
-DECODER_FUNC(jlong, gav1Init, jint threads) {
+DECODER_FUNC(jlong, gav1Init, jint threads, jboolean frameParallel) {
   JniContext* context = new (std::nothrow) JniContext();
   if (context == nullptr) {
     return kStatusError;
@@ -532,6 +534,11 @@ DECODER_FUNC(jlong, gav1Init, jint threads) {
 
   libgav1::DecoderSettings settings;
   settings.threads = threads;
+  // In frame parallel mode, several frames are decoded concurrently. Dequeuing
+  // blocks until the oldest enqueued frame has been decoded, so that each
+  // enqueued frame still corresponds to one dequeued frame.
+  settings.frame_parallel = frameParallel;
+  settings.blocking_dequeue = frameParallel;
   settings.get_frame_buffer = Libgav1GetFrameBuffer;
   settings.release_frame_buffer = Libgav1ReleaseFrameBuffer;
   settings.callback_private_data = context;
@@ -553,6 +560,9 @@ DECODER_FUNC(jlong, gav1Init, jint threads) {
       env->GetMethodID(outputBufferClass, "initForPrivateFrame", "(II)V");
   context->init_for_yuv_frame_method =
       env->GetMethodID(outputBufferClass, "initForYuvFrame", "(IIIII)Z");
+  context->init_for_decoder_owned_yuv_frame_method = env->GetMethodID(
+      outputBufferClass, "initForDecoderOwnedYuvFrame",
+      "(IIIIILjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)V");
 
   return reinterpret_cast<jlong>(context);
 }
@@ -570,6 +580,10 @@ DECODER_FUNC(jint, gav1Decode, jlong jContext, jobject encodedData,
   context->libgav1_status_code =
       context->decoder.EnqueueFrame(buffer, length, /*user_private_data=*/0,
                                     /*buffer_private_data=*/nullptr);
+  if (context->libgav1_status_code == kLibgav1StatusTryAgain) {
+    // Too many frames are in flight. A frame must be dequeued first.
+    return kStatusTryAgain;
+  }
   if (context->libgav1_status_code != kLibgav1StatusOk) {
     return kStatusError;
   }
@@ -577,7 +591,7 @@ DECODER_FUNC(jint, gav1Decode, jlong jContext, jobject encodedData,
 }
 
 DECODER_FUNC(jint, gav1GetFrame, jlong jContext, jobject jOutputBuffer,
-             jboolean decodeOnly) {
+             jboolean decodeOnly, jboolean zeroCopyYuvOutput) {
   JniContext* const context = reinterpret_cast<JniContext*>(jContext);
   const libgav1::DecoderBuffer* decoder_buffer;
   context->libgav1_status_code = context->decoder.DequeueFrame(&decoder_buffer);
@@ -593,7 +607,40 @@ DECODER_FUNC(jint, gav1GetFrame, jlong jContext, jobject jOutputBuffer,
 
   const int output_mode =
       env->GetIntField(jOutputBuffer, context->output_mode_field);
-  if (output_mode == kOutputModeYuv) {
+  if (output_mode == kOutputModeYuv && zeroCopyYuvOutput &&
+      decoder_buffer->bitdepth == 8 &&
+      decoder_buffer->image_format == libgav1::kImageFormatYuv420) {
+    // Wrap the planes of libgav1's frame buffer, which is kept alive until the
+    // output buffer is released.
+    jobject planes[kMaxPlanes];
+    for (int i = 0; i < kMaxPlanes; i++) {
+      planes[i] = env->NewDirectByteBuffer(
+          decoder_buffer->plane[i],
+          static_cast<jlong>(decoder_buffer->stride[i]) *
+              decoder_buffer->displayed_height[i]);
+      if (env->ExceptionCheck() || planes[i] == nullptr) {
+        return kStatusError;
+      }
+    }
+    const int buffer_id =
+        *static_cast<const int*>(decoder_buffer->buffer_private_data);
+    context->buffer_manager.AddBufferReference(buffer_id);
+    env->CallVoidMethod(
+        jOutputBuffer, context->init_for_decoder_owned_yuv_frame_method,
+        decoder_buffer->displayed_width[kPlaneY],
+        decoder_buffer->displayed_height[kPlaneY],
+        decoder_buffer->stride[kPlaneY], decoder_buffer->stride[kPlaneU],
+        kColorSpaceUnknown, planes[kPlaneY], planes[kPlaneU], planes[kPlaneV]);
+    for (int i = 0; i < kMaxPlanes; i++) {
+      env->DeleteLocalRef(planes[i]);
+    }
+    if (env->ExceptionCheck()) {
+      // Exception is thrown in Java when returning from the native call.
+      context->buffer_manager.ReleaseBuffer(buffer_id);
+      return kStatusError;
+    }
+    env->SetIntField(jOutputBuffer, context->decoder_private_field, buffer_id);
+  } else if (output_mode == kOutputModeYuv) {
     // Resize the buffer if required. Default color conversion will be used as
     // libgav1::DecoderBuffer doesn't expose color space info.
     const jboolean init_result = env->CallBooleanMethod(
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.ext.opus;
 
 import static androidx.annotation.VisibleForTesting.PACKAGE_PRIVATE;
+import static java.lang.Math.min;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -41,6 +42,14 @@ public final class OpusDecoder
   private static final int DECODE_ERROR = -1;
   private static final int DRM_ERROR = -2;
 
+  /**
+   * The maximum number of input buffers decoded by each call into the native decoder. Opus frames
+   * are short (typically 20ms), so decoding them one at a time is dominated by per-call overhead.
+   */
+  private static final int MAX_BATCH_SIZE = 8;
+  /** The maximum number of samples per channel in a decoded Opus packet (120ms at 48kHz). */
+  private static final int MAX_OPUS_OUTPUT_PACKET_SIZE_SAMPLES = 960 * 6;
+
   public final boolean outputFloat;
   public final int channelCount;
 
@@ -49,6 +58,10 @@ public final class OpusDecoder
   private final int seekPreRollSamples;
   private final long nativeDecoderContext;
 
+  private final ByteBuffer[] batchInputData;
+  private final ByteBuffer[] batchOutputData;
+  private final int[] batchInputSizes;
+  private final int[] batchResults;
   private int skipSamples;
 
   /**
@@ -134,6 +147,15 @@ public final class OpusDecoder
     if (outputFloat) {
       opusSetFloatOutput();
     }
+
+    int maxBatchSize = min(MAX_BATCH_SIZE, min(numInputBuffers, numOutputBuffers));
+    batchInputData = new ByteBuffer[maxBatchSize];
+    batchOutputData = new ByteBuffer[maxBatchSize];
+    batchInputSizes = new int[maxBatchSize];
+    batchResults = new int[maxBatchSize];
+    if (exoMediaCrypto == null) {
+      setMaxBatchSize(maxBatchSize);
+    }
   }
 
   @Override
@@ -161,10 +183,7 @@ public final class OpusDecoder
   protected OpusDecoderException decode(
       DecoderInputBuffer inputBuffer, SimpleOutputBuffer outputBuffer, boolean reset) {
     if (reset) {
-      opusReset(nativeDecoderContext);
-      // When seeking to 0, skip number of samples as specified in opus header. When seeking to
-      // any other time, skip number of samples as specified by seek preroll.
-      skipSamples = (inputBuffer.timeUs == 0) ? preSkipSamples : seekPreRollSamples;
+      resetDecoder(inputBuffer.timeUs);
     }
     ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
     CryptoInfo cryptoInfo = inputBuffer.cryptoInfo;
@@ -191,16 +210,73 @@ public final class OpusDecoder
                 inputData.limit(),
                 outputBuffer);
     if (result < 0) {
-      if (result == DRM_ERROR) {
-        String message = "Drm error: " + opusGetErrorMessage(nativeDecoderContext);
-        DecryptionException cause =
-            new DecryptionException(opusGetErrorCode(nativeDecoderContext), message);
-        return new OpusDecoderException(message, cause);
-      } else {
-        return new OpusDecoderException("Decode error: " + opusGetErrorMessage(result));
-      }
+      return createDecodeException(result);
+    }
+    onOutputDecoded(outputBuffer, result);
+    return null;
+  }
+
+  @Override
+  @Nullable
+  protected OpusDecoderException decode(
+      DecoderInputBuffer[] inputBuffers,
+      SimpleOutputBuffer[] outputBuffers,
+      int count,
+      boolean reset) {
+    if (count == 1) {
+      return decode(inputBuffers[0], outputBuffers[0], reset);
+    }
+    if (reset) {
+      resetDecoder(inputBuffers[0].timeUs);
+    }
+    int outputSize =
+        MAX_OPUS_OUTPUT_PACKET_SIZE_SAMPLES * channelCount * (outputFloat ? 4 : 2);
+    for (int i = 0; i < count; i++) {
+      DecoderInputBuffer inputBuffer = inputBuffers[i];
+      ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
+      batchInputData[i] = inputData;
+      batchInputSizes[i] = inputData.limit();
+      batchOutputData[i] = outputBuffers[i].init(inputBuffer.timeUs, outputSize);
     }
+    int decodedCount =
+        opusDecodeBatch(
+            nativeDecoderContext,
+            batchInputData,
+            batchInputSizes,
+            batchOutputData,
+            count,
+            batchResults);
+    for (int i = 0; i < decodedCount; i++) {
+      onOutputDecoded(outputBuffers[i], batchResults[i]);
+    }
+    return decodedCount < count ? createDecodeException(batchResults[decodedCount]) : null;
+  }
 
+  @Override
+  public void release() {
+    super.release();
+    opusClose(nativeDecoderContext);
+  }
+
+  private void resetDecoder(long timeUs) {
+    opusReset(nativeDecoderContext);
+    // When seeking to 0, skip number of samples as specified in opus header. When seeking to
+    // any other time, skip number of samples as specified by seek preroll.
+    skipSamples = (timeUs == 0) ? preSkipSamples : seekPreRollSamples;
+  }
+
+  private OpusDecoderException createDecodeException(int result) {
+    if (result == DRM_ERROR) {
+      String message = "Drm error: " + opusGetErrorMessage(nativeDecoderContext);
+      DecryptionException cause =
+          new DecryptionException(opusGetErrorCode(nativeDecoderContext), message);
+      return new OpusDecoderException(message, cause);
+    } else {
+      return new OpusDecoderException("Decode error: " + opusGetErrorMessage(result));
+    }
+  }
+
+  private void onOutputDecoded(SimpleOutputBuffer outputBuffer, int result) {
     ByteBuffer outputData = Util.castNonNull(outputBuffer.data);
     outputData.position(0);
     outputData.limit(result);
@@ -216,13 +292,6 @@ public final class OpusDecoder
         outputData.position(skipBytes);
       }
     }
-    return null;
-  }
-
-  @Override
-  public void release() {
-    super.release();
-    opusClose(nativeDecoderContext);
   }
 
   private static int readSignedLittleEndian16(byte[] input, int offset) {
@@ -241,6 +310,26 @@ public final class OpusDecoder
       int inputSize,
       SimpleOutputBuffer outputBuffer);
 
+  /**
+   * Decodes a batch of input buffers with a single native call, stopping at the first error.
+   *
+   * @param decoder The native decoder context.
+   * @param inputBuffers The input buffers to decode.
+   * @param inputSizes The size of the data in each input buffer.
+   * @param outputBuffers The output buffers, each initialized to hold a maximum size packet.
+   * @param count The number of buffers to decode.
+   * @param results Populated with the number of bytes decoded into each output buffer, or the
+   *     error code for the buffer that failed to decode.
+   * @return The number of buffers that were decoded successfully.
+   */
+  private native int opusDecodeBatch(
+      long decoder,
+      ByteBuffer[] inputBuffers,
+      int[] inputSizes,
+      ByteBuffer[] outputBuffers,
+      int count,
+      int[] results);
+
   private native int opusSecureDecode(
       long decoder,
       long timeUs,
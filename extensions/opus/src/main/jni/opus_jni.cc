@@ -137,6 +137,55 @@ DECODER_FUNC(jint, opusDecode, jlong jDecoder, jlong jTimeUs,
       : sampleCount * byteSizePerSample * channelCount;
 }
 
+DECODER_FUNC(jint, opusDecodeBatch, jlong jDecoder, jobjectArray jInputBuffers,
+     jintArray jInputSizes, jobjectArray jOutputBuffers, jint count,
+     jintArray jResults) {
+  OpusMSDecoder* decoder = reinterpret_cast<OpusMSDecoder*>(jDecoder);
+  jint* inputSizes = env->GetIntArrayElements(jInputSizes, 0);
+  jint* results = env->GetIntArrayElements(jResults, 0);
+  const int byteSizePerSample = outputFloat ?
+      kBytesPerFloatSample : kBytesPerIntPcmSample;
+
+  int decodedCount = 0;
+  errorCode = 0;
+  while (decodedCount < count) {
+    jobject jInputBuffer =
+        env->GetObjectArrayElement(jInputBuffers, decodedCount);
+    jobject jOutputBuffer =
+        env->GetObjectArrayElement(jOutputBuffers, decodedCount);
+    const uint8_t* inputBuffer = reinterpret_cast<const uint8_t*>(
+        env->GetDirectBufferAddress(jInputBuffer));
+    void* outputBufferData = env->GetDirectBufferAddress(jOutputBuffer);
+    env->DeleteLocalRef(jInputBuffer);
+    env->DeleteLocalRef(jOutputBuffer);
+
+    int sampleCount;
+    if (outputFloat) {
+      sampleCount = opus_multistream_decode_float(
+          decoder, inputBuffer, inputSizes[decodedCount],
+          reinterpret_cast<float*>(outputBufferData),
+          kMaxOpusOutputPacketSizeSamples, 0);
+    } else {
+      sampleCount = opus_multistream_decode(
+          decoder, inputBuffer, inputSizes[decodedCount],
+          reinterpret_cast<int16_t*>(outputBufferData),
+          kMaxOpusOutputPacketSizeSamples, 0);
+    }
+    if (sampleCount < 0) {
+      // Record the error code, and stop at the first buffer that fails.
+      errorCode = sampleCount;
+      results[decodedCount] = sampleCount;
+      break;
+    }
+    results[decodedCount] = sampleCount * byteSizePerSample * channelCount;
+    decodedCount++;
+  }
+
+  env->ReleaseIntArrayElements(jInputSizes, inputSizes, JNI_ABORT);
+  env->ReleaseIntArrayElements(jResults, results, 0);
+  return decodedCount;
+}
+
 DECODER_FUNC(jint, opusSecureDecode, jlong jDecoder, jlong jTimeUs,
      jobject jInputBuffer, jint inputSize, jobject jOutputBuffer,
      jint sampleRate, jobject mediaCrypto, jint inputMode, jbyteArray key,
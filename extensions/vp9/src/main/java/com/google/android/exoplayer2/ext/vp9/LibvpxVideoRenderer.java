@@ -52,6 +52,8 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
 
   private final int threads;
 
+  private boolean rowMultiThreadModeEnabled;
+  private boolean zeroCopyYuvOutputEnabled;
   @Nullable private VpxDecoder decoder;
 
   /**
@@ -118,6 +120,36 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
     this.numOutputBuffers = numOutputBuffers;
   }
 
+  /**
+   * Sets whether libvpx should use row based multi-threading, which decodes rows of each frame in
+   * parallel rather than only parallelizing across tile columns. This allows more threads to be
+   * used for streams with few tile columns, such as most 4K VP9 streams.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release. It should
+   * only be called before the renderer is used.
+   *
+   * @param enabled Whether row based multi-threading is enabled.
+   */
+  public void experimentalSetRowMultiThreadModeEnabled(boolean enabled) {
+    rowMultiThreadModeEnabled = enabled;
+  }
+
+  /**
+   * Sets whether frames output to a {@link
+   * com.google.android.exoplayer2.video.VideoDecoderOutputBufferRenderer} should reference the
+   * decoder's frame buffers directly, rather than being copied. This avoids a copy of every frame,
+   * but the decoder may need to allocate additional frame buffers while output frames are held by
+   * the output buffer renderer.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release. It should
+   * only be called before the renderer is used.
+   *
+   * @param enabled Whether zero-copy YUV output is enabled.
+   */
+  public void experimentalSetZeroCopyYuvOutputEnabled(boolean enabled) {
+    zeroCopyYuvOutputEnabled = enabled;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -147,7 +179,13 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
         format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
     VpxDecoder decoder =
         new VpxDecoder(
-            numInputBuffers, numOutputBuffers, initialInputBufferSize, mediaCrypto, threads);
+            numInputBuffers,
+            numOutputBuffers,
+            initialInputBufferSize,
+            mediaCrypto,
+            threads,
+            rowMultiThreadModeEnabled);
+    decoder.setZeroCopyYuvOutputEnabled(zeroCopyYuvOutputEnabled);
     this.decoder = decoder;
     TraceUtil.endSection();
     return decoder;
@@ -28,6 +28,7 @@ import com.google.android.exoplayer2.drm.DecryptionException;
 import com.google.android.exoplayer2.drm.ExoMediaCrypto;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.ReferenceCountedDecoderContext;
 import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
 import java.nio.ByteBuffer;
@@ -45,10 +46,12 @@ public final class VpxDecoder
 
   @Nullable private final ExoMediaCrypto exoMediaCrypto;
   private final long vpxDecContext;
+  private final ReferenceCountedDecoderContext decoderContext;
 
   @Nullable private ByteBuffer lastSupplementalData;
 
   @C.VideoOutputMode private volatile int outputMode;
+  private volatile boolean zeroCopyYuvOutputEnabled;
 
   /**
    * Creates a VP9 decoder.
@@ -68,6 +71,36 @@ public final class VpxDecoder
       @Nullable ExoMediaCrypto exoMediaCrypto,
       int threads)
       throws VpxDecoderException {
+    this(
+        numInputBuffers,
+        numOutputBuffers,
+        initialInputBufferSize,
+        exoMediaCrypto,
+        threads,
+        /* enableRowMultiThreadMode= */ false);
+  }
+
+  /**
+   * Creates a VP9 decoder.
+   *
+   * @param numInputBuffers The number of input buffers.
+   * @param numOutputBuffers The number of output buffers.
+   * @param initialInputBufferSize The initial size of each input buffer.
+   * @param exoMediaCrypto The {@link ExoMediaCrypto} object required for decoding encrypted
+   *     content. Maybe null and can be ignored if decoder does not handle encrypted content.
+   * @param threads Number of threads libvpx will use to decode.
+   * @param enableRowMultiThreadMode Whether to decode rows of each frame in parallel, in addition
+   *     to tile columns.
+   * @throws VpxDecoderException Thrown if an exception occurs when initializing the decoder.
+   */
+  public VpxDecoder(
+      int numInputBuffers,
+      int numOutputBuffers,
+      int initialInputBufferSize,
+      @Nullable ExoMediaCrypto exoMediaCrypto,
+      int threads,
+      boolean enableRowMultiThreadMode)
+      throws VpxDecoderException {
     super(
         new VideoDecoderInputBuffer[numInputBuffers],
         new VideoDecoderOutputBuffer[numOutputBuffers]);
@@ -79,10 +112,14 @@ public final class VpxDecoder
       throw new VpxDecoderException("Vpx decoder does not support secure decode.");
     }
     vpxDecContext =
-        vpxInit(/* disableLoopFilter= */ false, /* enableRowMultiThreadMode= */ false, threads);
+        vpxInit(/* disableLoopFilter= */ false, enableRowMultiThreadMode, threads);
     if (vpxDecContext == 0) {
       throw new VpxDecoderException("Failed to initialize decoder");
     }
+    decoderContext =
+        new ReferenceCountedDecoderContext(
+            /* frameReleaser= */ outputBuffer -> vpxReleaseFrame(vpxDecContext, outputBuffer),
+            /* contextCloser= */ () -> vpxClose(vpxDecContext));
     setInitialInputBufferSize(initialInputBufferSize);
   }
 
@@ -103,11 +140,9 @@ public final class VpxDecoder
 
   @Override
   protected void releaseOutputBuffer(VideoDecoderOutputBuffer buffer) {
-    // Decode only frames do not acquire a reference on the internal decoder buffer and thus do not
-    // require a call to vpxReleaseFrame.
-    if (outputMode == C.VIDEO_OUTPUT_MODE_SURFACE_YUV && !buffer.isDecodeOnly()) {
-      vpxReleaseFrame(vpxDecContext, buffer);
-    }
+    // Only buffers that reference a frame of the internal decoder require a call to
+    // vpxReleaseFrame. Decode only frames do not acquire a reference.
+    decoderContext.releaseFrame(buffer);
     super.releaseOutputBuffer(buffer);
   }
 
@@ -169,11 +204,14 @@ public final class VpxDecoder
 
     if (!inputBuffer.isDecodeOnly()) {
       outputBuffer.init(inputBuffer.timeUs, outputMode, lastSupplementalData);
-      int getFrameResult = vpxGetFrame(vpxDecContext, outputBuffer);
+      int getFrameResult = vpxGetFrame(vpxDecContext, outputBuffer, zeroCopyYuvOutputEnabled);
       if (getFrameResult == 1) {
         outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
       } else if (getFrameResult == -1) {
         return new VpxDecoderException("Buffer initialization failed.");
+      } else if (outputBuffer.mode == C.VIDEO_OUTPUT_MODE_SURFACE_YUV
+          || outputBuffer.hasDecoderOwnedYuvPlanes()) {
+        decoderContext.onFrameReferenced(outputBuffer);
       }
       outputBuffer.format = inputBuffer.format;
     }
@@ -183,8 +221,12 @@ public final class VpxDecoder
   @Override
   public void release() {
     super.release();
+    // Release the frames referenced by output buffers that were never dequeued.
+    flush();
     lastSupplementalData = null;
-    vpxClose(vpxDecContext);
+    // The native context is closed once output buffers that are still held no longer reference
+    // its frames.
+    decoderContext.release();
   }
 
   /**
@@ -196,6 +238,19 @@ public final class VpxDecoder
     this.outputMode = outputMode;
   }
 
+  /**
+   * Sets whether frames output in {@link C#VIDEO_OUTPUT_MODE_YUV} reference the decoder's frame
+   * buffers directly, rather than being copied into {@link VideoDecoderOutputBuffer#data}. If
+   * enabled, {@link VideoDecoderOutputBuffer#yuvPlanes} are only valid until the output buffer is
+   * released, and the decoder can't reuse a frame buffer until the output buffer referencing it is
+   * released. High bit depth frames are always copied, because they're converted to 8 bits.
+   *
+   * @param zeroCopyYuvOutputEnabled Whether zero-copy YUV output is enabled.
+   */
+  public void setZeroCopyYuvOutputEnabled(boolean zeroCopyYuvOutputEnabled) {
+    this.zeroCopyYuvOutputEnabled = zeroCopyYuvOutputEnabled;
+  }
+
   /** Renders the outputBuffer to the surface. Used with OUTPUT_MODE_SURFACE_YUV only. */
   public void renderToSurface(VideoDecoderOutputBuffer outputBuffer, Surface surface)
       throws VpxDecoderException {
@@ -223,7 +278,8 @@ public final class VpxDecoder
       @Nullable int[] numBytesOfClearData,
       @Nullable int[] numBytesOfEncryptedData);
 
-  private native int vpxGetFrame(long context, VideoDecoderOutputBuffer outputBuffer);
+  private native int vpxGetFrame(
+      long context, VideoDecoderOutputBuffer outputBuffer, boolean zeroCopyYuvOutput);
 
   /**
    * Renders the frame to the surface. Used with OUTPUT_MODE_SURFACE_YUV only. Must only be called
@@ -233,8 +289,9 @@ public final class VpxDecoder
       long context, Surface surface, VideoDecoderOutputBuffer outputBuffer);
 
   /**
-   * Releases the frame. Used with OUTPUT_MODE_SURFACE_YUV only. Must only be called if {@link
-   * #vpxInit} was called with {@code enableBufferManager = true}.
+   * Releases the frame. Used with OUTPUT_MODE_SURFACE_YUV, or with OUTPUT_MODE_YUV if the frame's
+   * planes are owned by the decoder. Must only be called if {@link #vpxInit} was called with {@code
+   * enableBufferManager = true}.
    */
   private native int vpxReleaseFrame(long context, VideoDecoderOutputBuffer outputBuffer);
 
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.upstream;
 
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -26,6 +27,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.DataSpec.HttpMethod;
+import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.Util;
 import com.google.common.base.Predicate;
@@ -39,6 +41,7 @@ import java.net.HttpURLConnection;
 import java.net.NoRouteToHostException;
 import java.net.ProtocolException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -58,6 +61,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  * <p>Note: HTTP request headers will be set using all parameters passed via (in order of decreasing
  * priority) the {@code dataSpec}, {@link #setRequestProperty} and the default properties that can
  * be passed to {@link HttpDataSource.Factory#setDefaultRequestProperties(Map)}.
+ *
+ * <p>The timing of each transfer, and whether its connection was likely reused, are available from
+ * {@link #getTransferMetrics()} once the transfer has ended. Connections to an origin can be
+ * established ahead of time with {@link #preconnect(Uri)}.
  */
 public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSource {
 
@@ -72,12 +79,14 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     private int connectTimeoutMs;
     private int readTimeoutMs;
     private boolean allowCrossProtocolRedirects;
+    private Clock clock;
 
     /** Creates an instance. */
     public Factory() {
       defaultRequestProperties = new RequestProperties();
       connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MILLIS;
       readTimeoutMs = DEFAULT_READ_TIMEOUT_MILLIS;
+      clock = Clock.DEFAULT;
     }
 
     /** @deprecated Use {@link #setDefaultRequestProperties(Map)} instead. */
@@ -178,6 +187,18 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
       return this;
     }
 
+    /**
+     * Sets the clock used to time transfers and to track idle connections. Should only be set for
+     * testing purposes.
+     *
+     * @param clock The clock used to time transfers and to track idle connections.
+     * @return This factory.
+     */
+    public Factory setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
     @Override
     public DefaultHttpDataSource createDataSource() {
       DefaultHttpDataSource dataSource =
@@ -187,7 +208,8 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
               readTimeoutMs,
               allowCrossProtocolRedirects,
               defaultRequestProperties,
-              contentTypePredicate);
+              contentTypePredicate,
+              clock);
       if (transferListener != null) {
         dataSource.addTransferListener(transferListener);
       }
@@ -207,6 +229,10 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   private static final int HTTP_STATUS_TEMPORARY_REDIRECT = 307;
   private static final int HTTP_STATUS_PERMANENT_REDIRECT = 308;
   private static final long MAX_BYTES_TO_DRAIN = 2048;
+  /** The duration for which Android's connection pool keeps idle connections alive. */
+  private static final long KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+  private static final IdleConnectionTracker idleConnectionTracker =
+      new IdleConnectionTracker(KEEP_ALIVE_DURATION_MS);
   private static final Pattern CONTENT_RANGE_HEADER =
       Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
 
@@ -216,6 +242,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   @Nullable private final String userAgent;
   @Nullable private final RequestProperties defaultRequestProperties;
   private final RequestProperties requestProperties;
+  private final Clock clock;
 
   @Nullable private Predicate<String> contentTypePredicate;
   @Nullable private DataSpec dataSpec;
@@ -231,6 +258,14 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   private long bytesSkipped;
   private long bytesRead;
 
+  private long responseBodyLength;
+  private boolean endOfInputReached;
+  private boolean connectionReused;
+  private long openStartTimeMs;
+  private long connectTimeMs;
+  private long responseTimeMs;
+  @Nullable private HttpTransferMetrics transferMetrics;
+
   /** @deprecated Use {@link DefaultHttpDataSource.Factory} instead. */
   @SuppressWarnings("deprecation")
   @Deprecated
@@ -272,7 +307,8 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
         readTimeoutMillis,
         allowCrossProtocolRedirects,
         defaultRequestProperties,
-        /* contentTypePredicate= */ null);
+        /* contentTypePredicate= */ null,
+        Clock.DEFAULT);
   }
 
   private DefaultHttpDataSource(
@@ -281,7 +317,8 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
       int readTimeoutMillis,
       boolean allowCrossProtocolRedirects,
       @Nullable RequestProperties defaultRequestProperties,
-      @Nullable Predicate<String> contentTypePredicate) {
+      @Nullable Predicate<String> contentTypePredicate,
+      Clock clock) {
     super(/* isNetwork= */ true);
     this.userAgent = userAgent;
     this.connectTimeoutMillis = connectTimeoutMillis;
@@ -290,6 +327,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     this.defaultRequestProperties = defaultRequestProperties;
     this.contentTypePredicate = contentTypePredicate;
     this.requestProperties = new RequestProperties();
+    this.clock = clock;
   }
 
   /**
@@ -335,6 +373,59 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     requestProperties.clear();
   }
 
+  /**
+   * Returns the {@link HttpTransferMetrics} of the most recent transfer, or {@code null} if the
+   * source is open or no transfer has ended yet. The metrics of a transfer are available when
+   * {@link TransferListener#onTransferEnd(DataSource, DataSpec, boolean)} is called.
+   */
+  @Nullable
+  public HttpTransferMetrics getTransferMetrics() {
+    return transferMetrics;
+  }
+
+  /**
+   * Connects to the origin of a URI ahead of requests to it, so that they can reuse the
+   * connection instead of waiting for the DNS lookup and the TCP and TLS handshakes. This is
+   * useful to warm up the connection to a host from which segments will be requested, for example
+   * while the manifest is loading.
+   *
+   * <p>A {@code HEAD} request is made to the URI with the request properties of this source, and
+   * its connection is released to the platform's connection pool. This method blocks until the
+   * response headers have been received, and must not be called while the source is open.
+   *
+   * @param uri The URI to connect to.
+   * @throws HttpDataSourceException If an error occurs connecting to the URI.
+   */
+  public void preconnect(Uri uri) throws HttpDataSourceException {
+    checkState(connection == null);
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(uri).setHttpMethod(DataSpec.HTTP_METHOD_HEAD).build();
+    @Nullable HttpURLConnection connection = null;
+    try {
+      connection =
+          makeConnection(
+              new URL(uri.toString()),
+              DataSpec.HTTP_METHOD_HEAD,
+              /* httpBody= */ null,
+              /* position= */ 0,
+              /* length= */ C.LENGTH_UNSET,
+              /* allowGzip= */ false,
+              /* followRedirects= */ true,
+              dataSpec.httpRequestHeaders);
+      connection.getResponseCode();
+      if (isKeepAlive(connection)) {
+        idleConnectionTracker.release(getOrigin(connection.getURL()), clock.elapsedRealtime());
+      }
+    } catch (IOException e) {
+      throw new HttpDataSourceException(
+          "Unable to connect", e, dataSpec, HttpDataSourceException.TYPE_OPEN);
+    } finally {
+      if (connection != null) {
+        connection.disconnect();
+      }
+    }
+  }
+
   /**
    * Opens the source to read the specified data.
    */
@@ -343,6 +434,11 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     this.dataSpec = dataSpec;
     this.bytesRead = 0;
     this.bytesSkipped = 0;
+    endOfInputReached = false;
+    connectionReused = false;
+    connectTimeMs = 0;
+    transferMetrics = null;
+    openStartTimeMs = clock.elapsedRealtime();
     transferInitializing(dataSpec);
 
     try {
@@ -362,6 +458,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     try {
       responseCode = connection.getResponseCode();
       responseMessage = connection.getResponseMessage();
+      responseTimeMs = clock.elapsedRealtime();
     } catch (IOException e) {
       closeConnectionQuietly();
       throw new HttpDataSourceException(
@@ -404,6 +501,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
 
     // Determine the length of the data to be read, after skipping.
     boolean isCompressed = isCompressed(connection);
+    responseBodyLength = isCompressed ? C.LENGTH_UNSET : getContentLength(connection);
     if (!isCompressed) {
       if (dataSpec.length != C.LENGTH_UNSET) {
         bytesToRead = dataSpec.length;
@@ -450,6 +548,25 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   public void close() throws HttpDataSourceException {
     try {
       @Nullable InputStream inputStream = this.inputStream;
+      if (opened) {
+        boolean responseBodyFullyRead =
+            endOfInputReached
+                || (responseBodyLength != C.LENGTH_UNSET
+                    && bytesSkipped + bytesRead == responseBodyLength);
+        @Nullable HttpURLConnection connection = this.connection;
+        if (connection != null && responseBodyFullyRead && isKeepAlive(connection)) {
+          // The platform keeps the connection alive once the response has been fully read.
+          idleConnectionTracker.release(
+              getOrigin(connection.getURL()), clock.elapsedRealtime());
+        }
+        transferMetrics =
+            new HttpTransferMetrics(
+                connectionReused,
+                connectTimeMs,
+                /* timeToFirstByteMs= */ responseTimeMs - openStartTimeMs,
+                /* transferTimeMs= */ clock.elapsedRealtime() - responseTimeMs,
+                /* bytesTransferred= */ bytesSkipped + bytesRead);
+      }
       if (inputStream != null) {
         maybeTerminateInputStream(connection, bytesRemaining());
         try {
@@ -631,6 +748,8 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     connection.setDoOutput(httpBody != null);
     connection.setRequestMethod(DataSpec.getStringForHttpMethod(httpMethod));
 
+    connectionReused = idleConnectionTracker.acquire(getOrigin(url), clock.elapsedRealtime());
+    long connectStartTimeMs = clock.elapsedRealtime();
     if (httpBody != null) {
       connection.setFixedLengthStreamingMode(httpBody.length);
       connection.connect();
@@ -640,6 +759,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     } else {
       connection.connect();
     }
+    connectTimeMs += clock.elapsedRealtime() - connectStartTimeMs;
     return connection;
   }
 
@@ -787,6 +907,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
         // End of stream reached having not read sufficient data.
         throw new EOFException();
       }
+      endOfInputReached = true;
       return C.RESULT_END_OF_INPUT;
     }
 
@@ -859,4 +980,67 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     String contentEncoding = connection.getHeaderField("Content-Encoding");
     return "gzip".equalsIgnoreCase(contentEncoding);
   }
+
+  private static boolean isKeepAlive(HttpURLConnection connection) {
+    return !"close".equalsIgnoreCase(connection.getHeaderField("Connection"));
+  }
+
+  private static String getOrigin(URL url) {
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    return url.getProtocol() + "://" + Util.toLowerInvariant(url.getHost()) + ":" + port;
+  }
+
+  /**
+   * Tracks the number of connections per origin that the platform's connection pool is likely to
+   * hold idle, to infer whether requests reuse a connection.
+   */
+  private static final class IdleConnectionTracker {
+
+    private final long keepAliveDurationMs;
+    private final Map<String, ArrayDeque<Long>> idleSinceTimesMsByOrigin;
+
+    public IdleConnectionTracker(long keepAliveDurationMs) {
+      this.keepAliveDurationMs = keepAliveDurationMs;
+      idleSinceTimesMsByOrigin = new HashMap<>();
+    }
+
+    /**
+     * Returns whether an idle connection to the origin is likely available, and if so marks it as
+     * in use.
+     *
+     * @param origin The origin.
+     * @param nowMs The current elapsed realtime, in milliseconds.
+     */
+    public synchronized boolean acquire(String origin, long nowMs) {
+      @Nullable ArrayDeque<Long> idleSinceTimesMs = idleSinceTimesMsByOrigin.get(origin);
+      if (idleSinceTimesMs == null) {
+        return false;
+      }
+      // Connections are reused most recently released first, and the oldest ones are evicted.
+      while (!idleSinceTimesMs.isEmpty()
+          && nowMs - idleSinceTimesMs.peekFirst() > keepAliveDurationMs) {
+        idleSinceTimesMs.removeFirst();
+      }
+      boolean acquired = idleSinceTimesMs.pollLast() != null;
+      if (idleSinceTimesMs.isEmpty()) {
+        idleSinceTimesMsByOrigin.remove(origin);
+      }
+      return acquired;
+    }
+
+    /**
+     * Marks a connection to the origin as idle in the platform's connection pool.
+     *
+     * @param origin The origin.
+     * @param nowMs The current elapsed realtime, in milliseconds.
+     */
+    public synchronized void release(String origin, long nowMs) {
+      @Nullable ArrayDeque<Long> idleSinceTimesMs = idleSinceTimesMsByOrigin.get(origin);
+      if (idleSinceTimesMs == null) {
+        idleSinceTimesMs = new ArrayDeque<>();
+        idleSinceTimesMsByOrigin.put(origin, idleSinceTimesMs);
+      }
+      idleSinceTimesMs.addLast(nowMs);
+    }
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Timing and connection reuse information about a transfer made by a {@link
+ * DefaultHttpDataSource}.
+ *
+ * <p>The metrics of a transfer are available from {@link
+ * DefaultHttpDataSource#getTransferMetrics()} once it has ended, for example in {@link
+ * TransferListener#onTransferEnd(DataSource, DataSpec, boolean)}.
+ */
+public final class HttpTransferMetrics {
+
+  /**
+   * Whether the request was likely sent on a kept-alive connection to the same origin, rather than
+   * on a new connection. {@link java.net.HttpURLConnection} doesn't report whether it reused a
+   * connection, so this is inferred from whether an earlier response from the origin was fully
+   * read and allowed its connection to be kept alive, within the keep-alive duration of the
+   * platform's connection pool.
+   */
+  public final boolean connectionReused;
+  /**
+   * The time taken to connect and send the request, in milliseconds. For new connections this
+   * includes the DNS lookup, and the TCP and TLS handshakes.
+   */
+  public final long connectTimeMs;
+  /**
+   * The time from the start of the request until the response headers were received, in
+   * milliseconds, including {@link #connectTimeMs} and any redirects.
+   */
+  public final long timeToFirstByteMs;
+  /**
+   * The time from receiving the response headers until the transfer ended, in milliseconds.
+   */
+  public final long transferTimeMs;
+  /** The number of bytes of the response body that were read, including skipped bytes. */
+  public final long bytesTransferred;
+
+  /**
+   * Creates an instance.
+   *
+   * @param connectionReused See {@link #connectionReused}.
+   * @param connectTimeMs See {@link #connectTimeMs}.
+   * @param timeToFirstByteMs See {@link #timeToFirstByteMs}.
+   * @param transferTimeMs See {@link #transferTimeMs}.
+   * @param bytesTransferred See {@link #bytesTransferred}.
+   */
+  public HttpTransferMetrics(
+      boolean connectionReused,
+      long connectTimeMs,
+      long timeToFirstByteMs,
+      long transferTimeMs,
+      long bytesTransferred) {
+    this.connectionReused = connectionReused;
+    this.connectTimeMs = connectTimeMs;
+    this.timeToFirstByteMs = timeToFirstByteMs;
+    this.transferTimeMs = transferTimeMs;
+    this.bytesTransferred = bytesTransferred;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    HttpTransferMetrics other = (HttpTransferMetrics) o;
+    return connectionReused == other.connectionReused
+        && connectTimeMs == other.connectTimeMs
+        && timeToFirstByteMs == other.timeToFirstByteMs
+        && transferTimeMs == other.transferTimeMs
+        && bytesTransferred == other.bytesTransferred;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = connectionReused ? 1 : 0;
+    result = 31 * result + (int) connectTimeMs;
+    result = 31 * result + (int) timeToFirstByteMs;
+    result = 31 * result + (int) transferTimeMs;
+    result = 31 * result + (int) bytesTransferred;
+    return result;
+  }
+}
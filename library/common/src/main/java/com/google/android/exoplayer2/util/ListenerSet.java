@@ -22,7 +22,7 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.common.base.Supplier;
 import java.util.ArrayDeque;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
 import javax.annotation.Nonnull;
 
 /**
@@ -34,6 +34,9 @@ import javax.annotation.Nonnull;
  * <p>Events are also guaranteed to be only sent to the listeners registered at the time the event
  * was enqueued and haven't been removed since.
  *
+ * <p>Queueing and flushing events doesn't allocate once the set has reached a steady state, so
+ * that frequently sent events don't cause garbage collection on the thread they're sent on.
+ *
  * @param <T> The listener type.
  * @param <E> The {@link MutableFlags} type used to indicate which events occurred.
  */
@@ -75,9 +78,10 @@ public final class ListenerSet<T, E extends MutableFlags> {
   private final HandlerWrapper handler;
   private final Supplier<E> eventFlagsSupplier;
   private final IterationFinishedEvent<T, E> iterationFinishedEvent;
-  private final CopyOnWriteArraySet<ListenerHolder<T, E>> listeners;
-  private final ArrayDeque<Runnable> flushingEvents;
-  private final ArrayDeque<Runnable> queuedEvents;
+  private final ListenerArray<T, E> listeners;
+  private final ArrayDeque<QueuedEvent<T>> flushingEvents;
+  private final ArrayList<QueuedEvent<T>> queuedEvents;
+  private final ArrayDeque<QueuedEvent<T>> recycledEvents;
 
   private boolean released;
 
@@ -98,7 +102,7 @@ public final class ListenerSet<T, E extends MutableFlags> {
       Supplier<E> eventFlagsSupplier,
       IterationFinishedEvent<T, E> iterationFinishedEvent) {
     this(
-        /* listeners= */ new CopyOnWriteArraySet<>(),
+        /* listeners= */ new ListenerArray<>(),
         looper,
         clock,
         eventFlagsSupplier,
@@ -106,7 +110,7 @@ public final class ListenerSet<T, E extends MutableFlags> {
   }
 
   private ListenerSet(
-      CopyOnWriteArraySet<ListenerHolder<T, E>> listeners,
+      ListenerArray<T, E> listeners,
       Looper looper,
       Clock clock,
       Supplier<E> eventFlagsSupplier,
@@ -116,7 +120,8 @@ public final class ListenerSet<T, E extends MutableFlags> {
     this.eventFlagsSupplier = eventFlagsSupplier;
     this.iterationFinishedEvent = iterationFinishedEvent;
     flushingEvents = new ArrayDeque<>();
-    queuedEvents = new ArrayDeque<>();
+    queuedEvents = new ArrayList<>();
+    recycledEvents = new ArrayDeque<>();
     // It's safe to use "this" because we don't send a message before exiting the constructor.
     @SuppressWarnings("methodref.receiver.bound.invalid")
     HandlerWrapper handler = clock.createHandler(looper, this::handleMessage);
@@ -160,7 +165,8 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * @param listener The listener to be removed.
    */
   public void remove(T listener) {
-    for (ListenerHolder<T, E> listenerHolder : listeners) {
+    ListenerHolder<T, E>[] listenerHolders = listeners.get();
+    for (ListenerHolder<T, E> listenerHolder : listenerHolders) {
       if (listenerHolder.listener.equals(listener)) {
         listenerHolder.release(iterationFinishedEvent);
         listeners.remove(listenerHolder);
@@ -176,14 +182,42 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * @param event The event.
    */
   public void queueEvent(int eventFlag, Event<T> event) {
-    CopyOnWriteArraySet<ListenerHolder<T, E>> listenerSnapshot =
-        new CopyOnWriteArraySet<>(listeners);
-    queuedEvents.add(
-        () -> {
-          for (ListenerHolder<T, E> holder : listenerSnapshot) {
-            holder.invoke(eventFlag, event);
-          }
-        });
+    queuedEvents.add(obtainQueuedEvent(eventFlag, event, /* isCoalesced= */ false));
+  }
+
+  /**
+   * Adds an event that is sent to the listeners when {@link #flushEvents} is called, replacing an
+   * event with the same flag that was added with this method and hasn't been sent yet.
+   *
+   * <p>A replaced event keeps its position relative to other events, so listeners receive the new
+   * event when they would have received the replaced one.
+   *
+   * <p>This should only be used for events that report the latest value of some state, so that
+   * listeners only need to be notified of the value at the time the event is sent. If the state is
+   * changed back to the value listeners were last notified of before the event is sent, the event
+   * is dropped.
+   *
+   * @param eventFlag An integer indicating the type of the event.
+   * @param previousValue The value of the state before the change reported by the event.
+   * @param value The value of the state reported by the event.
+   * @param event The event.
+   */
+  public void queueCoalescedEvent(
+      int eventFlag, @Nullable Object previousValue, @Nullable Object value, Event<T> event) {
+    Assertions.checkArgument(eventFlag != C.INDEX_UNSET);
+    @Nullable QueuedEvent<T> pendingEvent = findPendingCoalescedEvent(eventFlag);
+    if (pendingEvent != null) {
+      // Keep the value listeners were notified of before the pending event.
+      pendingEvent.listenerSnapshot = listeners.get();
+      pendingEvent.event = event;
+      pendingEvent.value = value;
+      return;
+    }
+    // Without a pending event, listeners have been or will be notified of the previous value.
+    QueuedEvent<T> queuedEvent = obtainQueuedEvent(eventFlag, event, /* isCoalesced= */ true);
+    queuedEvent.previousValue = previousValue;
+    queuedEvent.value = value;
+    queuedEvents.add(queuedEvent);
   }
 
   /** Notifies listeners of events previously enqueued with {@link #queueEvent(int, Event)}. */
@@ -195,15 +229,17 @@ public final class ListenerSet<T, E extends MutableFlags> {
       handler.obtainMessage(MSG_ITERATION_FINISHED).sendToTarget();
     }
     boolean recursiveFlushInProgress = !flushingEvents.isEmpty();
-    flushingEvents.addAll(queuedEvents);
+    for (int i = 0; i < queuedEvents.size(); i++) {
+      flushingEvents.add(queuedEvents.get(i));
+    }
     queuedEvents.clear();
     if (recursiveFlushInProgress) {
       // Recursive call to flush. Let the outer call handle the flush queue.
       return;
     }
     while (!flushingEvents.isEmpty()) {
-      flushingEvents.peekFirst().run();
-      flushingEvents.removeFirst();
+      flushingEvents.peekFirst().invoke();
+      recycleQueuedEvent(flushingEvents.removeFirst());
     }
   }
 
@@ -226,7 +262,8 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * <p>This will ensure no events are sent to any listener after this method has been called.
    */
   public void release() {
-    for (ListenerHolder<T, E> listenerHolder : listeners) {
+    ListenerHolder<T, E>[] listenerHolders = listeners.get();
+    for (ListenerHolder<T, E> listenerHolder : listenerHolders) {
       listenerHolder.release(iterationFinishedEvent);
     }
     listeners.clear();
@@ -249,7 +286,8 @@ public final class ListenerSet<T, E extends MutableFlags> {
 
   private boolean handleMessage(Message message) {
     if (message.what == MSG_ITERATION_FINISHED) {
-      for (ListenerHolder<T, E> holder : listeners) {
+      ListenerHolder<T, E>[] listenerHolders = listeners.get();
+      for (ListenerHolder<T, E> holder : listenerHolders) {
         holder.iterationFinished(eventFlagsSupplier, iterationFinishedEvent);
         if (handler.hasMessages(MSG_ITERATION_FINISHED)) {
           // The invocation above triggered new events (and thus scheduled a new message). We need
@@ -268,6 +306,133 @@ public final class ListenerSet<T, E extends MutableFlags> {
     return true;
   }
 
+  @Nullable
+  private QueuedEvent<T> findPendingCoalescedEvent(int eventFlag) {
+    for (int i = 0; i < queuedEvents.size(); i++) {
+      QueuedEvent<T> queuedEvent = queuedEvents.get(i);
+      if (queuedEvent.isCoalesced && queuedEvent.eventFlag == eventFlag) {
+        return queuedEvent;
+      }
+    }
+    if (flushingEvents.size() <= 1) {
+      // Avoid allocating an iterator if no flushing event can be replaced.
+      return null;
+    }
+    // During a flush, the first flushing event is being sent and the others haven't been sent yet.
+    boolean isFirstFlushingEvent = true;
+    for (QueuedEvent<T> flushingEvent : flushingEvents) {
+      if (!isFirstFlushingEvent
+          && flushingEvent.isCoalesced
+          && flushingEvent.eventFlag == eventFlag) {
+        return flushingEvent;
+      }
+      isFirstFlushingEvent = false;
+    }
+    return null;
+  }
+
+  private QueuedEvent<T> obtainQueuedEvent(int eventFlag, Event<T> event, boolean isCoalesced) {
+    @Nullable QueuedEvent<T> queuedEvent = recycledEvents.pollFirst();
+    if (queuedEvent == null) {
+      queuedEvent = new QueuedEvent<>();
+    }
+    // The array is never modified, so it's a snapshot of the listeners registered at this time.
+    queuedEvent.listenerSnapshot = listeners.get();
+    queuedEvent.eventFlag = eventFlag;
+    queuedEvent.event = event;
+    queuedEvent.isCoalesced = isCoalesced;
+    return queuedEvent;
+  }
+
+  private void recycleQueuedEvent(QueuedEvent<T> queuedEvent) {
+    queuedEvent.listenerSnapshot = null;
+    queuedEvent.event = null;
+    queuedEvent.previousValue = null;
+    queuedEvent.value = null;
+    recycledEvents.addLast(queuedEvent);
+  }
+
+  /** An event that was queued, and the listeners that were registered when it was queued. */
+  private static final class QueuedEvent<T> {
+
+    @Nullable public ListenerHolder<T, ?>[] listenerSnapshot;
+    public int eventFlag;
+    @Nullable public Event<T> event;
+    public boolean isCoalesced;
+    @Nullable public Object previousValue;
+    @Nullable public Object value;
+
+    public void invoke() {
+      if (isCoalesced && Util.areEqual(previousValue, value)) {
+        // The state was changed back to the value listeners were last notified of.
+        return;
+      }
+      ListenerHolder<T, ?>[] listenerSnapshot = Assertions.checkNotNull(this.listenerSnapshot);
+      Event<T> event = Assertions.checkNotNull(this.event);
+      for (ListenerHolder<T, ?> holder : listenerSnapshot) {
+        holder.invoke(eventFlag, event);
+      }
+    }
+  }
+
+  /**
+   * A copy-on-write array of {@link ListenerHolder ListenerHolders}, shared by a listener set and
+   * its copies. The array returned by {@link #get()} is never modified, so it can be iterated
+   * without copying or allocating an iterator.
+   */
+  private static final class ListenerArray<T, E extends MutableFlags> {
+
+    private volatile ListenerHolder<T, E>[] listenerHolders;
+
+    public ListenerArray() {
+      listenerHolders = newArray(/* length= */ 0);
+    }
+
+    public ListenerHolder<T, E>[] get() {
+      return listenerHolders;
+    }
+
+    public synchronized void add(ListenerHolder<T, E> listenerHolder) {
+      ListenerHolder<T, E>[] oldListenerHolders = listenerHolders;
+      for (ListenerHolder<T, E> oldListenerHolder : oldListenerHolders) {
+        if (oldListenerHolder.equals(listenerHolder)) {
+          return;
+        }
+      }
+      ListenerHolder<T, E>[] newListenerHolders = newArray(oldListenerHolders.length + 1);
+      System.arraycopy(oldListenerHolders, 0, newListenerHolders, 0, oldListenerHolders.length);
+      newListenerHolders[oldListenerHolders.length] = listenerHolder;
+      listenerHolders = newListenerHolders;
+    }
+
+    public synchronized void remove(ListenerHolder<T, E> listenerHolder) {
+      ListenerHolder<T, E>[] oldListenerHolders = listenerHolders;
+      for (int i = 0; i < oldListenerHolders.length; i++) {
+        if (oldListenerHolders[i] == listenerHolder) {
+          ListenerHolder<T, E>[] newListenerHolders = newArray(oldListenerHolders.length - 1);
+          System.arraycopy(oldListenerHolders, 0, newListenerHolders, 0, i);
+          System.arraycopy(
+              oldListenerHolders,
+              i + 1,
+              newListenerHolders,
+              i,
+              oldListenerHolders.length - i - 1);
+          listenerHolders = newListenerHolders;
+          return;
+        }
+      }
+    }
+
+    public synchronized void clear() {
+      listenerHolders = newArray(/* length= */ 0);
+    }
+
+    @SuppressWarnings("unchecked") // Generic array creation.
+    private static <T, E extends MutableFlags> ListenerHolder<T, E>[] newArray(int length) {
+      return (ListenerHolder<T, E>[]) new ListenerHolder<?, ?>[length];
+    }
+  }
+
   private static final class ListenerHolder<T, E extends MutableFlags> {
 
     @Nonnull public final T listener;
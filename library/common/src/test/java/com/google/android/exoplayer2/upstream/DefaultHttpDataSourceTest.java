@@ -20,8 +20,11 @@ import static com.google.common.truth.Truth.assertThat;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertThrows;
 
+import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeClock;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
 import java.util.HashMap;
 import java.util.Map;
 import okhttp3.Headers;
@@ -143,4 +146,114 @@ public class DefaultHttpDataSourceTest {
     Headers headers = mockWebServer.takeRequest(10, SECONDS).getHeaders();
     assertThat(headers.get("0")).isEqualTo("afterCreation");
   }
+
+  @Test
+  public void getTransferMetrics_afterFullyReadResponse_nextTransferReusesConnection()
+      throws Exception {
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100])));
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[50])));
+    DefaultHttpDataSource dataSource = new DefaultHttpDataSource.Factory().createDataSource();
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(mockWebServer.url("/test-path").toString()).build();
+
+    dataSource.open(dataSpec);
+    assertThat(dataSource.getTransferMetrics()).isNull();
+    Util.readToEnd(dataSource);
+    dataSource.close();
+    HttpTransferMetrics firstTransferMetrics = dataSource.getTransferMetrics();
+    dataSource.open(dataSpec);
+    Util.readToEnd(dataSource);
+    dataSource.close();
+    HttpTransferMetrics secondTransferMetrics = dataSource.getTransferMetrics();
+
+    assertThat(firstTransferMetrics.connectionReused).isFalse();
+    assertThat(firstTransferMetrics.bytesTransferred).isEqualTo(100);
+    assertThat(secondTransferMetrics.connectionReused).isTrue();
+    assertThat(secondTransferMetrics.bytesTransferred).isEqualTo(50);
+    assertThat(secondTransferMetrics.timeToFirstByteMs)
+        .isAtLeast(secondTransferMetrics.connectTimeMs);
+  }
+
+  @Test
+  public void getTransferMetrics_afterKeepAliveDuration_nextTransferUsesNewConnection()
+      throws Exception {
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100])));
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100])));
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultHttpDataSource dataSource =
+        new DefaultHttpDataSource.Factory().setClock(clock).createDataSource();
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(mockWebServer.url("/test-path").toString()).build();
+
+    dataSource.open(dataSpec);
+    Util.readToEnd(dataSource);
+    dataSource.close();
+    // The platform evicts connections that have been idle for longer than 5 minutes.
+    clock.advanceTime(/* timeDiffMs= */ 5 * 60 * 1000 + 1);
+    dataSource.open(dataSpec);
+    Util.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(dataSource.getTransferMetrics().connectionReused).isFalse();
+  }
+
+  @Test
+  public void getTransferMetrics_withClock_reportsTimesFromClock() throws Exception {
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100])));
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultHttpDataSource dataSource =
+        new DefaultHttpDataSource.Factory().setClock(clock).createDataSource();
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(mockWebServer.url("/test-path").toString()).build();
+
+    dataSource.open(dataSpec);
+    clock.advanceTime(/* timeDiffMs= */ 200);
+    Util.readToEnd(dataSource);
+    dataSource.close();
+
+    HttpTransferMetrics transferMetrics = dataSource.getTransferMetrics();
+    assertThat(transferMetrics.connectTimeMs).isEqualTo(0);
+    assertThat(transferMetrics.timeToFirstByteMs).isEqualTo(0);
+    assertThat(transferMetrics.transferTimeMs).isEqualTo(200);
+  }
+
+  @Test
+  public void getTransferMetrics_afterPartiallyReadResponse_nextTransferUsesNewConnection()
+      throws Exception {
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100])));
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100])));
+    DefaultHttpDataSource dataSource = new DefaultHttpDataSource.Factory().createDataSource();
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(mockWebServer.url("/test-path").toString()).build();
+
+    dataSource.open(dataSpec);
+    dataSource.read(new byte[10], /* offset= */ 0, /* readLength= */ 10);
+    dataSource.close();
+    dataSource.open(dataSpec);
+    dataSource.close();
+
+    assertThat(dataSource.getTransferMetrics().connectionReused).isFalse();
+  }
+
+  @Test
+  public void preconnect_nextTransferReusesConnection() throws Exception {
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.enqueue(new MockResponse());
+    mockWebServer.enqueue(new MockResponse().setBody(new Buffer().write(new byte[10])));
+    DefaultHttpDataSource dataSource = new DefaultHttpDataSource.Factory().createDataSource();
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(mockWebServer.url("/segment").toString()).build();
+
+    dataSource.preconnect(Uri.parse(mockWebServer.url("/").toString()));
+    dataSource.open(dataSpec);
+    Util.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(mockWebServer.takeRequest(10, SECONDS).getMethod()).isEqualTo("HEAD");
+    assertThat(dataSource.getTransferMetrics().connectionReused).isTrue();
+  }
 }
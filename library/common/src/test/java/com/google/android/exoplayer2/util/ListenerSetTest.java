@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.util;
 
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -227,6 +228,129 @@ public class ListenerSetTest {
     // Asserts that negative event flag (INDEX_UNSET) can be used without throwing.
   }
 
+  @Test
+  public void queueCoalescedEvent_sendsOnlyLatestEventWithSameFlagAtPositionOfFirst() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    TestListener listener = mock(TestListener.class);
+    listenerSet.add(listener);
+
+    listenerSet.queueCoalescedEvent(
+        EVENT_ID_1, /* previousValue= */ 0, /* value= */ 1, l -> l.callbackWithValue(1));
+    listenerSet.queueEvent(EVENT_ID_2, TestListener::callback2);
+    listenerSet.queueCoalescedEvent(
+        EVENT_ID_1, /* previousValue= */ 1, /* value= */ 2, l -> l.callbackWithValue(2));
+    listenerSet.flushEvents();
+    listenerSet.queueCoalescedEvent(
+        EVENT_ID_1, /* previousValue= */ 2, /* value= */ 3, l -> l.callbackWithValue(3));
+    listenerSet.flushEvents();
+
+    InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).callbackWithValue(2);
+    inOrder.verify(listener).callback2();
+    inOrder.verify(listener).callbackWithValue(3);
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void queueCoalescedEvent_withRecursion_replacesEventThatHasNotBeenSent() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    // Listener1 sends events recursively, which are only sent once its callback returns.
+    TestListener listener1 =
+        spy(
+            new TestListener() {
+              @Override
+              public void callback1() {
+                listenerSet.queueCoalescedEvent(
+                    EVENT_ID_2,
+                    /* previousValue= */ 0,
+                    /* value= */ 1,
+                    l -> l.callbackWithValue(1));
+                listenerSet.flushEvents();
+                listenerSet.sendEvent(EVENT_ID_3, TestListener::callback3);
+                listenerSet.queueCoalescedEvent(
+                    EVENT_ID_2,
+                    /* previousValue= */ 1,
+                    /* value= */ 2,
+                    l -> l.callbackWithValue(2));
+                listenerSet.flushEvents();
+              }
+            });
+    listenerSet.add(listener1);
+
+    listenerSet.sendEvent(EVENT_ID_1, TestListener::callback1);
+
+    InOrder inOrder = Mockito.inOrder(listener1);
+    inOrder.verify(listener1).callback1();
+    inOrder.verify(listener1).callbackWithValue(2);
+    inOrder.verify(listener1).callback3();
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void queueCoalescedEvent_withValueChangedBack_dropsEvent() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    TestListener listener = mock(TestListener.class);
+    listenerSet.add(listener);
+
+    listenerSet.queueCoalescedEvent(
+        EVENT_ID_1, /* previousValue= */ 0, /* value= */ 1, l -> l.callbackWithValue(1));
+    listenerSet.queueEvent(EVENT_ID_2, TestListener::callback2);
+    listenerSet.queueCoalescedEvent(
+        EVENT_ID_1, /* previousValue= */ 1, /* value= */ 0, l -> l.callbackWithValue(0));
+    listenerSet.flushEvents();
+
+    verify(listener).callback2();
+    verify(listener, never()).callbackWithValue(anyInt());
+  }
+
+  @Test
+  public void queueCoalescedEvent_doesNotReplaceEventQueuedWithoutCoalescing() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    TestListener listener = mock(TestListener.class);
+    listenerSet.add(listener);
+
+    listenerSet.queueEvent(EVENT_ID_1, l -> l.callbackWithValue(1));
+    listenerSet.queueCoalescedEvent(
+        EVENT_ID_1, /* previousValue= */ 1, /* value= */ 2, l -> l.callbackWithValue(2));
+    listenerSet.flushEvents();
+
+    InOrder inOrder = Mockito.inOrder(listener);
+    inOrder.verify(listener).callbackWithValue(1);
+    inOrder.verify(listener).callbackWithValue(2);
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void flushEvents_repeatedly_sendsEventsToListenersRegisteredWhenQueued() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    TestListener listener1 = mock(TestListener.class);
+    TestListener listener2 = mock(TestListener.class);
+    listenerSet.add(listener1);
+
+    // Flushing recycles the queued events, which must not leak listeners between flushes.
+    listenerSet.sendEvent(EVENT_ID_1, TestListener::callback1);
+    listenerSet.queueEvent(EVENT_ID_2, TestListener::callback2);
+    listenerSet.add(listener2);
+    listenerSet.sendEvent(EVENT_ID_3, TestListener::callback3);
+
+    verify(listener1).callback1();
+    verify(listener1).callback2();
+    verify(listener1).callback3();
+    verify(listener2, never()).callback1();
+    verify(listener2, never()).callback2();
+    verify(listener2).callback3();
+  }
+
   @Test
   public void add_withRecursion_onlyReceivesUpdatesForFutureEvents() {
     ListenerSet<TestListener, Flags> listenerSet =
@@ -415,6 +539,8 @@ public class ListenerSetTest {
 
     default void callback3() {}
 
+    default void callbackWithValue(int value) {}
+
     default void iterationFinished(Flags flags) {}
   }
 
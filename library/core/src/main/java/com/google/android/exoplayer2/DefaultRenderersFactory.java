@@ -228,8 +228,8 @@ public class DefaultRenderersFactory implements RenderersFactory {
   /**
    * Sets whether floating point audio should be output when possible.
    *
-   * <p>Enabling floating point output disables audio processing, but may allow for higher quality
-   * audio output.
+   * <p>Enabling floating point output may allow for higher quality audio output. Speed adjustment
+   * and silence skipping are applied to the floating point audio directly.
    *
    * <p>The default value is {@code false}.
    *
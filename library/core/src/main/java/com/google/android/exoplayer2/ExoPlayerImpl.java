@@ -1040,8 +1040,12 @@ import java.util.List;
           listener -> listener.onStaticMetadataChanged(newPlaybackInfo.staticMetadata));
     }
     if (previousPlaybackInfo.isLoading != newPlaybackInfo.isLoading) {
-      listeners.queueEvent(
+      // Loading state changes are frequent, and only the latest value needs to be sent if they're
+      // reported recursively from a listener.
+      listeners.queueCoalescedEvent(
           Player.EVENT_IS_LOADING_CHANGED,
+          previousPlaybackInfo.isLoading,
+          newPlaybackInfo.isLoading,
           listener -> listener.onIsLoadingChanged(newPlaybackInfo.isLoading));
     }
     if (previousPlaybackInfo.playbackState != newPlaybackInfo.playbackState
@@ -1078,8 +1082,10 @@ import java.util.List;
           listener -> listener.onIsPlayingChanged(isPlaying(newPlaybackInfo)));
     }
     if (!previousPlaybackInfo.playbackParameters.equals(newPlaybackInfo.playbackParameters)) {
-      listeners.queueEvent(
+      listeners.queueCoalescedEvent(
           Player.EVENT_PLAYBACK_PARAMETERS_CHANGED,
+          previousPlaybackInfo.playbackParameters,
+          newPlaybackInfo.playbackParameters,
           listener -> listener.onPlaybackParametersChanged(newPlaybackInfo.playbackParameters));
     }
     if (seekProcessed) {
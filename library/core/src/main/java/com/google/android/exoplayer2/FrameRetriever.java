@@ -0,0 +1,593 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.decoder.Decoder;
+import com.google.android.exoplayer2.decoder.DecoderException;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
+import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * Retrieves decoded video frames of {@link MediaItem MediaItems} at requested positions, without a
+ * player or a {@link android.view.Surface}.
+ *
+ * <p>The requested positions are sorted and grouped by the sync sample from which decoding has to
+ * start, so that the media is read in a single forward pass and each group of pictures is decoded
+ * at most once. Each retrieval uses its own thread, so frames can be retrieved from several media
+ * items in parallel.
+ */
+public final class FrameRetriever {
+
+  /** Creates decoders for the video formats from which frames are retrieved. */
+  public interface DecoderFactory {
+
+    /**
+     * Creates a decoder for the given format. The decoder must output frames in {@link
+     * C#VIDEO_OUTPUT_MODE_YUV}, in presentation order.
+     *
+     * @param format The format of the video track.
+     * @return The decoder.
+     * @throws DecoderException If an error occurred creating the decoder.
+     */
+    Decoder<VideoDecoderInputBuffer, ? extends VideoDecoderOutputBuffer, ? extends DecoderException>
+        createDecoder(Format format) throws DecoderException;
+  }
+
+  /** Receives retrieved frames. */
+  public interface FrameListener {
+
+    /**
+     * Called on the retrieval thread when the frame for a requested position has been decoded. If
+     * several positions map to the same frame, this method is called once for each of them.
+     *
+     * <p>The output buffer is released after this method returns, so it must not be retained.
+     *
+     * @param requestedPositionUs The requested position, in microseconds.
+     * @param outputBuffer The decoded frame. Its {@link VideoDecoderOutputBuffer#timeUs} is the
+     *     presentation time of the frame.
+     */
+    void onFrame(long requestedPositionUs, VideoDecoderOutputBuffer outputBuffer);
+  }
+
+  private FrameRetriever() {}
+
+  /**
+   * Retrieves the frames of a {@link MediaItem} at the given positions.
+   *
+   * <p>If {@code seekParameters} is {@link SeekParameters#EXACT}, the frame at or after each
+   * requested position is decoded, which requires decoding from the preceding sync sample.
+   * Otherwise, each requested position is resolved to a sync sample using {@code seekParameters},
+   * and only that sync sample is decoded. {@link SeekParameters#CLOSEST_SYNC} is the cheapest way
+   * to generate thumbnails.
+   *
+   * <p>This method is thread-safe.
+   *
+   * @param mediaSourceFactory The {@link MediaSourceFactory} to use to read the data.
+   * @param mediaItem The {@link MediaItem} whose frames should be retrieved.
+   * @param positionsUs The positions of the requested frames, in microseconds. The positions don't
+   *     need to be sorted.
+   * @param seekParameters The {@link SeekParameters} that determine which frame is retrieved for
+   *     each position.
+   * @param decoderFactory The {@link DecoderFactory} used to create the video decoder.
+   * @param frameListener The {@link FrameListener} to receive the frames.
+   * @return A {@link ListenableFuture} of the presentation times of the retrieved frames, in the
+   *     order of {@code positionsUs}, or {@link C#TIME_UNSET} for positions for which no frame
+   *     could be retrieved. The future completes after all frames have been passed to {@code
+   *     frameListener}. Canceling the future stops the retrieval and releases its resources.
+   */
+  public static ListenableFuture<long[]> retrieveFrames(
+      MediaSourceFactory mediaSourceFactory,
+      MediaItem mediaItem,
+      long[] positionsUs,
+      SeekParameters seekParameters,
+      DecoderFactory decoderFactory,
+      FrameListener frameListener) {
+    return retrieveFrames(
+        mediaSourceFactory,
+        mediaItem,
+        positionsUs,
+        seekParameters,
+        decoderFactory,
+        frameListener,
+        Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ static ListenableFuture<long[]> retrieveFrames(
+      MediaSourceFactory mediaSourceFactory,
+      MediaItem mediaItem,
+      long[] positionsUs,
+      SeekParameters seekParameters,
+      DecoderFactory decoderFactory,
+      FrameListener frameListener,
+      Clock clock) {
+    // Create a new thread and handler for each call, so that retrievals run in parallel.
+    return new FrameRetrieverInternal(
+            mediaSourceFactory, positionsUs, seekParameters, decoderFactory, frameListener, clock)
+        .retrieveFrames(mediaItem);
+  }
+
+  private static final class FrameRetrieverInternal implements Handler.Callback {
+
+    private static final int MESSAGE_PREPARE_SOURCE = 0;
+    private static final int MESSAGE_CHECK_FOR_FAILURE = 1;
+    private static final int MESSAGE_DO_SOME_WORK = 2;
+    private static final int MESSAGE_RELEASE = 3;
+
+    private static final int ERROR_POLL_INTERVAL_MS = 100;
+    private static final int WORK_INTERVAL_MS = 10;
+    /** The duration of media loaded ahead of the read position. */
+    private static final long LOAD_AHEAD_US = 2_000_000;
+
+    private final MediaSourceFactory mediaSourceFactory;
+    private final SeekParameters seekParameters;
+    private final DecoderFactory decoderFactory;
+    private final FrameListener frameListener;
+    private final HandlerThread retrieverThread;
+    private final HandlerWrapper handler;
+    private final SettableFuture<long[]> framesFuture;
+    private final ArrayList<RequestedFrame> requestedFrames;
+    private final long[] frameTimesUs;
+    private final FormatHolder formatHolder;
+    private final DecoderInputBuffer flagsOnlyBuffer;
+    private final MediaSourceCaller mediaSourceCaller;
+
+    private @MonotonicNonNull MediaSource mediaSource;
+    private @MonotonicNonNull MediaPeriod mediaPeriod;
+    private @MonotonicNonNull SampleStream sampleStream;
+    private @MonotonicNonNull Format format;
+
+    @Nullable
+    private Decoder<
+            VideoDecoderInputBuffer, ? extends VideoDecoderOutputBuffer, ? extends DecoderException>
+        decoder;
+
+    @Nullable private VideoDecoderInputBuffer inputBuffer;
+    private boolean prepared;
+    private boolean released;
+    private int groupStartIndex;
+    private int groupEndIndex;
+    private int nextUnmatchedIndex;
+    private long groupSyncPositionUs;
+    private long readPositionUs;
+    private boolean groupSampleQueued;
+    private boolean groupInputEnded;
+
+    public FrameRetrieverInternal(
+        MediaSourceFactory mediaSourceFactory,
+        long[] positionsUs,
+        SeekParameters seekParameters,
+        DecoderFactory decoderFactory,
+        FrameListener frameListener,
+        Clock clock) {
+      this.mediaSourceFactory = mediaSourceFactory;
+      this.seekParameters = seekParameters;
+      this.decoderFactory = decoderFactory;
+      this.frameListener = frameListener;
+      retrieverThread = new HandlerThread("ExoPlayer:FrameRetriever");
+      retrieverThread.start();
+      handler = clock.createHandler(retrieverThread.getLooper(), /* callback= */ this);
+      framesFuture = SettableFuture.create();
+      requestedFrames = new ArrayList<>(positionsUs.length);
+      for (int i = 0; i < positionsUs.length; i++) {
+        requestedFrames.add(new RequestedFrame(/* index= */ i, positionsUs[i]));
+      }
+      Collections.sort(requestedFrames);
+      frameTimesUs = new long[positionsUs.length];
+      Arrays.fill(frameTimesUs, C.TIME_UNSET);
+      formatHolder = new FormatHolder();
+      flagsOnlyBuffer = DecoderInputBuffer.newFlagsOnlyInstance();
+      mediaSourceCaller = new MediaSourceCaller();
+    }
+
+    public ListenableFuture<long[]> retrieveFrames(MediaItem mediaItem) {
+      // Release resources once the future completes, including if it's canceled by the caller.
+      framesFuture.addListener(
+          () -> handler.sendEmptyMessage(MESSAGE_RELEASE), /* executor= */ Runnable::run);
+      handler.obtainMessage(MESSAGE_PREPARE_SOURCE, mediaItem).sendToTarget();
+      return framesFuture;
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+      if (released) {
+        return true;
+      }
+      try {
+        switch (msg.what) {
+          case MESSAGE_PREPARE_SOURCE:
+            MediaItem mediaItem = (MediaItem) msg.obj;
+            mediaSource = mediaSourceFactory.createMediaSource(mediaItem);
+            mediaSource.prepareSource(mediaSourceCaller, /* mediaTransferListener= */ null);
+            handler.sendEmptyMessage(MESSAGE_CHECK_FOR_FAILURE);
+            return true;
+          case MESSAGE_CHECK_FOR_FAILURE:
+            if (prepared || framesFuture.isDone()) {
+              // Errors are checked while reading samples from now on.
+              return true;
+            }
+            if (mediaPeriod == null) {
+              checkNotNull(mediaSource).maybeThrowSourceInfoRefreshError();
+            } else {
+              mediaPeriod.maybeThrowPrepareError();
+            }
+            handler.sendEmptyMessageDelayed(
+                MESSAGE_CHECK_FOR_FAILURE, /* delayMs= */ ERROR_POLL_INTERVAL_MS);
+            return true;
+          case MESSAGE_DO_SOME_WORK:
+            if (!framesFuture.isDone()) {
+              doSomeWork();
+            }
+            return true;
+          case MESSAGE_RELEASE:
+            release();
+            return true;
+          default:
+            return false;
+        }
+      } catch (Exception e) {
+        framesFuture.setException(e);
+        release();
+        return true;
+      }
+    }
+
+    private void onPrepared() {
+      MediaPeriod mediaPeriod = checkNotNull(this.mediaPeriod);
+      @Nullable TrackGroup videoTrackGroup = getVideoTrackGroup(mediaPeriod.getTrackGroups());
+      if (videoTrackGroup == null) {
+        throw new IllegalStateException("No video track");
+      }
+      @NullableType
+      ExoTrackSelection[] selections = {
+        new FixedTrackSelection(videoTrackGroup, getSmallestTrackIndex(videoTrackGroup))
+      };
+      @NullableType SampleStream[] streams = new SampleStream[1];
+      mediaPeriod.selectTracks(
+          selections,
+          /* mayRetainStreamFlags= */ new boolean[1],
+          streams,
+          /* streamResetFlags= */ new boolean[1],
+          /* positionUs= */ 0);
+      mediaPeriod.readDiscontinuity();
+      sampleStream = checkNotNull(streams[0]);
+
+      // Resolve the sync sample from which each frame has to be decoded.
+      SeekParameters syncSeekParameters =
+          isExact() ? SeekParameters.PREVIOUS_SYNC : seekParameters;
+      for (int i = 0; i < requestedFrames.size(); i++) {
+        RequestedFrame requestedFrame = requestedFrames.get(i);
+        requestedFrame.syncPositionUs =
+            mediaPeriod.getAdjustedSeekPositionUs(
+                requestedFrame.positionUs, syncSeekParameters);
+      }
+      prepared = true;
+      startGroup();
+    }
+
+    private void doSomeWork() throws IOException, DecoderException {
+      boolean madeProgress = drainOutput();
+      if (framesFuture.isDone()) {
+        return;
+      }
+      madeProgress |= feedInput();
+      MediaPeriod mediaPeriod = checkNotNull(this.mediaPeriod);
+      long bufferedPositionUs = mediaPeriod.getBufferedPositionUs();
+      if (bufferedPositionUs != C.TIME_END_OF_SOURCE
+          && bufferedPositionUs - readPositionUs < LOAD_AHEAD_US) {
+        mediaPeriod.continueLoading(readPositionUs);
+      }
+      mediaPeriod.discardBuffer(readPositionUs, /* toKeyframe= */ false);
+      handler.sendEmptyMessageDelayed(
+          MESSAGE_DO_SOME_WORK, /* delayMs= */ madeProgress ? 0 : WORK_INTERVAL_MS);
+    }
+
+    /**
+     * Starts decoding the next group of requested frames that share a sync sample, or completes
+     * the retrieval if there are none.
+     */
+    private void startGroup() {
+      groupStartIndex = groupEndIndex;
+      if (groupStartIndex == requestedFrames.size()) {
+        framesFuture.set(frameTimesUs);
+        handler.removeMessages(MESSAGE_DO_SOME_WORK);
+        return;
+      }
+      groupSyncPositionUs = requestedFrames.get(groupStartIndex).syncPositionUs;
+      groupEndIndex = groupStartIndex + 1;
+      while (groupEndIndex < requestedFrames.size()
+          && requestedFrames.get(groupEndIndex).syncPositionUs == groupSyncPositionUs) {
+        groupEndIndex++;
+      }
+      nextUnmatchedIndex = groupStartIndex;
+      groupSampleQueued = false;
+      groupInputEnded = false;
+      readPositionUs = checkNotNull(mediaPeriod).seekToUs(groupSyncPositionUs);
+      handler.sendEmptyMessage(MESSAGE_DO_SOME_WORK);
+    }
+
+    private void finishGroup() {
+      if (decoder != null) {
+        decoder.flush();
+      }
+      inputBuffer = null;
+      handler.removeMessages(MESSAGE_DO_SOME_WORK);
+      startGroup();
+    }
+
+    private boolean drainOutput() throws DecoderException {
+      if (decoder == null) {
+        return false;
+      }
+      boolean madeProgress = false;
+      @Nullable VideoDecoderOutputBuffer outputBuffer;
+      while ((outputBuffer = decoder.dequeueOutputBuffer()) != null) {
+        madeProgress = true;
+        if (outputBuffer.isEndOfStream()) {
+          // Frames that weren't matched are beyond the end of the stream or the group.
+          outputBuffer.release();
+          finishGroup();
+          return true;
+        }
+        try {
+          onFrameDecoded(outputBuffer);
+        } finally {
+          outputBuffer.release();
+        }
+        if (framesFuture.isDone()) {
+          // The retrieval was canceled by the frame listener.
+          return true;
+        }
+        if (nextUnmatchedIndex == groupEndIndex) {
+          finishGroup();
+          return true;
+        }
+      }
+      return madeProgress;
+    }
+
+    private void onFrameDecoded(VideoDecoderOutputBuffer outputBuffer) {
+      while (nextUnmatchedIndex < groupEndIndex) {
+        RequestedFrame requestedFrame = requestedFrames.get(nextUnmatchedIndex);
+        if (isExact() && requestedFrame.positionUs > outputBuffer.timeUs) {
+          break;
+        }
+        frameTimesUs[requestedFrame.index] = outputBuffer.timeUs;
+        frameListener.onFrame(requestedFrame.positionUs, outputBuffer);
+        nextUnmatchedIndex++;
+        if (framesFuture.isDone()) {
+          return;
+        }
+      }
+    }
+
+    private boolean feedInput() throws IOException, DecoderException {
+      SampleStream sampleStream = checkNotNull(this.sampleStream);
+      boolean madeProgress = false;
+      while (!groupInputEnded) {
+        if (decoder == null) {
+          flagsOnlyBuffer.clear();
+          int result =
+              sampleStream.readData(formatHolder, flagsOnlyBuffer, /* formatRequired= */ true);
+          if (result == C.RESULT_NOTHING_READ) {
+            sampleStream.maybeThrowError();
+            return madeProgress;
+          } else if (result == C.RESULT_BUFFER_READ) {
+            // The stream ended before a format was read.
+            groupEndIndex = requestedFrames.size();
+            finishGroup();
+            return true;
+          }
+          format = checkNotNull(formatHolder.format);
+          decoder = decoderFactory.createDecoder(format);
+          madeProgress = true;
+          continue;
+        }
+
+        if (inputBuffer == null) {
+          inputBuffer = decoder.dequeueInputBuffer();
+          if (inputBuffer == null) {
+            return madeProgress;
+          }
+        }
+        VideoDecoderInputBuffer inputBuffer = this.inputBuffer;
+        if (!isExact() && groupSampleQueued) {
+          // Only the sync sample is decoded.
+          queueEndOfStream(inputBuffer);
+          return true;
+        }
+        int result = sampleStream.readData(formatHolder, inputBuffer, /* formatRequired= */ false);
+        if (result == C.RESULT_NOTHING_READ) {
+          sampleStream.maybeThrowError();
+          return madeProgress;
+        }
+        madeProgress = true;
+        if (result == C.RESULT_FORMAT_READ) {
+          format = checkNotNull(formatHolder.format);
+          continue;
+        }
+        if (inputBuffer.isEndOfStream()) {
+          queueEndOfStream(inputBuffer);
+          return true;
+        }
+        if (inputBuffer.isKeyFrame()
+            && inputBuffer.timeUs > groupSyncPositionUs
+            && requestedFrames.get(groupEndIndex - 1).positionUs < inputBuffer.timeUs) {
+          // The remaining frames of the group precede this sync sample.
+          inputBuffer.clear();
+          queueEndOfStream(inputBuffer);
+          return true;
+        }
+        readPositionUs = max(readPositionUs, inputBuffer.timeUs);
+        if (isExact() && inputBuffer.timeUs < requestedFrames.get(nextUnmatchedIndex).positionUs) {
+          inputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+        }
+        inputBuffer.flip();
+        inputBuffer.format = format;
+        decoder.queueInputBuffer(inputBuffer);
+        this.inputBuffer = null;
+        groupSampleQueued = true;
+      }
+      return madeProgress;
+    }
+
+    private void queueEndOfStream(VideoDecoderInputBuffer inputBuffer) throws DecoderException {
+      inputBuffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
+      checkNotNull(decoder).queueInputBuffer(inputBuffer);
+      this.inputBuffer = null;
+      groupInputEnded = true;
+    }
+
+    private boolean isExact() {
+      return seekParameters.equals(SeekParameters.EXACT);
+    }
+
+    private void release() {
+      released = true;
+      if (decoder != null) {
+        decoder.release();
+        decoder = null;
+      }
+      if (mediaPeriod != null) {
+        checkNotNull(mediaSource).releasePeriod(mediaPeriod);
+      }
+      if (mediaSource != null) {
+        mediaSource.releaseSource(mediaSourceCaller);
+      }
+      handler.removeCallbacksAndMessages(/* token= */ null);
+      retrieverThread.quit();
+    }
+
+    @Nullable
+    private static TrackGroup getVideoTrackGroup(TrackGroupArray trackGroups) {
+      for (int i = 0; i < trackGroups.length; i++) {
+        TrackGroup trackGroup = trackGroups.get(i);
+        if (MimeTypes.isVideo(trackGroup.getFormat(0).sampleMimeType)) {
+          return trackGroup;
+        }
+      }
+      return null;
+    }
+
+    /** Returns the index of the track with the fewest pixels, which is cheapest to decode. */
+    private static int getSmallestTrackIndex(TrackGroup trackGroup) {
+      int smallestTrackIndex = 0;
+      int smallestPixelCount = Integer.MAX_VALUE;
+      for (int i = 0; i < trackGroup.length; i++) {
+        Format format = trackGroup.getFormat(i);
+        int pixelCount = format.getPixelCount();
+        if (pixelCount != Format.NO_VALUE && pixelCount < smallestPixelCount) {
+          smallestTrackIndex = i;
+          smallestPixelCount = pixelCount;
+        }
+      }
+      return smallestTrackIndex;
+    }
+
+    private final class MediaSourceCaller
+        implements MediaSource.MediaSourceCaller, MediaPeriod.Callback {
+
+      private final Allocator allocator;
+
+      private boolean mediaPeriodCreated;
+
+      public MediaSourceCaller() {
+        allocator =
+            new DefaultAllocator(
+                /* trimOnReset= */ true,
+                /* individualAllocationSize= */ C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      }
+
+      @Override
+      public void onSourceInfoRefreshed(MediaSource source, Timeline timeline) {
+        if (mediaPeriodCreated) {
+          // Ignore dynamic updates.
+          return;
+        }
+        mediaPeriodCreated = true;
+        mediaPeriod =
+            source.createPeriod(
+                new MediaSource.MediaPeriodId(timeline.getUidOfPeriod(/* periodIndex= */ 0)),
+                allocator,
+                /* startPositionUs= */ 0);
+        mediaPeriod.prepare(/* callback= */ this, /* positionUs= */ 0);
+      }
+
+      @Override
+      public void onPrepared(MediaPeriod mediaPeriod) {
+        try {
+          FrameRetrieverInternal.this.onPrepared();
+        } catch (RuntimeException e) {
+          framesFuture.setException(e);
+        }
+      }
+
+      @Override
+      public void onContinueLoadingRequested(MediaPeriod mediaPeriod) {
+        // Loading is continued while doing work, depending on the read position.
+      }
+    }
+  }
+
+  private static final class RequestedFrame implements Comparable<RequestedFrame> {
+
+    public final int index;
+    public final long positionUs;
+
+    public long syncPositionUs;
+
+    public RequestedFrame(int index, long positionUs) {
+      this.index = index;
+      this.positionUs = positionUs;
+      syncPositionUs = C.TIME_UNSET;
+    }
+
+    @Override
+    public int compareTo(RequestedFrame other) {
+      return Long.compare(positionUs, other.positionUs);
+    }
+  }
+}
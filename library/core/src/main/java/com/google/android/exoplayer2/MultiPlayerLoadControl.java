@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * Coordinates the buffering of multiple players that play at the same time, for example in a
+ * multi-view layout, so that their combined memory usage stays within a single budget.
+ *
+ * <p>Each player is given its own {@link LoadControl} created with {@link
+ * #createLoadControl(int)}, and all of them allocate from one shared {@link DefaultAllocator}. The
+ * {@link Builder#setTargetBufferBytes(int) target buffer size} and {@link
+ * Builder#setBufferDurationsMs(int, int, int, int) maximum buffer duration} are budgets for all
+ * players together, and are shared between the prepared players in proportion to their weights.
+ * For example, a focused player with weight 6 and three thumbnail players with weight 1 each get
+ * two thirds and one ninth of the budgets respectively. The weights can be changed at any time
+ * with {@link PlayerLoadControl#setWeight(int)}, after which a player whose share decreased stops
+ * loading until playback has consumed enough of its buffer.
+ *
+ * <p>The target buffer size is a hard budget. A player loads up to its minimum buffer duration only
+ * while it's within its share of the target buffer size: once the share is reached it stops
+ * loading, even with less than the minimum buffer duration buffered. It resumes once playback has
+ * released enough of its buffer, or once less than 500 ms remain buffered so that playback can't
+ * get stuck. The maximum buffer duration of a player is never less than the minimum buffer
+ * duration, and the buffering thresholds for starting playback apply to each player individually.
+ */
+public final class MultiPlayerLoadControl {
+
+  /**
+   * The default combined target buffer size of all players, in bytes. This is the default target
+   * buffer size of a single {@link DefaultLoadControl} playing audio and video.
+   */
+  public static final int DEFAULT_TARGET_BUFFER_BYTES =
+      DefaultLoadControl.DEFAULT_VIDEO_BUFFER_SIZE + DefaultLoadControl.DEFAULT_AUDIO_BUFFER_SIZE;
+
+  /**
+   * The default minimum duration of media that each player will attempt to ensure is buffered at
+   * all times, in milliseconds.
+   */
+  public static final int DEFAULT_MIN_BUFFER_MS = 10_000;
+
+  /**
+   * The default combined maximum duration of media that all players will attempt to buffer, in
+   * milliseconds.
+   */
+  public static final int DEFAULT_MAX_BUFFER_MS = 100_000;
+
+  /**
+   * The default duration of media that must be buffered for playback to start or resume following
+   * a user action such as a seek, in milliseconds.
+   */
+  public static final int DEFAULT_BUFFER_FOR_PLAYBACK_MS =
+      DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+
+  /**
+   * The default duration of media that must be buffered for playback to resume after a rebuffer,
+   * in milliseconds.
+   */
+  public static final int DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS =
+      DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS;
+
+  /** The default weight of a player. */
+  public static final int DEFAULT_WEIGHT = 1;
+
+  /** Builder for {@link MultiPlayerLoadControl}. */
+  public static final class Builder {
+
+    @Nullable private DefaultAllocator allocator;
+    private int targetBufferBytes;
+    private int minBufferMs;
+    private int maxBufferMs;
+    private int bufferForPlaybackMs;
+    private int bufferForPlaybackAfterRebufferMs;
+    private boolean buildCalled;
+
+    /** Constructs a new instance. */
+    public Builder() {
+      targetBufferBytes = DEFAULT_TARGET_BUFFER_BYTES;
+      minBufferMs = DEFAULT_MIN_BUFFER_MS;
+      maxBufferMs = DEFAULT_MAX_BUFFER_MS;
+      bufferForPlaybackMs = DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+      bufferForPlaybackAfterRebufferMs = DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS;
+    }
+
+    /**
+     * Sets the {@link DefaultAllocator} shared by all players. It should not be reset when a
+     * player is released, so it should be created with {@code trimOnReset} set to {@code false}.
+     *
+     * @param allocator The {@link DefaultAllocator}.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder setAllocator(DefaultAllocator allocator) {
+      checkState(!buildCalled);
+      this.allocator = allocator;
+      return this;
+    }
+
+    /**
+     * Sets the combined target buffer size of all players, in bytes.
+     *
+     * @param targetBufferBytes The combined target buffer size in bytes.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder setTargetBufferBytes(int targetBufferBytes) {
+      checkState(!buildCalled);
+      checkArgument(targetBufferBytes > 0);
+      this.targetBufferBytes = targetBufferBytes;
+      return this;
+    }
+
+    /**
+     * Sets the buffer duration parameters.
+     *
+     * @param minBufferMs The minimum duration of media that each player will attempt to ensure is
+     *     buffered at all times, within its share of the target buffer size, in milliseconds.
+     * @param maxBufferMs The combined maximum duration of media that all players will attempt to
+     *     buffer, in milliseconds.
+     * @param bufferForPlaybackMs The duration of media that must be buffered for playback of a
+     *     player to start or resume following a user action such as a seek, in milliseconds.
+     * @param bufferForPlaybackAfterRebufferMs The duration of media that must be buffered for
+     *     playback of a player to resume after a rebuffer, in milliseconds.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder setBufferDurationsMs(
+        int minBufferMs,
+        int maxBufferMs,
+        int bufferForPlaybackMs,
+        int bufferForPlaybackAfterRebufferMs) {
+      checkState(!buildCalled);
+      checkArgument(bufferForPlaybackMs >= 0);
+      checkArgument(bufferForPlaybackAfterRebufferMs >= 0);
+      checkArgument(minBufferMs >= bufferForPlaybackMs);
+      checkArgument(minBufferMs >= bufferForPlaybackAfterRebufferMs);
+      checkArgument(maxBufferMs >= minBufferMs);
+      this.minBufferMs = minBufferMs;
+      this.maxBufferMs = maxBufferMs;
+      this.bufferForPlaybackMs = bufferForPlaybackMs;
+      this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+      return this;
+    }
+
+    /** Creates a {@link MultiPlayerLoadControl}. */
+    public MultiPlayerLoadControl build() {
+      checkState(!buildCalled);
+      buildCalled = true;
+      if (allocator == null) {
+        allocator = new DefaultAllocator(/* trimOnReset= */ false, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      }
+      return new MultiPlayerLoadControl(this);
+    }
+  }
+
+  /** A {@link LoadControl} for one of the players sharing a {@link MultiPlayerLoadControl}. */
+  public final class PlayerLoadControl implements LoadControl {
+
+    private final PlayerAllocator playerAllocator;
+
+    private int weight;
+    private boolean isActive;
+    private boolean isLoading;
+
+    private PlayerLoadControl(int weight) {
+      this.weight = weight;
+      playerAllocator = new PlayerAllocator();
+    }
+
+    /**
+     * Sets the weight of the player, for example when it gains or loses focus.
+     *
+     * @param weight The weight of the player. Must be greater than 0.
+     */
+    public void setWeight(int weight) {
+      checkArgument(weight > 0);
+      synchronized (MultiPlayerLoadControl.this) {
+        if (isActive) {
+          totalWeight += weight - this.weight;
+        }
+        this.weight = weight;
+      }
+    }
+
+    /** Returns the weight of the player. */
+    public int getWeight() {
+      synchronized (MultiPlayerLoadControl.this) {
+        return weight;
+      }
+    }
+
+    /** Returns the number of bytes currently allocated by the player. */
+    public int getTotalBytesAllocated() {
+      return playerAllocator.getTotalBytesAllocated();
+    }
+
+    /** Returns the share of the target buffer size currently allotted to the player, in bytes. */
+    public int getTargetBufferBytes() {
+      synchronized (MultiPlayerLoadControl.this) {
+        return (int) (targetBufferBytes * getShare());
+      }
+    }
+
+    /** Returns the maximum buffer duration currently allotted to the player, in microseconds. */
+    public long getMaxBufferUs() {
+      synchronized (MultiPlayerLoadControl.this) {
+        return max(minBufferUs, (long) (maxBufferUs * getShare()));
+      }
+    }
+
+    @Override
+    public void onPrepared() {
+      isLoading = false;
+      setActive(true);
+    }
+
+    @Override
+    public void onTracksSelected(
+        Renderer[] renderers, TrackGroupArray trackGroups, ExoTrackSelection[] trackSelections) {
+      // Do nothing. The target buffer size is allotted from the budget rather than derived from the
+      // selected tracks.
+    }
+
+    @Override
+    public void onStopped() {
+      isLoading = false;
+      setActive(false);
+    }
+
+    @Override
+    public void onReleased() {
+      isLoading = false;
+      setActive(false);
+    }
+
+    @Override
+    public Allocator getAllocator() {
+      return playerAllocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+      return 0;
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+      return false;
+    }
+
+    @Override
+    public boolean shouldContinueLoading(
+        long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+      boolean targetBufferSizeReached =
+          playerAllocator.getTotalBytesAllocated() >= getTargetBufferBytes();
+      long maxBufferUs = getMaxBufferUs();
+      long minBufferUs = MultiPlayerLoadControl.this.minBufferUs;
+      if (playbackSpeed > 1) {
+        // The playback speed is faster than real time, so scale up the minimum required media
+        // duration to keep enough media buffered for a playout duration of minBufferUs.
+        long mediaDurationMinBufferUs =
+            Util.getMediaDurationForPlayoutDuration(minBufferUs, playbackSpeed);
+        minBufferUs = min(mediaDurationMinBufferUs, maxBufferUs);
+      }
+      // Prevent playback from getting stuck if minBufferUs is too small.
+      minBufferUs = max(minBufferUs, 500_000);
+      if (bufferedDurationUs < minBufferUs) {
+        // The share of the target buffer size takes priority over the minimum buffer duration.
+        // The share may have been reduced while the player's buffer was full, so keep loading if
+        // the buffer is almost empty to avoid getting stuck.
+        isLoading = !targetBufferSizeReached || bufferedDurationUs < 500_000;
+      } else if (bufferedDurationUs >= maxBufferUs || targetBufferSizeReached) {
+        isLoading = false;
+      } // Else don't change the loading state.
+      return isLoading;
+    }
+
+    @Override
+    public boolean shouldStartPlayback(
+        long bufferedDurationUs,
+        float playbackSpeed,
+        boolean rebuffering,
+        long targetLiveOffsetUs) {
+      bufferedDurationUs =
+          Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
+      long minBufferDurationUs =
+          rebuffering ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
+      if (targetLiveOffsetUs != C.TIME_UNSET) {
+        minBufferDurationUs = min(targetLiveOffsetUs / 2, minBufferDurationUs);
+      }
+      return minBufferDurationUs <= 0
+          || bufferedDurationUs >= minBufferDurationUs
+          || playerAllocator.getTotalBytesAllocated() >= getTargetBufferBytes();
+    }
+
+    private void setActive(boolean isActive) {
+      synchronized (MultiPlayerLoadControl.this) {
+        if (this.isActive == isActive) {
+          return;
+        }
+        this.isActive = isActive;
+        totalWeight += isActive ? weight : -weight;
+        activePlayerCount += isActive ? 1 : -1;
+        // Free the memory of the shared allocator once no player is prepared.
+        allocator.setTargetBufferSize(activePlayerCount > 0 ? targetBufferBytes : 0);
+      }
+    }
+
+    /** Returns the share of the budgets allotted to this player. Must hold the coordinator lock. */
+    private float getShare() {
+      return isActive && totalWeight > 0 ? (float) weight / totalWeight : 0;
+    }
+
+    /**
+     * An {@link Allocator} that allocates from the shared allocator and counts the bytes allocated
+     * by the player.
+     */
+    private final class PlayerAllocator implements Allocator {
+
+      private int allocatedCount;
+
+      @Override
+      public Allocation allocate() {
+        Allocation allocation = allocator.allocate();
+        synchronized (this) {
+          allocatedCount++;
+        }
+        return allocation;
+      }
+
+      @Override
+      public void release(Allocation allocation) {
+        allocator.release(allocation);
+        synchronized (this) {
+          allocatedCount--;
+        }
+      }
+
+      @Override
+      public void release(Allocation[] allocations) {
+        allocator.release(allocations);
+        synchronized (this) {
+          allocatedCount -= allocations.length;
+        }
+      }
+
+      @Override
+      public void trim() {
+        allocator.trim();
+      }
+
+      @Override
+      public synchronized int getTotalBytesAllocated() {
+        return allocatedCount * allocator.getIndividualAllocationLength();
+      }
+
+      @Override
+      public int getIndividualAllocationLength() {
+        return allocator.getIndividualAllocationLength();
+      }
+    }
+  }
+
+  private final DefaultAllocator allocator;
+  private final int targetBufferBytes;
+  private final long minBufferUs;
+  private final long maxBufferUs;
+  private final long bufferForPlaybackUs;
+  private final long bufferForPlaybackAfterRebufferUs;
+
+  private int totalWeight;
+  private int activePlayerCount;
+
+  private MultiPlayerLoadControl(Builder builder) {
+    allocator = checkNotNull(builder.allocator);
+    targetBufferBytes = builder.targetBufferBytes;
+    minBufferUs = C.msToUs(builder.minBufferMs);
+    maxBufferUs = C.msToUs(builder.maxBufferMs);
+    bufferForPlaybackUs = C.msToUs(builder.bufferForPlaybackMs);
+    bufferForPlaybackAfterRebufferUs = C.msToUs(builder.bufferForPlaybackAfterRebufferMs);
+  }
+
+  /**
+   * Creates a {@link LoadControl} for a player with the {@link #DEFAULT_WEIGHT default weight}.
+   */
+  public PlayerLoadControl createLoadControl() {
+    return createLoadControl(DEFAULT_WEIGHT);
+  }
+
+  /**
+   * Creates a {@link LoadControl} for a player. The player takes part in sharing the budgets while
+   * it's prepared.
+   *
+   * @param weight The weight of the player. Must be greater than 0.
+   * @return The {@link PlayerLoadControl}, to be passed to the player's builder.
+   */
+  public PlayerLoadControl createLoadControl(int weight) {
+    checkArgument(weight > 0);
+    return new PlayerLoadControl(weight);
+  }
+
+  /** Returns the {@link DefaultAllocator} shared by all players. */
+  public DefaultAllocator getAllocator() {
+    return allocator;
+  }
+}
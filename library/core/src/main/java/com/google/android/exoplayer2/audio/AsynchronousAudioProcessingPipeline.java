@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.DefaultAudioSink.AudioProcessorChain;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReference;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Runs a chain of {@link AudioProcessor AudioProcessors} on a dedicated thread.
+ *
+ * <p>Input buffers are copied into a bounded ring of buffers and processed on the processing
+ * thread, which copies the output of the last audio processor into a bounded ring of output
+ * buffers. Each ring has a single producer and a single consumer, so queueing input and reading
+ * output don't take a lock.
+ *
+ * <p>The audio processors are guarded by the lock passed to the constructor. The processing thread
+ * holds it while processing a single input buffer, and releases it between buffers. The thread that
+ * owns the pipeline must hold the same lock while it configures or flushes the audio processors,
+ * which blocks for at most the processing of one input buffer.
+ *
+ * <p>The owning thread must not query the audio processors directly while they're used by the
+ * pipeline. Instead, the processing thread takes a snapshot of the state needed for position
+ * tracking whenever it outputs a buffer, and the snapshot is published when that buffer is
+ * released by the owning thread. {@link #getSkippedOutputFrameCount()} and {@link
+ * #getMediaDuration(long)} therefore only account for output that has been released.
+ *
+ * <p>The implementation of this class assumes that its public methods will be called from the same
+ * thread.
+ */
+/* package */ final class AsynchronousAudioProcessingPipeline {
+
+  /** The number of buffers in each of the input and output rings. */
+  private static final int RING_CAPACITY = 4;
+  /**
+   * The playout duration for which the media duration is sampled. Media durations for other playout
+   * durations are scaled from this sample, as the audio processor chain scales durations linearly.
+   */
+  private static final long MEDIA_DURATION_SAMPLE_PLAYOUT_DURATION_US = 3600 * C.MICROS_PER_SECOND;
+
+  private final Object lock;
+  private final AudioProcessorChain audioProcessorChain;
+  private final TrimmingAudioProcessor trimmingAudioProcessor;
+  private final HandlerThread processingThread;
+  private final Handler handler;
+  private final Runnable processRunnable;
+  private final BufferRing inputRing;
+  private final BufferRing outputRing;
+  private final AtomicReference<@NullableType RuntimeException> pendingRuntimeException;
+  // The processor state snapshots for the buffers in the output ring, indexed by ring slot.
+  private final long[] outputSkippedOutputFrameCounts;
+  private final long[] outputMediaDurationSamplesUs;
+
+  @GuardedBy("lock")
+  private AudioProcessor[] audioProcessors;
+
+  @GuardedBy("lock")
+  private ByteBuffer[] outputBuffers;
+
+  @GuardedBy("lock")
+  @Nullable
+  private ByteBuffer currentInputBuffer;
+
+  @GuardedBy("lock")
+  private int drainingAudioProcessorIndex;
+
+  @GuardedBy("lock")
+  private boolean released;
+
+  private volatile boolean inputEnded;
+  private volatile boolean ended;
+  private volatile long trimmedFrameCount;
+
+  // Snapshot of the processor state when the last released output buffer was output.
+  private long skippedOutputFrameCount;
+  private long mediaDurationSampleUs;
+
+  /**
+   * Creates an instance and starts its processing thread.
+   *
+   * @param lock The lock that guards access to the audio processors.
+   * @param audioProcessorChain The chain whose state is used for position tracking.
+   * @param trimmingAudioProcessor The audio processor that trims encoder delay and padding.
+   */
+  public AsynchronousAudioProcessingPipeline(
+      Object lock,
+      AudioProcessorChain audioProcessorChain,
+      TrimmingAudioProcessor trimmingAudioProcessor) {
+    this.lock = lock;
+    this.audioProcessorChain = audioProcessorChain;
+    this.trimmingAudioProcessor = trimmingAudioProcessor;
+    processingThread = new HandlerThread("ExoPlayer:AudioProcessingThread");
+    processingThread.start();
+    handler = new Handler(processingThread.getLooper());
+    processRunnable = this::process;
+    inputRing = new BufferRing(RING_CAPACITY);
+    outputRing = new BufferRing(RING_CAPACITY);
+    pendingRuntimeException = new AtomicReference<>();
+    outputSkippedOutputFrameCounts = new long[RING_CAPACITY];
+    outputMediaDurationSamplesUs = new long[RING_CAPACITY];
+    mediaDurationSampleUs = MEDIA_DURATION_SAMPLE_PLAYOUT_DURATION_US;
+    audioProcessors = new AudioProcessor[0];
+    outputBuffers = new ByteBuffer[0];
+    drainingAudioProcessorIndex = C.INDEX_UNSET;
+  }
+
+  /**
+   * Discards all pending input and output, and flushes the audio processors that will process
+   * subsequent input. Blocks until the processing of the current input buffer, if any, has
+   * finished.
+   *
+   * @param audioProcessors The active audio processors, in processing order.
+   */
+  public void flush(AudioProcessor[] audioProcessors) {
+    synchronized (lock) {
+      this.audioProcessors = audioProcessors;
+      outputBuffers = new ByteBuffer[audioProcessors.length];
+      for (int i = 0; i < audioProcessors.length; i++) {
+        AudioProcessor audioProcessor = audioProcessors[i];
+        audioProcessor.flush();
+        outputBuffers[i] = audioProcessor.getOutput();
+      }
+      inputRing.clear();
+      outputRing.clear();
+      currentInputBuffer = null;
+      drainingAudioProcessorIndex = C.INDEX_UNSET;
+      inputEnded = false;
+      ended = false;
+      skippedOutputFrameCount = audioProcessorChain.getSkippedOutputFrameCount();
+      mediaDurationSampleUs =
+          audioProcessorChain.getMediaDuration(MEDIA_DURATION_SAMPLE_PLAYOUT_DURATION_US);
+      trimmedFrameCount = trimmingAudioProcessor.getTrimmedFrameCount();
+    }
+    pendingRuntimeException.set(null);
+  }
+
+  /**
+   * Copies the remaining data in {@code buffer} into the input ring for processing, if the ring
+   * has space for it. The buffer's position is advanced to its limit if its data is queued.
+   *
+   * @param buffer The buffer to queue.
+   * @return Whether the data was queued.
+   */
+  public boolean queueInput(ByteBuffer buffer) {
+    maybeThrowException();
+    boolean queued = false;
+    if (!inputRing.isFull()) {
+      inputRing.getWriteBuffer(buffer.remaining()).put(buffer).flip();
+      inputRing.commitWrite();
+      queued = true;
+    }
+    handler.post(processRunnable);
+    return queued;
+  }
+
+  /**
+   * Queues an end of stream signal. All queued input will be processed and the audio processors
+   * drained, after which {@link #isEnded()} returns {@code true} once all output has been
+   * released.
+   */
+  public void queueEndOfStream() {
+    inputEnded = true;
+    handler.post(processRunnable);
+  }
+
+  /**
+   * Returns the oldest processed buffer, or {@code null} if there's no processed output. The same
+   * buffer is returned until {@link #releaseOutput()} is called.
+   */
+  @Nullable
+  public ByteBuffer getOutput() {
+    maybeThrowException();
+    return outputRing.peek();
+  }
+
+  /**
+   * Releases the buffer returned by {@link #getOutput()}, so that it can be reused, and publishes
+   * the processor state snapshot taken when it was output.
+   */
+  public void releaseOutput() {
+    int slot = outputRing.getReadSlot();
+    skippedOutputFrameCount = outputSkippedOutputFrameCounts[slot];
+    mediaDurationSampleUs = outputMediaDurationSamplesUs[slot];
+    outputRing.commitRead();
+    handler.post(processRunnable);
+  }
+
+  /** Returns whether there's input or output pending in the rings. */
+  public boolean hasPendingData() {
+    return !inputRing.isEmpty() || !outputRing.isEmpty();
+  }
+
+  /**
+   * Returns whether the end of stream has been processed after {@link #queueEndOfStream()} was
+   * called, and all output has been released.
+   */
+  public boolean isEnded() {
+    maybeThrowException();
+    return ended && outputRing.isEmpty();
+  }
+
+  /**
+   * Returns the number of output frames skipped by the audio processor chain, up to the output that
+   * has been released.
+   */
+  public long getSkippedOutputFrameCount() {
+    return skippedOutputFrameCount;
+  }
+
+  /**
+   * Returns the media duration corresponding to the specified playout duration, using the speed
+   * achieved by the audio processor chain up to the output that has been released.
+   *
+   * @param playoutDurationUs The playout duration to scale, in microseconds.
+   * @return The corresponding media duration, in microseconds.
+   */
+  public long getMediaDuration(long playoutDurationUs) {
+    return Util.scaleLargeTimestamp(
+        playoutDurationUs, mediaDurationSampleUs, MEDIA_DURATION_SAMPLE_PLAYOUT_DURATION_US);
+  }
+
+  /** Returns the number of input frames trimmed by the processing thread so far. */
+  public long getTrimmedFrameCount() {
+    return trimmedFrameCount;
+  }
+
+  /** Stops processing and releases the processing thread. */
+  public void release() {
+    synchronized (lock) {
+      released = true;
+      audioProcessors = new AudioProcessor[0];
+      outputBuffers = new ByteBuffer[0];
+      currentInputBuffer = null;
+    }
+    processingThread.quit();
+  }
+
+  private void maybeThrowException() {
+    @Nullable RuntimeException exception = pendingRuntimeException.getAndSet(null);
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  // Called on the processing thread.
+
+  private void process() {
+    // Take the lock for each input buffer, so that the owning thread is only blocked for the
+    // processing of a single buffer when it needs to use the audio processors.
+    while (true) {
+      synchronized (lock) {
+        if (released || ended) {
+          return;
+        }
+        try {
+          if (!processNextBuffer()) {
+            return;
+          }
+        } catch (RuntimeException e) {
+          pendingRuntimeException.set(e);
+          return;
+        } finally {
+          trimmedFrameCount = trimmingAudioProcessor.getTrimmedFrameCount();
+        }
+      }
+    }
+  }
+
+  /**
+   * Processes the next input buffer, or drains the audio processors if input has ended.
+   *
+   * @return Whether processing can continue immediately.
+   */
+  @GuardedBy("lock")
+  private boolean processNextBuffer() {
+    if (currentInputBuffer == null) {
+      // Read the end of stream flag first, so that input queued before it isn't missed.
+      boolean inputEnded = this.inputEnded;
+      currentInputBuffer = inputRing.peek();
+      if (currentInputBuffer == null) {
+        if (inputEnded && drainToEndOfStream()) {
+          ended = true;
+        }
+        return false;
+      }
+    }
+    processBuffers(currentInputBuffer);
+    if (currentInputBuffer.hasRemaining()) {
+      // The output ring is full. Processing continues when output is released.
+      return false;
+    }
+    currentInputBuffer = null;
+    inputRing.commitRead();
+    return true;
+  }
+
+  @GuardedBy("lock")
+  private void processBuffers(ByteBuffer inputBuffer) {
+    int count = audioProcessors.length;
+    int index = count;
+    while (index >= 0) {
+      ByteBuffer input = index > 0 ? outputBuffers[index - 1] : inputBuffer;
+      if (index == count) {
+        writeOutput(input);
+      } else {
+        AudioProcessor audioProcessor = audioProcessors[index];
+        if (index > drainingAudioProcessorIndex) {
+          audioProcessor.queueInput(input);
+        }
+        ByteBuffer output = audioProcessor.getOutput();
+        outputBuffers[index] = output;
+        if (output.hasRemaining()) {
+          // Handle the output as input to the next audio processor or the output ring.
+          index++;
+          continue;
+        }
+      }
+
+      if (input.hasRemaining()) {
+        // The input wasn't consumed and no output was produced, so give up for now.
+        return;
+      }
+
+      // Get more input from upstream.
+      index--;
+    }
+  }
+
+  @GuardedBy("lock")
+  private boolean drainToEndOfStream() {
+    boolean audioProcessorNeedsEndOfStream = false;
+    if (drainingAudioProcessorIndex == C.INDEX_UNSET) {
+      drainingAudioProcessorIndex = 0;
+      audioProcessorNeedsEndOfStream = true;
+    }
+    while (drainingAudioProcessorIndex < audioProcessors.length) {
+      AudioProcessor audioProcessor = audioProcessors[drainingAudioProcessorIndex];
+      if (audioProcessorNeedsEndOfStream) {
+        audioProcessor.queueEndOfStream();
+      }
+      processBuffers(AudioProcessor.EMPTY_BUFFER);
+      if (!audioProcessor.isEnded()) {
+        return false;
+      }
+      audioProcessorNeedsEndOfStream = true;
+      drainingAudioProcessorIndex++;
+    }
+
+    // Finish copying any remaining output to the output ring.
+    if (outputBuffers.length > 0) {
+      ByteBuffer lastOutputBuffer = outputBuffers[outputBuffers.length - 1];
+      writeOutput(lastOutputBuffer);
+      if (lastOutputBuffer.hasRemaining()) {
+        return false;
+      }
+    }
+    drainingAudioProcessorIndex = C.INDEX_UNSET;
+    return true;
+  }
+
+  /**
+   * Copies the remaining data in {@code buffer} into the output ring, if it has space, along with a
+   * snapshot of the processor state.
+   */
+  @GuardedBy("lock")
+  private void writeOutput(ByteBuffer buffer) {
+    if (!buffer.hasRemaining() || outputRing.isFull()) {
+      return;
+    }
+    int slot = outputRing.getWriteSlot();
+    outputSkippedOutputFrameCounts[slot] = audioProcessorChain.getSkippedOutputFrameCount();
+    outputMediaDurationSamplesUs[slot] =
+        audioProcessorChain.getMediaDuration(MEDIA_DURATION_SAMPLE_PLAYOUT_DURATION_US);
+    outputRing.getWriteBuffer(buffer.remaining()).put(buffer).flip();
+    outputRing.commitWrite();
+  }
+
+  /**
+   * A bounded ring of reusable buffers with a single producer thread and a single consumer thread.
+   */
+  private static final class BufferRing {
+
+    private final ByteBuffer[] buffers;
+
+    // Each index is only incremented by one of the threads, and is volatile so that the other
+    // thread sees the buffer contents written before the increment.
+    private volatile int readIndex;
+    private volatile int writeIndex;
+
+    public BufferRing(int capacity) {
+      buffers = new ByteBuffer[capacity];
+      for (int i = 0; i < capacity; i++) {
+        buffers[i] = AudioProcessor.EMPTY_BUFFER;
+      }
+    }
+
+    public boolean isEmpty() {
+      return readIndex == writeIndex;
+    }
+
+    public boolean isFull() {
+      return writeIndex - readIndex == buffers.length;
+    }
+
+    /** Returns the slot of the buffer to be written next. */
+    public int getWriteSlot() {
+      return writeIndex % buffers.length;
+    }
+
+    /** Returns the slot of the oldest written buffer. */
+    public int getReadSlot() {
+      return readIndex % buffers.length;
+    }
+
+    /** Returns the cleared buffer to be written next, with at least the specified capacity. */
+    public ByteBuffer getWriteBuffer(int capacity) {
+      int slot = getWriteSlot();
+      ByteBuffer buffer = buffers[slot];
+      if (buffer.capacity() < capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        buffers[slot] = buffer;
+      }
+      buffer.clear();
+      return buffer;
+    }
+
+    /** Makes the buffer returned by {@link #getWriteBuffer(int)} available to the consumer. */
+    public void commitWrite() {
+      writeIndex++;
+    }
+
+    /** Returns the oldest written buffer, or {@code null} if the ring is empty. */
+    @Nullable
+    public ByteBuffer peek() {
+      return isEmpty() ? null : buffers[getReadSlot()];
+    }
+
+    /** Makes the buffer returned by {@link #peek()} available to the producer. */
+    public void commitRead() {
+      readIndex++;
+    }
+
+    /** Empties the ring. Must only be called while neither thread is using the ring. */
+    public void clear() {
+      readIndex = 0;
+      writeIndex = 0;
+    }
+  }
+}
@@ -349,6 +349,14 @@ public interface AudioSink {
    */
   boolean hasPendingData();
 
+  /**
+   * Returns the duration of the data that has been written to the output and hasn't been played
+   * out yet, in microseconds, or {@link C#TIME_UNSET} if unknown.
+   */
+  default long getBufferedDurationUs() {
+    return C.TIME_UNSET;
+  }
+
   /**
    * Attempts to set the playback parameters. The audio sink may override these parameters if they
    * are not supported.
@@ -22,7 +22,8 @@ import java.nio.ByteBuffer;
 
 /**
  * An {@link AudioProcessor} that applies a mapping from input channels onto specified output
- * channels. This can be used to reorder, duplicate or discard channels.
+ * channels. This can be used to reorder, duplicate or discard channels. Input and output are 16-bit
+ * integer or 32-bit float PCM.
  */
 /* package */ final class ChannelMappingAudioProcessor extends BaseAudioProcessor {
 
@@ -49,7 +50,8 @@ import java.nio.ByteBuffer;
       return AudioFormat.NOT_SET;
     }
 
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
 
@@ -62,7 +64,8 @@ import java.nio.ByteBuffer;
       active |= (channelIndex != i);
     }
     return active
-        ? new AudioFormat(inputAudioFormat.sampleRate, outputChannels.length, C.ENCODING_PCM_16BIT)
+        ? new AudioFormat(
+            inputAudioFormat.sampleRate, outputChannels.length, inputAudioFormat.encoding)
         : AudioFormat.NOT_SET;
   }
 
@@ -74,11 +77,21 @@ import java.nio.ByteBuffer;
     int frameCount = (limit - position) / inputAudioFormat.bytesPerFrame;
     int outputSize = frameCount * outputAudioFormat.bytesPerFrame;
     ByteBuffer buffer = replaceOutputBuffer(outputSize);
-    while (position < limit) {
-      for (int channelIndex : outputChannels) {
-        buffer.putShort(inputBuffer.getShort(position + 2 * channelIndex));
+    if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+      // Copy the raw bits of each sample, which avoids converting to and from float.
+      while (position < limit) {
+        for (int channelIndex : outputChannels) {
+          buffer.putInt(inputBuffer.getInt(position + 4 * channelIndex));
+        }
+        position += inputAudioFormat.bytesPerFrame;
+      }
+    } else {
+      while (position < limit) {
+        for (int channelIndex : outputChannels) {
+          buffer.putShort(inputBuffer.getShort(position + 2 * channelIndex));
+        }
+        position += inputAudioFormat.bytesPerFrame;
       }
-      position += inputAudioFormat.bytesPerFrame;
     }
     inputBuffer.position(limit);
     buffer.flip();
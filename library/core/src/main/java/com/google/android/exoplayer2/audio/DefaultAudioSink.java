@@ -129,15 +129,29 @@ public final class DefaultAudioSink implements AudioSink {
      * flushed.
      */
     long getSkippedOutputFrameCount();
+
+    /**
+     * Returns whether all audio processors returned by {@link #getAudioProcessors()} handle 32-bit
+     * float PCM input. If {@code true}, the chain is also used when the sink outputs float PCM, so
+     * that playback parameters and silence skipping can be applied without reducing the audio to
+     * 16-bit integer PCM.
+     */
+    default boolean supportsFloatPcm() {
+      return false;
+    }
   }
 
   /**
    * The default audio processor chain, which applies a (possibly empty) chain of user-defined audio
    * processors followed by {@link SilenceSkippingAudioProcessor} and {@link SonicAudioProcessor}.
+   *
+   * <p>The chain {@link #supportsFloatPcm() supports float PCM} if it has no user-defined audio
+   * processors, because they may only handle 16-bit integer PCM.
    */
   public static class DefaultAudioProcessorChain implements AudioProcessorChain {
 
     private final AudioProcessor[] audioProcessors;
+    private final boolean supportsFloatPcm;
     private final SilenceSkippingAudioProcessor silenceSkippingAudioProcessor;
     private final SonicAudioProcessor sonicAudioProcessor;
 
@@ -170,6 +184,7 @@ public final class DefaultAudioSink implements AudioSink {
       this.sonicAudioProcessor = sonicAudioProcessor;
       this.audioProcessors[audioProcessors.length] = silenceSkippingAudioProcessor;
       this.audioProcessors[audioProcessors.length + 1] = sonicAudioProcessor;
+      supportsFloatPcm = audioProcessors.length == 0;
     }
 
     @Override
@@ -199,6 +214,11 @@ public final class DefaultAudioSink implements AudioSink {
     public long getSkippedOutputFrameCount() {
       return silenceSkippingAudioProcessor.getSkippedFrames();
     }
+
+    @Override
+    public boolean supportsFloatPcm() {
+      return supportsFloatPcm;
+    }
   }
 
   /** The default playback speed. */
@@ -286,6 +306,7 @@ public final class DefaultAudioSink implements AudioSink {
   private final PendingExceptionHolder<InitializationException>
       initializationExceptionPendingExceptionHolder;
   private final PendingExceptionHolder<WriteException> writeExceptionPendingExceptionHolder;
+  private final Object audioProcessorLock;
 
   @Nullable private Listener listener;
   @Nullable private Configuration pendingConfiguration;
@@ -329,6 +350,9 @@ public final class DefaultAudioSink implements AudioSink {
   private long lastFeedElapsedRealtimeMs;
   private boolean offloadDisabledUntilNextConfiguration;
   private boolean isWaitingForOffloadEndOfStreamHandled;
+  private boolean enableAudioProcessingThread;
+  @Nullable private AsynchronousAudioProcessingPipeline asynchronousProcessingPipeline;
+  private boolean processingAsynchronously;
 
   /**
    * Creates a new default audio sink.
@@ -352,8 +376,8 @@ public final class DefaultAudioSink implements AudioSink {
    *     output. May be empty.
    * @param enableFloatOutput Whether to enable 32-bit float output. Where possible, 32-bit float
    *     output will be used if the input is 32-bit float, and also if the input is high resolution
-   *     (24-bit or 32-bit) integer PCM. Audio processing (for example, speed adjustment) will not
-   *     be available when float output is in use.
+   *     (24-bit or 32-bit) integer PCM. If {@code audioProcessors} is not empty, audio processing
+   *     (for example, speed adjustment) will not be available when float output is in use.
    */
   public DefaultAudioSink(
       @Nullable AudioCapabilities audioCapabilities,
@@ -378,8 +402,9 @@ public final class DefaultAudioSink implements AudioSink {
    * @param enableFloatOutput Whether to enable 32-bit float output. Where possible, 32-bit float
    *     output will be used if the input is 32-bit float, and also if the input is high resolution
    *     (24-bit or 32-bit) integer PCM. Float output is supported from API level 21. Audio
-   *     processing (for example, speed adjustment) will not be available when float output is in
-   *     use.
+   *     processing (for example, speed adjustment) will only be available when float output is in
+   *     use if the {@code audioProcessorChain} {@link AudioProcessorChain#supportsFloatPcm()
+   *     supports float PCM}.
    * @param enableAudioTrackPlaybackParams Whether to enable setting playback speed using {@link
    *     android.media.AudioTrack#setPlaybackParams(PlaybackParams)}, if supported.
    * @param enableOffload Whether to enable audio offload. If an audio format can be both played
@@ -412,7 +437,16 @@ public final class DefaultAudioSink implements AudioSink {
         trimmingAudioProcessor);
     Collections.addAll(toIntPcmAudioProcessors, audioProcessorChain.getAudioProcessors());
     toIntPcmAvailableAudioProcessors = toIntPcmAudioProcessors.toArray(new AudioProcessor[0]);
-    toFloatPcmAvailableAudioProcessors = new AudioProcessor[] {new FloatResamplingAudioProcessor()};
+    ArrayList<AudioProcessor> toFloatPcmAudioProcessors = new ArrayList<>();
+    Collections.addAll(
+        toFloatPcmAudioProcessors,
+        new FloatResamplingAudioProcessor(),
+        channelMappingAudioProcessor,
+        trimmingAudioProcessor);
+    if (audioProcessorChain.supportsFloatPcm()) {
+      Collections.addAll(toFloatPcmAudioProcessors, audioProcessorChain.getAudioProcessors());
+    }
+    toFloatPcmAvailableAudioProcessors = toFloatPcmAudioProcessors.toArray(new AudioProcessor[0]);
     volume = 1f;
     audioAttributes = AudioAttributes.DEFAULT;
     audioSessionId = C.AUDIO_SESSION_ID_UNSET;
@@ -432,6 +466,24 @@ public final class DefaultAudioSink implements AudioSink {
         new PendingExceptionHolder<>(AUDIO_TRACK_RETRY_DURATION_MS);
     writeExceptionPendingExceptionHolder =
         new PendingExceptionHolder<>(AUDIO_TRACK_RETRY_DURATION_MS);
+    audioProcessorLock = new Object();
+  }
+
+  /**
+   * Enables processing PCM audio on a dedicated thread.
+   *
+   * <p>When enabled, the active {@link AudioProcessor AudioProcessors} run on a separate thread
+   * that processes input ahead of the playback thread, and processed output is passed back through
+   * a bounded queue of buffers. This unblocks the playback thread when processing is expensive, for
+   * example when changing the speed of multichannel audio. Processing is only moved off the
+   * playback thread when there are active audio processors and audio is output as PCM without
+   * tunneling.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release. It should
+   * only be called before the sink is used.
+   */
+  public void experimentalSetAudioProcessingThreadEnabled(boolean enabled) {
+    enableAudioProcessingThread = enabled;
   }
 
   // AudioSink implementation.
@@ -504,9 +556,6 @@ public final class DefaultAudioSink implements AudioSink {
               ? toFloatPcmAvailableAudioProcessors
               : toIntPcmAvailableAudioProcessors;
 
-      trimmingAudioProcessor.setTrimFrameCount(
-          inputFormat.encoderDelay, inputFormat.encoderPadding);
-
       if (Util.SDK_INT < 21 && inputFormat.channelCount == 8 && outputChannels == null) {
         // AudioTrack doesn't support 8 channel output before Android L. Discard the last two (side)
         // channels to give a 6 channel stream that is supported.
@@ -515,19 +564,23 @@ public final class DefaultAudioSink implements AudioSink {
           outputChannels[i] = i;
         }
       }
-      channelMappingAudioProcessor.setChannelMap(outputChannels);
 
       AudioProcessor.AudioFormat outputFormat =
           new AudioProcessor.AudioFormat(
               inputFormat.sampleRate, inputFormat.channelCount, inputFormat.pcmEncoding);
-      for (AudioProcessor audioProcessor : availableAudioProcessors) {
-        try {
-          AudioProcessor.AudioFormat nextFormat = audioProcessor.configure(outputFormat);
-          if (audioProcessor.isActive()) {
-            outputFormat = nextFormat;
+      synchronized (audioProcessorLock) {
+        trimmingAudioProcessor.setTrimFrameCount(
+            inputFormat.encoderDelay, inputFormat.encoderPadding);
+        channelMappingAudioProcessor.setChannelMap(outputChannels);
+        for (AudioProcessor audioProcessor : availableAudioProcessors) {
+          try {
+            AudioProcessor.AudioFormat nextFormat = audioProcessor.configure(outputFormat);
+            if (audioProcessor.isActive()) {
+              outputFormat = nextFormat;
+            }
+          } catch (UnhandledAudioFormatException e) {
+            throw new ConfigurationException(e, inputFormat);
           }
-        } catch (UnhandledAudioFormatException e) {
-          throw new ConfigurationException(e, inputFormat);
         }
       }
 
@@ -592,22 +645,43 @@ public final class DefaultAudioSink implements AudioSink {
   }
 
   private void setupAudioProcessors() {
-    AudioProcessor[] audioProcessors = configuration.availableAudioProcessors;
-    ArrayList<AudioProcessor> newAudioProcessors = new ArrayList<>();
-    for (AudioProcessor audioProcessor : audioProcessors) {
-      if (audioProcessor.isActive()) {
-        newAudioProcessors.add(audioProcessor);
-      } else {
-        audioProcessor.flush();
+    synchronized (audioProcessorLock) {
+      AudioProcessor[] audioProcessors = configuration.availableAudioProcessors;
+      ArrayList<AudioProcessor> newAudioProcessors = new ArrayList<>();
+      for (AudioProcessor audioProcessor : audioProcessors) {
+        if (audioProcessor.isActive()) {
+          newAudioProcessors.add(audioProcessor);
+        } else {
+          audioProcessor.flush();
+        }
       }
+      int count = newAudioProcessors.size();
+      activeAudioProcessors = newAudioProcessors.toArray(new AudioProcessor[count]);
+      outputBuffers = new ByteBuffer[count];
+      processingAsynchronously =
+          enableAudioProcessingThread
+              && count > 0
+              && configuration.outputMode == OUTPUT_MODE_PCM
+              && !tunneling;
+      if (processingAsynchronously && asynchronousProcessingPipeline == null) {
+        asynchronousProcessingPipeline =
+            new AsynchronousAudioProcessingPipeline(
+                audioProcessorLock, audioProcessorChain, trimmingAudioProcessor);
+      }
+      flushAudioProcessors();
     }
-    int count = newAudioProcessors.size();
-    activeAudioProcessors = newAudioProcessors.toArray(new AudioProcessor[count]);
-    outputBuffers = new ByteBuffer[count];
-    flushAudioProcessors();
   }
 
   private void flushAudioProcessors() {
+    if (asynchronousProcessingPipeline != null) {
+      // Discard any pending processing. The pipeline is given no audio processors if they're used
+      // on the playback thread.
+      asynchronousProcessingPipeline.flush(
+          processingAsynchronously ? activeAudioProcessors : new AudioProcessor[0]);
+      if (processingAsynchronously) {
+        return;
+      }
+    }
     for (int i = 0; i < activeAudioProcessors.length; i++) {
       AudioProcessor audioProcessor = activeAudioProcessors[i];
       audioProcessor.flush();
@@ -756,10 +830,13 @@ public final class DefaultAudioSink implements AudioSink {
       }
 
       // Check that presentationTimeUs is consistent with the expected value.
+      long trimmedFrameCount =
+          processingAsynchronously
+              ? Assertions.checkNotNull(asynchronousProcessingPipeline).getTrimmedFrameCount()
+              : trimmingAudioProcessor.getTrimmedFrameCount();
       long expectedPresentationTimeUs =
           startMediaTimeUs
-              + configuration.inputFramesToDurationUs(
-                  getSubmittedFrames() - trimmingAudioProcessor.getTrimmedFrameCount());
+              + configuration.inputFramesToDurationUs(getSubmittedFrames() - trimmedFrameCount);
       if (!startMediaTimeUsNeedsSync
           && Math.abs(expectedPresentationTimeUs - presentationTimeUs) > 200000) {
         Log.e(
@@ -798,7 +875,11 @@ public final class DefaultAudioSink implements AudioSink {
       inputBufferAccessUnitCount = encodedAccessUnitCount;
     }
 
-    processBuffers(presentationTimeUs);
+    if (processingAsynchronously) {
+      processBuffersAsynchronously();
+    } else {
+      processBuffers(presentationTimeUs);
+    }
 
     if (!inputBuffer.hasRemaining()) {
       inputBuffer = null;
@@ -870,6 +951,29 @@ public final class DefaultAudioSink implements AudioSink {
     }
   }
 
+  private void processBuffersAsynchronously() throws WriteException {
+    AsynchronousAudioProcessingPipeline pipeline =
+        Assertions.checkNotNull(asynchronousProcessingPipeline);
+    writeProcessedBuffers(pipeline);
+    if (inputBuffer != null) {
+      // The pipeline copies the input, so the buffer is consumed once it's been queued.
+      pipeline.queueInput(inputBuffer);
+    }
+  }
+
+  private void writeProcessedBuffers(AsynchronousAudioProcessingPipeline pipeline)
+      throws WriteException {
+    @Nullable ByteBuffer processedBuffer;
+    while ((processedBuffer = pipeline.getOutput()) != null) {
+      writeBuffer(processedBuffer, C.TIME_UNSET);
+      if (processedBuffer.hasRemaining()) {
+        // The audio track is full.
+        return;
+      }
+      pipeline.releaseOutput();
+    }
+  }
+
   @SuppressWarnings("ReferenceEquality")
   private void writeBuffer(ByteBuffer buffer, long avSyncPresentationTimeUs) throws WriteException {
     if (!buffer.hasRemaining()) {
@@ -995,6 +1099,9 @@ public final class DefaultAudioSink implements AudioSink {
   }
 
   private boolean drainToEndOfStream() throws WriteException {
+    if (processingAsynchronously) {
+      return drainToEndOfStreamAsynchronously();
+    }
     boolean audioProcessorNeedsEndOfStream = false;
     if (drainingAudioProcessorIndex == C.INDEX_UNSET) {
       drainingAudioProcessorIndex = 0;
@@ -1024,6 +1131,22 @@ public final class DefaultAudioSink implements AudioSink {
     return true;
   }
 
+  private boolean drainToEndOfStreamAsynchronously() throws WriteException {
+    AsynchronousAudioProcessingPipeline pipeline =
+        Assertions.checkNotNull(asynchronousProcessingPipeline);
+    if (drainingAudioProcessorIndex == C.INDEX_UNSET) {
+      // The pipeline drains all audio processors, so only track whether draining has started.
+      pipeline.queueEndOfStream();
+      drainingAudioProcessorIndex = 0;
+    }
+    writeProcessedBuffers(pipeline);
+    if (!pipeline.isEnded()) {
+      return false;
+    }
+    drainingAudioProcessorIndex = C.INDEX_UNSET;
+    return true;
+  }
+
   @Override
   public boolean isEnded() {
     return !isAudioTrackInitialized() || (handledEndOfStream && !hasPendingData());
@@ -1032,7 +1155,20 @@ public final class DefaultAudioSink implements AudioSink {
   @Override
   public boolean hasPendingData() {
     return isAudioTrackInitialized()
-        && audioTrackPositionTracker.hasPendingData(getWrittenFrames());
+        && (audioTrackPositionTracker.hasPendingData(getWrittenFrames())
+            || (processingAsynchronously
+                && Assertions.checkNotNull(asynchronousProcessingPipeline).hasPendingData()));
+  }
+
+  @Override
+  public long getBufferedDurationUs() {
+    if (!isAudioTrackInitialized()) {
+      return 0;
+    }
+    long writtenDurationUs = configuration.framesToDurationUs(getWrittenFrames());
+    long playedDurationUs =
+        audioTrackPositionTracker.getCurrentPositionUs(/* sourceEnded= */ false);
+    return max(0, writtenDurationUs - playedDurationUs);
   }
 
   @Override
@@ -1231,6 +1367,11 @@ public final class DefaultAudioSink implements AudioSink {
   @Override
   public void reset() {
     flush();
+    if (asynchronousProcessingPipeline != null) {
+      asynchronousProcessingPipeline.release();
+      asynchronousProcessingPipeline = null;
+      processingAsynchronously = false;
+    }
     for (AudioProcessor audioProcessor : toIntPcmAvailableAudioProcessors) {
       audioProcessor.reset();
     }
@@ -1267,8 +1408,10 @@ public final class DefaultAudioSink implements AudioSink {
     drainingAudioProcessorIndex = C.INDEX_UNSET;
     avSyncHeader = null;
     bytesUntilNextAvSync = 0;
-    trimmingAudioProcessor.resetTrimmedFrameCount();
-    flushAudioProcessors();
+    synchronized (audioProcessorLock) {
+      trimmingAudioProcessor.resetTrimmedFrameCount();
+      flushAudioProcessors();
+    }
   }
 
   @RequiresApi(23)
@@ -1331,21 +1474,25 @@ public final class DefaultAudioSink implements AudioSink {
   }
 
   private void applyAudioProcessorPlaybackParametersAndSkipSilence(long presentationTimeUs) {
-    PlaybackParameters playbackParameters =
-        shouldApplyAudioProcessorPlaybackParameters()
-            ? audioProcessorChain.applyPlaybackParameters(getAudioProcessorPlaybackParameters())
-            : PlaybackParameters.DEFAULT;
-    boolean skipSilenceEnabled =
-        shouldApplyAudioProcessorPlaybackParameters()
-            ? audioProcessorChain.applySkipSilenceEnabled(getSkipSilenceEnabled())
-            : DEFAULT_SKIP_SILENCE;
-    mediaPositionParametersCheckpoints.add(
-        new MediaPositionParameters(
-            playbackParameters,
-            skipSilenceEnabled,
-            /* mediaTimeUs= */ max(0, presentationTimeUs),
-            /* audioTrackPositionUs= */ configuration.framesToDurationUs(getWrittenFrames())));
-    setupAudioProcessors();
+    PlaybackParameters playbackParameters;
+    boolean skipSilenceEnabled;
+    synchronized (audioProcessorLock) {
+      playbackParameters =
+          shouldApplyAudioProcessorPlaybackParameters()
+              ? audioProcessorChain.applyPlaybackParameters(getAudioProcessorPlaybackParameters())
+              : PlaybackParameters.DEFAULT;
+      skipSilenceEnabled =
+          shouldApplyAudioProcessorPlaybackParameters()
+              ? audioProcessorChain.applySkipSilenceEnabled(getSkipSilenceEnabled())
+              : DEFAULT_SKIP_SILENCE;
+      mediaPositionParametersCheckpoints.add(
+          new MediaPositionParameters(
+              playbackParameters,
+              skipSilenceEnabled,
+              /* mediaTimeUs= */ max(0, presentationTimeUs),
+              /* audioTrackPositionUs= */ configuration.framesToDurationUs(getWrittenFrames())));
+      setupAudioProcessors();
+    }
     if (listener != null) {
       listener.onSkipSilenceEnabledChanged(skipSilenceEnabled);
     }
@@ -1362,10 +1509,11 @@ public final class DefaultAudioSink implements AudioSink {
     //   https://github.com/google/ExoPlayer/issues/4803);
     // - when playing encoded audio via passthrough/offload, because modifying the audio stream
     //   would require decoding/re-encoding; and
-    // - when outputting float PCM audio, because SonicAudioProcessor outputs 16-bit integer PCM.
+    // - when outputting float PCM audio, unless the audio processor chain supports float PCM.
     return !tunneling
         && MimeTypes.AUDIO_RAW.equals(configuration.inputFormat.sampleMimeType)
-        && !shouldUseFloatOutput(configuration.inputFormat.pcmEncoding);
+        && (audioProcessorChain.supportsFloatPcm()
+            || !shouldUseFloatOutput(configuration.inputFormat.pcmEncoding));
   }
 
   /**
@@ -1395,7 +1543,10 @@ public final class DefaultAudioSink implements AudioSink {
       return mediaPositionParameters.mediaTimeUs + playoutDurationSinceLastCheckpointUs;
     } else if (mediaPositionParametersCheckpoints.isEmpty()) {
       long mediaDurationSinceLastCheckpointUs =
-          audioProcessorChain.getMediaDuration(playoutDurationSinceLastCheckpointUs);
+          processingAsynchronously
+              ? Assertions.checkNotNull(asynchronousProcessingPipeline)
+                  .getMediaDuration(playoutDurationSinceLastCheckpointUs)
+              : audioProcessorChain.getMediaDuration(playoutDurationSinceLastCheckpointUs);
       return mediaPositionParameters.mediaTimeUs + mediaDurationSinceLastCheckpointUs;
     } else {
       // The processor chain has been configured with new parameters, but we're still playing audio
@@ -1419,8 +1570,13 @@ public final class DefaultAudioSink implements AudioSink {
   }
 
   private long applySkipping(long positionUs) {
-    return positionUs
-        + configuration.framesToDurationUs(audioProcessorChain.getSkippedOutputFrameCount());
+    // The audio processors are in use on the processing thread when processing asynchronously, so
+    // use the state published by the pipeline for the output that's been written.
+    long skippedOutputFrameCount =
+        processingAsynchronously
+            ? Assertions.checkNotNull(asynchronousProcessingPipeline).getSkippedOutputFrameCount()
+            : audioProcessorChain.getSkippedOutputFrameCount();
+    return positionUs + configuration.framesToDurationUs(skippedOutputFrameCount);
   }
 
   private boolean isAudioTrackInitialized() {
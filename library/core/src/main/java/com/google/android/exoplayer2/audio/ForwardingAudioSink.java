@@ -88,6 +88,11 @@ public class ForwardingAudioSink implements AudioSink {
     return sink.hasPendingData();
   }
 
+  @Override
+  public long getBufferedDurationUs() {
+    return sink.getBufferedDurationUs();
+  }
+
   @Override
   public void setPlaybackParameters(PlaybackParameters playbackParameters) {
     sink.setPlaybackParameters(playbackParameters);
@@ -587,6 +587,11 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     }
   }
 
+  @Override
+  protected long getBypassBufferedDurationUs() {
+    return audioSink.getBufferedDurationUs();
+  }
+
   @Override
   protected void onProcessedStreamChange() {
     super.onProcessedStreamChange();
@@ -28,7 +28,7 @@ import java.nio.ByteBuffer;
 
 /**
  * An {@link AudioProcessor} that skips silence in the input stream. Input and output are 16-bit
- * PCM.
+ * integer or 32-bit float PCM.
  */
 public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
 
@@ -67,7 +67,10 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
   private final long minimumSilenceDurationUs;
   private final long paddingSilenceUs;
   private final short silenceThresholdLevel;
+  private final float floatSilenceThresholdLevel;
   private int bytesPerFrame;
+  private int bytesPerSample;
+  private boolean isFloatInput;
   private boolean enabled;
 
   /**
@@ -105,7 +108,8 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
    * @param paddingSilenceUs The duration of silence by which to extend non-silent sections, in
    *     microseconds. The value must not exceed {@code minimumSilenceDurationUs}.
    * @param silenceThresholdLevel The absolute level below which an individual PCM sample is
-   *     classified as silent.
+   *     classified as silent. For float PCM input the level is scaled by {@code 1 / 32768}, so that
+   *     the same threshold applies to both encodings.
    */
   public SilenceSkippingAudioProcessor(
       long minimumSilenceDurationUs, long paddingSilenceUs, short silenceThresholdLevel) {
@@ -113,6 +117,7 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
     this.minimumSilenceDurationUs = minimumSilenceDurationUs;
     this.paddingSilenceUs = paddingSilenceUs;
     this.silenceThresholdLevel = silenceThresholdLevel;
+    floatSilenceThresholdLevel = silenceThresholdLevel / 32768f;
 
     maybeSilenceBuffer = Util.EMPTY_BYTE_ARRAY;
     paddingBuffer = Util.EMPTY_BYTE_ARRAY;
@@ -142,7 +147,8 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
   @Override
   public AudioFormat onConfigure(AudioFormat inputAudioFormat)
       throws UnhandledAudioFormatException {
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     return enabled ? inputAudioFormat : AudioFormat.NOT_SET;
@@ -187,6 +193,8 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
   protected void onFlush() {
     if (enabled) {
       bytesPerFrame = inputAudioFormat.bytesPerFrame;
+      isFloatInput = inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT;
+      bytesPerSample = isFloatInput ? 4 : 2;
       int maybeSilenceBufferSize = durationUsToFrames(minimumSilenceDurationUs) * bytesPerFrame;
       if (maybeSilenceBuffer.length != maybeSilenceBufferSize) {
         maybeSilenceBuffer = new byte[maybeSilenceBufferSize];
@@ -346,9 +354,8 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
    * classified as a noisy frame, or the limit of the buffer if no such frame exists.
    */
   private int findNoisePosition(ByteBuffer buffer) {
-    // The input is in ByteOrder.nativeOrder(), which is little endian on Android.
-    for (int i = buffer.position(); i < buffer.limit(); i += 2) {
-      if (Math.abs(buffer.getShort(i)) > silenceThresholdLevel) {
+    for (int i = buffer.position(); i < buffer.limit(); i += bytesPerSample) {
+      if (isNoisySample(buffer, i)) {
         // Round to the start of the frame.
         return bytesPerFrame * (i / bytesPerFrame);
       }
@@ -361,13 +368,20 @@ public final class SilenceSkippingAudioProcessor extends BaseAudioProcessor {
    * from the byte position to the limit are classified as silent.
    */
   private int findNoiseLimit(ByteBuffer buffer) {
-    // The input is in ByteOrder.nativeOrder(), which is little endian on Android.
-    for (int i = buffer.limit() - 2; i >= buffer.position(); i -= 2) {
-      if (Math.abs(buffer.getShort(i)) > silenceThresholdLevel) {
+    for (int i = buffer.limit() - bytesPerSample; i >= buffer.position(); i -= bytesPerSample) {
+      if (isNoisySample(buffer, i)) {
         // Return the start of the next frame.
         return bytesPerFrame * (i / bytesPerFrame) + bytesPerFrame;
       }
     }
     return buffer.position();
   }
+
+  /** Returns whether the sample at byte position {@code index} of {@code buffer} is noisy. */
+  private boolean isNoisySample(ByteBuffer buffer, int index) {
+    // The input is in ByteOrder.nativeOrder(), which is little endian on Android.
+    return isFloatInput
+        ? Math.abs(buffer.getFloat(index)) > floatSilenceThresholdLevel
+        : Math.abs(buffer.getShort(index)) > silenceThresholdLevel;
+  }
 }
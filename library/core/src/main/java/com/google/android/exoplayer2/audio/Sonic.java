@@ -18,45 +18,53 @@ package com.google.android.exoplayer2.audio;
 
 import static java.lang.Math.min;
 
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 import java.util.Arrays;
 
 /**
  * Sonic audio stream processor for time/pitch stretching.
- * <p>
- * Based on https://github.com/waywardgeek/sonic.
+ *
+ * <p>Input and output are either 16-bit integer or 32-bit float PCM. Samples are processed as
+ * floats in the scale of the input, so float input keeps its full precision.
+ *
+ * <p>Based on https://github.com/waywardgeek/sonic.
  */
 /* package */ final class Sonic {
 
   private static final int MINIMUM_PITCH = 65;
   private static final int MAXIMUM_PITCH = 400;
   private static final int AMDF_FREQUENCY = 4000;
-  private static final int BYTES_PER_SAMPLE = 2;
 
   private final int inputSampleRateHz;
   private final int channelCount;
+  @C.PcmEncoding private final int encoding;
+  private final int bytesPerSample;
   private final float speed;
   private final float pitch;
   private final float rate;
   private final int minPeriod;
   private final int maxPeriod;
   private final int maxRequiredFrameCount;
-  private final short[] downSampleBuffer;
+  private final float[] downSampleBuffer;
 
-  private short[] inputBuffer;
+  private float[] inputBuffer;
   private int inputFrameCount;
-  private short[] outputBuffer;
+  private float[] outputBuffer;
   private int outputFrameCount;
-  private short[] pitchBuffer;
+  private float[] pitchBuffer;
   private int pitchFrameCount;
   private int oldRatePosition;
   private int newRatePosition;
   private int remainingInputToCopyFrameCount;
   private int prevPeriod;
-  private int prevMinDiff;
-  private int minDiff;
-  private int maxDiff;
+  private float prevMinDiff;
+  private float minDiff;
+  private float maxDiff;
+  private short[] shortConversionBuffer;
 
   /**
    * Creates a new Sonic audio stream processor.
@@ -66,21 +74,32 @@ import java.util.Arrays;
    * @param speed The speedup factor for output audio.
    * @param pitch The pitch factor for output audio.
    * @param outputSampleRateHz The sample rate for output audio, in hertz.
+   * @param encoding The encoding of input and output audio, which must be {@link
+   *     C#ENCODING_PCM_16BIT} or {@link C#ENCODING_PCM_FLOAT}.
    */
   public Sonic(
-      int inputSampleRateHz, int channelCount, float speed, float pitch, int outputSampleRateHz) {
+      int inputSampleRateHz,
+      int channelCount,
+      float speed,
+      float pitch,
+      int outputSampleRateHz,
+      @C.PcmEncoding int encoding) {
+    Assertions.checkArgument(encoding == C.ENCODING_PCM_16BIT || encoding == C.ENCODING_PCM_FLOAT);
     this.inputSampleRateHz = inputSampleRateHz;
     this.channelCount = channelCount;
+    this.encoding = encoding;
+    bytesPerSample = encoding == C.ENCODING_PCM_FLOAT ? 4 : 2;
     this.speed = speed;
     this.pitch = pitch;
     rate = (float) inputSampleRateHz / outputSampleRateHz;
     minPeriod = inputSampleRateHz / MAXIMUM_PITCH;
     maxPeriod = inputSampleRateHz / MINIMUM_PITCH;
     maxRequiredFrameCount = 2 * maxPeriod;
-    downSampleBuffer = new short[maxRequiredFrameCount];
-    inputBuffer = new short[maxRequiredFrameCount * channelCount];
-    outputBuffer = new short[maxRequiredFrameCount * channelCount];
-    pitchBuffer = new short[maxRequiredFrameCount * channelCount];
+    downSampleBuffer = new float[maxRequiredFrameCount];
+    inputBuffer = new float[maxRequiredFrameCount * channelCount];
+    outputBuffer = new float[maxRequiredFrameCount * channelCount];
+    pitchBuffer = new float[maxRequiredFrameCount * channelCount];
+    shortConversionBuffer = new short[0];
   }
 
   /**
@@ -88,40 +107,78 @@ import java.util.Arrays;
    * data is provided.
    */
   public int getPendingInputBytes() {
-    return inputFrameCount * channelCount * BYTES_PER_SAMPLE;
+    return inputFrameCount * channelCount * bytesPerSample;
   }
 
   /**
-   * Queues remaining data from {@code buffer}, and advances its position by the number of bytes
-   * consumed.
+   * Queues remaining 16-bit integer data from {@code buffer}, and advances its position by the
+   * number of samples consumed. Must only be called if the encoding is {@link
+   * C#ENCODING_PCM_16BIT}.
    *
    * @param buffer A {@link ShortBuffer} containing input data between its position and limit.
    */
   public void queueInput(ShortBuffer buffer) {
+    Assertions.checkState(encoding == C.ENCODING_PCM_16BIT);
+    int framesToWrite = buffer.remaining() / channelCount;
+    int samplesToWrite = framesToWrite * channelCount;
+    inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
+    short[] shortConversionBuffer = ensureShortConversionBufferCapacity(samplesToWrite);
+    buffer.get(shortConversionBuffer, 0, samplesToWrite);
+    int offset = inputFrameCount * channelCount;
+    for (int i = 0; i < samplesToWrite; i++) {
+      inputBuffer[offset + i] = shortConversionBuffer[i];
+    }
+    inputFrameCount += framesToWrite;
+    processStreamInput();
+  }
+
+  /**
+   * Queues remaining 32-bit float data from {@code buffer}, and advances its position by the
+   * number of samples consumed. Must only be called if the encoding is {@link
+   * C#ENCODING_PCM_FLOAT}.
+   *
+   * @param buffer A {@link FloatBuffer} containing input data between its position and limit.
+   */
+  public void queueInput(FloatBuffer buffer) {
+    Assertions.checkState(encoding == C.ENCODING_PCM_FLOAT);
     int framesToWrite = buffer.remaining() / channelCount;
-    int bytesToWrite = framesToWrite * channelCount * 2;
     inputBuffer = ensureSpaceForAdditionalFrames(inputBuffer, inputFrameCount, framesToWrite);
-    buffer.get(inputBuffer, inputFrameCount * channelCount, bytesToWrite / 2);
+    buffer.get(inputBuffer, inputFrameCount * channelCount, framesToWrite * channelCount);
     inputFrameCount += framesToWrite;
     processStreamInput();
   }
 
   /**
-   * Gets available output, outputting to the start of {@code buffer}. The buffer's position will be
-   * advanced by the number of bytes written.
+   * Gets available 16-bit integer output, outputting to the start of {@code buffer}. The buffer's
+   * position will be advanced by the number of samples written. Must only be called if the
+   * encoding is {@link C#ENCODING_PCM_16BIT}.
    *
    * @param buffer A {@link ShortBuffer} into which output will be written.
    */
   public void getOutput(ShortBuffer buffer) {
+    Assertions.checkState(encoding == C.ENCODING_PCM_16BIT);
+    int framesToRead = min(buffer.remaining() / channelCount, outputFrameCount);
+    int samplesToRead = framesToRead * channelCount;
+    short[] shortConversionBuffer = ensureShortConversionBufferCapacity(samplesToRead);
+    for (int i = 0; i < samplesToRead; i++) {
+      shortConversionBuffer[i] = (short) outputBuffer[i];
+    }
+    buffer.put(shortConversionBuffer, 0, samplesToRead);
+    removeOutputFrames(framesToRead);
+  }
+
+  /**
+   * Gets available 32-bit float output, outputting to the start of {@code buffer}. The buffer's
+   * position will be advanced by the number of samples written. Must only be called if the
+   * encoding is {@link C#ENCODING_PCM_FLOAT}.
+   *
+   * @param buffer A {@link FloatBuffer} into which output will be written.
+   */
+  public void getOutput(FloatBuffer buffer) {
+    Assertions.checkState(encoding == C.ENCODING_PCM_FLOAT);
     int framesToRead = min(buffer.remaining() / channelCount, outputFrameCount);
     buffer.put(outputBuffer, 0, framesToRead * channelCount);
-    outputFrameCount -= framesToRead;
-    System.arraycopy(
-        outputBuffer,
-        framesToRead * channelCount,
-        outputBuffer,
-        0,
-        outputFrameCount * channelCount);
+    removeOutputFrames(framesToRead);
   }
 
   /**
@@ -139,9 +196,11 @@ import java.util.Arrays;
     inputBuffer =
         ensureSpaceForAdditionalFrames(
             inputBuffer, inputFrameCount, remainingFrameCount + 2 * maxRequiredFrameCount);
-    for (int xSample = 0; xSample < 2 * maxRequiredFrameCount * channelCount; xSample++) {
-      inputBuffer[remainingFrameCount * channelCount + xSample] = 0;
-    }
+    Arrays.fill(
+        inputBuffer,
+        remainingFrameCount * channelCount,
+        (remainingFrameCount + 2 * maxRequiredFrameCount) * channelCount,
+        0f);
     inputFrameCount += 2 * maxRequiredFrameCount;
     processStreamInput();
     // Throw away any extra frames we generated due to the silence we added.
@@ -168,9 +227,12 @@ import java.util.Arrays;
     maxDiff = 0;
   }
 
-  /** Returns the size of output that can be read with {@link #getOutput(ShortBuffer)}, in bytes. */
+  /**
+   * Returns the size of output that can be read with {@link #getOutput(ShortBuffer)} or {@link
+   * #getOutput(FloatBuffer)}, in bytes.
+   */
   public int getOutputSize() {
-    return outputFrameCount * channelCount * BYTES_PER_SAMPLE;
+    return outputFrameCount * channelCount * bytesPerSample;
   }
 
   // Internal methods.
@@ -185,8 +247,8 @@ import java.util.Arrays;
    *     buffer.
    * @return A buffer with enough space for the additional frames.
    */
-  private short[] ensureSpaceForAdditionalFrames(
-      short[] buffer, int frameCount, int additionalFrameCount) {
+  private float[] ensureSpaceForAdditionalFrames(
+      float[] buffer, int frameCount, int additionalFrameCount) {
     int currentCapacityFrames = buffer.length / channelCount;
     if (frameCount + additionalFrameCount <= currentCapacityFrames) {
       return buffer;
@@ -196,6 +258,19 @@ import java.util.Arrays;
     }
   }
 
+  private short[] ensureShortConversionBufferCapacity(int sampleCount) {
+    if (shortConversionBuffer.length < sampleCount) {
+      shortConversionBuffer = new short[sampleCount];
+    }
+    return shortConversionBuffer;
+  }
+
+  private void removeOutputFrames(int frameCount) {
+    outputFrameCount -= frameCount;
+    System.arraycopy(
+        outputBuffer, frameCount * channelCount, outputBuffer, 0, outputFrameCount * channelCount);
+  }
+
   private void removeProcessedInputFrames(int positionFrames) {
     int remainingFrames = inputFrameCount - positionFrames;
     System.arraycopy(
@@ -203,7 +278,7 @@ import java.util.Arrays;
     inputFrameCount = remainingFrames;
   }
 
-  private void copyToOutput(short[] samples, int positionFrames, int frameCount) {
+  private void copyToOutput(float[] samples, int positionFrames, int frameCount) {
     outputBuffer = ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, frameCount);
     System.arraycopy(
         samples,
@@ -221,40 +296,31 @@ import java.util.Arrays;
     return frameCount;
   }
 
-  private void downSampleInput(short[] samples, int position, int skip) {
+  private void downSampleInput(float[] samples, int position, int skip, int frameCount) {
     // If skip is greater than one, average skip samples together and write them to the down-sample
     // buffer. If channelCount is greater than one, mix the channels together as we down sample.
-    int frameCount = maxRequiredFrameCount / skip;
     int samplesPerValue = channelCount * skip;
-    position *= channelCount;
+    int sampleIndex = position * channelCount;
     for (int i = 0; i < frameCount; i++) {
-      int value = 0;
-      for (int j = 0; j < samplesPerValue; j++) {
-        value += samples[position + i * samplesPerValue + j];
+      float value = 0;
+      int end = sampleIndex + samplesPerValue;
+      for (; sampleIndex < end; sampleIndex++) {
+        value += samples[sampleIndex];
       }
-      value /= samplesPerValue;
-      downSampleBuffer[i] = (short) value;
+      downSampleBuffer[i] = value / samplesPerValue;
     }
   }
 
-  private int findPitchPeriodInRange(short[] samples, int position, int minPeriod, int maxPeriod) {
+  private int findPitchPeriodInRange(float[] samples, int position, int minPeriod, int maxPeriod) {
     // Find the best frequency match in the range, and given a sample skip multiple. For now, just
     // find the pitch of the first channel.
     int bestPeriod = 0;
     int worstPeriod = 255;
-    int minDiff = 1;
-    int maxDiff = 0;
+    float minDiff = 1;
+    float maxDiff = 0;
     position *= channelCount;
     for (int period = minPeriod; period <= maxPeriod; period++) {
-      int diff = 0;
-      for (int i = 0; i < period; i++) {
-        short sVal = samples[position + i];
-        short pVal = samples[position + period + i];
-        diff += Math.abs(sVal - pVal);
-      }
-      // Note that the highest number of samples we add into diff will be less than 256, since we
-      // skip samples. Thus, diff is a 24 bit number, and we can safely multiply by numSamples
-      // without overflow.
+      float diff = getAbsoluteDifferenceSum(samples, position, position + period, period);
       if (diff * bestPeriod < minDiff * period) {
         minDiff = diff;
         bestPeriod = period;
@@ -269,11 +335,40 @@ import java.util.Arrays;
     return bestPeriod;
   }
 
+  /**
+   * Returns the sum of absolute differences between {@code length} samples starting at {@code
+   * position} and {@code otherPosition} in {@code samples}.
+   *
+   * <p>The additions are reassociated, so the result may differ from a sequential sum in its least
+   * significant bits.
+   */
+  @VisibleForTesting
+  /* package */ static float getAbsoluteDifferenceSum(
+      float[] samples, int position, int otherPosition, int length) {
+    // Use independent accumulators so that consecutive additions don't depend on each other. This
+    // allows them to be pipelined, and the loop body to be vectorized.
+    float diff0 = 0;
+    float diff1 = 0;
+    float diff2 = 0;
+    float diff3 = 0;
+    int i = 0;
+    for (; i + 3 < length; i += 4) {
+      diff0 += Math.abs(samples[position + i] - samples[otherPosition + i]);
+      diff1 += Math.abs(samples[position + i + 1] - samples[otherPosition + i + 1]);
+      diff2 += Math.abs(samples[position + i + 2] - samples[otherPosition + i + 2]);
+      diff3 += Math.abs(samples[position + i + 3] - samples[otherPosition + i + 3]);
+    }
+    for (; i < length; i++) {
+      diff0 += Math.abs(samples[position + i] - samples[otherPosition + i]);
+    }
+    return (diff0 + diff1) + (diff2 + diff3);
+  }
+
   /**
    * Returns whether the previous pitch period estimate is a better approximation, which can occur
    * at the abrupt end of voiced words.
    */
-  private boolean previousPeriodBetter(int minDiff, int maxDiff) {
+  private boolean previousPeriodBetter(float minDiff, float maxDiff) {
     if (minDiff == 0 || prevPeriod == 0) {
       return false;
     }
@@ -288,7 +383,7 @@ import java.util.Arrays;
     return true;
   }
 
-  private int findPitchPeriod(short[] samples, int position) {
+  private int findPitchPeriod(float[] samples, int position) {
     // Find the pitch period. This is a critical step, and we may have to try multiple ways to get a
     // good answer. This version uses AMDF. To improve speed, we down sample by an integer factor
     // get in the 11 kHz range, and then do it again with a narrower frequency range without down
@@ -299,7 +394,7 @@ import java.util.Arrays;
     if (channelCount == 1 && skip == 1) {
       period = findPitchPeriodInRange(samples, position, minPeriod, maxPeriod);
     } else {
-      downSampleInput(samples, position, skip);
+      downSampleInput(samples, position, skip, /* frameCount= */ maxRequiredFrameCount / skip);
       period = findPitchPeriodInRange(downSampleBuffer, 0, minPeriod / skip, maxPeriod / skip);
       if (skip != 1) {
         period *= skip;
@@ -314,7 +409,8 @@ import java.util.Arrays;
         if (channelCount == 1) {
           period = findPitchPeriodInRange(samples, position, minP, maxP);
         } else {
-          downSampleInput(samples, position, 1);
+          // Only mix down the frames that the narrower search compares.
+          downSampleInput(samples, position, /* skip= */ 1, /* frameCount= */ 2 * maxP);
           period = findPitchPeriodInRange(downSampleBuffer, 0, minP, maxP);
         }
       }
@@ -355,17 +451,6 @@ import java.util.Arrays;
     pitchFrameCount -= frameCount;
   }
 
-  private short interpolate(short[] in, int inPos, int oldSampleRate, int newSampleRate) {
-    short left = in[inPos];
-    short right = in[inPos + channelCount];
-    int position = newRatePosition * oldSampleRate;
-    int leftPosition = oldRatePosition * newSampleRate;
-    int rightPosition = (oldRatePosition + 1) * newSampleRate;
-    int ratio = rightPosition - position;
-    int width = rightPosition - leftPosition;
-    return (short) ((ratio * left + (width - ratio) * right) / width);
-  }
-
   private void adjustRate(float rate, int originalOutputFrameCount) {
     if (outputFrameCount == originalOutputFrameCount) {
       return;
@@ -378,15 +463,23 @@ import java.util.Arrays;
       oldSampleRate /= 2;
     }
     moveNewSamplesToPitchBuffer(originalOutputFrameCount);
+    // Reserve space for all the output up front, rather than checking for each frame.
+    int maxNewFrameCount =
+        (int) ((long) (pitchFrameCount - 1) * newSampleRate / oldSampleRate) + 2;
+    outputBuffer = ensureSpaceForAdditionalFrames(outputBuffer, outputFrameCount, maxNewFrameCount);
     // Leave at least one pitch sample in the buffer.
     for (int position = 0; position < pitchFrameCount - 1; position++) {
-      while ((oldRatePosition + 1) * newSampleRate > newRatePosition * oldSampleRate) {
-        outputBuffer =
-            ensureSpaceForAdditionalFrames(
-                outputBuffer, outputFrameCount, /* additionalFrameCount= */ 1);
+      // Interpolate between the frame at this position (left) and the next frame (right).
+      int rightPosition = (oldRatePosition + 1) * newSampleRate;
+      while (rightPosition > newRatePosition * oldSampleRate) {
+        int ratio = rightPosition - newRatePosition * oldSampleRate;
+        int inputIndex = position * channelCount;
+        int outputIndex = outputFrameCount * channelCount;
         for (int i = 0; i < channelCount; i++) {
-          outputBuffer[outputFrameCount * channelCount + i] =
-              interpolate(pitchBuffer, position * channelCount + i, oldSampleRate, newSampleRate);
+          float left = pitchBuffer[inputIndex + i];
+          float right = pitchBuffer[inputIndex + channelCount + i];
+          outputBuffer[outputIndex + i] =
+              (ratio * left + (newSampleRate - ratio) * right) / newSampleRate;
         }
         newRatePosition++;
         outputFrameCount++;
@@ -401,7 +494,7 @@ import java.util.Arrays;
     removePitchFrames(pitchFrameCount - 1);
   }
 
-  private int skipPitchPeriod(short[] samples, int position, float speed, int period) {
+  private int skipPitchPeriod(float[] samples, int position, float speed, int period) {
     // Skip over a pitch period, and copy period/speed samples to the output.
     int newFrameCount;
     if (speed >= 2.0f) {
@@ -424,7 +517,7 @@ import java.util.Arrays;
     return newFrameCount;
   }
 
-  private int insertPitchPeriod(short[] samples, int position, float speed, int period) {
+  private int insertPitchPeriod(float[] samples, int position, float speed, int period) {
     // Insert a pitch period, and determine how much input to copy directly.
     int newFrameCount;
     if (speed < 0.5f) {
@@ -494,22 +587,24 @@ import java.util.Arrays;
   private static void overlapAdd(
       int frameCount,
       int channelCount,
-      short[] out,
+      float[] out,
       int outPosition,
-      short[] rampDown,
+      float[] rampDown,
       int rampDownPosition,
-      short[] rampUp,
+      float[] rampUp,
       int rampUpPosition) {
-    for (int i = 0; i < channelCount; i++) {
-      int o = outPosition * channelCount + i;
-      int u = rampUpPosition * channelCount + i;
-      int d = rampDownPosition * channelCount + i;
-      for (int t = 0; t < frameCount; t++) {
-        out[o] = (short) ((rampDown[d] * (frameCount - t) + rampUp[u] * t) / frameCount);
-        o += channelCount;
-        d += channelCount;
-        u += channelCount;
+    // Iterate over frames in the outer loop, so that each array is accessed sequentially.
+    int o = outPosition * channelCount;
+    int u = rampUpPosition * channelCount;
+    int d = rampDownPosition * channelCount;
+    for (int t = 0; t < frameCount; t++) {
+      int rampDownWeight = frameCount - t;
+      for (int i = 0; i < channelCount; i++) {
+        out[o + i] = (rampDown[d + i] * rampDownWeight + rampUp[u + i] * t) / frameCount;
       }
+      o += channelCount;
+      d += channelCount;
+      u += channelCount;
     }
   }
 
@@ -21,11 +21,12 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 
-/** Audio processor for trimming samples from the start/end of data. */
+/**
+ * Audio processor for trimming samples from the start/end of data. Input and output are 16-bit
+ * integer or 32-bit float PCM.
+ */
 /* package */ final class TrimmingAudioProcessor extends BaseAudioProcessor {
 
-  @C.PcmEncoding private static final int OUTPUT_ENCODING = C.ENCODING_PCM_16BIT;
-
   private int trimStartFrames;
   private int trimEndFrames;
   private boolean reconfigurationPending;
@@ -70,7 +71,8 @@ import java.nio.ByteBuffer;
   @Override
   public AudioFormat onConfigure(AudioFormat inputAudioFormat)
       throws UnhandledAudioFormatException {
-    if (inputAudioFormat.encoding != OUTPUT_ENCODING) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     reconfigurationPending = true;
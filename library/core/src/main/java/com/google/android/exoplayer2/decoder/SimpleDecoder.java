@@ -20,10 +20,15 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 
 /**
  * Base class for {@link Decoder}s that use their own decode thread and decode each input buffer
  * immediately into a corresponding output buffer.
+ *
+ * <p>Subclasses can opt in to decoding several input buffers per call, which reduces the per-buffer
+ * overhead of decoders that cross into native code for each call. See {@link
+ * #setMaxBatchSize(int)}.
  */
 @SuppressWarnings("UngroupedOverloads")
 public abstract class SimpleDecoder<
@@ -41,6 +46,9 @@ public abstract class SimpleDecoder<
   private int availableInputBufferCount;
   private int availableOutputBufferCount;
   private I dequeuedInputBuffer;
+  private int maxBatchSize;
+  private I[] batchInputBuffers;
+  private O[] batchOutputBuffers;
 
   private E exception;
   private boolean flushed;
@@ -65,6 +73,9 @@ public abstract class SimpleDecoder<
     for (int i = 0; i < availableOutputBufferCount; i++) {
       availableOutputBuffers[i] = createOutputBuffer();
     }
+    maxBatchSize = 1;
+    batchInputBuffers = Arrays.copyOf(inputBuffers, 1);
+    batchOutputBuffers = Arrays.copyOf(outputBuffers, 1);
     decodeThread =
         new Thread("ExoPlayer:SimpleDecoder") {
           @Override
@@ -90,6 +101,34 @@ public abstract class SimpleDecoder<
     }
   }
 
+  /**
+   * Sets the maximum number of input buffers that are passed to each call to {@link
+   * #decode(DecoderInputBuffer[], OutputBuffer[], int, boolean)}. The default value is 1.
+   *
+   * <p>If the maximum batch size is greater than 1, the decode thread defers decoding until a full
+   * batch of input buffers has been queued, as long as previously decoded output is still waiting
+   * to be dequeued. Decoding isn't deferred if the consumer has no output left to dequeue, if all
+   * input buffers have been queued, or if the end of stream has been queued.
+   *
+   * <p>This method should only be called before the decoder is used (i.e. before the first call to
+   * {@link #dequeueInputBuffer()}.
+   *
+   * @param maxBatchSize The maximum batch size. Must be at least 1, and no greater than the number
+   *     of input buffers or the number of output buffers.
+   */
+  protected final void setMaxBatchSize(int maxBatchSize) {
+    synchronized (lock) {
+      Assertions.checkArgument(
+          maxBatchSize >= 1
+              && maxBatchSize <= availableInputBuffers.length
+              && maxBatchSize <= availableOutputBuffers.length);
+      Assertions.checkState(availableInputBufferCount == availableInputBuffers.length);
+      this.maxBatchSize = maxBatchSize;
+      batchInputBuffers = Arrays.copyOf(availableInputBuffers, maxBatchSize);
+      batchOutputBuffers = Arrays.copyOf(availableOutputBuffers, maxBatchSize);
+    }
+  }
+
   @Override
   @Nullable
   public final I dequeueInputBuffer() throws E {
@@ -98,6 +137,10 @@ public abstract class SimpleDecoder<
       Assertions.checkState(dequeuedInputBuffer == null);
       dequeuedInputBuffer = availableInputBufferCount == 0 ? null
           : availableInputBuffers[--availableInputBufferCount];
+      if (availableInputBufferCount == 0) {
+        // The decode thread may be waiting for more input to batch, which can't be queued now.
+        maybeNotifyDecodeLoop();
+      }
       return dequeuedInputBuffer;
     }
   }
@@ -121,7 +164,13 @@ public abstract class SimpleDecoder<
       if (queuedOutputBuffers.isEmpty()) {
         return null;
       }
-      return queuedOutputBuffers.removeFirst();
+      O outputBuffer = queuedOutputBuffers.removeFirst();
+      if (queuedOutputBuffers.isEmpty()) {
+        // The decode thread may be waiting for more input to batch, which it shouldn't do now that
+        // there's no more output for the consumer.
+        maybeNotifyDecodeLoop();
+      }
+      return outputBuffer;
     }
   }
 
@@ -205,11 +254,12 @@ public abstract class SimpleDecoder<
   }
 
   private boolean decode() throws InterruptedException {
-    I inputBuffer;
-    O outputBuffer;
+    I[] inputBuffers;
+    O[] outputBuffers;
+    int batchSize;
     boolean resetDecoder;
 
-    // Wait until we have an input buffer to decode, and an output buffer to decode into.
+    // Wait until we have input buffers to decode, and output buffers to decode into.
     synchronized (lock) {
       while (!released && !canDecodeBuffer()) {
         lock.wait();
@@ -217,21 +267,39 @@ public abstract class SimpleDecoder<
       if (released) {
         return false;
       }
-      inputBuffer = queuedInputBuffers.removeFirst();
-      outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
+      inputBuffers = batchInputBuffers;
+      outputBuffers = batchOutputBuffers;
+      batchSize = 0;
+      while (batchSize < maxBatchSize
+          && !queuedInputBuffers.isEmpty()
+          && availableOutputBufferCount > 0) {
+        boolean isEndOfStream = queuedInputBuffers.peekFirst().isEndOfStream();
+        if (isEndOfStream && batchSize > 0) {
+          // The end of stream buffer is handled on its own.
+          break;
+        }
+        inputBuffers[batchSize] = queuedInputBuffers.removeFirst();
+        outputBuffers[batchSize] = availableOutputBuffers[--availableOutputBufferCount];
+        batchSize++;
+        if (isEndOfStream) {
+          break;
+        }
+      }
       resetDecoder = flushed;
       flushed = false;
     }
 
-    if (inputBuffer.isEndOfStream()) {
-      outputBuffer.addFlag(C.BUFFER_FLAG_END_OF_STREAM);
+    if (inputBuffers[0].isEndOfStream()) {
+      outputBuffers[0].addFlag(C.BUFFER_FLAG_END_OF_STREAM);
     } else {
-      if (inputBuffer.isDecodeOnly()) {
-        outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+      for (int i = 0; i < batchSize; i++) {
+        if (inputBuffers[i].isDecodeOnly()) {
+          outputBuffers[i].addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+        }
       }
       @Nullable E exception;
       try {
-        exception = decode(inputBuffer, outputBuffer, resetDecoder);
+        exception = decode(inputBuffers, outputBuffers, batchSize, resetDecoder);
       } catch (RuntimeException e) {
         // This can occur if a sample is malformed in a way that the decoder is not robust against.
         // We don't want the process to die in this case, but we do want to propagate the error.
@@ -251,25 +319,37 @@ public abstract class SimpleDecoder<
     }
 
     synchronized (lock) {
-      if (flushed) {
-        outputBuffer.release();
-      } else if (outputBuffer.isDecodeOnly()) {
-        skippedOutputBufferCount++;
-        outputBuffer.release();
-      } else {
-        outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
-        skippedOutputBufferCount = 0;
-        queuedOutputBuffers.addLast(outputBuffer);
+      for (int i = 0; i < batchSize; i++) {
+        O outputBuffer = outputBuffers[i];
+        if (flushed) {
+          outputBuffer.release();
+        } else if (outputBuffer.isDecodeOnly()) {
+          skippedOutputBufferCount++;
+          outputBuffer.release();
+        } else {
+          outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
+          skippedOutputBufferCount = 0;
+          queuedOutputBuffers.addLast(outputBuffer);
+        }
+        // Make the input buffer available again.
+        releaseInputBufferInternal(inputBuffers[i]);
       }
-      // Make the input buffer available again.
-      releaseInputBufferInternal(inputBuffer);
     }
 
     return true;
   }
 
   private boolean canDecodeBuffer() {
-    return !queuedInputBuffers.isEmpty() && availableOutputBufferCount > 0;
+    if (queuedInputBuffers.isEmpty() || availableOutputBufferCount == 0) {
+      return false;
+    }
+    if (maxBatchSize == 1 || queuedOutputBuffers.isEmpty()) {
+      return true;
+    }
+    // The consumer has output to dequeue, so wait for a full batch unless no more input can arrive.
+    return (queuedInputBuffers.size() >= maxBatchSize && availableOutputBufferCount >= maxBatchSize)
+        || availableInputBufferCount == 0
+        || queuedInputBuffers.peekLast().isEndOfStream();
   }
 
   private void releaseInputBufferInternal(I inputBuffer) {
@@ -314,4 +394,32 @@ public abstract class SimpleDecoder<
    */
   @Nullable
   protected abstract E decode(I inputBuffer, O outputBuffer, boolean reset);
+
+  /**
+   * Decodes a batch of input buffers, storing the decoded output of each input buffer in the output
+   * buffer at the same index. Batches contain more than one buffer only if {@link
+   * #setMaxBatchSize(int)} has been called. End of stream buffers are never passed to this method.
+   *
+   * <p>The default implementation calls {@link #decode(DecoderInputBuffer, OutputBuffer, boolean)}
+   * for each input buffer. Subclasses can override this method to decode the whole batch at once,
+   * for example with a single call into native code.
+   *
+   * @param inputBuffers The buffers to decode. Only the first {@code count} elements are valid.
+   * @param outputBuffers The output buffers to store decoded data, as described in {@link
+   *     #decode(DecoderInputBuffer, OutputBuffer, boolean)}. Only the first {@code count} elements
+   *     are valid.
+   * @param count The number of buffers to decode.
+   * @param reset Whether the decoder must be reset before decoding the first buffer.
+   * @return A decoder exception if an error occurred, or null if decoding was successful.
+   */
+  @Nullable
+  protected E decode(I[] inputBuffers, O[] outputBuffers, int count, boolean reset) {
+    for (int i = 0; i < count; i++) {
+      @Nullable E exception = decode(inputBuffers[i], outputBuffers[i], reset && i == 0);
+      if (exception != null) {
+        return exception;
+      }
+    }
+    return null;
+  }
 }
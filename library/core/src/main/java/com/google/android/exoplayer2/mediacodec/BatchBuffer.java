@@ -39,10 +39,12 @@ import java.nio.ByteBuffer;
   private long lastSampleTimeUs;
   private int sampleCount;
   private int maxSampleCount;
+  private long maxDurationUs;
 
   public BatchBuffer() {
     super(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
     maxSampleCount = DEFAULT_MAX_SAMPLE_COUNT;
+    maxDurationUs = C.TIME_UNSET;
   }
 
   @Override
@@ -57,6 +59,16 @@ import java.nio.ByteBuffer;
     this.maxSampleCount = maxSampleCount;
   }
 
+  /**
+   * Sets the maximum duration spanned by the samples in the buffer, or {@link C#TIME_UNSET} if the
+   * duration is not limited. A sample can't be appended if its timestamp is more than {@code
+   * maxDurationUs} after the timestamp of the first sample. The limit is ignored for the first
+   * sample.
+   */
+  public void setMaxDurationUs(long maxDurationUs) {
+    this.maxDurationUs = maxDurationUs;
+  }
+
   /**
    * Returns the timestamp of the first sample in the buffer. The return value is undefined if
    * {@link #hasSamples()} is {@code false}.
@@ -127,6 +139,9 @@ import java.nio.ByteBuffer;
     if (buffer.isDecodeOnly() != isDecodeOnly()) {
       return false;
     }
+    if (maxDurationUs != C.TIME_UNSET && buffer.timeUs - timeUs > maxDurationUs) {
+      return false;
+    }
     @Nullable ByteBuffer bufferData = buffer.data;
     if (bufferData != null
         && data != null
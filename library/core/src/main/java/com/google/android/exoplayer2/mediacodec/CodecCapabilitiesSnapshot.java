@@ -0,0 +1,456 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.graphics.Point;
+import android.media.MediaCodecInfo.AudioCapabilities;
+import android.media.MediaCodecInfo.CodecCapabilities;
+import android.media.MediaCodecInfo.CodecProfileLevel;
+import android.media.MediaCodecInfo.VideoCapabilities;
+import android.util.Range;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import com.google.android.exoplayer2.util.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A serializable copy of the parts of a decoder's {@link CodecCapabilities} that {@link
+ * MediaCodecInfo} uses to evaluate format support.
+ *
+ * <p>Profile levels, the maximum number of instances and audio capabilities are copied exactly.
+ * Video frame rate support is recorded for a fixed set of standard resolutions in both landscape
+ * and portrait orientation, and a size is evaluated using the smallest recorded resolution that
+ * contains it. This is conservative, so a snapshot may report that a size and frame rate are
+ * unsupported even though the decoder supports them.
+ */
+/* package */ final class CodecCapabilitiesSnapshot {
+
+  /**
+   * Landscape resolutions for which video frame rate support is recorded, as (width, height) pairs.
+   * Support is also recorded for the corresponding portrait resolutions.
+   */
+  private static final int[][] STANDARD_VIDEO_SIZES =
+      new int[][] {
+        {176, 144},
+        {320, 240},
+        {640, 360},
+        {854, 480},
+        {1280, 720},
+        {1920, 1080},
+        {2560, 1440},
+        {3840, 2160},
+        {4096, 2160},
+        {7680, 4320}
+      };
+
+  private final int[] profiles;
+  private final int[] levels;
+  private final int maxSupportedInstances;
+
+  private final boolean hasVideoCapabilities;
+  private final int widthAlignment;
+  private final int heightAlignment;
+  private final int minWidth;
+  private final int maxWidth;
+  private final int minHeight;
+  private final int maxHeight;
+  private final int maxBitrate;
+  private final int[] frameRateWidths;
+  private final int[] frameRateHeights;
+  private final double[] maxFrameRates;
+
+  private final boolean hasAudioCapabilities;
+  private final int maxInputChannelCount;
+  private final int[] minSampleRates;
+  private final int[] maxSampleRates;
+
+  /**
+   * Creates a snapshot of the specified capabilities.
+   *
+   * @param capabilities The capabilities of a decoder.
+   * @return The snapshot.
+   */
+  public static CodecCapabilitiesSnapshot create(CodecCapabilities capabilities) {
+    @Nullable CodecProfileLevel[] profileLevels = capabilities.profileLevels;
+    int profileLevelCount = profileLevels == null ? 0 : profileLevels.length;
+    int[] profiles = new int[profileLevelCount];
+    int[] levels = new int[profileLevelCount];
+    for (int i = 0; i < profileLevelCount; i++) {
+      profiles[i] = profileLevels[i].profile;
+      levels[i] = profileLevels[i].level;
+    }
+    int maxSupportedInstances =
+        Util.SDK_INT >= 23
+            ? getMaxSupportedInstancesV23(capabilities)
+            : MediaCodecInfo.MAX_SUPPORTED_INSTANCES_UNKNOWN;
+    if (Util.SDK_INT >= 21) {
+      return createV21(capabilities, profiles, levels, maxSupportedInstances);
+    }
+    return new CodecCapabilitiesSnapshot(
+        profiles,
+        levels,
+        maxSupportedInstances,
+        /* hasVideoCapabilities= */ false,
+        /* widthAlignment= */ 1,
+        /* heightAlignment= */ 1,
+        /* minWidth= */ 0,
+        /* maxWidth= */ 0,
+        /* minHeight= */ 0,
+        /* maxHeight= */ 0,
+        /* maxBitrate= */ 0,
+        /* frameRateWidths= */ new int[0],
+        /* frameRateHeights= */ new int[0],
+        /* maxFrameRates= */ new double[0],
+        /* hasAudioCapabilities= */ false,
+        /* maxInputChannelCount= */ 0,
+        /* minSampleRates= */ new int[0],
+        /* maxSampleRates= */ new int[0]);
+  }
+
+  /**
+   * Reads a snapshot that was written by {@link #writeTo(DataOutputStream)}.
+   *
+   * @param input The input from which to read.
+   * @return The snapshot.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  public static CodecCapabilitiesSnapshot readFrom(DataInputStream input) throws IOException {
+    int[] profiles = readIntArray(input);
+    int[] levels = readIntArray(input);
+    if (profiles.length != levels.length) {
+      throw new IOException("Mismatched profile levels");
+    }
+    int maxSupportedInstances = input.readInt();
+    boolean hasVideoCapabilities = input.readBoolean();
+    int widthAlignment = input.readInt();
+    int heightAlignment = input.readInt();
+    int minWidth = input.readInt();
+    int maxWidth = input.readInt();
+    int minHeight = input.readInt();
+    int maxHeight = input.readInt();
+    int maxBitrate = input.readInt();
+    int[] frameRateWidths = readIntArray(input);
+    int[] frameRateHeights = readIntArray(input);
+    double[] maxFrameRates = new double[input.readInt()];
+    for (int i = 0; i < maxFrameRates.length; i++) {
+      maxFrameRates[i] = input.readDouble();
+    }
+    if (frameRateWidths.length != maxFrameRates.length
+        || frameRateHeights.length != maxFrameRates.length
+        || widthAlignment <= 0
+        || heightAlignment <= 0) {
+      throw new IOException("Invalid video capabilities");
+    }
+    boolean hasAudioCapabilities = input.readBoolean();
+    int maxInputChannelCount = input.readInt();
+    int[] minSampleRates = readIntArray(input);
+    int[] maxSampleRates = readIntArray(input);
+    if (minSampleRates.length != maxSampleRates.length) {
+      throw new IOException("Mismatched sample rate ranges");
+    }
+    return new CodecCapabilitiesSnapshot(
+        profiles,
+        levels,
+        maxSupportedInstances,
+        hasVideoCapabilities,
+        widthAlignment,
+        heightAlignment,
+        minWidth,
+        maxWidth,
+        minHeight,
+        maxHeight,
+        maxBitrate,
+        frameRateWidths,
+        frameRateHeights,
+        maxFrameRates,
+        hasAudioCapabilities,
+        maxInputChannelCount,
+        minSampleRates,
+        maxSampleRates);
+  }
+
+  private CodecCapabilitiesSnapshot(
+      int[] profiles,
+      int[] levels,
+      int maxSupportedInstances,
+      boolean hasVideoCapabilities,
+      int widthAlignment,
+      int heightAlignment,
+      int minWidth,
+      int maxWidth,
+      int minHeight,
+      int maxHeight,
+      int maxBitrate,
+      int[] frameRateWidths,
+      int[] frameRateHeights,
+      double[] maxFrameRates,
+      boolean hasAudioCapabilities,
+      int maxInputChannelCount,
+      int[] minSampleRates,
+      int[] maxSampleRates) {
+    this.profiles = profiles;
+    this.levels = levels;
+    this.maxSupportedInstances = maxSupportedInstances;
+    this.hasVideoCapabilities = hasVideoCapabilities;
+    this.widthAlignment = widthAlignment;
+    this.heightAlignment = heightAlignment;
+    this.minWidth = minWidth;
+    this.maxWidth = maxWidth;
+    this.minHeight = minHeight;
+    this.maxHeight = maxHeight;
+    this.maxBitrate = maxBitrate;
+    this.frameRateWidths = frameRateWidths;
+    this.frameRateHeights = frameRateHeights;
+    this.maxFrameRates = maxFrameRates;
+    this.hasAudioCapabilities = hasAudioCapabilities;
+    this.maxInputChannelCount = maxInputChannelCount;
+    this.minSampleRates = minSampleRates;
+    this.maxSampleRates = maxSampleRates;
+  }
+
+  /**
+   * Writes the snapshot to an output.
+   *
+   * @param output The output to which to write.
+   * @throws IOException If an error occurs writing to the output.
+   */
+  public void writeTo(DataOutputStream output) throws IOException {
+    writeIntArray(output, profiles);
+    writeIntArray(output, levels);
+    output.writeInt(maxSupportedInstances);
+    output.writeBoolean(hasVideoCapabilities);
+    output.writeInt(widthAlignment);
+    output.writeInt(heightAlignment);
+    output.writeInt(minWidth);
+    output.writeInt(maxWidth);
+    output.writeInt(minHeight);
+    output.writeInt(maxHeight);
+    output.writeInt(maxBitrate);
+    writeIntArray(output, frameRateWidths);
+    writeIntArray(output, frameRateHeights);
+    output.writeInt(maxFrameRates.length);
+    for (double maxFrameRate : maxFrameRates) {
+      output.writeDouble(maxFrameRate);
+    }
+    output.writeBoolean(hasAudioCapabilities);
+    output.writeInt(maxInputChannelCount);
+    writeIntArray(output, minSampleRates);
+    writeIntArray(output, maxSampleRates);
+  }
+
+  /** Returns the supported profile levels. */
+  public CodecProfileLevel[] getProfileLevels() {
+    CodecProfileLevel[] profileLevels = new CodecProfileLevel[profiles.length];
+    for (int i = 0; i < profiles.length; i++) {
+      CodecProfileLevel profileLevel = new CodecProfileLevel();
+      profileLevel.profile = profiles[i];
+      profileLevel.level = levels[i];
+      profileLevels[i] = profileLevel;
+    }
+    return profileLevels;
+  }
+
+  /**
+   * Returns the maximum number of supported instances, or {@link
+   * MediaCodecInfo#MAX_SUPPORTED_INSTANCES_UNKNOWN} if unknown.
+   */
+  public int getMaxSupportedInstances() {
+    return maxSupportedInstances;
+  }
+
+  /** Returns whether the snapshot has video capabilities. */
+  public boolean hasVideoCapabilities() {
+    return hasVideoCapabilities;
+  }
+
+  /** Returns the maximum supported video bitrate, or 0 if there are no video capabilities. */
+  public int getMaxBitrate() {
+    return maxBitrate;
+  }
+
+  /**
+   * Returns the smallest video size greater than or equal to a specified size that also satisfies
+   * the decoder's width and height alignment requirements.
+   */
+  public Point alignVideoSize(int width, int height) {
+    return new Point(
+        Util.ceilDivide(width, widthAlignment) * widthAlignment,
+        Util.ceilDivide(height, heightAlignment) * heightAlignment);
+  }
+
+  /**
+   * Returns whether a video size and frame rate are supported.
+   *
+   * @param width The aligned width in pixels.
+   * @param height The aligned height in pixels.
+   * @param frameRate The frame rate, or {@link com.google.android.exoplayer2.Format#NO_VALUE} or
+   *     any value less than 1 to only check the size.
+   * @return Whether the size and frame rate are supported.
+   */
+  public boolean areSizeAndRateSupported(int width, int height, double frameRate) {
+    if (!hasVideoCapabilities
+        || width < minWidth
+        || width > maxWidth
+        || height < minHeight
+        || height > maxHeight) {
+      return false;
+    }
+    // Use the smallest recorded resolution that contains the specified size.
+    int index = -1;
+    long indexPixelCount = Long.MAX_VALUE;
+    for (int i = 0; i < maxFrameRates.length; i++) {
+      long pixelCount = (long) frameRateWidths[i] * frameRateHeights[i];
+      if (frameRateWidths[i] >= width
+          && frameRateHeights[i] >= height
+          && pixelCount < indexPixelCount) {
+        index = i;
+        indexPixelCount = pixelCount;
+      }
+    }
+    if (index == -1) {
+      return false;
+    }
+    return frameRate < 1 || Math.floor(frameRate) <= maxFrameRates[index];
+  }
+
+  /** Returns whether the snapshot has audio capabilities. */
+  public boolean hasAudioCapabilities() {
+    return hasAudioCapabilities;
+  }
+
+  /** Returns the maximum number of input channels, or 0 if there are no audio capabilities. */
+  public int getMaxInputChannelCount() {
+    return maxInputChannelCount;
+  }
+
+  /** Returns whether a sample rate is supported. */
+  public boolean isSampleRateSupported(int sampleRate) {
+    for (int i = 0; i < minSampleRates.length; i++) {
+      if (minSampleRates[i] <= sampleRate && sampleRate <= maxSampleRates[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @RequiresApi(21)
+  private static CodecCapabilitiesSnapshot createV21(
+      CodecCapabilities capabilities, int[] profiles, int[] levels, int maxSupportedInstances) {
+    @Nullable VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
+    boolean hasVideoCapabilities = videoCapabilities != null;
+    int widthAlignment = 1;
+    int heightAlignment = 1;
+    int minWidth = 0;
+    int maxWidth = 0;
+    int minHeight = 0;
+    int maxHeight = 0;
+    int maxBitrate = 0;
+    int frameRateCount = 0;
+    int[] frameRateWidths = new int[STANDARD_VIDEO_SIZES.length * 2];
+    int[] frameRateHeights = new int[STANDARD_VIDEO_SIZES.length * 2];
+    double[] maxFrameRates = new double[STANDARD_VIDEO_SIZES.length * 2];
+    if (videoCapabilities != null) {
+      widthAlignment = videoCapabilities.getWidthAlignment();
+      heightAlignment = videoCapabilities.getHeightAlignment();
+      Range<Integer> widths = videoCapabilities.getSupportedWidths();
+      Range<Integer> heights = videoCapabilities.getSupportedHeights();
+      minWidth = widths.getLower();
+      maxWidth = widths.getUpper();
+      minHeight = heights.getLower();
+      maxHeight = heights.getUpper();
+      maxBitrate = videoCapabilities.getBitrateRange().getUpper();
+      for (int i = 0; i < STANDARD_VIDEO_SIZES.length * 2; i++) {
+        // Record the platform's result for each orientation, since decoders don't necessarily
+        // support a portrait size just because they support the corresponding landscape size.
+        int[] size = STANDARD_VIDEO_SIZES[i / 2];
+        boolean portrait = i % 2 == 1;
+        int width = Util.ceilDivide(portrait ? size[1] : size[0], widthAlignment) * widthAlignment;
+        int height =
+            Util.ceilDivide(portrait ? size[0] : size[1], heightAlignment) * heightAlignment;
+        if (videoCapabilities.isSizeSupported(width, height)) {
+          frameRateWidths[frameRateCount] = width;
+          frameRateHeights[frameRateCount] = height;
+          maxFrameRates[frameRateCount] =
+              videoCapabilities.getSupportedFrameRatesFor(width, height).getUpper();
+          frameRateCount++;
+        }
+      }
+    }
+
+    @Nullable AudioCapabilities audioCapabilities = capabilities.getAudioCapabilities();
+    boolean hasAudioCapabilities = audioCapabilities != null;
+    int maxInputChannelCount = 0;
+    int[] minSampleRates = new int[0];
+    int[] maxSampleRates = new int[0];
+    if (audioCapabilities != null) {
+      maxInputChannelCount = audioCapabilities.getMaxInputChannelCount();
+      Range<Integer>[] sampleRateRanges = audioCapabilities.getSupportedSampleRateRanges();
+      minSampleRates = new int[sampleRateRanges.length];
+      maxSampleRates = new int[sampleRateRanges.length];
+      for (int i = 0; i < sampleRateRanges.length; i++) {
+        minSampleRates[i] = sampleRateRanges[i].getLower();
+        maxSampleRates[i] = sampleRateRanges[i].getUpper();
+      }
+    }
+
+    return new CodecCapabilitiesSnapshot(
+        profiles,
+        levels,
+        maxSupportedInstances,
+        hasVideoCapabilities,
+        widthAlignment,
+        heightAlignment,
+        minWidth,
+        maxWidth,
+        minHeight,
+        maxHeight,
+        maxBitrate,
+        Arrays.copyOf(frameRateWidths, frameRateCount),
+        Arrays.copyOf(frameRateHeights, frameRateCount),
+        Arrays.copyOf(maxFrameRates, frameRateCount),
+        hasAudioCapabilities,
+        maxInputChannelCount,
+        minSampleRates,
+        maxSampleRates);
+  }
+
+  @RequiresApi(23)
+  private static int getMaxSupportedInstancesV23(CodecCapabilities capabilities) {
+    return capabilities.getMaxSupportedInstances();
+  }
+
+  private static int[] readIntArray(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid array length: " + length);
+    }
+    int[] array = new int[length];
+    for (int i = 0; i < length; i++) {
+      array[i] = input.readInt();
+    }
+    return array;
+  }
+
+  private static void writeIntArray(DataOutputStream output, int[] array) throws IOException {
+    output.writeInt(array.length);
+    for (int value : array) {
+      output.writeInt(value);
+    }
+  }
+}
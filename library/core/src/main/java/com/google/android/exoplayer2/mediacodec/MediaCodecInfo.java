@@ -79,7 +79,7 @@ public final class MediaCodecInfo {
 
   /**
    * The capabilities of the decoder, like the profiles/levels it supports, or {@code null} if not
-   * known.
+   * known or if the instance was restored from a {@link PersistentDecoderInfoCache}.
    */
   @Nullable public final CodecCapabilities capabilities;
 
@@ -136,6 +136,12 @@ public final class MediaCodecInfo {
 
   private final boolean isVideo;
 
+  /**
+   * A copy of the decoder's capabilities, used in place of {@link #capabilities} if the instance
+   * was restored from a {@link PersistentDecoderInfoCache}.
+   */
+  @Nullable private final CodecCapabilitiesSnapshot capabilitiesSnapshot;
+
   /**
    * Creates an instance.
    *
@@ -178,6 +184,35 @@ public final class MediaCodecInfo {
         /* secure= */ forceSecure || (capabilities != null && isSecure(capabilities)));
   }
 
+  /**
+   * Creates an instance whose capabilities are described by a {@link CodecCapabilitiesSnapshot}.
+   * The {@link #capabilities} of the created instance are {@code null}.
+   */
+  /* package */ static MediaCodecInfo newInstanceFromSnapshot(
+      String name,
+      String mimeType,
+      String codecMimeType,
+      @Nullable CodecCapabilitiesSnapshot capabilitiesSnapshot,
+      boolean hardwareAccelerated,
+      boolean softwareOnly,
+      boolean vendor,
+      boolean adaptive,
+      boolean tunneling,
+      boolean secure) {
+    return new MediaCodecInfo(
+        name,
+        mimeType,
+        codecMimeType,
+        /* capabilities= */ null,
+        capabilitiesSnapshot,
+        hardwareAccelerated,
+        softwareOnly,
+        vendor,
+        adaptive,
+        tunneling,
+        secure);
+  }
+
   @VisibleForTesting
   /* package */ MediaCodecInfo(
       String name,
@@ -190,10 +225,37 @@ public final class MediaCodecInfo {
       boolean adaptive,
       boolean tunneling,
       boolean secure) {
+    this(
+        name,
+        mimeType,
+        codecMimeType,
+        capabilities,
+        /* capabilitiesSnapshot= */ null,
+        hardwareAccelerated,
+        softwareOnly,
+        vendor,
+        adaptive,
+        tunneling,
+        secure);
+  }
+
+  private MediaCodecInfo(
+      String name,
+      String mimeType,
+      String codecMimeType,
+      @Nullable CodecCapabilities capabilities,
+      @Nullable CodecCapabilitiesSnapshot capabilitiesSnapshot,
+      boolean hardwareAccelerated,
+      boolean softwareOnly,
+      boolean vendor,
+      boolean adaptive,
+      boolean tunneling,
+      boolean secure) {
     this.name = Assertions.checkNotNull(name);
     this.mimeType = mimeType;
     this.codecMimeType = codecMimeType;
     this.capabilities = capabilities;
+    this.capabilitiesSnapshot = capabilitiesSnapshot;
     this.hardwareAccelerated = hardwareAccelerated;
     this.softwareOnly = softwareOnly;
     this.vendor = vendor;
@@ -214,6 +276,9 @@ public final class MediaCodecInfo {
    * @return The profile levels supported by the decoder.
    */
   public CodecProfileLevel[] getProfileLevels() {
+    if (capabilities == null && capabilitiesSnapshot != null) {
+      return capabilitiesSnapshot.getProfileLevels();
+    }
     return capabilities == null || capabilities.profileLevels == null ? new CodecProfileLevel[0]
         : capabilities.profileLevels;
   }
@@ -226,6 +291,9 @@ public final class MediaCodecInfo {
    * @see CodecCapabilities#getMaxSupportedInstances()
    */
   public int getMaxSupportedInstances() {
+    if (capabilities == null && capabilitiesSnapshot != null) {
+      return capabilitiesSnapshot.getMaxSupportedInstances();
+    }
     if (Util.SDK_INT < 23 || capabilities == null) {
       return MAX_SUPPORTED_INSTANCES_UNKNOWN;
     }
@@ -303,7 +371,11 @@ public final class MediaCodecInfo {
     if (Util.SDK_INT <= 23 && MimeTypes.VIDEO_VP9.equals(mimeType) && profileLevels.length == 0) {
       // Some older devices don't report profile levels for VP9. Estimate them using other data in
       // the codec capabilities.
-      profileLevels = estimateLegacyVp9ProfileLevels(capabilities);
+      profileLevels =
+          estimateLegacyVp9ProfileLevels(
+              capabilitiesSnapshot != null
+                  ? capabilitiesSnapshot.getMaxBitrate()
+                  : getMaxBitrate(capabilities));
     }
 
     for (CodecProfileLevel profileLevel : profileLevels) {
@@ -480,6 +552,9 @@ public final class MediaCodecInfo {
    */
   @RequiresApi(21)
   public boolean isVideoSizeAndRateSupportedV21(int width, int height, double frameRate) {
+    if (capabilities == null && capabilitiesSnapshot != null) {
+      return isVideoSizeAndRateSupported(capabilitiesSnapshot, width, height, frameRate);
+    }
     if (capabilities == null) {
       logNoSupport("sizeAndRate.caps");
       return false;
@@ -517,7 +592,9 @@ public final class MediaCodecInfo {
   @RequiresApi(21)
   public Point alignVideoSizeV21(int width, int height) {
     if (capabilities == null) {
-      return null;
+      return capabilitiesSnapshot != null && capabilitiesSnapshot.hasVideoCapabilities()
+          ? capabilitiesSnapshot.alignVideoSize(width, height)
+          : null;
     }
     VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
     if (videoCapabilities == null) {
@@ -536,6 +613,17 @@ public final class MediaCodecInfo {
    */
   @RequiresApi(21)
   public boolean isAudioSampleRateSupportedV21(int sampleRate) {
+    if (capabilities == null && capabilitiesSnapshot != null) {
+      if (!capabilitiesSnapshot.hasAudioCapabilities()) {
+        logNoSupport("sampleRate.aCaps");
+        return false;
+      }
+      if (!capabilitiesSnapshot.isSampleRateSupported(sampleRate)) {
+        logNoSupport("sampleRate.support, " + sampleRate);
+        return false;
+      }
+      return true;
+    }
     if (capabilities == null) {
       logNoSupport("sampleRate.caps");
       return false;
@@ -562,17 +650,27 @@ public final class MediaCodecInfo {
    */
   @RequiresApi(21)
   public boolean isAudioChannelCountSupportedV21(int channelCount) {
-    if (capabilities == null) {
-      logNoSupport("channelCount.caps");
-      return false;
-    }
-    AudioCapabilities audioCapabilities = capabilities.getAudioCapabilities();
-    if (audioCapabilities == null) {
-      logNoSupport("channelCount.aCaps");
-      return false;
+    int reportedMaxInputChannelCount;
+    if (capabilities == null && capabilitiesSnapshot != null) {
+      if (!capabilitiesSnapshot.hasAudioCapabilities()) {
+        logNoSupport("channelCount.aCaps");
+        return false;
+      }
+      reportedMaxInputChannelCount = capabilitiesSnapshot.getMaxInputChannelCount();
+    } else {
+      if (capabilities == null) {
+        logNoSupport("channelCount.caps");
+        return false;
+      }
+      AudioCapabilities audioCapabilities = capabilities.getAudioCapabilities();
+      if (audioCapabilities == null) {
+        logNoSupport("channelCount.aCaps");
+        return false;
+      }
+      reportedMaxInputChannelCount = audioCapabilities.getMaxInputChannelCount();
     }
-    int maxInputChannelCount = adjustMaxInputChannelCount(name, mimeType,
-        audioCapabilities.getMaxInputChannelCount());
+    int maxInputChannelCount =
+        adjustMaxInputChannelCount(name, mimeType, reportedMaxInputChannelCount);
     if (maxInputChannelCount < channelCount) {
       logNoSupport("channelCount.support, " + channelCount);
       return false;
@@ -580,6 +678,44 @@ public final class MediaCodecInfo {
     return true;
   }
 
+  /**
+   * Returns a {@link CodecCapabilitiesSnapshot} of the decoder's capabilities, or {@code null} if
+   * they're not known.
+   */
+  @Nullable
+  /* package */ CodecCapabilitiesSnapshot getCapabilitiesSnapshot() {
+    if (capabilitiesSnapshot != null) {
+      return capabilitiesSnapshot;
+    }
+    return capabilities != null ? CodecCapabilitiesSnapshot.create(capabilities) : null;
+  }
+
+  /**
+   * Whether the decoder supports video with a given width, height and frame rate, according to a
+   * snapshot of its capabilities.
+   */
+  private boolean isVideoSizeAndRateSupported(
+      CodecCapabilitiesSnapshot capabilitiesSnapshot, int width, int height, double frameRate) {
+    if (!capabilitiesSnapshot.hasVideoCapabilities()) {
+      logNoSupport("sizeAndRate.vCaps");
+      return false;
+    }
+    // Don't ever fail due to alignment. See: https://github.com/google/ExoPlayer/issues/6551.
+    Point alignedSize = capabilitiesSnapshot.alignVideoSize(width, height);
+    if (!capabilitiesSnapshot.areSizeAndRateSupported(alignedSize.x, alignedSize.y, frameRate)) {
+      Point rotatedAlignedSize = capabilitiesSnapshot.alignVideoSize(height, width);
+      if (width >= height
+          || !needsRotatedVerticalResolutionWorkaround(name)
+          || !capabilitiesSnapshot.areSizeAndRateSupported(
+              rotatedAlignedSize.x, rotatedAlignedSize.y, frameRate)) {
+        logNoSupport("sizeAndRate.support, " + width + "x" + height + "x" + frameRate);
+        return false;
+      }
+      logAssumedSupport("sizeAndRate.rotated, " + width + "x" + height + "x" + frameRate);
+    }
+    return true;
+  }
+
   private void logNoSupport(String message) {
     Log.d(TAG, "NoSupport [" + message + "] [" + name + ", " + mimeType + "] ["
         + Util.DEVICE_DEBUG_INFO + "]");
@@ -687,25 +823,30 @@ public final class MediaCodecInfo {
   }
 
   /**
-   * Called on devices with {@link Util#SDK_INT} 23 and below, for VP9 decoders whose {@link
-   * CodecCapabilities} do not correctly report profile levels. The returned {@link
-   * CodecProfileLevel CodecProfileLevels} are estimated based on other data in the {@link
-   * CodecCapabilities}.
+   * Returns the maximum bitrate in the video capabilities of a decoder, or 0 if unknown.
    *
-   * @param capabilities The {@link CodecCapabilities} for a VP9 decoder, or {@code null} if not
-   *     known.
-   * @return The estimated {@link CodecProfileLevel CodecProfileLevels} for the decoder.
+   * @param capabilities The {@link CodecCapabilities} for a decoder, or {@code null} if not known.
    */
-  private static CodecProfileLevel[] estimateLegacyVp9ProfileLevels(
-      @Nullable CodecCapabilities capabilities) {
-    int maxBitrate = 0;
+  private static int getMaxBitrate(@Nullable CodecCapabilities capabilities) {
     if (capabilities != null) {
       @Nullable VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
       if (videoCapabilities != null) {
-        maxBitrate = videoCapabilities.getBitrateRange().getUpper();
+        return videoCapabilities.getBitrateRange().getUpper();
       }
     }
+    return 0;
+  }
 
+  /**
+   * Called on devices with {@link Util#SDK_INT} 23 and below, for VP9 decoders whose {@link
+   * CodecCapabilities} do not correctly report profile levels. The returned {@link
+   * CodecProfileLevel CodecProfileLevels} are estimated based on other data in the {@link
+   * CodecCapabilities}.
+   *
+   * @param maxBitrate The maximum bitrate supported by the decoder, or 0 if not known.
+   * @return The estimated {@link CodecProfileLevel CodecProfileLevels} for the decoder.
+   */
+  private static CodecProfileLevel[] estimateLegacyVp9ProfileLevels(int maxBitrate) {
     // Values taken from https://www.webmproject.org/vp9/levels.
     int level;
     if (maxBitrate >= 180_000_000) {
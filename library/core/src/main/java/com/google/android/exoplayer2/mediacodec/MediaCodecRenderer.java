@@ -203,6 +203,13 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   // pending output streams that have fewer frames than the codec latency.
   private static final int MAX_PENDING_OUTPUT_STREAM_OFFSET_COUNT = 10;
 
+  /**
+   * The maximum duration of media batched into a single buffer in bypass mode. The duration of each
+   * batch is also limited to half of the media buffered by the output, so that processing a batch
+   * never waits for more media than the output is holding.
+   */
+  private static final long MAX_BYPASS_BATCH_DURATION_US = 500_000;
+
   @Documented
   @Retention(RetentionPolicy.SOURCE)
   @IntDef({
@@ -1072,7 +1079,10 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       // TODO(b/154746451): Batching provokes frame drops in non offload.
       bypassBatchBuffer.setMaxSampleCount(1);
     } else {
-      bypassBatchBuffer.setMaxSampleCount(BatchBuffer.DEFAULT_MAX_SAMPLE_COUNT);
+      // Batches are limited by duration rather than by sample count (see
+      // updateBypassBatchMaxDuration), so that low bitrate formats don't batch more media than the
+      // output is holding.
+      bypassBatchBuffer.setMaxSampleCount(Integer.MAX_VALUE);
     }
     bypassEnabled = true;
   }
@@ -1554,6 +1564,17 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     // Do nothing.
   }
 
+  /**
+   * Returns the duration of media that's been output in bypass mode and is still buffered by the
+   * output, or {@link C#TIME_UNSET} if unknown. Used to limit the duration of the batches of
+   * samples processed in bypass mode.
+   *
+   * <p>The default implementation returns {@link C#TIME_UNSET}.
+   */
+  protected long getBypassBufferedDurationUs() {
+    return C.TIME_UNSET;
+  }
+
   /**
    * Called when an output buffer is successfully processed.
    *
@@ -2179,6 +2200,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
       return false;
     }
 
+    updateBypassBatchMaxDuration();
     if (bypassSampleBufferPending) {
       Assertions.checkState(bypassBatchBuffer.append(bypassSampleBuffer));
       bypassSampleBufferPending = false;
@@ -2212,6 +2234,20 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     return bypassBatchBuffer.hasSamples() || inputStreamEnded || bypassDrainAndReinitialize;
   }
 
+  /**
+   * Limits the duration of the next batch to half of the media buffered by the output. Batches are
+   * small when the output is running low, for example after a seek, and grow as the output fills
+   * up. If the buffered duration is unknown, each batch holds a single sample.
+   */
+  private void updateBypassBatchMaxDuration() {
+    long bufferedDurationUs = getBypassBufferedDurationUs();
+    long maxDurationUs =
+        bufferedDurationUs == C.TIME_UNSET
+            ? 0
+            : Util.constrainValue(bufferedDurationUs / 2, 0, MAX_BYPASS_BATCH_DURATION_US);
+    bypassBatchBuffer.setMaxDurationUs(maxDurationUs);
+  }
+
   private void bypassRead() throws ExoPlaybackException {
     checkState(!inputStreamEnded);
     FormatHolder formatHolder = getFormatHolder();
@@ -67,6 +67,10 @@ public final class MediaCodecUtil {
   @GuardedBy("MediaCodecUtil.class")
   private static final HashMap<CodecKey, List<MediaCodecInfo>> decoderInfosCache = new HashMap<>();
 
+  @GuardedBy("MediaCodecUtil.class")
+  @Nullable
+  private static PersistentDecoderInfoCache persistentDecoderInfoCache;
+
   // Codecs to constant mappings.
   // AVC.
   private static final String CODEC_ID_AVC1 = "avc1";
@@ -116,6 +120,22 @@ public final class MediaCodecUtil {
     decoderInfosCache.clear();
   }
 
+  /**
+   * Sets a {@link PersistentDecoderInfoCache} from which decoders are restored if they haven't yet
+   * been queried in this process, and to which queried decoders are persisted. Restoring decoders
+   * avoids querying {@link MediaCodecList}, which can be slow on some devices.
+   *
+   * <p>Should be called before any decoders are queried, for example in {@link
+   * android.app.Application#onCreate()}.
+   *
+   * @param persistentDecoderInfoCache The {@link PersistentDecoderInfoCache}, or {@code null} to
+   *     stop using a previously set cache.
+   */
+  public static synchronized void setPersistentDecoderInfoCache(
+      @Nullable PersistentDecoderInfoCache persistentDecoderInfoCache) {
+    MediaCodecUtil.persistentDecoderInfoCache = persistentDecoderInfoCache;
+  }
+
   /**
    * Returns information about a decoder that will only decrypt data, without decoding it.
    *
@@ -165,6 +185,15 @@ public final class MediaCodecUtil {
     if (cachedDecoderInfos != null) {
       return cachedDecoderInfos;
     }
+    if (persistentDecoderInfoCache != null) {
+      @Nullable
+      List<MediaCodecInfo> persistedDecoderInfos =
+          persistentDecoderInfoCache.get(mimeType, secure, tunneling);
+      if (persistedDecoderInfos != null) {
+        decoderInfosCache.put(key, persistedDecoderInfos);
+        return persistedDecoderInfos;
+      }
+    }
     MediaCodecListCompat mediaCodecList =
         Util.SDK_INT >= 21
             ? new MediaCodecListCompatV21(secure, tunneling)
@@ -183,6 +212,9 @@ public final class MediaCodecUtil {
     applyWorkarounds(mimeType, decoderInfos);
     List<MediaCodecInfo> unmodifiableDecoderInfos = Collections.unmodifiableList(decoderInfos);
     decoderInfosCache.put(key, unmodifiableDecoderInfos);
+    if (persistentDecoderInfoCache != null) {
+      persistentDecoderInfoCache.put(mimeType, secure, tunneling, unmodifiableDecoderInfos);
+    }
     return unmodifiableDecoderInfos;
   }
 
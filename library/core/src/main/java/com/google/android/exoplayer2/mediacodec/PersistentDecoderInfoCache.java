@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import android.os.Build;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Persists the decoders returned by {@link MediaCodecUtil#getDecoderInfos(String, boolean,
+ * boolean)} to a file, so that they can be restored in later processes without querying {@link
+ * android.media.MediaCodecList}.
+ *
+ * <p>Querying the available decoders can take hundreds of milliseconds on some devices, and is
+ * otherwise repeated in every process. An instance is enabled by passing it to {@link
+ * MediaCodecUtil#setPersistentDecoderInfoCache(PersistentDecoderInfoCache)}, after which it's used
+ * by the default {@link MediaCodecSelector}.
+ *
+ * <p>The persisted decoders are discarded if the build fingerprint of the device or the version of
+ * the library changes, so the cache is invalidated automatically when the OS is updated.
+ *
+ * <p>The capabilities of restored decoders are described by a snapshot, and {@link
+ * MediaCodecInfo#capabilities} is {@code null} for restored instances. Video frame rate support is
+ * recorded for a set of standard resolutions, so restored decoders may be more conservative than
+ * the platform when evaluating whether a video size and frame rate are supported.
+ *
+ * <p>Persisted decoders are written to the file on an {@link Executor}, so that the file isn't
+ * written while {@link MediaCodecUtil} holds its lock. Decoders that are persisted while a write
+ * is pending are written together with it.
+ */
+public final class PersistentDecoderInfoCache {
+
+  private static final String TAG = "PersistentDecoderInfoCache";
+
+  private static final int VERSION = 2;
+
+  private final AtomicFile atomicFile;
+  private final String buildFingerprint;
+  private final Executor writeExecutor;
+  private final Object writeLock;
+
+  @GuardedBy("this")
+  private final HashMap<String, List<MediaCodecInfo>> decoderInfos;
+
+  @GuardedBy("this")
+  private boolean loaded;
+
+  @GuardedBy("this")
+  private boolean writePending;
+
+  /**
+   * Creates an instance that writes the file on a dedicated thread.
+   *
+   * @param file The file in which to persist the decoders. The file is created if it doesn't
+   *     exist. It should be in a directory that's private to the application, such as a
+   *     subdirectory of {@link android.content.Context#getCacheDir()}.
+   */
+  public PersistentDecoderInfoCache(File file) {
+    this(file, Util.newSingleThreadExecutor(TAG));
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param file The file in which to persist the decoders. The file is created if it doesn't
+   *     exist. It should be in a directory that's private to the application, such as a
+   *     subdirectory of {@link android.content.Context#getCacheDir()}.
+   * @param writeExecutor The {@link Executor} on which the file is written.
+   */
+  public PersistentDecoderInfoCache(File file, Executor writeExecutor) {
+    this.writeExecutor = writeExecutor;
+    atomicFile = new AtomicFile(file);
+    buildFingerprint = Build.FINGERPRINT;
+    decoderInfos = new HashMap<>();
+    writeLock = new Object();
+  }
+
+  /**
+   * Returns the persisted decoders for the specified parameters, or {@code null} if none were
+   * persisted. The decoders are loaded from the file the first time this method is called.
+   *
+   * @param mimeType The MIME type.
+   * @param secure Whether the decoders are required to support secure decryption.
+   * @param tunneling Whether the decoders are required to support tunneling.
+   * @return An unmodifiable list of the persisted decoders, or {@code null}.
+   */
+  @Nullable
+  public synchronized List<MediaCodecInfo> get(String mimeType, boolean secure, boolean tunneling) {
+    maybeLoad();
+    return decoderInfos.get(getKey(mimeType, secure, tunneling));
+  }
+
+  /**
+   * Persists the decoders for the specified parameters. Decoders whose capabilities aren't known
+   * are not persisted, in which case the query will be repeated in later processes.
+   *
+   * @param mimeType The MIME type.
+   * @param secure Whether the decoders are required to support secure decryption.
+   * @param tunneling Whether the decoders are required to support tunneling.
+   * @param decoderInfos The decoders, in the order given by {@link MediaCodecUtil}.
+   */
+  public synchronized void put(
+      String mimeType, boolean secure, boolean tunneling, List<MediaCodecInfo> decoderInfos) {
+    maybeLoad();
+    ArrayList<MediaCodecInfo> persistedDecoderInfos = new ArrayList<>(decoderInfos.size());
+    for (int i = 0; i < decoderInfos.size(); i++) {
+      MediaCodecInfo decoderInfo = decoderInfos.get(i);
+      @Nullable
+      CodecCapabilitiesSnapshot capabilitiesSnapshot = decoderInfo.getCapabilitiesSnapshot();
+      if (capabilitiesSnapshot == null) {
+        return;
+      }
+      persistedDecoderInfos.add(
+          MediaCodecInfo.newInstanceFromSnapshot(
+              decoderInfo.name,
+              decoderInfo.mimeType,
+              decoderInfo.codecMimeType,
+              capabilitiesSnapshot,
+              decoderInfo.hardwareAccelerated,
+              decoderInfo.softwareOnly,
+              decoderInfo.vendor,
+              decoderInfo.adaptive,
+              decoderInfo.tunneling,
+              decoderInfo.secure));
+    }
+    this.decoderInfos.put(
+        getKey(mimeType, secure, tunneling), Collections.unmodifiableList(persistedDecoderInfos));
+    if (!writePending) {
+      writePending = true;
+      writeExecutor.execute(this::writePendingDecoderInfos);
+    }
+  }
+
+  /** Removes all persisted decoders. */
+  public void clear() {
+    synchronized (writeLock) {
+      synchronized (this) {
+        decoderInfos.clear();
+        loaded = true;
+        atomicFile.delete();
+      }
+    }
+  }
+
+  @GuardedBy("this")
+  private void maybeLoad() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (!atomicFile.exists()) {
+      return;
+    }
+    if (!readFile()) {
+      decoderInfos.clear();
+      atomicFile.delete();
+    }
+  }
+
+  @GuardedBy("this")
+  private boolean readFile() {
+    @Nullable DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+      if (input.readInt() != VERSION
+          || input.readInt() != ExoPlayerLibraryInfo.VERSION_INT
+          || !buildFingerprint.equals(input.readUTF())) {
+        // The decoders were persisted by a different build of the OS or library.
+        return false;
+      }
+      int keyCount = input.readInt();
+      for (int i = 0; i < keyCount; i++) {
+        String key = input.readUTF();
+        int decoderCount = input.readInt();
+        if (decoderCount < 0) {
+          return false;
+        }
+        ArrayList<MediaCodecInfo> decoderInfosForKey = new ArrayList<>(decoderCount);
+        for (int j = 0; j < decoderCount; j++) {
+          decoderInfosForKey.add(readDecoderInfo(input));
+        }
+        decoderInfos.put(key, Collections.unmodifiableList(decoderInfosForKey));
+      }
+      return input.read() == -1;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to load persisted decoders", e);
+      return false;
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  private void writePendingDecoderInfos() {
+    synchronized (writeLock) {
+      HashMap<String, List<MediaCodecInfo>> decoderInfos;
+      synchronized (this) {
+        writePending = false;
+        decoderInfos = new HashMap<>(this.decoderInfos);
+      }
+      try {
+        writeFile(decoderInfos);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to persist decoders", e);
+      }
+    }
+  }
+
+  @GuardedBy("writeLock")
+  private void writeFile(Map<String, List<MediaCodecInfo>> decoderInfos) throws IOException {
+    @Nullable DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(atomicFile.startWrite()));
+      output.writeInt(VERSION);
+      output.writeInt(ExoPlayerLibraryInfo.VERSION_INT);
+      output.writeUTF(buildFingerprint);
+      output.writeInt(decoderInfos.size());
+      for (Map.Entry<String, List<MediaCodecInfo>> entry : decoderInfos.entrySet()) {
+        List<MediaCodecInfo> decoderInfosForKey = entry.getValue();
+        output.writeUTF(entry.getKey());
+        output.writeInt(decoderInfosForKey.size());
+        for (int i = 0; i < decoderInfosForKey.size(); i++) {
+          writeDecoderInfo(decoderInfosForKey.get(i), output);
+        }
+      }
+      atomicFile.endWrite(output);
+      output = null;
+    } finally {
+      Util.closeQuietly(output);
+    }
+  }
+
+  private static MediaCodecInfo readDecoderInfo(DataInputStream input) throws IOException {
+    String name = input.readUTF();
+    String mimeType = input.readUTF();
+    String codecMimeType = input.readUTF();
+    boolean hardwareAccelerated = input.readBoolean();
+    boolean softwareOnly = input.readBoolean();
+    boolean vendor = input.readBoolean();
+    boolean adaptive = input.readBoolean();
+    boolean tunneling = input.readBoolean();
+    boolean secure = input.readBoolean();
+    CodecCapabilitiesSnapshot capabilitiesSnapshot = CodecCapabilitiesSnapshot.readFrom(input);
+    return MediaCodecInfo.newInstanceFromSnapshot(
+        name,
+        mimeType,
+        codecMimeType,
+        capabilitiesSnapshot,
+        hardwareAccelerated,
+        softwareOnly,
+        vendor,
+        adaptive,
+        tunneling,
+        secure);
+  }
+
+  private static void writeDecoderInfo(MediaCodecInfo decoderInfo, DataOutputStream output)
+      throws IOException {
+    output.writeUTF(decoderInfo.name);
+    output.writeUTF(decoderInfo.mimeType);
+    output.writeUTF(decoderInfo.codecMimeType);
+    output.writeBoolean(decoderInfo.hardwareAccelerated);
+    output.writeBoolean(decoderInfo.softwareOnly);
+    output.writeBoolean(decoderInfo.vendor);
+    output.writeBoolean(decoderInfo.adaptive);
+    output.writeBoolean(decoderInfo.tunneling);
+    output.writeBoolean(decoderInfo.secure);
+    Util.castNonNull(decoderInfo.getCapabilitiesSnapshot()).writeTo(output);
+  }
+
+  private static String getKey(String mimeType, boolean secure, boolean tunneling) {
+    return mimeType + "/" + secure + "/" + tunneling;
+  }
+}
@@ -89,10 +89,6 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
   }
 
   private Downloader createDownloader(DownloadRequest request, @C.ContentType int contentType) {
-    @Nullable Constructor<? extends Downloader> constructor = CONSTRUCTORS.get(contentType);
-    if (constructor == null) {
-      throw new IllegalStateException("Module missing for content type " + contentType);
-    }
     MediaItem mediaItem =
         new MediaItem.Builder()
             .setUri(request.uri)
@@ -100,6 +96,23 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
             .setCustomCacheKey(request.customCacheKey)
             .setDrmKeySetId(request.keySetId)
             .build();
+    return createSegmentDownloader(mediaItem, contentType);
+  }
+
+  /**
+   * Creates a downloader for a DASH, HLS or SmoothStreaming {@link MediaItem}.
+   *
+   * @param mediaItem The {@link MediaItem} to download.
+   * @param contentType The {@link C.ContentType} of the item.
+   * @return The created downloader.
+   * @throws IllegalStateException If the library module for the content type is missing.
+   */
+  /* package */ Downloader createSegmentDownloader(
+      MediaItem mediaItem, @C.ContentType int contentType) {
+    @Nullable Constructor<? extends Downloader> constructor = CONSTRUCTORS.get(contentType);
+    if (constructor == null) {
+      throw new IllegalStateException("Module missing for content type " + contentType);
+    }
     try {
       return constructor.newInstance(mediaItem, cacheDataSourceFactory, executor);
     } catch (Exception e) {
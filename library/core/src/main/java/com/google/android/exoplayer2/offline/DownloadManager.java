@@ -147,6 +147,8 @@ public final class DownloadManager {
   public static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 3;
   /** The default minimum number of times a download must be retried before failing. */
   public static final int DEFAULT_MIN_RETRY_COUNT = 5;
+  /** The default priority of a download. */
+  public static final int DEFAULT_DOWNLOAD_PRIORITY = 0;
   /** The default requirement is that the device has network connectivity. */
   public static final Requirements DEFAULT_REQUIREMENTS = new Requirements(Requirements.NETWORK);
 
@@ -169,6 +171,7 @@ public final class DownloadManager {
   private static final int MSG_CONTENT_LENGTH_CHANGED = 10;
   private static final int MSG_UPDATE_PROGRESS = 11;
   private static final int MSG_RELEASE = 12;
+  private static final int MSG_SET_DOWNLOAD_PRIORITY = 13;
 
   private static final String TAG = "DownloadManager";
 
@@ -416,6 +419,27 @@ public final class DownloadManager {
         .sendToTarget();
   }
 
+  /**
+   * Sets the priority of a download. When more downloads can run than {@link
+   * #getMaxParallelDownloads() maxParallelDownloads} allows, downloads with higher priorities are
+   * started first, and a running download is moved back to {@link Download#STATE_QUEUED} if a
+   * download with a higher priority is waiting to start. Downloads with equal priorities are started
+   * in the order in which they were added.
+   *
+   * <p>Priorities are held in memory only. They are not persisted to the {@link DownloadIndex}, and
+   * so need to be set again if the manager is recreated.
+   *
+   * @param id The content id of the download.
+   * @param priority The priority of the download. Higher values indicate higher priorities. The
+   *     default is {@link #DEFAULT_DOWNLOAD_PRIORITY}.
+   */
+  public void setDownloadPriority(String id, int priority) {
+    pendingMessages++;
+    internalHandler
+        .obtainMessage(MSG_SET_DOWNLOAD_PRIORITY, priority, /* unused */ 0, id)
+        .sendToTarget();
+  }
+
   /** Returns the used {@link DownloadIndex}. */
   public DownloadIndex getDownloadIndex() {
     return downloadIndex;
@@ -701,6 +725,7 @@ public final class DownloadManager {
     private final Handler mainHandler;
     private final ArrayList<Download> downloads;
     private final HashMap<String, Task> activeTasks;
+    private final HashMap<String, Integer> downloadPriorities;
 
     @Requirements.RequirementFlags private int notMetRequirements;
     private boolean downloadsPaused;
@@ -726,6 +751,7 @@ public final class DownloadManager {
       this.downloadsPaused = downloadsPaused;
       downloads = new ArrayList<>();
       activeTasks = new HashMap<>();
+      downloadPriorities = new HashMap<>();
     }
 
     @Override
@@ -757,6 +783,11 @@ public final class DownloadManager {
           int minRetryCount = message.arg1;
           setMinRetryCount(minRetryCount);
           break;
+        case MSG_SET_DOWNLOAD_PRIORITY:
+          id = (String) message.obj;
+          int priority = message.arg1;
+          setDownloadPriority(id, priority);
+          break;
         case MSG_ADD_DOWNLOAD:
           DownloadRequest request = (DownloadRequest) message.obj;
           stopReason = message.arg1;
@@ -885,6 +916,15 @@ public final class DownloadManager {
       this.minRetryCount = minRetryCount;
     }
 
+    private void setDownloadPriority(String id, int priority) {
+      if (priority == DEFAULT_DOWNLOAD_PRIORITY) {
+        downloadPriorities.remove(id);
+      } else {
+        downloadPriorities.put(id, priority);
+      }
+      syncTasks();
+    }
+
     private void addDownload(DownloadRequest request, int stopReason) {
       @Nullable Download download = getDownload(request.id, /* loadFromIndex= */ true);
       long nowMs = System.currentTimeMillis();
@@ -956,6 +996,7 @@ public final class DownloadManager {
         Log.e(TAG, "Failed to update index.", e);
       }
       downloads.clear();
+      downloadPriorities.clear();
       thread.quit();
       synchronized (this) {
         released = true;
@@ -966,9 +1007,14 @@ public final class DownloadManager {
     // Start and cancel tasks based on the current download and manager states.
 
     private void syncTasks() {
+      // Downloads are visited in priority order. Within a priority, downloads that have a download
+      // task are visited first, so that a waiting download can only displace running downloads that
+      // have a strictly lower priority.
+      ArrayList<Download> downloadsInPriorityOrder = new ArrayList<>(downloads);
+      Collections.sort(downloadsInPriorityOrder, this::compareSchedulingOrder);
       int accumulatingDownloadTaskCount = 0;
-      for (int i = 0; i < downloads.size(); i++) {
-        Download download = downloads.get(i);
+      for (int i = 0; i < downloadsInPriorityOrder.size(); i++) {
+        Download download = downloadsInPriorityOrder.get(i);
         @Nullable Task activeTask = activeTasks.get(download.request.id);
         switch (download.state) {
           case STATE_STOPPED:
@@ -976,6 +1022,12 @@ public final class DownloadManager {
             break;
           case STATE_QUEUED:
             activeTask = syncQueuedDownload(activeTask, download);
+            if (activeTask == null
+                && canDownloadsRun()
+                && accumulatingDownloadTaskCount < maxParallelDownloads) {
+              // The download is waiting for a running download with a lower priority to stop.
+              accumulatingDownloadTaskCount++;
+            }
             break;
           case STATE_DOWNLOADING:
             Assertions.checkNotNull(activeTask);
@@ -1136,6 +1188,7 @@ public final class DownloadManager {
     }
 
     private void onDownloadTaskStopped(Download download, @Nullable Exception finalException) {
+      downloadPriorities.remove(download.request.id);
       download =
           new Download(
               download.request,
@@ -1169,6 +1222,7 @@ public final class DownloadManager {
       } else {
         int removeIndex = getDownloadIndex(download.request.id);
         downloads.remove(removeIndex);
+        downloadPriorities.remove(download.request.id);
         try {
           downloadIndex.removeDownload(download.request.id);
         } catch (IOException e) {
@@ -1206,6 +1260,30 @@ public final class DownloadManager {
       return !downloadsPaused && notMetRequirements == 0;
     }
 
+    private int getDownloadPriority(Download download) {
+      @Nullable Integer priority = downloadPriorities.get(download.request.id);
+      return priority != null ? priority : DEFAULT_DOWNLOAD_PRIORITY;
+    }
+
+    private boolean hasDownloadTask(Download download) {
+      @Nullable Task activeTask = activeTasks.get(download.request.id);
+      return activeTask != null && !activeTask.isRemove;
+    }
+
+    private int compareSchedulingOrder(Download first, Download second) {
+      int firstPriority = getDownloadPriority(first);
+      int secondPriority = getDownloadPriority(second);
+      if (firstPriority != secondPriority) {
+        return firstPriority > secondPriority ? -1 : 1;
+      }
+      boolean firstHasDownloadTask = hasDownloadTask(first);
+      if (firstHasDownloadTask != hasDownloadTask(second)) {
+        return firstHasDownloadTask ? -1 : 1;
+      }
+      // Collections.sort is stable, so downloads that compare equal stay in start time order.
+      return 0;
+    }
+
     private Download putDownloadWithState(
         Download download, @Download.State int state, int stopReason) {
       // Downloads in terminal states shouldn't be in the downloads list.
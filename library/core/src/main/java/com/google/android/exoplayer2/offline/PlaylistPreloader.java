@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.android.exoplayer2.Player.EVENT_MEDIA_ITEM_TRANSITION;
+import static com.google.android.exoplayer2.Player.EVENT_REPEAT_MODE_CHANGED;
+import static com.google.android.exoplayer2.Player.EVENT_SHUFFLE_MODE_ENABLED_CHANGED;
+import static com.google.android.exoplayer2.Player.EVENT_TIMELINE_CHANGED;
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Preloads the start of the media items that follow the current item of a {@link Player} into a
+ * {@link Cache}, so that transitions to them don't have to wait for their first segments to load.
+ *
+ * <p>For DASH, HLS and SmoothStreaming items the manifest is loaded and the segments of the first
+ * {@code preloadDurationMs} are written to the cache. The corresponding library modules must be
+ * built into the application. For progressive items the first {@code progressivePreloadLength}
+ * bytes are written to the cache.
+ *
+ * <p>The tracks that the player will select aren't known before an item is prepared, so the
+ * segments of all tracks of an adaptive item are preloaded, unless the item specifies {@link
+ * MediaItem.Builder#setStreamKeys(List) stream keys}. In that case only the specified streams are
+ * preloaded. Stream keys for the tracks that would be selected can be obtained with a {@link
+ * DownloadHelper}.
+ *
+ * <p>The player's media sources must read through a {@link CacheDataSource} that uses the same
+ * {@link Cache} for the preloaded data to be used. Preloading is restarted whenever the upcoming
+ * items change, for example because the playlist was modified, the player transitioned to another
+ * item, or the repeat or shuffle mode changed.
+ *
+ * <p>Preloading uses the {@link PriorityTaskManager} of the {@link CacheDataSource.Factory}, if
+ * any, with priority {@link C#PRIORITY_DOWNLOAD}. If the same {@link PriorityTaskManager} is set
+ * on the player, preloading only proceeds while the player isn't loading.
+ */
+public final class PlaylistPreloader implements Player.EventListener {
+
+  /** The default maximum number of upcoming items that are preloaded. */
+  public static final int DEFAULT_MAX_PRELOAD_ITEM_COUNT = 1;
+  /** The default duration to preload from the start of each DASH, HLS or SmoothStreaming item. */
+  public static final long DEFAULT_PRELOAD_DURATION_MS = 10_000;
+  /** The default number of bytes to preload from the start of each progressive item. */
+  public static final long DEFAULT_PROGRESSIVE_PRELOAD_LENGTH = 1024 * 1024;
+
+  private static final String TAG = "PlaylistPreloader";
+
+  private final Player player;
+  private final CacheDataSource.Factory cacheDataSourceFactory;
+  private final DefaultDownloaderFactory downloaderFactory;
+  private final int maxPreloadItemCount;
+  private final long preloadDurationMs;
+  private final long progressivePreloadLength;
+  private final Timeline.Window window;
+
+  private List<MediaItem> preloadMediaItems;
+  @Nullable private PreloadTask preloadTask;
+  private boolean started;
+
+  /**
+   * Creates an instance that uses {@link #DEFAULT_MAX_PRELOAD_ITEM_COUNT}, {@link
+   * #DEFAULT_PRELOAD_DURATION_MS} and {@link #DEFAULT_PROGRESSIVE_PRELOAD_LENGTH}.
+   *
+   * @param player The {@link Player} whose upcoming items should be preloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     items will be preloaded.
+   */
+  public PlaylistPreloader(Player player, CacheDataSource.Factory cacheDataSourceFactory) {
+    this(
+        player,
+        cacheDataSourceFactory,
+        DEFAULT_MAX_PRELOAD_ITEM_COUNT,
+        DEFAULT_PRELOAD_DURATION_MS,
+        DEFAULT_PROGRESSIVE_PRELOAD_LENGTH);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param player The {@link Player} whose upcoming items should be preloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     items will be preloaded.
+   * @param maxPreloadItemCount The maximum number of upcoming items that are preloaded.
+   * @param preloadDurationMs The duration to preload from the start of each DASH, HLS or
+   *     SmoothStreaming item, in milliseconds.
+   * @param progressivePreloadLength The number of bytes to preload from the start of each
+   *     progressive item.
+   */
+  public PlaylistPreloader(
+      Player player,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      int maxPreloadItemCount,
+      long preloadDurationMs,
+      long progressivePreloadLength) {
+    checkArgument(maxPreloadItemCount > 0);
+    checkArgument(preloadDurationMs > 0);
+    checkArgument(progressivePreloadLength > 0);
+    this.player = player;
+    this.cacheDataSourceFactory = cacheDataSourceFactory;
+    this.maxPreloadItemCount = maxPreloadItemCount;
+    this.preloadDurationMs = preloadDurationMs;
+    this.progressivePreloadLength = progressivePreloadLength;
+    downloaderFactory =
+        new DefaultDownloaderFactory(cacheDataSourceFactory, /* executor= */ Runnable::run);
+    window = new Timeline.Window();
+    preloadMediaItems = Collections.emptyList();
+  }
+
+  /**
+   * Starts preloading the upcoming items of the player. Must be called on the player's application
+   * thread.
+   */
+  public void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+    player.addListener(this);
+    updatePreloading();
+  }
+
+  /**
+   * Stops preloading and cancels any preloading that's in progress. Must be called on the player's
+   * application thread.
+   */
+  public void stop() {
+    if (!started) {
+      return;
+    }
+    started = false;
+    player.removeListener(this);
+    cancelPreloading();
+    preloadMediaItems = Collections.emptyList();
+  }
+
+  // Player.EventListener implementation.
+
+  @Override
+  public void onEvents(Player player, Player.Events events) {
+    if (events.containsAny(
+        EVENT_TIMELINE_CHANGED,
+        EVENT_MEDIA_ITEM_TRANSITION,
+        EVENT_REPEAT_MODE_CHANGED,
+        EVENT_SHUFFLE_MODE_ENABLED_CHANGED)) {
+      updatePreloading();
+    }
+  }
+
+  // Internal methods.
+
+  private void updatePreloading() {
+    List<MediaItem> mediaItems = getUpcomingMediaItems();
+    if (mediaItems.equals(preloadMediaItems)) {
+      return;
+    }
+    cancelPreloading();
+    preloadMediaItems = mediaItems;
+    if (!mediaItems.isEmpty()) {
+      preloadTask = new PreloadTask(mediaItems);
+      preloadTask.start();
+    }
+  }
+
+  private void cancelPreloading() {
+    if (preloadTask != null) {
+      preloadTask.cancel();
+      preloadTask = null;
+    }
+  }
+
+  private List<MediaItem> getUpcomingMediaItems() {
+    Timeline timeline = player.getCurrentTimeline();
+    if (timeline.isEmpty()) {
+      return Collections.emptyList();
+    }
+    // The current item is being played, so repeating it doesn't make it an upcoming item.
+    @Player.RepeatMode int repeatMode = player.getRepeatMode();
+    if (repeatMode == Player.REPEAT_MODE_ONE) {
+      repeatMode = Player.REPEAT_MODE_OFF;
+    }
+    boolean shuffleModeEnabled = player.getShuffleModeEnabled();
+    int currentWindowIndex = player.getCurrentWindowIndex();
+    List<MediaItem> mediaItems = new ArrayList<>();
+    int windowIndex = currentWindowIndex;
+    while (mediaItems.size() < maxPreloadItemCount) {
+      windowIndex = timeline.getNextWindowIndex(windowIndex, repeatMode, shuffleModeEnabled);
+      if (windowIndex == C.INDEX_UNSET || windowIndex == currentWindowIndex) {
+        break;
+      }
+      MediaItem mediaItem = timeline.getWindow(windowIndex, window).mediaItem;
+      if (mediaItem.playbackProperties != null && !mediaItems.contains(mediaItem)) {
+        mediaItems.add(mediaItem);
+      }
+    }
+    return mediaItems;
+  }
+
+  private Downloader createDownloader(MediaItem mediaItem) {
+    MediaItem.PlaybackProperties playbackProperties = checkNotNull(mediaItem.playbackProperties);
+    @C.ContentType
+    int contentType =
+        Util.inferContentTypeForUriAndMimeType(playbackProperties.uri, playbackProperties.mimeType);
+    if (contentType == C.TYPE_OTHER) {
+      return new ProgressiveDownloader(
+          mediaItem, cacheDataSourceFactory, Runnable::run, progressivePreloadLength);
+    }
+    long startPositionMs = mediaItem.clippingProperties.startPositionMs;
+    long endPositionMs = startPositionMs + preloadDurationMs;
+    if (mediaItem.clippingProperties.endPositionMs != C.TIME_END_OF_SOURCE) {
+      endPositionMs = Math.min(endPositionMs, mediaItem.clippingProperties.endPositionMs);
+    }
+    return downloaderFactory.createSegmentDownloader(
+        mediaItem.buildUpon().setClipEndPositionMs(endPositionMs).build(), contentType);
+  }
+
+  private final class PreloadTask extends Thread {
+
+    private final List<MediaItem> mediaItems;
+
+    @Nullable private volatile Downloader downloader;
+    private volatile boolean isCanceled;
+
+    public PreloadTask(List<MediaItem> mediaItems) {
+      super("ExoPlayer:PlaylistPreloader");
+      this.mediaItems = mediaItems;
+    }
+
+    public void cancel() {
+      isCanceled = true;
+      @Nullable Downloader downloader = this.downloader;
+      if (downloader != null) {
+        downloader.cancel();
+      }
+      interrupt();
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < mediaItems.size() && !isCanceled; i++) {
+        MediaItem mediaItem = mediaItems.get(i);
+        try {
+          Downloader downloader = createDownloader(mediaItem);
+          this.downloader = downloader;
+          if (isCanceled) {
+            // The downloader was created after cancel() read the previous one.
+            downloader.cancel();
+            return;
+          }
+          downloader.download(/* progressListener= */ null);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (IOException | RuntimeException e) {
+          // Preloading is best effort, so move on to the next item.
+          if (!isCanceled) {
+            Log.w(TAG, "Failed to preload: " + mediaItem.mediaId, e);
+          }
+        }
+      }
+    }
+  }
+}
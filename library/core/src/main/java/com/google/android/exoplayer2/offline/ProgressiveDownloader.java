@@ -93,12 +93,32 @@ public final class ProgressiveDownloader implements Downloader {
    */
   public ProgressiveDownloader(
       MediaItem mediaItem, CacheDataSource.Factory cacheDataSourceFactory, Executor executor) {
+    this(mediaItem, cacheDataSourceFactory, executor, /* length= */ C.LENGTH_UNSET);
+  }
+
+  /**
+   * Creates a new instance that downloads at most {@code length} bytes from the start of the
+   * stream.
+   *
+   * @param mediaItem The media item with a uri to the stream to be downloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     download will be written.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded.
+   * @param length The maximum number of bytes to download, or {@link C#LENGTH_UNSET} to download
+   *     the whole stream.
+   */
+  /* package */ ProgressiveDownloader(
+      MediaItem mediaItem,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      long length) {
     this.executor = Assertions.checkNotNull(executor);
     Assertions.checkNotNull(mediaItem.playbackProperties);
     dataSpec =
         new DataSpec.Builder()
             .setUri(mediaItem.playbackProperties.uri)
             .setKey(mediaItem.playbackProperties.customCacheKey)
+            .setLength(length)
             .setFlags(DataSpec.FLAG_ALLOW_CACHE_FRAGMENTATION)
             .build();
     dataSource = cacheDataSourceFactory.createDataSourceForDownloading();
@@ -108,7 +128,7 @@ public final class ProgressiveDownloader implements Downloader {
         new CacheWriter(
             dataSource,
             dataSpec,
-            /* allowShortContent= */ false,
+            /* allowShortContent= */ length != C.LENGTH_UNSET,
             /* temporaryBuffer= */ null,
             progressListener);
     priorityTaskManager = cacheDataSourceFactory.getUpstreamPriorityTaskManager();
@@ -78,6 +78,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   private final DataSpec manifestDataSpec;
   private final Parser<M> manifestParser;
   private final ArrayList<StreamKey> streamKeys;
+  private final long endPositionUs;
   private final CacheDataSource.Factory cacheDataSourceFactory;
   private final Cache cache;
   private final CacheKeyFactory cacheKeyFactory;
@@ -97,7 +98,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   private volatile boolean isCanceled;
 
   /**
-   * @param mediaItem The {@link MediaItem} to be downloaded.
+   * @param mediaItem The {@link MediaItem} to be downloaded. If the item has a {@link
+   *     MediaItem.ClippingProperties#endPositionMs clipping end position}, segments that start at or
+   *     after it are not downloaded.
    * @param manifestParser A parser for manifests belonging to the media to be downloaded.
    * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
    *     download will be written.
@@ -114,6 +117,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     this.manifestDataSpec = getCompressibleDataSpec(mediaItem.playbackProperties.uri);
     this.manifestParser = manifestParser;
     this.streamKeys = new ArrayList<>(mediaItem.playbackProperties.streamKeys);
+    long endPositionMs = mediaItem.clippingProperties.endPositionMs;
+    this.endPositionUs =
+        endPositionMs == C.TIME_END_OF_SOURCE ? C.TIME_UNSET : C.msToUs(endPositionMs);
     this.cacheDataSourceFactory = cacheDataSourceFactory;
     this.executor = executor;
     cache = Assertions.checkNotNull(cacheDataSourceFactory.getCache());
@@ -142,6 +148,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       // Sort the segments so that we download media in the right order from the start of the
       // content, and merge segments where possible to minimize the number of server round trips.
       Collections.sort(segments);
+      if (endPositionUs != C.TIME_UNSET) {
+        removeSegmentsStartingAtOrAfter(segments, endPositionUs);
+      }
       mergeSegments(segments, cacheKeyFactory);
 
       // Scan the segments, removing any that are fully downloaded.
@@ -413,6 +422,15 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
   }
 
+  /** Removes segments starting at or after {@code timeUs} from a list sorted by start time. */
+  private static void removeSegmentsStartingAtOrAfter(List<Segment> segments, long timeUs) {
+    int fromIndex = segments.size();
+    while (fromIndex > 0 && segments.get(fromIndex - 1).startTimeUs >= timeUs) {
+      fromIndex--;
+    }
+    Util.removeRange(segments, fromIndex, /* toIndex= */ segments.size());
+  }
+
   private static void mergeSegments(List<Segment> segments, CacheKeyFactory keyFactory) {
     HashMap<String, Integer> lastIndexByCacheKey = new HashMap<>();
     int nextOutIndex = 0;
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import java.io.IOException;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A {@link MediaPeriod} that can be prepared and start loading before it's handed to a player.
+ *
+ * <p>The period is preloaded by calling {@link #prepare(Callback, long)} and, once prepared, {@link
+ * #selectTracksForPreloading(ExoTrackSelection[], long)}. When the player then calls {@link
+ * #prepare(Callback, long)} its callback replaces the preloading one, and it's notified
+ * immediately if preparation has already completed. If the player selects the same tracks as were
+ * selected for preloading, the preloaded {@link SampleStream SampleStreams} and the data they've
+ * buffered are reused, and the wrapped period switches to the player's {@link ExoTrackSelection
+ * ExoTrackSelections}. The selections made for preloading are disabled once they're no longer
+ * used.
+ */
+/* package */ final class PreloadMediaPeriod implements MediaPeriod, MediaPeriod.Callback {
+
+  /** The wrapped {@link MediaPeriod}. */
+  public final MediaPeriod mediaPeriod;
+
+  @Nullable private Callback callback;
+  private boolean prepareStarted;
+  private boolean prepared;
+  @Nullable private @NullableType ExoTrackSelection[] preloadSelections;
+  @Nullable private @NullableType SampleStream[] preloadStreams;
+  private long preloadTrackSelectionPositionUs;
+
+  /**
+   * Creates an instance.
+   *
+   * @param mediaPeriod The {@link MediaPeriod} to wrap.
+   */
+  public PreloadMediaPeriod(MediaPeriod mediaPeriod) {
+    this.mediaPeriod = mediaPeriod;
+  }
+
+  /** Returns whether the period has been prepared. */
+  public boolean isPrepared() {
+    return prepared;
+  }
+
+  /** Returns whether tracks have been selected for preloading, and not yet handed over. */
+  public boolean hasPreloadSelections() {
+    return preloadSelections != null;
+  }
+
+  /**
+   * Selects tracks to load ahead of playback. Must only be called once the period is prepared, and
+   * before the player selects tracks.
+   *
+   * @param selections The track selections, one per renderer.
+   * @param positionUs The position from which to preload, in microseconds.
+   * @return The actual position from which data will be loaded, in microseconds.
+   */
+  public long selectTracksForPreloading(
+      @NullableType ExoTrackSelection[] selections, long positionUs) {
+    checkState(prepared && preloadSelections == null);
+    for (ExoTrackSelection selection : selections) {
+      if (selection != null) {
+        selection.enable();
+      }
+    }
+    @NullableType SampleStream[] streams = new SampleStream[selections.length];
+    preloadTrackSelectionPositionUs =
+        mediaPeriod.selectTracks(
+            selections,
+            /* mayRetainStreamFlags= */ new boolean[selections.length],
+            streams,
+            /* streamResetFlags= */ new boolean[selections.length],
+            positionUs);
+    preloadSelections = selections;
+    preloadStreams = streams;
+    return preloadTrackSelectionPositionUs;
+  }
+
+  /**
+   * Disables the track selections made for preloading and releases their sample streams, if they
+   * haven't been handed to the player.
+   */
+  public void releasePreloadSelections() {
+    @Nullable @NullableType ExoTrackSelection[] preloadSelections = this.preloadSelections;
+    @Nullable @NullableType SampleStream[] preloadStreams = this.preloadStreams;
+    if (preloadSelections == null || preloadStreams == null) {
+      return;
+    }
+    this.preloadSelections = null;
+    this.preloadStreams = null;
+    mediaPeriod.selectTracks(
+        new ExoTrackSelection[preloadSelections.length],
+        /* mayRetainStreamFlags= */ new boolean[preloadSelections.length],
+        preloadStreams,
+        /* streamResetFlags= */ new boolean[preloadSelections.length],
+        preloadTrackSelectionPositionUs);
+    disableSelections(preloadSelections);
+  }
+
+  // MediaPeriod implementation.
+
+  @Override
+  public void prepare(Callback callback, long positionUs) {
+    this.callback = callback;
+    if (prepared) {
+      callback.onPrepared(this);
+    } else if (!prepareStarted) {
+      prepareStarted = true;
+      mediaPeriod.prepare(/* callback= */ this, positionUs);
+    }
+  }
+
+  @Override
+  public void maybeThrowPrepareError() throws IOException {
+    mediaPeriod.maybeThrowPrepareError();
+  }
+
+  @Override
+  public TrackGroupArray getTrackGroups() {
+    return mediaPeriod.getTrackGroups();
+  }
+
+  @Override
+  public long selectTracks(
+      @NullableType ExoTrackSelection[] selections,
+      boolean[] mayRetainStreamFlags,
+      @NullableType SampleStream[] streams,
+      boolean[] streamResetFlags,
+      long positionUs) {
+    @Nullable @NullableType ExoTrackSelection[] preloadSelections = this.preloadSelections;
+    @Nullable @NullableType SampleStream[] preloadStreams = this.preloadStreams;
+    if (preloadSelections == null || preloadStreams == null) {
+      return mediaPeriod.selectTracks(
+          selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+    }
+    if (!hasSameSelectedTracks(selections, preloadSelections)) {
+      // Release the preloaded streams before making the player's selection.
+      releasePreloadSelections();
+      return mediaPeriod.selectTracks(
+          selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+    }
+    this.preloadSelections = null;
+    this.preloadStreams = null;
+    // Retain the preloaded streams, so that the wrapped period replaces the preloaded selections
+    // with the player's selections without discarding the buffered data.
+    boolean[] retainStreamFlags = new boolean[streams.length];
+    for (int i = 0; i < streams.length; i++) {
+      streams[i] = preloadStreams[i];
+      retainStreamFlags[i] = preloadStreams[i] != null;
+    }
+    long trackSelectionPositionUs =
+        mediaPeriod.selectTracks(
+            selections,
+            retainStreamFlags,
+            streams,
+            streamResetFlags,
+            preloadTrackSelectionPositionUs);
+    disableSelections(preloadSelections);
+    // The player hasn't read from the preloaded streams, so it treats them as newly created.
+    for (int i = 0; i < streams.length; i++) {
+      streamResetFlags[i] = streams[i] != null;
+    }
+    return positionUs == trackSelectionPositionUs
+        ? trackSelectionPositionUs
+        : mediaPeriod.seekToUs(positionUs);
+  }
+
+  @Override
+  public void discardBuffer(long positionUs, boolean toKeyframe) {
+    mediaPeriod.discardBuffer(positionUs, toKeyframe);
+  }
+
+  @Override
+  public long readDiscontinuity() {
+    return mediaPeriod.readDiscontinuity();
+  }
+
+  @Override
+  public long getBufferedPositionUs() {
+    return mediaPeriod.getBufferedPositionUs();
+  }
+
+  @Override
+  public long seekToUs(long positionUs) {
+    return mediaPeriod.seekToUs(positionUs);
+  }
+
+  @Override
+  public long getAdjustedSeekPositionUs(long positionUs, SeekParameters seekParameters) {
+    return mediaPeriod.getAdjustedSeekPositionUs(positionUs, seekParameters);
+  }
+
+  @Override
+  public long getNextLoadPositionUs() {
+    return mediaPeriod.getNextLoadPositionUs();
+  }
+
+  @Override
+  public void reevaluateBuffer(long positionUs) {
+    mediaPeriod.reevaluateBuffer(positionUs);
+  }
+
+  @Override
+  public boolean continueLoading(long positionUs) {
+    return mediaPeriod.continueLoading(positionUs);
+  }
+
+  @Override
+  public boolean isLoading() {
+    return mediaPeriod.isLoading();
+  }
+
+  // MediaPeriod.Callback implementation.
+
+  @Override
+  public void onPrepared(MediaPeriod mediaPeriod) {
+    prepared = true;
+    checkNotNull(callback).onPrepared(this);
+  }
+
+  @Override
+  public void onContinueLoadingRequested(MediaPeriod source) {
+    checkNotNull(callback).onContinueLoadingRequested(this);
+  }
+
+  // Internal methods.
+
+  private static void disableSelections(@NullableType ExoTrackSelection[] selections) {
+    for (ExoTrackSelection selection : selections) {
+      if (selection != null) {
+        selection.disable();
+      }
+    }
+  }
+
+  private static boolean hasSameSelectedTracks(
+      @NullableType ExoTrackSelection[] selections,
+      @NullableType ExoTrackSelection[] preloadSelections) {
+    if (selections.length != preloadSelections.length) {
+      return false;
+    }
+    for (int i = 0; i < selections.length; i++) {
+      @Nullable ExoTrackSelection selection = selections[i];
+      @Nullable ExoTrackSelection preloadSelection = preloadSelections[i];
+      if (selection == null || preloadSelection == null) {
+        if (selection != preloadSelection) {
+          return false;
+        }
+        continue;
+      }
+      if (selection.getTrackGroup() != preloadSelection.getTrackGroup()
+          || selection.length() != preloadSelection.length()) {
+        return false;
+      }
+      for (int j = 0; j < selection.length(); j++) {
+        if (selection.getIndexInTrackGroup(j) != preloadSelection.getIndexInTrackGroup(j)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
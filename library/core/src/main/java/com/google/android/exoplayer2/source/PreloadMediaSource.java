@@ -0,0 +1,740 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Pair;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A {@link MediaSource} that can be prepared, and start loading its first period, before it's
+ * played. Switching a player to a preloaded source skips loading the manifest and preparing the
+ * period and, if the player selects the same tracks as were preloaded, the initial buffering.
+ *
+ * <p>Instances are created by a {@link Factory}, which holds the state shared by all of the
+ * sources it creates. For example, an app can keep the channels neighbouring the current one
+ * preloaded by calling {@link #preload()} when a channel becomes a neighbour and {@link
+ * #releasePreload()} when it stops being one, and switch channels by setting the preloaded source
+ * with {@link ExoPlayer#setMediaSource(MediaSource)}.
+ *
+ * <p>Preloading runs on the playback thread of the player, and the source must only be played by
+ * that player. Preloaded periods allocate memory from the allocator of the {@link Factory}. Once a
+ * period is handed over, it allocates from the player's allocator, and the preloaded memory is
+ * returned to the factory's allocator as it's consumed. The player's track selections replace the
+ * preloaded ones when the player selects the same tracks. Load events are only reported for loads
+ * that happen after the player starts using the source.
+ */
+public final class PreloadMediaSource extends BaseMediaSource {
+
+  /** A factory for {@link PreloadMediaSource} instances that share a preloading budget. */
+  public static final class Factory {
+
+    private final MediaSourceFactory mediaSourceFactory;
+    private final Handler playbackHandler;
+    private final TrackSelector trackSelector;
+    private final RendererCapabilities[] rendererCapabilities;
+    private final Allocator allocator;
+    private final Set<PreloadMediaSource> preloadingSources;
+
+    private long preloadDurationMs;
+    private int maxPreloadBytes;
+
+    /**
+     * Creates a factory.
+     *
+     * @param mediaSourceFactory The {@link MediaSourceFactory} used to create the sources to
+     *     preload.
+     * @param player The {@link ExoPlayer} that will play the preloaded sources. Its {@link
+     *     TrackSelector} is used to select the tracks to preload.
+     * @param rendererCapabilities The {@link RendererCapabilities} of the player's renderers, for
+     *     example obtained from {@link
+     *     com.google.android.exoplayer2.offline.DownloadHelper#getRendererCapabilities}.
+     */
+    public Factory(
+        MediaSourceFactory mediaSourceFactory,
+        ExoPlayer player,
+        RendererCapabilities[] rendererCapabilities) {
+      this(
+          mediaSourceFactory,
+          player.getPlaybackLooper(),
+          player.getTrackSelector(),
+          rendererCapabilities);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param mediaSourceFactory The {@link MediaSourceFactory} used to create the sources to
+     *     preload.
+     * @param playbackLooper The playback {@link Looper} of the player that will play the preloaded
+     *     sources.
+     * @param trackSelector The {@link TrackSelector} of the player, used to select the tracks to
+     *     preload. It must have been initialized by the player.
+     * @param rendererCapabilities The {@link RendererCapabilities} of the player's renderers.
+     */
+    public Factory(
+        MediaSourceFactory mediaSourceFactory,
+        Looper playbackLooper,
+        TrackSelector trackSelector,
+        RendererCapabilities[] rendererCapabilities) {
+      this.mediaSourceFactory = mediaSourceFactory;
+      this.trackSelector = trackSelector;
+      this.rendererCapabilities = rendererCapabilities;
+      playbackHandler = Util.createHandler(playbackLooper, /* callback= */ null);
+      allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      preloadingSources = new HashSet<>();
+      preloadDurationMs = DEFAULT_PRELOAD_DURATION_MS;
+      maxPreloadBytes = DEFAULT_MAX_PRELOAD_BYTES;
+    }
+
+    /**
+     * Sets the duration of media to buffer from the start position of each preloaded source. The
+     * default is {@link #DEFAULT_PRELOAD_DURATION_MS}.
+     *
+     * @param preloadDurationMs The duration to preload, in milliseconds.
+     * @return This factory, for convenience.
+     */
+    public Factory setPreloadDurationMs(long preloadDurationMs) {
+      checkArgument(preloadDurationMs > 0);
+      this.preloadDurationMs = preloadDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes that may be buffered by all of the sources that are being
+     * preloaded. Sources that are being played don't count towards this budget. The default is
+     * {@link #DEFAULT_MAX_PRELOAD_BYTES}.
+     *
+     * @param maxPreloadBytes The maximum number of bytes to preload.
+     * @return This factory, for convenience.
+     */
+    public Factory setMaxPreloadBytes(int maxPreloadBytes) {
+      checkArgument(maxPreloadBytes > 0);
+      this.maxPreloadBytes = maxPreloadBytes;
+      return this;
+    }
+
+    /**
+     * Returns a new {@link PreloadMediaSource} for the given media item. Preloading doesn't start
+     * until {@link PreloadMediaSource#preload()} is called.
+     *
+     * @param mediaItem The media item to play.
+     * @return The new {@link PreloadMediaSource}.
+     */
+    public PreloadMediaSource createMediaSource(MediaItem mediaItem) {
+      return new PreloadMediaSource(
+          mediaSourceFactory.createMediaSource(mediaItem),
+          /* factory= */ this,
+          C.msToUs(preloadDurationMs),
+          maxPreloadBytes);
+    }
+
+    private int getPreloadBytesAllocated() {
+      int preloadBytesAllocated = 0;
+      for (PreloadMediaSource source : preloadingSources) {
+        preloadBytesAllocated += source.getPreloadBytesAllocated();
+      }
+      return preloadBytesAllocated;
+    }
+
+    private void onPreloadingSourceRemoved(PreloadMediaSource source) {
+      if (!preloadingSources.remove(source)) {
+        return;
+      }
+      // The budget used by the source is available again, so sources that stopped loading because
+      // of the budget may continue.
+      for (PreloadMediaSource preloadingSource : new ArrayList<>(preloadingSources)) {
+        preloadingSource.maybeContinuePreloading();
+      }
+    }
+  }
+
+  /**
+   * The default duration to preload, in milliseconds. This matches the buffer that {@link
+   * DefaultLoadControl} requires to start playback, so that playback of a preloaded source can
+   * start as soon as it's switched to.
+   */
+  public static final long DEFAULT_PRELOAD_DURATION_MS =
+      DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+  /** The default maximum number of bytes preloaded by the sources of a {@link Factory}. */
+  public static final int DEFAULT_MAX_PRELOAD_BYTES = 8 * 1024 * 1024;
+
+  private static final String TAG = "PreloadMediaSource";
+
+  private final MediaSource mediaSource;
+  private final Factory factory;
+  private final long preloadDurationUs;
+  private final int maxPreloadBytes;
+  private final MediaSourceCaller childCaller;
+  private final ForwardingTransferListener transferListener;
+  private final Timeline.Window window;
+  private final Timeline.Period period;
+
+  // Accessed on the playback thread only.
+  private boolean isChildPrepared;
+  private boolean isPreparedByPlayer;
+  private boolean isPreloadRequested;
+  @Nullable private Timeline childTimeline;
+  @Nullable private PreloadMediaPeriod preloadMediaPeriod;
+  @Nullable private MediaPeriodId preloadMediaPeriodId;
+  @Nullable private MediaPeriodId playerMediaPeriodId;
+  @Nullable private PreloadAllocator preloadAllocator;
+  private long preloadPositionUs;
+
+  private PreloadMediaSource(
+      MediaSource mediaSource, Factory factory, long preloadDurationUs, int maxPreloadBytes) {
+    this.mediaSource = mediaSource;
+    this.factory = factory;
+    this.preloadDurationUs = preloadDurationUs;
+    this.maxPreloadBytes = maxPreloadBytes;
+    childCaller = (source, timeline) -> onChildSourceInfoRefreshed(timeline);
+    transferListener = new ForwardingTransferListener();
+    window = new Timeline.Window();
+    period = new Timeline.Period();
+    mediaSource.addEventListener(factory.playbackHandler, new ForwardingEventListener());
+  }
+
+  /**
+   * Starts preparing the source and loading the start of its first period, if it's not already
+   * being preloaded or played. May be called from any thread.
+   */
+  public void preload() {
+    factory.playbackHandler.post(this::preloadInternal);
+  }
+
+  /**
+   * Stops preloading and releases the preloaded data, unless the source is being played. May be
+   * called from any thread.
+   */
+  public void releasePreload() {
+    factory.playbackHandler.post(this::releasePreloadInternal);
+  }
+
+  // MediaSource implementation.
+
+  @Override
+  public Timeline getInitialTimeline() {
+    return mediaSource.getInitialTimeline();
+  }
+
+  @Override
+  public boolean isSingleWindow() {
+    return mediaSource.isSingleWindow();
+  }
+
+  @Override
+  public MediaItem getMediaItem() {
+    return mediaSource.getMediaItem();
+  }
+
+  @Override
+  protected void prepareSourceInternal(@Nullable TransferListener mediaTransferListener) {
+    isPreparedByPlayer = true;
+    transferListener.setDelegate(mediaTransferListener);
+    if (!isChildPrepared) {
+      isChildPrepared = true;
+      mediaSource.prepareSource(childCaller, transferListener);
+    } else if (childTimeline != null) {
+      refreshSourceInfo(childTimeline);
+    }
+  }
+
+  @Override
+  public void maybeThrowSourceInfoRefreshError() throws IOException {
+    mediaSource.maybeThrowSourceInfoRefreshError();
+  }
+
+  @Override
+  protected void enableInternal() {
+    mediaSource.enable(childCaller);
+  }
+
+  @Override
+  public MediaPeriod createPeriod(MediaPeriodId id, Allocator allocator, long startPositionUs) {
+    @Nullable PreloadMediaPeriod preloadMediaPeriod = this.preloadMediaPeriod;
+    if (preloadMediaPeriod != null && playerMediaPeriodId == null) {
+      PreloadAllocator preloadAllocator = checkNotNull(this.preloadAllocator);
+      if (!id.isAd()
+          && id.periodUid.equals(checkNotNull(preloadMediaPeriodId).periodUid)
+          && preloadAllocator.canHandOverTo(allocator)) {
+        // Hand the preloaded period over to the player, and allocate from the player's allocator
+        // from now on so that the player's buffer limits apply.
+        playerMediaPeriodId = id;
+        preloadAllocator.handOver(allocator);
+        factory.onPreloadingSourceRemoved(this);
+        return preloadMediaPeriod;
+      }
+      releasePreloadMediaPeriod();
+    }
+    return mediaSource.createPeriod(id, allocator, startPositionUs);
+  }
+
+  @Override
+  public void releasePeriod(MediaPeriod mediaPeriod) {
+    @Nullable PreloadMediaPeriod preloadMediaPeriod = this.preloadMediaPeriod;
+    if (preloadMediaPeriod != null && mediaPeriod == preloadMediaPeriod) {
+      preloadMediaPeriod.releasePreloadSelections();
+      mediaSource.releasePeriod(preloadMediaPeriod.mediaPeriod);
+      this.preloadMediaPeriod = null;
+      preloadMediaPeriodId = null;
+      playerMediaPeriodId = null;
+      preloadAllocator = null;
+    } else {
+      mediaSource.releasePeriod(mediaPeriod);
+    }
+  }
+
+  @Override
+  protected void disableInternal() {
+    if (preloadMediaPeriod == null) {
+      mediaSource.disable(childCaller);
+    }
+  }
+
+  @Override
+  protected void releaseSourceInternal() {
+    isPreparedByPlayer = false;
+    releasePreloadMediaPeriod();
+    releaseChildSource();
+    transferListener.setDelegate(null);
+  }
+
+  // Internal methods.
+
+  private void preloadInternal() {
+    if (isPreloadRequested || isPreparedByPlayer) {
+      return;
+    }
+    isPreloadRequested = true;
+    if (!isChildPrepared) {
+      isChildPrepared = true;
+      mediaSource.prepareSource(childCaller, transferListener);
+    } else if (childTimeline != null) {
+      maybeCreatePreloadMediaPeriod(childTimeline);
+    }
+  }
+
+  private void releasePreloadInternal() {
+    if (isPreparedByPlayer) {
+      return;
+    }
+    releasePreloadMediaPeriod();
+    releaseChildSource();
+  }
+
+  private void onChildSourceInfoRefreshed(Timeline timeline) {
+    childTimeline = timeline;
+    if (isPreparedByPlayer) {
+      refreshSourceInfo(timeline);
+    } else if (isPreloadRequested && preloadMediaPeriod == null) {
+      maybeCreatePreloadMediaPeriod(timeline);
+    }
+  }
+
+  private void maybeCreatePreloadMediaPeriod(Timeline timeline) {
+    if (timeline.isEmpty()) {
+      return;
+    }
+    @Nullable
+    Pair<Object, Long> periodPosition =
+        timeline.getPeriodPosition(
+            window,
+            period,
+            /* windowIndex= */ 0,
+            /* windowPositionUs= */ C.TIME_UNSET,
+            /* defaultPositionProjectionUs= */ 0);
+    if (periodPosition == null) {
+      return;
+    }
+    MediaPeriodId preloadMediaPeriodId = new MediaPeriodId(periodPosition.first);
+    PreloadAllocator preloadAllocator = new PreloadAllocator(factory.allocator);
+    preloadPositionUs = periodPosition.second;
+    PreloadMediaPeriod preloadMediaPeriod =
+        new PreloadMediaPeriod(
+            mediaSource.createPeriod(preloadMediaPeriodId, preloadAllocator, preloadPositionUs));
+    this.preloadMediaPeriodId = preloadMediaPeriodId;
+    this.preloadAllocator = preloadAllocator;
+    this.preloadMediaPeriod = preloadMediaPeriod;
+    factory.preloadingSources.add(this);
+    preloadMediaPeriod.prepare(new PreloadCallback(), preloadPositionUs);
+  }
+
+  private void onPreloadMediaPeriodPrepared(Timeline timeline) {
+    PreloadMediaPeriod preloadMediaPeriod = checkNotNull(this.preloadMediaPeriod);
+    TrackSelectorResult trackSelectorResult;
+    try {
+      trackSelectorResult =
+          factory.trackSelector.selectTracks(
+              factory.rendererCapabilities,
+              preloadMediaPeriod.getTrackGroups(),
+              checkNotNull(preloadMediaPeriodId),
+              timeline);
+    } catch (ExoPlaybackException e) {
+      // Keep the prepared period, but don't buffer any media.
+      Log.e(TAG, "Failed to select tracks for preloading", e);
+      return;
+    }
+    preloadMediaPeriod.selectTracksForPreloading(trackSelectorResult.selections, preloadPositionUs);
+    maybeContinuePreloading();
+  }
+
+  private void maybeContinuePreloading() {
+    @Nullable PreloadMediaPeriod preloadMediaPeriod = this.preloadMediaPeriod;
+    if (preloadMediaPeriod == null
+        || playerMediaPeriodId != null
+        || !preloadMediaPeriod.hasPreloadSelections()) {
+      return;
+    }
+    long bufferedPositionUs = preloadMediaPeriod.getBufferedPositionUs();
+    if (bufferedPositionUs != C.TIME_END_OF_SOURCE
+        && bufferedPositionUs - preloadPositionUs < preloadDurationUs
+        && factory.getPreloadBytesAllocated() < maxPreloadBytes) {
+      preloadMediaPeriod.continueLoading(preloadPositionUs);
+    }
+  }
+
+  private int getPreloadBytesAllocated() {
+    return preloadAllocator != null ? preloadAllocator.getPreloadBytesAllocated() : 0;
+  }
+
+  private void releasePreloadMediaPeriod() {
+    @Nullable PreloadMediaPeriod preloadMediaPeriod = this.preloadMediaPeriod;
+    if (preloadMediaPeriod != null && playerMediaPeriodId == null) {
+      preloadMediaPeriod.releasePreloadSelections();
+      mediaSource.releasePeriod(preloadMediaPeriod.mediaPeriod);
+      checkNotNull(preloadAllocator).release();
+      this.preloadMediaPeriod = null;
+      preloadMediaPeriodId = null;
+      preloadAllocator = null;
+      factory.onPreloadingSourceRemoved(this);
+    }
+    isPreloadRequested = false;
+  }
+
+  private void releaseChildSource() {
+    if (isChildPrepared) {
+      mediaSource.releaseSource(childCaller);
+      isChildPrepared = false;
+      childTimeline = null;
+    }
+  }
+
+  /**
+   * Returns the {@link MediaPeriodId} with which an event for the given period should be reported
+   * to the player, or null if the event should not be reported.
+   */
+  @Nullable
+  private MediaPeriodId getEventMediaPeriodId(@Nullable MediaPeriodId mediaPeriodId) {
+    if (mediaPeriodId == null || !mediaPeriodId.equals(preloadMediaPeriodId)) {
+      return mediaPeriodId;
+    }
+    return playerMediaPeriodId;
+  }
+
+  private boolean shouldReportEvent(@Nullable MediaPeriodId mediaPeriodId) {
+    return isPreparedByPlayer
+        && (mediaPeriodId == null
+            || !mediaPeriodId.equals(preloadMediaPeriodId)
+            || playerMediaPeriodId != null);
+  }
+
+  private final class PreloadCallback implements MediaPeriod.Callback {
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      if (mediaPeriod == preloadMediaPeriod && childTimeline != null) {
+        onPreloadMediaPeriodPrepared(childTimeline);
+      }
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {
+      if (source == preloadMediaPeriod) {
+        maybeContinuePreloading();
+      }
+    }
+  }
+
+  private final class ForwardingEventListener implements MediaSourceEventListener {
+
+    @Override
+    public void onLoadStarted(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData) {
+      if (shouldReportEvent(mediaPeriodId)) {
+        createEventDispatcher(
+                windowIndex, getEventMediaPeriodId(mediaPeriodId), /* mediaTimeOffsetMs= */ 0)
+            .loadStarted(loadEventInfo, mediaLoadData);
+      }
+    }
+
+    @Override
+    public void onLoadCompleted(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData) {
+      if (shouldReportEvent(mediaPeriodId)) {
+        createEventDispatcher(
+                windowIndex, getEventMediaPeriodId(mediaPeriodId), /* mediaTimeOffsetMs= */ 0)
+            .loadCompleted(loadEventInfo, mediaLoadData);
+      }
+    }
+
+    @Override
+    public void onLoadCanceled(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData) {
+      if (shouldReportEvent(mediaPeriodId)) {
+        createEventDispatcher(
+                windowIndex, getEventMediaPeriodId(mediaPeriodId), /* mediaTimeOffsetMs= */ 0)
+            .loadCanceled(loadEventInfo, mediaLoadData);
+      }
+    }
+
+    @Override
+    public void onLoadError(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData,
+        IOException error,
+        boolean wasCanceled) {
+      if (shouldReportEvent(mediaPeriodId)) {
+        createEventDispatcher(
+                windowIndex, getEventMediaPeriodId(mediaPeriodId), /* mediaTimeOffsetMs= */ 0)
+            .loadError(loadEventInfo, mediaLoadData, error, wasCanceled);
+      }
+    }
+
+    @Override
+    public void onUpstreamDiscarded(
+        int windowIndex, MediaPeriodId mediaPeriodId, MediaLoadData mediaLoadData) {
+      if (shouldReportEvent(mediaPeriodId)) {
+        createEventDispatcher(
+                windowIndex,
+                checkNotNull(getEventMediaPeriodId(mediaPeriodId)),
+                /* mediaTimeOffsetMs= */ 0)
+            .upstreamDiscarded(mediaLoadData);
+      }
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(
+        int windowIndex, @Nullable MediaPeriodId mediaPeriodId, MediaLoadData mediaLoadData) {
+      if (shouldReportEvent(mediaPeriodId)) {
+        createEventDispatcher(
+                windowIndex, getEventMediaPeriodId(mediaPeriodId), /* mediaTimeOffsetMs= */ 0)
+            .downstreamFormatChanged(mediaLoadData);
+      }
+    }
+  }
+
+  /**
+   * Forwards transfer events to the player's {@link TransferListener} once the player has prepared
+   * the source. Transfers are always reported to the listener that was notified of their start.
+   */
+  private static final class ForwardingTransferListener implements TransferListener {
+
+    private final HashMap<DataSource, TransferListener> activeTransferListeners;
+
+    @Nullable private TransferListener delegate;
+
+    public ForwardingTransferListener() {
+      activeTransferListeners = new HashMap<>();
+    }
+
+    public synchronized void setDelegate(@Nullable TransferListener delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void onTransferInitializing(
+        DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      if (delegate != null) {
+        delegate.onTransferInitializing(source, dataSpec, isNetwork);
+      }
+    }
+
+    @Override
+    public synchronized void onTransferStart(
+        DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      if (delegate != null) {
+        activeTransferListeners.put(source, delegate);
+        delegate.onTransferStart(source, dataSpec, isNetwork);
+      }
+    }
+
+    @Override
+    public synchronized void onBytesTransferred(
+        DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+      @Nullable TransferListener listener = activeTransferListeners.get(source);
+      if (listener != null) {
+        listener.onBytesTransferred(source, dataSpec, isNetwork, bytesTransferred);
+      }
+    }
+
+    @Override
+    public synchronized void onTransferEnd(
+        DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      @Nullable TransferListener listener = activeTransferListeners.remove(source);
+      if (listener != null) {
+        listener.onTransferEnd(source, dataSpec, isNetwork);
+      }
+    }
+  }
+
+  /**
+   * Allocates from the factory's allocator while a period is preloaded, and from the player's
+   * allocator once the period has been handed over. Allocations are always released to the
+   * allocator that made them.
+   */
+  private static final class PreloadAllocator implements Allocator {
+
+    private final Allocator preloadAllocator;
+    private final Set<Allocation> preloadAllocations;
+
+    @Nullable private Allocator playerAllocator;
+    private boolean released;
+
+    public PreloadAllocator(Allocator preloadAllocator) {
+      this.preloadAllocator = preloadAllocator;
+      preloadAllocations = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /** Returns whether allocations made by this allocator can be mixed with the given allocator. */
+    public boolean canHandOverTo(Allocator playerAllocator) {
+      return playerAllocator.getIndividualAllocationLength()
+          == preloadAllocator.getIndividualAllocationLength();
+    }
+
+    /** Makes subsequent allocations from the player's allocator. */
+    public synchronized void handOver(Allocator playerAllocator) {
+      this.playerAllocator = playerAllocator;
+    }
+
+    /**
+     * Called when the preloaded period is released without being handed over. Memory is returned
+     * to the system once the period has released all of its allocations.
+     */
+    public synchronized void release() {
+      released = true;
+      maybeTrimPreloadAllocator();
+    }
+
+    /** Returns the number of bytes held in allocations made by the factory's allocator. */
+    public synchronized int getPreloadBytesAllocated() {
+      return preloadAllocations.size() * preloadAllocator.getIndividualAllocationLength();
+    }
+
+    @Override
+    public synchronized Allocation allocate() {
+      if (playerAllocator != null) {
+        return playerAllocator.allocate();
+      }
+      Allocation allocation = preloadAllocator.allocate();
+      preloadAllocations.add(allocation);
+      return allocation;
+    }
+
+    @Override
+    public synchronized void release(Allocation allocation) {
+      if (releaseInternal(allocation)) {
+        maybeTrimPreloadAllocator();
+      }
+    }
+
+    @Override
+    public synchronized void release(Allocation[] allocations) {
+      boolean releasedPreloadAllocation = false;
+      for (Allocation allocation : allocations) {
+        releasedPreloadAllocation |= releaseInternal(allocation);
+      }
+      if (releasedPreloadAllocation) {
+        maybeTrimPreloadAllocator();
+      }
+    }
+
+    @Override
+    public synchronized void trim() {
+      if (playerAllocator != null) {
+        playerAllocator.trim();
+      }
+      preloadAllocator.trim();
+    }
+
+    @Override
+    public synchronized int getTotalBytesAllocated() {
+      return getPreloadBytesAllocated()
+          + (playerAllocator != null ? playerAllocator.getTotalBytesAllocated() : 0);
+    }
+
+    @Override
+    public int getIndividualAllocationLength() {
+      return preloadAllocator.getIndividualAllocationLength();
+    }
+
+    /** Releases an allocation, returning whether it was made by the factory's allocator. */
+    private boolean releaseInternal(Allocation allocation) {
+      if (preloadAllocations.remove(allocation)) {
+        preloadAllocator.release(allocation);
+        return true;
+      }
+      checkNotNull(playerAllocator).release(allocation);
+      return false;
+    }
+
+    private void maybeTrimPreloadAllocator() {
+      if ((playerAllocator != null || released) && preloadAllocations.isEmpty()) {
+        // All of the preloaded data has been consumed or discarded, so free the memory that held
+        // it.
+        preloadAllocator.trim();
+      }
+    }
+  }
+}
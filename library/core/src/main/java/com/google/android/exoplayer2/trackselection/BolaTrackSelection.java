@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.trackselection;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.Iterables;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A buffer based adaptive {@link ExoTrackSelection} using the BOLA algorithm, whose selected track
+ * is updated to maximize the expected playback quality given the amount of buffered media.
+ *
+ * <p>BOLA assigns each track a utility, the logarithm of its bitrate, and selects the track that
+ * maximizes its utility relative to its size for the current buffer level. The more media is
+ * buffered, the higher the quality that's selected, reaching the highest quality when the buffer
+ * target is buffered. Because selections depend on the buffer level rather than on a bandwidth
+ * estimate, they're robust to estimation errors and rebuffer less when throughput drops suddenly.
+ *
+ * <p>The selection is hybrid, and uses the bandwidth estimate to select tracks as {@link
+ * AdaptiveTrackSelection} would when the buffer level isn't meaningful: while starting playback or
+ * after seeking, until the minimum buffer has been buffered, and when less than the buffer target
+ * can be buffered, for example close to the live edge. Switching up is also limited to the highest
+ * quality that the bandwidth estimate can sustain, to avoid oscillating between qualities.
+ *
+ * <p>The algorithm is described in: K. Spiteri, R. Urgaonkar and R. K. Sitaraman, "BOLA:
+ * Near-Optimal Bitrate Adaptation for Online Videos," IEEE/ACM Transactions on Networking, 2020.
+ */
+public class BolaTrackSelection extends BaseTrackSelection {
+
+  /** Factory for {@link BolaTrackSelection} instances. */
+  public static class Factory implements ExoTrackSelection.Factory {
+
+    private final int minBufferMs;
+    private final int bufferTargetMs;
+    private final float bandwidthFraction;
+    private final Clock clock;
+
+    /** Creates a BOLA track selection factory with default parameters. */
+    public Factory() {
+      this(
+          DEFAULT_MIN_BUFFER_MS,
+          DEFAULT_BUFFER_TARGET_MS,
+          DEFAULT_BANDWIDTH_FRACTION,
+          Clock.DEFAULT);
+    }
+
+    /**
+     * Creates a BOLA track selection factory.
+     *
+     * @param minBufferMs The duration of buffered media below which the lowest quality is
+     *     preferred, in milliseconds.
+     * @param bufferTargetMs The duration of buffered media at which the highest quality is
+     *     selected, in milliseconds. Should be lower than the maximum buffer duration of the {@link
+     *     com.google.android.exoplayer2.LoadControl}.
+     * @param bandwidthFraction The fraction of the available bandwidth that the selection should
+     *     consider available for use when selecting based on the bandwidth estimate.
+     * @param clock A {@link Clock}.
+     */
+    public Factory(int minBufferMs, int bufferTargetMs, float bandwidthFraction, Clock clock) {
+      checkArgument(minBufferMs > 0 && bufferTargetMs > minBufferMs);
+      this.minBufferMs = minBufferMs;
+      this.bufferTargetMs = bufferTargetMs;
+      this.bandwidthFraction = bandwidthFraction;
+      this.clock = clock;
+    }
+
+    @Override
+    public @NullableType ExoTrackSelection[] createTrackSelections(
+        @NullableType Definition[] definitions,
+        BandwidthMeter bandwidthMeter,
+        MediaPeriodId mediaPeriodId,
+        Timeline timeline) {
+      return TrackSelectionUtil.createTrackSelectionsForDefinitions(
+          definitions,
+          definition ->
+              new BolaTrackSelection(
+                  definition.group,
+                  definition.tracks,
+                  bandwidthMeter,
+                  minBufferMs,
+                  bufferTargetMs,
+                  bandwidthFraction,
+                  clock));
+    }
+  }
+
+  public static final int DEFAULT_MIN_BUFFER_MS = 10_000;
+  public static final int DEFAULT_BUFFER_TARGET_MS = 30_000;
+  public static final float DEFAULT_BANDWIDTH_FRACTION =
+      AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION;
+
+  /** The additional buffer target per track, so that each track is selected over some range. */
+  private static final long MIN_BUFFER_TARGET_PER_TRACK_US = 2_000_000;
+
+  private final BandwidthMeter bandwidthMeter;
+  private final long minBufferUs;
+  private final long bufferTargetUs;
+  private final float bandwidthFraction;
+  private final Clock clock;
+  private final double[] utilities;
+  private final double utilityScaleUs;
+  private final double utilityOffset;
+
+  private float playbackSpeed;
+  private int selectedIndex;
+  private int reason;
+  private boolean isStartingUp;
+
+  /**
+   * @param group The {@link TrackGroup}.
+   * @param tracks The indices of the selected tracks within the {@link TrackGroup}. Must not be
+   *     empty. May be in any order.
+   * @param bandwidthMeter Provides an estimate of the currently available bandwidth.
+   */
+  public BolaTrackSelection(TrackGroup group, int[] tracks, BandwidthMeter bandwidthMeter) {
+    this(
+        group,
+        tracks,
+        bandwidthMeter,
+        DEFAULT_MIN_BUFFER_MS,
+        DEFAULT_BUFFER_TARGET_MS,
+        DEFAULT_BANDWIDTH_FRACTION,
+        Clock.DEFAULT);
+  }
+
+  /**
+   * @param group The {@link TrackGroup}.
+   * @param tracks The indices of the selected tracks within the {@link TrackGroup}. Must not be
+   *     empty. May be in any order.
+   * @param bandwidthMeter Provides an estimate of the currently available bandwidth.
+   * @param minBufferMs The duration of buffered media below which the lowest quality is preferred,
+   *     in milliseconds.
+   * @param bufferTargetMs The duration of buffered media at which the highest quality is selected,
+   *     in milliseconds.
+   * @param bandwidthFraction The fraction of the available bandwidth that the selection should
+   *     consider available for use when selecting based on the bandwidth estimate.
+   * @param clock The {@link Clock}.
+   */
+  protected BolaTrackSelection(
+      TrackGroup group,
+      int[] tracks,
+      BandwidthMeter bandwidthMeter,
+      long minBufferMs,
+      long bufferTargetMs,
+      float bandwidthFraction,
+      Clock clock) {
+    super(group, tracks);
+    this.bandwidthMeter = bandwidthMeter;
+    this.minBufferUs = minBufferMs * 1000;
+    this.bandwidthFraction = bandwidthFraction;
+    this.clock = clock;
+    this.bufferTargetUs =
+        Math.max(bufferTargetMs * 1000, minBufferUs + MIN_BUFFER_TARGET_PER_TRACK_US * length);
+    // Utilities are normalized so that the lowest quality track has a utility of 1. Tracks are
+    // sorted by decreasing bitrate.
+    utilities = new double[length];
+    double lowestBitrateLog = Math.log(getTrackBitrate(length - 1));
+    for (int i = 0; i < length; i++) {
+      utilities[i] = Math.log(getTrackBitrate(i)) - lowestBitrateLog + 1;
+    }
+    // Choose the BOLA parameters so that the lowest quality is preferred up to the minimum buffer
+    // and the highest quality is preferred from the buffer target.
+    utilityOffset = (utilities[0] - 1) / ((double) this.bufferTargetUs / minBufferUs - 1);
+    utilityScaleUs = minBufferUs / utilityOffset;
+    playbackSpeed = 1f;
+    reason = C.SELECTION_REASON_UNKNOWN;
+  }
+
+  @Override
+  public void onPlaybackSpeed(float playbackSpeed) {
+    this.playbackSpeed = playbackSpeed;
+  }
+
+  @Override
+  public void updateSelectedTrack(
+      long playbackPositionUs,
+      long bufferedDurationUs,
+      long availableDurationUs,
+      List<? extends MediaChunk> queue,
+      MediaChunkIterator[] mediaChunkIterators) {
+    long nowMs = clock.elapsedRealtime();
+    int throughputIndex = determineThroughputSelectedIndex(nowMs);
+
+    // Make initial selection
+    if (reason == C.SELECTION_REASON_UNKNOWN) {
+      reason = C.SELECTION_REASON_INITIAL;
+      selectedIndex = throughputIndex;
+      isStartingUp = true;
+      return;
+    }
+
+    int previousSelectedIndex = selectedIndex;
+    int previousReason = reason;
+    int formatIndexOfPreviousChunk =
+        queue.isEmpty() ? C.INDEX_UNSET : indexOf(Iterables.getLast(queue).trackFormat);
+    if (formatIndexOfPreviousChunk != C.INDEX_UNSET) {
+      previousSelectedIndex = formatIndexOfPreviousChunk;
+      previousReason = Iterables.getLast(queue).trackSelectionReason;
+    }
+
+    long playoutBufferedDurationUs =
+        Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
+    // An empty queue means that loading is starting from a new position, for example after a seek.
+    // Once the minimum buffer has been buffered, low buffer levels are handled by BOLA itself, which
+    // reacts to throughput drops faster than the bandwidth estimate.
+    if (queue.isEmpty()) {
+      isStartingUp = true;
+    } else if (playoutBufferedDurationUs >= minBufferUs) {
+      isStartingUp = false;
+    }
+    boolean canReachBufferTarget =
+        availableDurationUs == C.TIME_UNSET || availableDurationUs >= bufferTargetUs;
+    int newSelectedIndex;
+    if (isStartingUp || !canReachBufferTarget) {
+      newSelectedIndex = throughputIndex;
+    } else {
+      newSelectedIndex = determineBufferSelectedIndex(nowMs, playoutBufferedDurationUs);
+      if (newSelectedIndex < previousSelectedIndex
+          && !isBlacklisted(previousSelectedIndex, nowMs)) {
+        // Only switch up as far as the bandwidth estimate can sustain. Tracks are sorted by
+        // decreasing bitrate.
+        newSelectedIndex =
+            Math.max(newSelectedIndex, Math.min(throughputIndex, previousSelectedIndex));
+      }
+    }
+    reason =
+        newSelectedIndex == previousSelectedIndex ? previousReason : C.SELECTION_REASON_ADAPTIVE;
+    selectedIndex = newSelectedIndex;
+  }
+
+  @Override
+  public int getSelectedIndex() {
+    return selectedIndex;
+  }
+
+  @Override
+  public int getSelectionReason() {
+    return reason;
+  }
+
+  @Override
+  @Nullable
+  public Object getSelectionData() {
+    return null;
+  }
+
+  /**
+   * Returns the index of the track that maximizes the BOLA objective for the specified buffer
+   * level, ignoring excluded tracks.
+   */
+  private int determineBufferSelectedIndex(long nowMs, long bufferedDurationUs) {
+    int bestIndex = C.INDEX_UNSET;
+    double bestScore = 0;
+    for (int i = 0; i < length; i++) {
+      if (isBlacklisted(i, nowMs)) {
+        continue;
+      }
+      double score =
+          (utilityScaleUs * (utilities[i] + utilityOffset) - bufferedDurationUs)
+              / getTrackBitrate(i);
+      if (bestIndex == C.INDEX_UNSET || score > bestScore) {
+        bestIndex = i;
+        bestScore = score;
+      }
+    }
+    return bestIndex == C.INDEX_UNSET ? length - 1 : bestIndex;
+  }
+
+  /** Returns the index of the highest quality track the bandwidth estimate can sustain. */
+  private int determineThroughputSelectedIndex(long nowMs) {
+    long effectiveBitrate = (long) (bandwidthMeter.getBitrateEstimate() * bandwidthFraction);
+    int lowestBitrateAllowedIndex = 0;
+    for (int i = 0; i < length; i++) {
+      if (!isBlacklisted(i, nowMs)) {
+        if (Math.round(getFormat(i).bitrate * playbackSpeed) <= effectiveBitrate) {
+          return i;
+        } else {
+          lowestBitrateAllowedIndex = i;
+        }
+      }
+    }
+    return lowestBitrateAllowedIndex;
+  }
+
+  private int getTrackBitrate(int index) {
+    Format format = getFormat(index);
+    // Tracks without a known bitrate are treated as having the lowest possible bitrate.
+    return format.bitrate == Format.NO_VALUE ? 1 : Math.max(format.bitrate, 1);
+  }
+}
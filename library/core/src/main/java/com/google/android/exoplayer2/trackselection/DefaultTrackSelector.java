@@ -185,6 +185,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
     private int viewportHeight;
     private boolean viewportOrientationMayChange;
     private ImmutableList<String> preferredVideoMimeTypes;
+    private boolean preferTrickPlayVideoTracks;
     // Audio
     private int maxAudioChannelCount;
     private int maxAudioBitrate;
@@ -252,6 +253,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       viewportHeight = initialValues.viewportHeight;
       viewportOrientationMayChange = initialValues.viewportOrientationMayChange;
       preferredVideoMimeTypes = initialValues.preferredVideoMimeTypes;
+      preferTrickPlayVideoTracks = initialValues.preferTrickPlayVideoTracks;
       // Audio
       maxAudioChannelCount = initialValues.maxAudioChannelCount;
       maxAudioBitrate = initialValues.maxAudioBitrate;
@@ -474,6 +476,19 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       return this;
     }
 
+    /**
+     * Sets whether to select trick-play video tracks, such as HLS I-frame only variants, in
+     * preference to regular video tracks. Trick-play tracks contain only sync samples, so they're
+     * cheaper to load and decode when seeking rapidly, for example while scrubbing.
+     *
+     * @param preferTrickPlayVideoTracks Whether to prefer trick-play video tracks.
+     * @return This builder.
+     */
+    public ParametersBuilder setPreferTrickPlayVideoTracks(boolean preferTrickPlayVideoTracks) {
+      this.preferTrickPlayVideoTracks = preferTrickPlayVideoTracks;
+      return this;
+    }
+
     // Audio
 
     @Override
@@ -844,6 +859,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
           viewportHeight,
           viewportOrientationMayChange,
           preferredVideoMimeTypes,
+          preferTrickPlayVideoTracks,
           // Audio
           preferredAudioLanguages,
           preferredAudioRoleFlags,
@@ -883,6 +899,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       viewportHeight = Integer.MAX_VALUE;
       viewportOrientationMayChange = true;
       preferredVideoMimeTypes = ImmutableList.of();
+      preferTrickPlayVideoTracks = false;
       // Audio
       maxAudioChannelCount = Integer.MAX_VALUE;
       maxAudioBitrate = Integer.MAX_VALUE;
@@ -1022,6 +1039,11 @@ public class DefaultTrackSelector extends MappingTrackSelector {
      * no preference. The default is an empty list.
      */
     public final ImmutableList<String> preferredVideoMimeTypes;
+    /**
+     * Whether to select trick-play video tracks, such as HLS I-frame only variants, in preference
+     * to regular video tracks. The default value is {@code false}.
+     */
+    public final boolean preferTrickPlayVideoTracks;
     // Audio
     /**
      * Maximum allowed audio channel count. The default value is {@link Integer#MAX_VALUE} (i.e. no
@@ -1114,6 +1136,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
         int viewportHeight,
         boolean viewportOrientationMayChange,
         ImmutableList<String> preferredVideoMimeTypes,
+        boolean preferTrickPlayVideoTracks,
         // Audio
         ImmutableList<String> preferredAudioLanguages,
         @C.RoleFlags int preferredAudioRoleFlags,
@@ -1161,6 +1184,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       this.viewportHeight = viewportHeight;
       this.viewportOrientationMayChange = viewportOrientationMayChange;
       this.preferredVideoMimeTypes = preferredVideoMimeTypes;
+      this.preferTrickPlayVideoTracks = preferTrickPlayVideoTracks;
       // Audio
       this.maxAudioChannelCount = maxAudioChannelCount;
       this.maxAudioBitrate = maxAudioBitrate;
@@ -1200,6 +1224,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       ArrayList<String> preferredVideoMimeTypes = new ArrayList<>();
       in.readList(preferredVideoMimeTypes, /* loader= */ null);
       this.preferredVideoMimeTypes = ImmutableList.copyOf(preferredVideoMimeTypes);
+      this.preferTrickPlayVideoTracks = Util.readBoolean(in);
       // Audio
       this.maxAudioChannelCount = in.readInt();
       this.maxAudioBitrate = in.readInt();
@@ -1290,6 +1315,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
           && viewportWidth == other.viewportWidth
           && viewportHeight == other.viewportHeight
           && preferredVideoMimeTypes.equals(other.preferredVideoMimeTypes)
+          && preferTrickPlayVideoTracks == other.preferTrickPlayVideoTracks
           // Audio
           && maxAudioChannelCount == other.maxAudioChannelCount
           && maxAudioBitrate == other.maxAudioBitrate
@@ -1329,6 +1355,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       result = 31 * result + viewportWidth;
       result = 31 * result + viewportHeight;
       result = 31 * result + preferredVideoMimeTypes.hashCode();
+      result = 31 * result + (preferTrickPlayVideoTracks ? 1 : 0);
       // Audio
       result = 31 * result + maxAudioChannelCount;
       result = 31 * result + maxAudioBitrate;
@@ -1373,6 +1400,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       dest.writeInt(viewportHeight);
       Util.writeBoolean(dest, viewportOrientationMayChange);
       dest.writeList(preferredVideoMimeTypes);
+      Util.writeBoolean(dest, preferTrickPlayVideoTracks);
       // Audio
       dest.writeInt(maxAudioChannelCount);
       dest.writeInt(maxAudioBitrate);
@@ -1910,14 +1938,22 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       boolean enableAdaptiveTrackSelection)
       throws ExoPlaybackException {
     ExoTrackSelection.Definition definition = null;
-    if (!params.forceHighestSupportedBitrate
+    if (params.preferTrickPlayVideoTracks) {
+      // Trick-play tracks are used for seeking rather than continuous playback, so there's no need
+      // to adapt between them.
+      definition =
+          selectFixedVideoTrack(groups, formatSupport, params, /* selectTrickPlayTracks= */ true);
+    }
+    if (definition == null
+        && !params.forceHighestSupportedBitrate
         && !params.forceLowestBitrate
         && enableAdaptiveTrackSelection) {
       definition =
           selectAdaptiveVideoTrack(groups, formatSupport, mixedMimeTypeAdaptationSupports, params);
     }
     if (definition == null) {
-      definition = selectFixedVideoTrack(groups, formatSupport, params);
+      definition =
+          selectFixedVideoTrack(groups, formatSupport, params, /* selectTrickPlayTracks= */ false);
     }
     return definition;
   }
@@ -2123,7 +2159,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       int minVideoFrameRate,
       int minVideoBitrate) {
     if ((format.roleFlags & C.ROLE_FLAG_TRICK_PLAY) != 0) {
-      // Ignore trick-play tracks for now.
+      // Trick-play tracks are only selected individually.
       return false;
     }
     return isSupported(formatSupport, /* allowExceedsCapabilities= */ false)
@@ -2141,7 +2177,10 @@ public class DefaultTrackSelector extends MappingTrackSelector {
 
   @Nullable
   private static ExoTrackSelection.Definition selectFixedVideoTrack(
-      TrackGroupArray groups, @Capabilities int[][] formatSupport, Parameters params) {
+      TrackGroupArray groups,
+      @Capabilities int[][] formatSupport,
+      Parameters params,
+      boolean selectTrickPlayTracks) {
     int selectedTrackIndex = C.INDEX_UNSET;
     @Nullable TrackGroup selectedGroup = null;
     @Nullable VideoTrackScore selectedTrackScore = null;
@@ -2156,8 +2195,7 @@ public class DefaultTrackSelector extends MappingTrackSelector {
       @Capabilities int[] trackFormatSupport = formatSupport[groupIndex];
       for (int trackIndex = 0; trackIndex < trackGroup.length; trackIndex++) {
         Format format = trackGroup.getFormat(trackIndex);
-        if ((format.roleFlags & C.ROLE_FLAG_TRICK_PLAY) != 0) {
-          // Ignore trick-play tracks for now.
+        if (((format.roleFlags & C.ROLE_FLAG_TRICK_PLAY) != 0) != selectTrickPlayTracks) {
           continue;
         }
         if (isSupported(
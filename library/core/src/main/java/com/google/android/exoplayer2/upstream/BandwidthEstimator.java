@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+/**
+ * Estimates bandwidth from the transfer samples measured by a {@link DefaultBandwidthMeter}.
+ *
+ * <p>The meter calls the estimator while holding its own lock, so implementations don't need to be
+ * thread safe. An instance must not be shared by multiple meters.
+ */
+public interface BandwidthEstimator {
+
+  /** Returned by {@link #getBandwidthEstimate()} if no estimate is available. */
+  long ESTIMATE_NOT_AVAILABLE = Long.MIN_VALUE;
+
+  /**
+   * Adds a sample of data transferred at full network speed.
+   *
+   * @param bytes The number of bytes transferred.
+   * @param elapsedMs The time over which the bytes were transferred, in milliseconds. Always
+   *     greater than zero.
+   */
+  void addSample(long bytes, long elapsedMs);
+
+  /**
+   * Adds a time to first byte sample, measured from when a transfer started initializing to when
+   * the transfer started. For HTTP transfers this is the time from sending a request until its
+   * response headers are received.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param timeToFirstByteMs The time to first byte, in milliseconds.
+   */
+  default void addTimeToFirstByteSample(long timeToFirstByteMs) {}
+
+  /**
+   * Returns the bandwidth estimate in bits per second, or {@link #ESTIMATE_NOT_AVAILABLE} if no
+   * estimate is available.
+   */
+  long getBandwidthEstimate();
+
+  /** Resets the estimator, discarding all samples. */
+  void reset();
+}
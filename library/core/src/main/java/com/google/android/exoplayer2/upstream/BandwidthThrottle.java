@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+
+/**
+ * Limits the aggregate rate at which data can be read through the {@link ThrottlingDataSource}
+ * instances that share it.
+ *
+ * <p>The available bandwidth is shared between the sources that are currently open in proportion
+ * to their weights. A source with weight 2 is allocated twice the bandwidth of a source with weight
+ * 1, and the sum of the allocations never exceeds the maximum rate.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class BandwidthThrottle {
+
+  /** Value for {@link #setMaxBytesPerSecond(long)} indicating that the rate is not limited. */
+  public static final long NO_LIMIT = Long.MAX_VALUE;
+
+  private long maxBytesPerSecond;
+  private int totalWeight;
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytesPerSecond The maximum aggregate rate in bytes per second, or {@link #NO_LIMIT}.
+   */
+  public BandwidthThrottle(long maxBytesPerSecond) {
+    checkArgument(maxBytesPerSecond > 0);
+    this.maxBytesPerSecond = maxBytesPerSecond;
+  }
+
+  /**
+   * Sets the maximum aggregate rate. The new rate applies to subsequent reads of all sources sharing
+   * this throttle, including sources that are already open.
+   *
+   * @param maxBytesPerSecond The maximum aggregate rate in bytes per second, or {@link #NO_LIMIT}.
+   */
+  public synchronized void setMaxBytesPerSecond(long maxBytesPerSecond) {
+    checkArgument(maxBytesPerSecond > 0);
+    this.maxBytesPerSecond = maxBytesPerSecond;
+  }
+
+  /** Returns the maximum aggregate rate in bytes per second, or {@link #NO_LIMIT}. */
+  public synchronized long getMaxBytesPerSecond() {
+    return maxBytesPerSecond;
+  }
+
+  /**
+   * Returns the rate allocated to an open source with the given weight, in bytes per second, or
+   * {@link #NO_LIMIT} if the rate is not limited.
+   *
+   * @param weight The weight of the source, which must be registered with {@link
+   *     #register(int)}.
+   */
+  public synchronized long getAllocatedBytesPerSecond(int weight) {
+    if (maxBytesPerSecond == NO_LIMIT) {
+      return NO_LIMIT;
+    }
+    checkState(totalWeight >= weight);
+    return Math.max(1, maxBytesPerSecond * weight / totalWeight);
+  }
+
+  /**
+   * Registers an open source with the given weight.
+   *
+   * @param weight The weight of the source. Must be greater than 0.
+   */
+  public synchronized void register(int weight) {
+    checkArgument(weight > 0);
+    totalWeight += weight;
+  }
+
+  /**
+   * Unregisters a source previously registered with {@link #register(int)}.
+   *
+   * @param weight The weight with which the source was registered.
+   */
+  public synchronized void unregister(int weight) {
+    checkState(totalWeight >= weight);
+    totalWeight -= weight;
+  }
+}
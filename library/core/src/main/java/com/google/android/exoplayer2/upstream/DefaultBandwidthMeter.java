@@ -27,7 +27,6 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.BandwidthMeter.EventListener.EventDispatcher;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Clock;
-import com.google.android.exoplayer2.util.SlidingPercentile;
 import com.google.android.exoplayer2.util.Util;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
@@ -37,15 +36,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
  * Estimates bandwidth by listening to data transfers.
  *
- * <p>The bandwidth estimate is calculated using a {@link SlidingPercentile} and is updated each
- * time a transfer ends. The initial estimate is based on the current operator's network country
- * code or the locale of the user, as well as the network connection type. This can be configured in
- * the {@link Builder}.
+ * <p>The bandwidth estimate is calculated by a {@link BandwidthEstimator}, which defaults to a
+ * {@link SlidingPercentileBandwidthEstimator}, and is updated each time a transfer ends. It can
+ * optionally be updated while transfers are in progress too. The initial estimate is based on the
+ * current operator's network country code or the locale of the user, as well as the network
+ * connection type. This can be configured in the {@link Builder}.
  */
 public final class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
 
@@ -105,6 +106,9 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
 
     private Map<Integer, Long> initialBitrateEstimates;
     private int slidingWindowMaxWeight;
+    @Nullable private BandwidthEstimator bandwidthEstimator;
+    private long inFlightSampleIntervalMs;
+    private long pacedTransferIdleThresholdMs;
     private Clock clock;
     private boolean resetOnNetworkTypeChange;
 
@@ -118,12 +122,16 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       this.context = context == null ? null : context.getApplicationContext();
       initialBitrateEstimates = getInitialBitrateEstimatesForCountry(Util.getCountryCode(context));
       slidingWindowMaxWeight = DEFAULT_SLIDING_WINDOW_MAX_WEIGHT;
+      inFlightSampleIntervalMs = C.TIME_UNSET;
+      pacedTransferIdleThresholdMs = C.TIME_UNSET;
       clock = Clock.DEFAULT;
       resetOnNetworkTypeChange = true;
     }
 
     /**
-     * Sets the maximum weight for the sliding window.
+     * Sets the maximum weight for the sliding window of the default {@link
+     * SlidingPercentileBandwidthEstimator}. Ignored if a {@link BandwidthEstimator} is {@link
+     * #setBandwidthEstimator set}.
      *
      * @param slidingWindowMaxWeight The maximum weight for the sliding window.
      * @return This builder.
@@ -133,6 +141,61 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       return this;
     }
 
+    /**
+     * Sets the {@link BandwidthEstimator} that calculates the bandwidth estimate from transfer
+     * samples. The default is a {@link SlidingPercentileBandwidthEstimator} that returns the median
+     * of the samples in a sliding window.
+     *
+     * @param bandwidthEstimator The {@link BandwidthEstimator}. Must not be used by other meters.
+     * @return This builder.
+     */
+    public Builder setBandwidthEstimator(BandwidthEstimator bandwidthEstimator) {
+      this.bandwidthEstimator = bandwidthEstimator;
+      return this;
+    }
+
+    /**
+     * Sets the interval at which transfers in progress are sampled, in milliseconds, or {@link
+     * C#TIME_UNSET} to only sample transfers when they end. The default value is {@link
+     * C#TIME_UNSET}.
+     *
+     * <p>Sampling transfers in progress makes the estimate follow changes in throughput during long
+     * transfers, rather than only after they end.
+     *
+     * @param inFlightSampleIntervalMs The interval at which transfers in progress are sampled, in
+     *     milliseconds, or {@link C#TIME_UNSET}.
+     * @return This builder.
+     */
+    public Builder setInFlightSampleIntervalMs(long inFlightSampleIntervalMs) {
+      Assertions.checkArgument(
+          inFlightSampleIntervalMs > 0 || inFlightSampleIntervalMs == C.TIME_UNSET);
+      this.inFlightSampleIntervalMs = inFlightSampleIntervalMs;
+      return this;
+    }
+
+    /**
+     * Sets the idle threshold used to sample transfers that might not use the full network speed,
+     * in milliseconds, or {@link C#TIME_UNSET} to ignore such transfers. The default value is
+     * {@link C#TIME_UNSET}.
+     *
+     * <p>Transfers flagged with {@link DataSpec#FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED}, such as
+     * chunked responses for low-latency live segments that are still being produced, are paced by
+     * the encoder. If a threshold is set, such transfers are split into bursts of data that arrive
+     * without pauses longer than the threshold. The bursts are sampled and the pauses between them
+     * are excluded. This provides samples during low-latency live playback, where most transfers
+     * are paced.
+     *
+     * @param pacedTransferIdleThresholdMs The longest pause within a burst, in milliseconds, or
+     *     {@link C#TIME_UNSET}.
+     * @return This builder.
+     */
+    public Builder setPacedTransferIdleThresholdMs(long pacedTransferIdleThresholdMs) {
+      Assertions.checkArgument(
+          pacedTransferIdleThresholdMs > 0 || pacedTransferIdleThresholdMs == C.TIME_UNSET);
+      this.pacedTransferIdleThresholdMs = pacedTransferIdleThresholdMs;
+      return this;
+    }
+
     /**
      * Sets the initial bitrate estimate in bits per second that should be assumed when a bandwidth
      * estimate is unavailable.
@@ -207,7 +270,12 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       return new DefaultBandwidthMeter(
           context,
           initialBitrateEstimates,
-          slidingWindowMaxWeight,
+          bandwidthEstimator != null
+              ? bandwidthEstimator
+              : new SlidingPercentileBandwidthEstimator(
+                  slidingWindowMaxWeight, SlidingPercentileBandwidthEstimator.DEFAULT_PERCENTILE),
+          inFlightSampleIntervalMs,
+          pacedTransferIdleThresholdMs,
           clock,
           resetOnNetworkTypeChange);
     }
@@ -265,8 +333,12 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   @Nullable private final Context context;
   private final ImmutableMap<Integer, Long> initialBitrateEstimates;
   private final EventDispatcher eventDispatcher;
-  private final SlidingPercentile slidingPercentile;
+  private final BandwidthEstimator bandwidthEstimator;
+  private final long inFlightSampleIntervalMs;
+  private final long pacedTransferIdleThresholdMs;
   private final Clock clock;
+  private final WeakHashMap<DataSource, Long> transferInitializingTimesMs;
+  private final WeakHashMap<DataSource, PacedTransfer> pacedTransfers;
 
   private int streamCount;
   private long sampleStartTimeMs;
@@ -287,7 +359,9 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     this(
         /* context= */ null,
         /* initialBitrateEstimates= */ ImmutableMap.of(),
-        DEFAULT_SLIDING_WINDOW_MAX_WEIGHT,
+        new SlidingPercentileBandwidthEstimator(),
+        /* inFlightSampleIntervalMs= */ C.TIME_UNSET,
+        /* pacedTransferIdleThresholdMs= */ C.TIME_UNSET,
         Clock.DEFAULT,
         /* resetOnNetworkTypeChange= */ false);
   }
@@ -295,14 +369,20 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   private DefaultBandwidthMeter(
       @Nullable Context context,
       Map<Integer, Long> initialBitrateEstimates,
-      int maxWeight,
+      BandwidthEstimator bandwidthEstimator,
+      long inFlightSampleIntervalMs,
+      long pacedTransferIdleThresholdMs,
       Clock clock,
       boolean resetOnNetworkTypeChange) {
     this.context = context == null ? null : context.getApplicationContext();
     this.initialBitrateEstimates = ImmutableMap.copyOf(initialBitrateEstimates);
     this.eventDispatcher = new EventDispatcher();
-    this.slidingPercentile = new SlidingPercentile(maxWeight);
+    this.bandwidthEstimator = bandwidthEstimator;
+    this.inFlightSampleIntervalMs = inFlightSampleIntervalMs;
+    this.pacedTransferIdleThresholdMs = pacedTransferIdleThresholdMs;
     this.clock = clock;
+    transferInitializingTimesMs = new WeakHashMap<>();
+    pacedTransfers = new WeakHashMap<>();
     // Set the initial network type and bitrate estimate
     networkType = context == null ? C.NETWORK_TYPE_UNKNOWN : Util.getNetworkType(context);
     bitrateEstimate = getInitialBitrateEstimateForNetworkType(networkType);
@@ -351,18 +431,30 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   }
 
   @Override
-  public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
-    // Do nothing.
+  public synchronized void onTransferInitializing(
+      DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      return;
+    }
+    transferInitializingTimesMs.put(source, clock.elapsedRealtime());
   }
 
   @Override
   public synchronized void onTransferStart(
       DataSource source, DataSpec dataSpec, boolean isNetwork) {
     if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      if (isNetwork && pacedTransferIdleThresholdMs != C.TIME_UNSET) {
+        pacedTransfers.put(source, new PacedTransfer());
+      }
       return;
     }
+    long nowMs = clock.elapsedRealtime();
+    @Nullable Long transferInitializingTimeMs = transferInitializingTimesMs.remove(source);
+    if (transferInitializingTimeMs != null) {
+      bandwidthEstimator.addTimeToFirstByteSample(nowMs - transferInitializingTimeMs);
+    }
     if (streamCount == 0) {
-      sampleStartTimeMs = clock.elapsedRealtime();
+      sampleStartTimeMs = nowMs;
     }
     streamCount++;
   }
@@ -371,33 +463,81 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   public synchronized void onBytesTransferred(
       DataSource source, DataSpec dataSpec, boolean isNetwork, int bytes) {
     if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      @Nullable PacedTransfer pacedTransfer = pacedTransfers.get(source);
+      if (pacedTransfer != null) {
+        onPacedBytesTransferred(pacedTransfer, bytes, clock.elapsedRealtime());
+      }
       return;
     }
     sampleBytesTransferred += bytes;
+    if (inFlightSampleIntervalMs != C.TIME_UNSET) {
+      long nowMs = clock.elapsedRealtime();
+      if (nowMs - sampleStartTimeMs >= inFlightSampleIntervalMs) {
+        addSample(nowMs);
+      }
+    }
   }
 
   @Override
   public synchronized void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
     if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      @Nullable PacedTransfer pacedTransfer = pacedTransfers.remove(source);
+      if (pacedTransfer != null) {
+        maybeAddBurstSample(pacedTransfer);
+      }
       return;
     }
     Assertions.checkState(streamCount > 0);
-    long nowMs = clock.elapsedRealtime();
+    addSample(clock.elapsedRealtime());
+    streamCount--;
+  }
+
+  private void addSample(long nowMs) {
     int sampleElapsedTimeMs = (int) (nowMs - sampleStartTimeMs);
     totalElapsedTimeMs += sampleElapsedTimeMs;
     totalBytesTransferred += sampleBytesTransferred;
     if (sampleElapsedTimeMs > 0) {
-      float bitsPerSecond = (sampleBytesTransferred * 8000f) / sampleElapsedTimeMs;
-      slidingPercentile.addSample((int) Math.sqrt(sampleBytesTransferred), bitsPerSecond);
-      if (totalElapsedTimeMs >= ELAPSED_MILLIS_FOR_ESTIMATE
-          || totalBytesTransferred >= BYTES_TRANSFERRED_FOR_ESTIMATE) {
-        bitrateEstimate = (long) slidingPercentile.getPercentile(0.5f);
-      }
-      maybeNotifyBandwidthSample(sampleElapsedTimeMs, sampleBytesTransferred, bitrateEstimate);
+      updateBitrateEstimate(sampleBytesTransferred, sampleElapsedTimeMs);
       sampleStartTimeMs = nowMs;
       sampleBytesTransferred = 0;
     } // Else any sample bytes transferred will be carried forward into the next sample.
-    streamCount--;
+  }
+
+  private void onPacedBytesTransferred(PacedTransfer pacedTransfer, int bytes, long nowMs) {
+    if (pacedTransfer.lastTransferTimeMs == C.TIME_UNSET
+        || nowMs - pacedTransfer.lastTransferTimeMs > pacedTransferIdleThresholdMs) {
+      // The bytes that end a pause were produced during the pause, so they aren't part of the new
+      // burst.
+      maybeAddBurstSample(pacedTransfer);
+      pacedTransfer.burstStartTimeMs = nowMs;
+      pacedTransfer.burstBytes = 0;
+    } else {
+      pacedTransfer.burstBytes += bytes;
+    }
+    pacedTransfer.lastTransferTimeMs = nowMs;
+  }
+
+  private void maybeAddBurstSample(PacedTransfer pacedTransfer) {
+    int burstElapsedTimeMs =
+        (int) (pacedTransfer.lastTransferTimeMs - pacedTransfer.burstStartTimeMs);
+    if (pacedTransfer.burstBytes > 0 && burstElapsedTimeMs > 0) {
+      totalElapsedTimeMs += burstElapsedTimeMs;
+      totalBytesTransferred += pacedTransfer.burstBytes;
+      updateBitrateEstimate(pacedTransfer.burstBytes, burstElapsedTimeMs);
+    }
+    pacedTransfer.burstBytes = 0;
+  }
+
+  private void updateBitrateEstimate(long bytesTransferred, int elapsedTimeMs) {
+    bandwidthEstimator.addSample(bytesTransferred, elapsedTimeMs);
+    if (totalElapsedTimeMs >= ELAPSED_MILLIS_FOR_ESTIMATE
+        || totalBytesTransferred >= BYTES_TRANSFERRED_FOR_ESTIMATE) {
+      long estimate = bandwidthEstimator.getBandwidthEstimate();
+      if (estimate != BandwidthEstimator.ESTIMATE_NOT_AVAILABLE) {
+        bitrateEstimate = estimate;
+      }
+    }
+    maybeNotifyBandwidthSample(elapsedTimeMs, bytesTransferred, bitrateEstimate);
   }
 
   private synchronized void onConnectivityAction() {
@@ -428,7 +568,7 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     sampleBytesTransferred = 0;
     totalBytesTransferred = 0;
     totalElapsedTimeMs = 0;
-    slidingPercentile.reset();
+    bandwidthEstimator.reset();
   }
 
   private void maybeNotifyBandwidthSample(
@@ -455,6 +595,22 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     return isNetwork && !dataSpec.isFlagSet(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED);
   }
 
+  /** The state of a transfer that might not use the full network speed. */
+  private static final class PacedTransfer {
+
+    /** The time at which the current burst started, or {@link C#TIME_UNSET}. */
+    public long burstStartTimeMs;
+    /** The time at which bytes were last transferred, or {@link C#TIME_UNSET}. */
+    public long lastTransferTimeMs;
+    /** The number of bytes transferred in the current burst. */
+    public long burstBytes;
+
+    public PacedTransfer() {
+      burstStartTimeMs = C.TIME_UNSET;
+      lastTransferTimeMs = C.TIME_UNSET;
+    }
+  }
+
   /*
    * Note: This class only holds a weak reference to DefaultBandwidthMeter instances. It should not
    * be made non-static, since doing so adds a strong reference (i.e. DefaultBandwidthMeter.this).
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+/**
+ * A {@link BandwidthEstimator} that returns an exponentially weighted moving average of the
+ * throughput of the samples.
+ *
+ * <p>Samples are weighted by their duration, so the weight of older samples halves every time a
+ * half-life worth of transfer time has been sampled, independently of how the transfers were split
+ * into samples. The average is corrected for the bias towards zero of the first few samples.
+ */
+public final class ExponentialWeightedAverageBandwidthEstimator implements BandwidthEstimator {
+
+  /** The default half-life, in milliseconds. */
+  public static final long DEFAULT_HALF_LIFE_MS = 3_000;
+
+  private final double halfLifeMs;
+
+  private double weightedAverage;
+  private double totalWeight;
+
+  /** Creates an instance with the {@link #DEFAULT_HALF_LIFE_MS default half-life}. */
+  public ExponentialWeightedAverageBandwidthEstimator() {
+    this(DEFAULT_HALF_LIFE_MS);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param halfLifeMs The sampled transfer time after which the weight of older samples has halved,
+   *     in milliseconds.
+   */
+  public ExponentialWeightedAverageBandwidthEstimator(long halfLifeMs) {
+    checkArgument(halfLifeMs > 0);
+    this.halfLifeMs = halfLifeMs;
+  }
+
+  @Override
+  public void addSample(long bytes, long elapsedMs) {
+    double bitsPerSecond = (bytes * 8000d) / elapsedMs;
+    double alpha = Math.pow(0.5, elapsedMs / halfLifeMs);
+    weightedAverage = alpha * weightedAverage + (1 - alpha) * bitsPerSecond;
+    totalWeight = alpha * totalWeight + (1 - alpha);
+  }
+
+  @Override
+  public long getBandwidthEstimate() {
+    return totalWeight == 0 ? ESTIMATE_NOT_AVAILABLE : Math.round(weightedAverage / totalWeight);
+  }
+
+  @Override
+  public void reset() {
+    weightedAverage = 0;
+    totalWeight = 0;
+  }
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+import static com.google.android.exoplayer2.util.Util.castNonNull;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.SlidingPercentile;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DataSource} that loads data from whichever of several mirrors of the same content
+ * responds first, for example multiple CDNs serving the same segments.
+ *
+ * <p>Mirrors are identified by their base URIs. When a {@link DataSpec} URI starts with one of the
+ * base URIs, the same relative path is requested from the mirror with the lowest estimated time to
+ * first byte. If it doesn't respond within the hedge delay, a second, hedged request is made to the
+ * next mirror, and whichever responds first is used. The hedge delay is a percentile of the times
+ * to first byte observed by all sources created by the same {@link Factory}, so that only the slow
+ * tail of requests is hedged. If a request fails, the next mirror is requested straight away.
+ * Requests for URIs that don't start with any of the base URIs are not hedged.
+ *
+ * <p>Requests are opened on threads of an {@link Executor}, so the upstream sources must support
+ * being opened on a different thread than the one reading from them. Upstream requests that aren't
+ * used have their opening threads interrupted, and are closed once their open calls have returned.
+ * {@link TransferListener TransferListeners} are notified of the transfer of this source, not of
+ * the individual upstream requests.
+ */
+public final class HedgingDataSource extends BaseDataSource {
+
+  /** {@link DataSource.Factory} for {@link HedgingDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    private final DataSource.Factory upstreamFactory;
+    private final List<String> baseUris;
+    private final Executor executor;
+
+    private float hedgePercentile;
+    private long initialHedgeDelayMs;
+    private Clock clock;
+    @Nullable private MirrorLatencyTracker latencyTracker;
+
+    /**
+     * Creates an instance.
+     *
+     * @param upstreamFactory The {@link DataSource.Factory} used to create upstream sources.
+     * @param baseUris The base URIs of the mirrors, in order of preference while no latency has
+     *     been measured. Must not be empty.
+     * @param executor The {@link Executor} on which upstream requests are opened. It must be able
+     *     to run a request for each mirror at the same time, for example a cached thread pool. The
+     *     caller is responsible for shutting it down once the sources are no longer used.
+     */
+    public Factory(DataSource.Factory upstreamFactory, List<Uri> baseUris, Executor executor) {
+      checkArgument(!baseUris.isEmpty());
+      this.upstreamFactory = upstreamFactory;
+      this.baseUris = new ArrayList<>();
+      for (Uri baseUri : baseUris) {
+        this.baseUris.add(baseUri.toString());
+      }
+      this.executor = executor;
+      hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+      initialHedgeDelayMs = DEFAULT_INITIAL_HEDGE_DELAY_MS;
+      clock = Clock.DEFAULT;
+    }
+
+    /**
+     * Sets the percentile of the observed times to first byte after which a hedged request is
+     * made. The default is {@link #DEFAULT_HEDGE_PERCENTILE}.
+     *
+     * @param hedgePercentile The percentile, between 0 and 1.
+     * @return This factory.
+     * @throws IllegalStateException If {@link #createDataSource()} has already been called.
+     */
+    public Factory setHedgePercentile(float hedgePercentile) {
+      checkState(latencyTracker == null);
+      checkArgument(hedgePercentile >= 0 && hedgePercentile <= 1);
+      this.hedgePercentile = hedgePercentile;
+      return this;
+    }
+
+    /**
+     * Sets the hedge delay used until enough times to first byte have been observed. The default
+     * is {@link #DEFAULT_INITIAL_HEDGE_DELAY_MS}.
+     *
+     * @param initialHedgeDelayMs The initial hedge delay, in milliseconds.
+     * @return This factory.
+     * @throws IllegalStateException If {@link #createDataSource()} has already been called.
+     */
+    public Factory setInitialHedgeDelayMs(long initialHedgeDelayMs) {
+      checkState(latencyTracker == null);
+      checkArgument(initialHedgeDelayMs >= 0);
+      this.initialHedgeDelayMs = initialHedgeDelayMs;
+      return this;
+    }
+
+    /**
+     * Sets the clock used to measure the times to first byte. Should only be set for testing
+     * purposes.
+     *
+     * @param clock The {@link Clock}.
+     * @return This factory.
+     * @throws IllegalStateException If {@link #createDataSource()} has already been called.
+     */
+    public Factory setClock(Clock clock) {
+      checkState(latencyTracker == null);
+      this.clock = clock;
+      return this;
+    }
+
+    @Override
+    public HedgingDataSource createDataSource() {
+      if (latencyTracker == null) {
+        latencyTracker = new MirrorLatencyTracker(baseUris, hedgePercentile, initialHedgeDelayMs);
+      }
+      return new HedgingDataSource(upstreamFactory, latencyTracker, executor, clock);
+    }
+  }
+
+  /** The default percentile of the observed times to first byte used as the hedge delay. */
+  public static final float DEFAULT_HEDGE_PERCENTILE = 0.9f;
+  /** The default hedge delay until enough times to first byte have been observed. */
+  public static final long DEFAULT_INITIAL_HEDGE_DELAY_MS = 1000;
+
+  private final DataSource.Factory upstreamFactory;
+  private final MirrorLatencyTracker latencyTracker;
+  private final Executor executor;
+  private final Clock clock;
+
+  @Nullable private DataSource upstream;
+  private boolean opened;
+
+  private HedgingDataSource(
+      DataSource.Factory upstreamFactory,
+      MirrorLatencyTracker latencyTracker,
+      Executor executor,
+      Clock clock) {
+    super(/* isNetwork= */ true);
+    this.upstreamFactory = upstreamFactory;
+    this.latencyTracker = latencyTracker;
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    transferInitializing(dataSpec);
+    String uri = dataSpec.uri.toString();
+    List<Integer> mirrorIndices = latencyTracker.getMirrorIndicesInPreferenceOrder(uri);
+    String relativeUri = mirrorIndices.isEmpty() ? uri : latencyTracker.getRelativeUri(uri);
+    long hedgeDelayMs = latencyTracker.getHedgeDelayMs();
+
+    CompletionService<Attempt> completionService =
+        new ExecutorCompletionService<>(executor);
+    List<Attempt> attempts = new ArrayList<>();
+    int nextMirrorIndex = 0;
+    int pendingAttemptCount = 0;
+    @Nullable IOException firstException = null;
+    @Nullable Attempt winner = null;
+    try {
+      if (mirrorIndices.isEmpty()) {
+        // The URI isn't served by any of the mirrors, so there's nothing to hedge with.
+        startAttempt(completionService, attempts, dataSpec, C.INDEX_UNSET);
+      } else {
+        startAttempt(
+            completionService,
+            attempts,
+            dataSpec.withUri(getMirrorUri(mirrorIndices.get(nextMirrorIndex), relativeUri)),
+            mirrorIndices.get(nextMirrorIndex++));
+      }
+      pendingAttemptCount++;
+      while (winner == null) {
+        @Nullable Future<Attempt> future;
+        if (nextMirrorIndex < mirrorIndices.size()) {
+          future = completionService.poll(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } else {
+          future = completionService.take();
+        }
+        if (future == null) {
+          // Hedge delay elapsed. Request the next mirror as well.
+          startAttempt(
+              completionService,
+              attempts,
+              dataSpec.withUri(getMirrorUri(mirrorIndices.get(nextMirrorIndex), relativeUri)),
+              mirrorIndices.get(nextMirrorIndex++));
+          pendingAttemptCount++;
+          continue;
+        }
+        pendingAttemptCount--;
+        Attempt attempt = getAttempt(future);
+        if (attempt.exception == null) {
+          winner = attempt;
+        } else {
+          if (firstException == null) {
+            firstException = attempt.exception;
+          }
+          if (nextMirrorIndex < mirrorIndices.size()) {
+            // Fail over to the next mirror straight away.
+            startAttempt(
+                completionService,
+                attempts,
+                dataSpec.withUri(getMirrorUri(mirrorIndices.get(nextMirrorIndex), relativeUri)),
+                mirrorIndices.get(nextMirrorIndex++));
+            pendingAttemptCount++;
+          } else if (pendingAttemptCount == 0) {
+            throw castNonNull(firstException);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      for (int i = 0; i < attempts.size(); i++) {
+        Attempt attempt = attempts.get(i);
+        if (attempt != winner) {
+          attempt.abandon();
+        }
+      }
+    }
+    upstream = winner.dataSource;
+    opened = true;
+    transferStarted(dataSpec);
+    return winner.length;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    int bytesRead = checkNotNull(upstream).read(buffer, offset, readLength);
+    if (bytesRead > 0) {
+      bytesTransferred(bytesRead);
+    }
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    return upstream == null ? null : upstream.getUri();
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    return upstream == null ? Collections.emptyMap() : upstream.getResponseHeaders();
+  }
+
+  @Override
+  public void close() throws IOException {
+    @Nullable DataSource upstream = this.upstream;
+    this.upstream = null;
+    try {
+      if (upstream != null) {
+        upstream.close();
+      }
+    } finally {
+      if (opened) {
+        opened = false;
+        transferEnded();
+      }
+    }
+  }
+
+  private void startAttempt(
+      CompletionService<Attempt> completionService,
+      List<Attempt> attempts,
+      DataSpec dataSpec,
+      int mirrorIndex) {
+    Attempt attempt =
+        new Attempt(
+            upstreamFactory.createDataSource(), dataSpec, latencyTracker, mirrorIndex, clock);
+    attempts.add(attempt);
+    attempt.setFuture(completionService.submit(attempt));
+  }
+
+  private Uri getMirrorUri(int mirrorIndex, String relativeUri) {
+    return Uri.parse(latencyTracker.getBaseUri(mirrorIndex) + relativeUri);
+  }
+
+  private static Attempt getAttempt(Future<Attempt> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      // Attempts catch IOExceptions, so anything else is unexpected.
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** A request to a single mirror, opened on a thread of the executor. */
+  private static final class Attempt implements Callable<Attempt> {
+
+    public final DataSource dataSource;
+
+    private final DataSpec dataSpec;
+    private final MirrorLatencyTracker latencyTracker;
+    private final int mirrorIndex;
+    private final Clock clock;
+
+    public long length;
+    @Nullable public IOException exception;
+
+    @Nullable private Future<Attempt> future;
+    private boolean openCompleted;
+    private boolean abandoned;
+
+    public Attempt(
+        DataSource dataSource,
+        DataSpec dataSpec,
+        MirrorLatencyTracker latencyTracker,
+        int mirrorIndex,
+        Clock clock) {
+      this.dataSource = dataSource;
+      this.dataSpec = dataSpec;
+      this.latencyTracker = latencyTracker;
+      this.mirrorIndex = mirrorIndex;
+      this.clock = clock;
+    }
+
+    public synchronized void setFuture(Future<Attempt> future) {
+      this.future = future;
+      if (abandoned) {
+        future.cancel(/* mayInterruptIfRunning= */ true);
+      }
+    }
+
+    @Override
+    public Attempt call() {
+      long startTimeMs = clock.elapsedRealtime();
+      try {
+        length = dataSource.open(dataSpec);
+      } catch (IOException e) {
+        exception = e;
+      }
+      long elapsedTimeMs = clock.elapsedRealtime() - startTimeMs;
+      boolean abandoned;
+      synchronized (this) {
+        openCompleted = true;
+        abandoned = this.abandoned;
+        if (abandoned || exception != null) {
+          // DataSource requires a matching close call even if open fails.
+          Util.closeQuietly(dataSource);
+        }
+      }
+      if (mirrorIndex != C.INDEX_UNSET) {
+        if (abandoned) {
+          // The open may have been interrupted, so its time to first byte is only known to be at
+          // least the elapsed time.
+          latencyTracker.addAbandonedSample(mirrorIndex, elapsedTimeMs);
+        } else {
+          latencyTracker.addSample(
+              mirrorIndex,
+              /* timeToFirstByteMs= */ elapsedTimeMs,
+              /* succeeded= */ exception == null);
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Closes the request if it has been opened. Otherwise interrupts the thread opening it, or
+     * prevents it from being opened if it hasn't started yet, and closes it once its open call has
+     * returned.
+     */
+    public synchronized void abandon() {
+      if (abandoned) {
+        return;
+      }
+      abandoned = true;
+      if (openCompleted) {
+        if (exception == null) {
+          Util.closeQuietly(dataSource);
+        }
+      } else if (future != null) {
+        future.cancel(/* mayInterruptIfRunning= */ true);
+      }
+    }
+  }
+
+  /**
+   * Tracks the time to first byte of each mirror, shared by the sources created by the same {@link
+   * Factory}.
+   */
+  private static final class MirrorLatencyTracker {
+
+    /** The number of samples required before the hedge delay is based on observed latencies. */
+    private static final int MIN_SAMPLE_COUNT_FOR_HEDGE_DELAY = 5;
+    /** The maximum number of samples from which the hedge delay is calculated. */
+    private static final int MAX_SAMPLE_COUNT = 50;
+    /** The weight of a new sample in the latency estimate of a mirror. */
+    private static final double SMOOTHING_FACTOR = 0.3;
+    /** The latency recorded for a mirror when a request to it fails, in milliseconds. */
+    private static final long FAILURE_LATENCY_MS = 10_000;
+
+    private final List<String> baseUris;
+    private final float hedgePercentile;
+    private final long initialHedgeDelayMs;
+    private final SlidingPercentile timeToFirstBytePercentile;
+    private final double[] latencyEstimatesMs;
+
+    private int sampleCount;
+
+    public MirrorLatencyTracker(
+        List<String> baseUris, float hedgePercentile, long initialHedgeDelayMs) {
+      this.baseUris = baseUris;
+      this.hedgePercentile = hedgePercentile;
+      this.initialHedgeDelayMs = initialHedgeDelayMs;
+      timeToFirstBytePercentile = new SlidingPercentile(MAX_SAMPLE_COUNT);
+      latencyEstimatesMs = new double[baseUris.size()];
+    }
+
+    public String getBaseUri(int mirrorIndex) {
+      return baseUris.get(mirrorIndex);
+    }
+
+    /**
+     * Returns the indices of the mirrors in order of increasing latency estimate, or an empty list
+     * if the URI doesn't start with any of the base URIs. Mirrors that haven't been requested yet
+     * have an estimate of 0, so that their latency gets measured.
+     */
+    public synchronized List<Integer> getMirrorIndicesInPreferenceOrder(String uri) {
+      if (getMatchingMirrorIndex(uri) == C.INDEX_UNSET) {
+        return Collections.emptyList();
+      }
+      List<Integer> mirrorIndices = new ArrayList<>();
+      for (int i = 0; i < baseUris.size(); i++) {
+        mirrorIndices.add(i);
+      }
+      // The sort is stable, so mirrors with equal estimates stay in order of preference.
+      Collections.sort(
+          mirrorIndices, (i, j) -> Double.compare(latencyEstimatesMs[i], latencyEstimatesMs[j]));
+      return mirrorIndices;
+    }
+
+    /** Returns the part of a URI that follows the base URI of the mirror serving it. */
+    public String getRelativeUri(String uri) {
+      return uri.substring(baseUris.get(getMatchingMirrorIndex(uri)).length());
+    }
+
+    public synchronized long getHedgeDelayMs() {
+      return sampleCount < MIN_SAMPLE_COUNT_FOR_HEDGE_DELAY
+          ? initialHedgeDelayMs
+          : (long) timeToFirstBytePercentile.getPercentile(hedgePercentile);
+    }
+
+    public synchronized void addSample(
+        int mirrorIndex, long timeToFirstByteMs, boolean succeeded) {
+      long latencyMs = succeeded ? timeToFirstByteMs : FAILURE_LATENCY_MS;
+      if (succeeded) {
+        timeToFirstBytePercentile.addSample(/* weight= */ 1, timeToFirstByteMs);
+        sampleCount++;
+      }
+      double estimateMs = latencyEstimatesMs[mirrorIndex];
+      latencyEstimatesMs[mirrorIndex] =
+          estimateMs == 0 ? latencyMs : estimateMs + SMOOTHING_FACTOR * (latencyMs - estimateMs);
+    }
+
+    /**
+     * Updates the latency estimate of a mirror whose request was abandoned after {@code
+     * elapsedTimeMs}, without affecting the hedge delay.
+     */
+    public synchronized void addAbandonedSample(int mirrorIndex, long elapsedTimeMs) {
+      double estimateMs = latencyEstimatesMs[mirrorIndex];
+      if (elapsedTimeMs > estimateMs) {
+        latencyEstimatesMs[mirrorIndex] =
+            estimateMs == 0
+                ? elapsedTimeMs
+                : estimateMs + SMOOTHING_FACTOR * (elapsedTimeMs - estimateMs);
+      }
+    }
+
+    private int getMatchingMirrorIndex(String uri) {
+      for (int i = 0; i < baseUris.size(); i++) {
+        if (uri.startsWith(baseUris.get(i))) {
+          return i;
+        }
+      }
+      return C.INDEX_UNSET;
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory cache of parsed manifests, keyed by the URI from which they were loaded.
+ *
+ * <p>When a manifest is loaded through a {@link ParsingLoadable} that uses the cache, the response's
+ * {@code ETag} and {@code Last-Modified} headers are stored alongside the parsed manifest. The next
+ * load of the same URI is made as a conditional request. If the server responds with {@code 304 Not
+ * Modified} the cached manifest is returned, without downloading or parsing the manifest again.
+ * Conditional requests require an {@link HttpDataSource} that reports non-2xx responses with an
+ * {@link HttpDataSource.InvalidResponseCodeException}, as all of the library's implementations do.
+ *
+ * <p>Cached manifests are shared between loads, so they must not be modified. A cache should only
+ * be used with parsers that return the same manifest for the same response, which excludes parsers
+ * that filter the manifest for specific streams.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class ManifestCache {
+
+  /** The default maximum number of manifests held in the cache. */
+  public static final int DEFAULT_MAX_ENTRY_COUNT = 16;
+
+  private static final int HTTP_NOT_MODIFIED = 304;
+  private static final String HEADER_ETAG = "ETag";
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+  /* package */ static final class Entry {
+
+    public final Class<?> parserClass;
+    public final Object manifest;
+    public final Uri uri;
+    public final Map<String, String> conditionalRequestHeaders;
+
+    private Entry(
+        Class<?> parserClass,
+        Object manifest,
+        Uri uri,
+        Map<String, String> conditionalRequestHeaders) {
+      this.parserClass = parserClass;
+      this.manifest = manifest;
+      this.uri = uri;
+      this.conditionalRequestHeaders = conditionalRequestHeaders;
+    }
+  }
+
+  private final LinkedHashMap<Uri, Entry> entries;
+
+  private int hitCount;
+  private int missCount;
+
+  /** Creates an instance that holds up to {@link #DEFAULT_MAX_ENTRY_COUNT} manifests. */
+  public ManifestCache() {
+    this(DEFAULT_MAX_ENTRY_COUNT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxEntryCount The maximum number of manifests held in the cache. When the cache is full,
+   *     the least recently used manifest is evicted.
+   */
+  public ManifestCache(int maxEntryCount) {
+    checkArgument(maxEntryCount > 0);
+    entries =
+        new LinkedHashMap<Uri, Entry>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Uri, Entry> eldest) {
+            return size() > maxEntryCount;
+          }
+        };
+  }
+
+  /**
+   * Returns the number of loads for which the server confirmed that the cached manifest was still
+   * valid, so that it was returned without being downloaded or parsed.
+   */
+  public synchronized int getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of loads for which the manifest was downloaded and parsed, either because it
+   * wasn't cached or because it had changed.
+   */
+  public synchronized int getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of manifests held in the cache. */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /** Removes all manifests from the cache. */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the entry for a URI, or null if the URI isn't cached or was cached with a different
+   * type of parser.
+   */
+  @Nullable
+  /* package */ synchronized Entry get(Uri uri, ParsingLoadable.Parser<?> parser) {
+    @Nullable Entry entry = entries.get(uri);
+    return entry != null && entry.parserClass == parser.getClass() ? entry : null;
+  }
+
+  /** Records that a load was served from the cache. */
+  /* package */ synchronized void onHit() {
+    hitCount++;
+  }
+
+  /**
+   * Records that a manifest was downloaded and parsed, and caches it if the response can be
+   * revalidated.
+   *
+   * @param requestUri The URI that was requested.
+   * @param parser The parser used to parse the manifest.
+   * @param manifest The parsed manifest.
+   * @param uri The URI from which the manifest was read, after any redirection.
+   * @param responseHeaders The response headers.
+   */
+  /* package */ synchronized void onMiss(
+      Uri requestUri,
+      ParsingLoadable.Parser<?> parser,
+      Object manifest,
+      Uri uri,
+      Map<String, List<String>> responseHeaders) {
+    missCount++;
+    Map<String, String> conditionalRequestHeaders = new HashMap<>();
+    @Nullable String eTag = getHeaderValue(responseHeaders, HEADER_ETAG);
+    if (eTag != null) {
+      conditionalRequestHeaders.put(HEADER_IF_NONE_MATCH, eTag);
+    }
+    @Nullable String lastModified = getHeaderValue(responseHeaders, HEADER_LAST_MODIFIED);
+    if (lastModified != null) {
+      conditionalRequestHeaders.put(HEADER_IF_MODIFIED_SINCE, lastModified);
+    }
+    if (conditionalRequestHeaders.isEmpty()) {
+      // The response can't be revalidated.
+      entries.remove(requestUri);
+    } else {
+      entries.put(
+          requestUri, new Entry(parser.getClass(), manifest, uri, conditionalRequestHeaders));
+    }
+  }
+
+  /** Returns whether an exception indicates that a cached manifest is still valid. */
+  /* package */ static boolean isNotModified(Exception e) {
+    return e instanceof HttpDataSource.InvalidResponseCodeException
+        && ((HttpDataSource.InvalidResponseCodeException) e).responseCode == HTTP_NOT_MODIFIED;
+  }
+
+  @Nullable
+  private static String getHeaderValue(Map<String, List<String>> headers, String name) {
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      // Header names are case insensitive. The map may contain a null key for the status line.
+      if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        return header.getValue().get(0);
+      }
+    }
+    return null;
+  }
+}
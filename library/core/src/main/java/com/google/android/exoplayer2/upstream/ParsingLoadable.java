@@ -100,8 +100,10 @@ public final class ParsingLoadable<T> implements Loadable {
 
   private final StatsDataSource dataSource;
   private final Parser<? extends T> parser;
+  @Nullable private final ManifestCache manifestCache;
 
   private volatile @Nullable T result;
+  private volatile @Nullable Uri cachedResultUri;
 
   /**
    * @param dataSource A {@link DataSource} to use when loading the data.
@@ -125,10 +127,50 @@ public final class ParsingLoadable<T> implements Loadable {
    */
   public ParsingLoadable(DataSource dataSource, DataSpec dataSpec, int type,
       Parser<? extends T> parser) {
+    this(dataSource, dataSpec, type, parser, /* manifestCache= */ null);
+  }
+
+  /**
+   * @param dataSource A {@link DataSource} to use when loading the data.
+   * @param uri The {@link Uri} from which the object should be loaded.
+   * @param type See {@link #type}.
+   * @param parser Parses the object from the response.
+   * @param manifestCache A {@link ManifestCache} used to avoid downloading and parsing unchanged
+   *     objects, or {@code null} to always download and parse the object.
+   */
+  public ParsingLoadable(
+      DataSource dataSource,
+      Uri uri,
+      int type,
+      Parser<? extends T> parser,
+      @Nullable ManifestCache manifestCache) {
+    this(
+        dataSource,
+        new DataSpec.Builder().setUri(uri).setFlags(DataSpec.FLAG_ALLOW_GZIP).build(),
+        type,
+        parser,
+        manifestCache);
+  }
+
+  /**
+   * @param dataSource A {@link DataSource} to use when loading the data.
+   * @param dataSpec The {@link DataSpec} from which the object should be loaded.
+   * @param type See {@link #type}.
+   * @param parser Parses the object from the response.
+   * @param manifestCache A {@link ManifestCache} used to avoid downloading and parsing unchanged
+   *     objects, or {@code null} to always download and parse the object.
+   */
+  public ParsingLoadable(
+      DataSource dataSource,
+      DataSpec dataSpec,
+      int type,
+      Parser<? extends T> parser,
+      @Nullable ManifestCache manifestCache) {
     this.dataSource = new StatsDataSource(dataSource);
     this.dataSpec = dataSpec;
     this.type = type;
     this.parser = parser;
+    this.manifestCache = manifestCache;
     loadTaskId = LoadEventInfo.getNewId();
   }
 
@@ -152,7 +194,8 @@ public final class ParsingLoadable<T> implements Loadable {
    * redirected uri. Must only be called after the load completed, failed, or was canceled.
    */
   public Uri getUri() {
-    return dataSource.getLastOpenedUri();
+    @Nullable Uri cachedResultUri = this.cachedResultUri;
+    return cachedResultUri != null ? cachedResultUri : dataSource.getLastOpenedUri();
   }
 
   /**
@@ -169,14 +212,37 @@ public final class ParsingLoadable<T> implements Loadable {
   }
 
   @Override
+  @SuppressWarnings("unchecked") // Cache entries are only returned for the same type of parser.
   public final void load() throws IOException {
     // We always load from the beginning, so reset bytesRead to 0.
     dataSource.resetBytesRead();
-    DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, dataSpec);
+    @Nullable
+    ManifestCache.Entry cacheEntry =
+        manifestCache != null ? manifestCache.get(dataSpec.uri, parser) : null;
+    DataSpec requestDataSpec =
+        cacheEntry != null
+            ? dataSpec.withAdditionalHeaders(cacheEntry.conditionalRequestHeaders)
+            : dataSpec;
+    DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, requestDataSpec);
     try {
-      inputStream.open();
+      try {
+        inputStream.open();
+      } catch (IOException e) {
+        if (cacheEntry != null && ManifestCache.isNotModified(e)) {
+          cachedResultUri = cacheEntry.uri;
+          result = (T) cacheEntry.manifest;
+          Assertions.checkNotNull(manifestCache).onHit();
+          return;
+        }
+        throw e;
+      }
       Uri dataSourceUri = Assertions.checkNotNull(dataSource.getUri());
-      result = parser.parse(dataSourceUri, inputStream);
+      T result = parser.parse(dataSourceUri, inputStream);
+      this.result = result;
+      if (manifestCache != null) {
+        manifestCache.onMiss(
+            dataSpec.uri, parser, result, dataSourceUri, dataSource.getResponseHeaders());
+      }
     } finally {
       Util.closeQuietly(inputStream);
     }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import com.google.android.exoplayer2.util.SlidingPercentile;
+
+/**
+ * A {@link BandwidthEstimator} that returns a percentile of the throughput of the most recent
+ * samples, using a {@link SlidingPercentile}. Each sample is weighted by the square root of its
+ * number of bytes.
+ */
+public final class SlidingPercentileBandwidthEstimator implements BandwidthEstimator {
+
+  /** The default maximum weight of the sliding window. */
+  public static final int DEFAULT_MAX_WEIGHT =
+      DefaultBandwidthMeter.DEFAULT_SLIDING_WINDOW_MAX_WEIGHT;
+  /** The default percentile, which is the median. */
+  public static final float DEFAULT_PERCENTILE = 0.5f;
+
+  private final SlidingPercentile slidingPercentile;
+  private final float percentile;
+
+  /** Creates an instance with the default maximum weight and percentile. */
+  public SlidingPercentileBandwidthEstimator() {
+    this(DEFAULT_MAX_WEIGHT, DEFAULT_PERCENTILE);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxWeight The maximum weight of the sliding window.
+   * @param percentile The percentile of the samples to return as the estimate, between 0 and 1.
+   */
+  public SlidingPercentileBandwidthEstimator(int maxWeight, float percentile) {
+    checkArgument(percentile >= 0 && percentile <= 1);
+    slidingPercentile = new SlidingPercentile(maxWeight);
+    this.percentile = percentile;
+  }
+
+  @Override
+  public void addSample(long bytes, long elapsedMs) {
+    float bitsPerSecond = (bytes * 8000f) / elapsedMs;
+    slidingPercentile.addSample((int) Math.sqrt(bytes), bitsPerSecond);
+  }
+
+  @Override
+  public long getBandwidthEstimate() {
+    float estimate = slidingPercentile.getPercentile(percentile);
+    return Float.isNaN(estimate) ? ESTIMATE_NOT_AVAILABLE : (long) estimate;
+  }
+
+  @Override
+  public void reset() {
+    slidingPercentile.reset();
+  }
+}
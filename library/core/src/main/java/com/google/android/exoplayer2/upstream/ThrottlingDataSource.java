@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Clock;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that paces reads from an upstream {@link DataSource} so that the aggregate
+ * rate of all sources sharing a {@link BandwidthThrottle} does not exceed its maximum rate.
+ *
+ * <p>Calls to {@link #read(byte[], int, int)} block for as long as is necessary to keep the source
+ * within the rate allocated to it by the throttle. The source stops counting towards the throttle
+ * when it's closed, at which point the bandwidth it was allocated is shared between the remaining
+ * open sources.
+ */
+public final class ThrottlingDataSource implements DataSource {
+
+  /** {@link DataSource.Factory} for {@link ThrottlingDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    private final DataSource.Factory upstreamFactory;
+    private final BandwidthThrottle throttle;
+    private final int weight;
+
+    /**
+     * Creates an instance whose sources have a weight of 1.
+     *
+     * @param upstreamFactory The {@link DataSource.Factory} used to create upstream sources.
+     * @param throttle The {@link BandwidthThrottle} shared by the created sources.
+     */
+    public Factory(DataSource.Factory upstreamFactory, BandwidthThrottle throttle) {
+      this(upstreamFactory, throttle, /* weight= */ 1);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param upstreamFactory The {@link DataSource.Factory} used to create upstream sources.
+     * @param throttle The {@link BandwidthThrottle} shared by the created sources.
+     * @param weight The weight of the created sources, used to share the bandwidth of the throttle
+     *     between open sources. Must be greater than 0.
+     */
+    public Factory(DataSource.Factory upstreamFactory, BandwidthThrottle throttle, int weight) {
+      checkArgument(weight > 0);
+      this.upstreamFactory = upstreamFactory;
+      this.throttle = throttle;
+      this.weight = weight;
+    }
+
+    @Override
+    public ThrottlingDataSource createDataSource() {
+      return new ThrottlingDataSource(upstreamFactory.createDataSource(), throttle, weight);
+    }
+  }
+
+  private final DataSource upstream;
+  private final BandwidthThrottle throttle;
+  private final int weight;
+  private final Clock clock;
+
+  private boolean registered;
+  private long nextReadTimeUs;
+
+  /**
+   * Creates an instance.
+   *
+   * @param upstream The upstream {@link DataSource}.
+   * @param throttle The {@link BandwidthThrottle} shared with other sources.
+   * @param weight The weight of this source, used to share the bandwidth of the throttle between
+   *     open sources. Must be greater than 0.
+   */
+  public ThrottlingDataSource(DataSource upstream, BandwidthThrottle throttle, int weight) {
+    this(upstream, throttle, weight, Clock.DEFAULT);
+  }
+
+  /* package */ ThrottlingDataSource(
+      DataSource upstream, BandwidthThrottle throttle, int weight, Clock clock) {
+    checkArgument(weight > 0);
+    this.upstream = checkNotNull(upstream);
+    this.throttle = checkNotNull(throttle);
+    this.weight = weight;
+    this.clock = clock;
+    nextReadTimeUs = C.TIME_UNSET;
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    checkNotNull(transferListener);
+    upstream.addTransferListener(transferListener);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    long length = upstream.open(dataSpec);
+    throttle.register(weight);
+    registered = true;
+    nextReadTimeUs = C.TIME_UNSET;
+    return length;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    int bytesRead = upstream.read(buffer, offset, readLength);
+    if (bytesRead > 0) {
+      waitForAllocatedRate(bytesRead);
+    }
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    return upstream.getUri();
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    return upstream.getResponseHeaders();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (registered) {
+      registered = false;
+      throttle.unregister(weight);
+    }
+    upstream.close();
+  }
+
+  private void waitForAllocatedRate(int bytesRead) throws InterruptedIOException {
+    long bytesPerSecond = throttle.getAllocatedBytesPerSecond(weight);
+    if (bytesPerSecond == BandwidthThrottle.NO_LIMIT) {
+      nextReadTimeUs = C.TIME_UNSET;
+      return;
+    }
+    long nowUs = C.msToUs(clock.elapsedRealtime());
+    // Time during which the source wasn't reading can't be used to read a burst of data later.
+    long readStartTimeUs = nextReadTimeUs == C.TIME_UNSET ? nowUs : max(nowUs, nextReadTimeUs);
+    nextReadTimeUs = readStartTimeUs + bytesRead * C.MICROS_PER_SECOND / bytesPerSecond;
+    long waitTimeMs = C.usToMs(nextReadTimeUs - nowUs);
+    if (waitTimeMs > 0) {
+      clock.sleep(waitTimeMs);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException();
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * A {@link BandwidthEstimator} that estimates request latency separately from throughput, and
+ * returns the effective bandwidth of a typical request including its latency.
+ *
+ * <p>Throughput is estimated by a wrapped {@link BandwidthEstimator} from the samples, which don't
+ * include the time to first byte. The time to first byte and the number of bytes per request are
+ * estimated with exponentially weighted moving averages. The estimate is the number of bits of a
+ * typical request divided by its expected duration, which is its time to first byte plus its
+ * transfer time at the estimated throughput. For large requests the estimate approaches the
+ * throughput, whereas for small requests, such as low-latency chunks, it's dominated by latency.
+ *
+ * <p>The number of bytes per request is measured as the bytes sampled between consecutive time to
+ * first byte samples, which is accurate if requests are made sequentially. This estimator is best
+ * used with {@link DefaultBandwidthMeter.Builder#setInFlightSampleIntervalMs in-flight sampling},
+ * so that the throughput of long transfers is tracked while they're in progress.
+ */
+public final class TimeToFirstByteAwareBandwidthEstimator implements BandwidthEstimator {
+
+  /**
+   * The default weight of each new time to first byte and request size sample in their moving
+   * averages.
+   */
+  public static final float DEFAULT_SMOOTHING_FACTOR = 0.25f;
+
+  private final BandwidthEstimator throughputEstimator;
+  private final float smoothingFactor;
+
+  private double timeToFirstByteEstimateMs;
+  private double requestBytesEstimate;
+  private long requestBytes;
+  private boolean hasTimeToFirstByteSample;
+  private boolean hasRequestBytesSample;
+
+  /**
+   * Creates an instance that estimates throughput with an {@link
+   * ExponentialWeightedAverageBandwidthEstimator}, using the {@link #DEFAULT_SMOOTHING_FACTOR}.
+   */
+  public TimeToFirstByteAwareBandwidthEstimator() {
+    this(new ExponentialWeightedAverageBandwidthEstimator(), DEFAULT_SMOOTHING_FACTOR);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param throughputEstimator The {@link BandwidthEstimator} used to estimate throughput.
+   * @param smoothingFactor The weight of each new time to first byte and request size sample in
+   *     their moving averages, greater than 0 and at most 1.
+   */
+  public TimeToFirstByteAwareBandwidthEstimator(
+      BandwidthEstimator throughputEstimator, float smoothingFactor) {
+    checkArgument(smoothingFactor > 0 && smoothingFactor <= 1);
+    this.throughputEstimator = throughputEstimator;
+    this.smoothingFactor = smoothingFactor;
+  }
+
+  /**
+   * Returns the time to first byte estimate in milliseconds, or {@link C#TIME_UNSET} if no time to
+   * first byte has been sampled.
+   */
+  public long getTimeToFirstByteEstimateMs() {
+    return hasTimeToFirstByteSample ? (long) timeToFirstByteEstimateMs : C.TIME_UNSET;
+  }
+
+  @Override
+  public void addSample(long bytes, long elapsedMs) {
+    throughputEstimator.addSample(bytes, elapsedMs);
+    requestBytes += bytes;
+  }
+
+  @Override
+  public void addTimeToFirstByteSample(long timeToFirstByteMs) {
+    timeToFirstByteEstimateMs =
+        hasTimeToFirstByteSample
+            ? smooth(timeToFirstByteEstimateMs, timeToFirstByteMs)
+            : timeToFirstByteMs;
+    hasTimeToFirstByteSample = true;
+    // The bytes sampled since the previous time to first byte sample belong to previous requests.
+    if (requestBytes > 0) {
+      requestBytesEstimate =
+          hasRequestBytesSample ? smooth(requestBytesEstimate, requestBytes) : requestBytes;
+      hasRequestBytesSample = true;
+      requestBytes = 0;
+    }
+  }
+
+  @Override
+  public long getBandwidthEstimate() {
+    long throughputEstimate = throughputEstimator.getBandwidthEstimate();
+    if (throughputEstimate == ESTIMATE_NOT_AVAILABLE
+        || throughputEstimate <= 0
+        || !hasTimeToFirstByteSample
+        || !hasRequestBytesSample) {
+      return throughputEstimate;
+    }
+    double requestBits = requestBytesEstimate * 8;
+    double requestDurationMs = timeToFirstByteEstimateMs + requestBits * 1000 / throughputEstimate;
+    return Math.round(requestBits * 1000 / requestDurationMs);
+  }
+
+  @Override
+  public void reset() {
+    throughputEstimator.reset();
+    timeToFirstByteEstimateMs = 0;
+    requestBytesEstimate = 0;
+    requestBytes = 0;
+    hasTimeToFirstByteSample = false;
+    hasRequestBytesSample = false;
+  }
+
+  private double smooth(double average, double sample) {
+    return (1 - smoothingFactor) * average + smoothingFactor * sample;
+  }
+}
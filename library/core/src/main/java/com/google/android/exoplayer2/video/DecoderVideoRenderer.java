@@ -344,7 +344,11 @@ public abstract class DecoderVideoRenderer extends BaseRenderer {
   @CallSuper
   protected void releaseDecoder() {
     inputBuffer = null;
-    outputBuffer = null;
+    if (outputBuffer != null) {
+      // Return the output buffer, so that the decoder can release any frame it references.
+      outputBuffer.release();
+      outputBuffer = null;
+    }
     decoderReinitializationState = REINITIALIZATION_STATE_NONE;
     decoderReceivedBuffers = false;
     buffersInCodecCount = 0;
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import androidx.annotation.GuardedBy;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Keeps the native context of a decoder alive while {@link VideoDecoderOutputBuffer output
+ * buffers} reference frames owned by it.
+ *
+ * <p>Output buffers can be held after the decoder is released, for example by a {@link
+ * VideoDecoderGLFrameRenderer} that keeps the last frame to redraw it. Each output buffer that
+ * references a decoder frame holds a reference to the context, and the context is only closed once
+ * the decoder has been released and all of these output buffers have been released.
+ *
+ * <p>All methods are thread safe.
+ */
+public final class ReferenceCountedDecoderContext {
+
+  /** Releases a decoder frame referenced by an output buffer. */
+  public interface FrameReleaser {
+
+    /**
+     * Releases the decoder frame referenced by the given output buffer.
+     *
+     * @param outputBuffer The output buffer.
+     */
+    void releaseFrame(VideoDecoderOutputBuffer outputBuffer);
+  }
+
+  private final FrameReleaser frameReleaser;
+  private final Runnable contextCloser;
+
+  @GuardedBy("this")
+  private final Set<VideoDecoderOutputBuffer> referencingOutputBuffers;
+
+  @GuardedBy("this")
+  private boolean released;
+
+  /**
+   * Creates an instance.
+   *
+   * @param frameReleaser Releases decoder frames referenced by output buffers.
+   * @param contextCloser Closes the native context.
+   */
+  public ReferenceCountedDecoderContext(FrameReleaser frameReleaser, Runnable contextCloser) {
+    this.frameReleaser = frameReleaser;
+    this.contextCloser = contextCloser;
+    referencingOutputBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  /**
+   * Called when an output buffer has been initialized with a reference to a decoder frame, which
+   * must be released by {@link #releaseFrame}.
+   *
+   * @param outputBuffer The output buffer.
+   */
+  public synchronized void onFrameReferenced(VideoDecoderOutputBuffer outputBuffer) {
+    referencingOutputBuffers.add(outputBuffer);
+  }
+
+  /**
+   * Releases the decoder frame referenced by the given output buffer, if it references one. Closes
+   * the context if the decoder has been released and no other output buffer references a frame.
+   *
+   * @param outputBuffer The output buffer that's being released.
+   */
+  public synchronized void releaseFrame(VideoDecoderOutputBuffer outputBuffer) {
+    if (!referencingOutputBuffers.remove(outputBuffer)) {
+      return;
+    }
+    frameReleaser.releaseFrame(outputBuffer);
+    if (released && referencingOutputBuffers.isEmpty()) {
+      contextCloser.run();
+    }
+  }
+
+  /**
+   * Called when the decoder is released. Closes the context immediately if no output buffer
+   * references a frame, or else when the last such output buffer is released.
+   */
+  public synchronized void release() {
+    if (released) {
+      return;
+    }
+    released = true;
+    if (referencingOutputBuffers.isEmpty()) {
+      contextCloser.run();
+    }
+  }
+}
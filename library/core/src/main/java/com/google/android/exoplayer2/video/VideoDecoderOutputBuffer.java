@@ -61,6 +61,8 @@ public class VideoDecoderOutputBuffer extends OutputBuffer {
 
   private final Owner<VideoDecoderOutputBuffer> owner;
 
+  private boolean decoderOwnedYuvPlanes;
+
   /**
    * Creates VideoDecoderOutputBuffer.
    *
@@ -75,6 +77,24 @@ public class VideoDecoderOutputBuffer extends OutputBuffer {
     owner.releaseOutputBuffer(this);
   }
 
+  @Override
+  public void clear() {
+    super.clear();
+    if (decoderOwnedYuvPlanes) {
+      // The planes wrap memory that's no longer valid.
+      yuvPlanes = null;
+      decoderOwnedYuvPlanes = false;
+    }
+  }
+
+  /**
+   * Returns whether {@link #yuvPlanes} wrap memory owned by the decoder, rather than a copy of the
+   * frame in {@link #data}. If so, the planes are only valid until the buffer is released.
+   */
+  public boolean hasDecoderOwnedYuvPlanes() {
+    return decoderOwnedYuvPlanes;
+  }
+
   /**
    * Initializes the buffer.
    *
@@ -88,6 +108,10 @@ public class VideoDecoderOutputBuffer extends OutputBuffer {
       long timeUs, @C.VideoOutputMode int mode, @Nullable ByteBuffer supplementalData) {
     this.timeUs = timeUs;
     this.mode = mode;
+    if (decoderOwnedYuvPlanes) {
+      yuvPlanes = null;
+      decoderOwnedYuvPlanes = false;
+    }
     if (supplementalData != null && supplementalData.hasRemaining()) {
       addFlag(C.BUFFER_FLAG_HAS_SUPPLEMENTAL_DATA);
       int size = supplementalData.limit();
@@ -113,6 +137,10 @@ public class VideoDecoderOutputBuffer extends OutputBuffer {
     this.width = width;
     this.height = height;
     this.colorspace = colorspace;
+    if (decoderOwnedYuvPlanes) {
+      yuvPlanes = null;
+      decoderOwnedYuvPlanes = false;
+    }
     int uvHeight = (int) (((long) height + 1) / 2);
     if (!isSafeToMultiply(yStride, height) || !isSafeToMultiply(uvStride, uvHeight)) {
       return false;
@@ -157,6 +185,43 @@ public class VideoDecoderOutputBuffer extends OutputBuffer {
     return true;
   }
 
+  /**
+   * Configures the buffer for a YUV frame whose planes are owned by the decoder, so that the frame
+   * doesn't have to be copied into {@link #data}. The decoder keeps the planes valid until the
+   * buffer is released, after which they must not be accessed. Called via JNI after decoding
+   * completes.
+   *
+   * @param width The width of the frame.
+   * @param height The height of the frame.
+   * @param yStride The stride of the Y plane.
+   * @param uvStride The stride of the U and V planes.
+   * @param colorspace The colorspace of the frame.
+   * @param yPlane The Y plane, with a capacity of at least {@code yStride * height}.
+   * @param uPlane The U plane, with a capacity of at least {@code uvStride * ((height + 1) / 2)}.
+   * @param vPlane The V plane, with a capacity of at least {@code uvStride * ((height + 1) / 2)}.
+   */
+  public void initForDecoderOwnedYuvFrame(
+      int width,
+      int height,
+      int yStride,
+      int uvStride,
+      int colorspace,
+      ByteBuffer yPlane,
+      ByteBuffer uPlane,
+      ByteBuffer vPlane) {
+    this.width = width;
+    this.height = height;
+    this.colorspace = colorspace;
+    yuvPlanes = new ByteBuffer[] {yPlane, uPlane, vPlane};
+    if (yuvStrides == null) {
+      yuvStrides = new int[3];
+    }
+    yuvStrides[0] = yStride;
+    yuvStrides[1] = uvStride;
+    yuvStrides[2] = uvStride;
+    decoderOwnedYuvPlanes = true;
+  }
+
   /**
    * Configures the buffer for the given frame dimensions when passing actual frame data via {@link
    * #decoderPrivate}. Called via JNI after decoding completes.
@@ -8911,6 +8911,52 @@ public final class ExoPlayerTest {
     assertThat(liveOffsetAtEnd).isIn(Range.closed(11_900L, 12_100L));
   }
 
+  @Test
+  public void setPlaybackParameters_fromListener_reportsChange() throws Exception {
+    ExoPlayer player = new TestExoPlayerBuilder(context).build();
+    PlaybackParameters playbackParameters = new PlaybackParameters(/* speed= */ 2f);
+    player.addListener(
+        new EventListener() {
+          @Override
+          public void onRepeatModeChanged(int repeatMode) {
+            player.setPlaybackParameters(playbackParameters);
+          }
+        });
+    EventListener listener = mock(EventListener.class);
+    player.addListener(listener);
+
+    player.setRepeatMode(Player.REPEAT_MODE_ONE);
+    TestPlayerRunHelper.runUntilPendingCommandsAreFullyHandled(player);
+    player.release();
+
+    verify(listener).onPlaybackParametersChanged(playbackParameters);
+    verify(listener).onPlaybackParametersChanged(any());
+  }
+
+  @Test
+  public void setPlaybackParameters_changedBackFromListener_doesNotReportChange()
+      throws Exception {
+    ExoPlayer player = new TestExoPlayerBuilder(context).build();
+    player.addListener(
+        new EventListener() {
+          @Override
+          public void onRepeatModeChanged(int repeatMode) {
+            // Both changes are queued before listeners are notified of either of them.
+            player.setPlaybackParameters(new PlaybackParameters(/* speed= */ 2f));
+            player.setPlaybackParameters(PlaybackParameters.DEFAULT);
+          }
+        });
+    EventListener listener = mock(EventListener.class);
+    player.addListener(listener);
+
+    player.setRepeatMode(Player.REPEAT_MODE_ONE);
+    TestPlayerRunHelper.runUntilPendingCommandsAreFullyHandled(player);
+    player.release();
+
+    verify(listener).onRepeatModeChanged(Player.REPEAT_MODE_ONE);
+    verify(listener, never()).onPlaybackParametersChanged(any());
+  }
+
   @Test
   public void onEvents_correspondToListenerCalls() throws Exception {
     ExoPlayer player = new TestExoPlayerBuilder(context).build();
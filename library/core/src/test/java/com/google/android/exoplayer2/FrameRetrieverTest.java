@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.FrameRetriever.retrieveFrames;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.decoder.DecoderException;
+import com.google.android.exoplayer2.decoder.SimpleDecoder;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.testutil.AutoAdvancingFakeClock;
+import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
+import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link FrameRetriever}. */
+@RunWith(AndroidJUnit4.class)
+public final class FrameRetrieverTest {
+
+  private static final long TEST_TIMEOUT_SEC = 10;
+  private static final MediaItem MEDIA_ITEM =
+      MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp4/sample.mp4"));
+
+  private MediaSourceFactory mediaSourceFactory;
+  private AutoAdvancingFakeClock clock;
+
+  @Before
+  public void setUp() {
+    Context context = ApplicationProvider.getApplicationContext();
+    mediaSourceFactory = new DefaultMediaSourceFactory(context);
+    clock = new AutoAdvancingFakeClock();
+  }
+
+  @Test
+  public void retrieveFrames_exact_outputsFramesAtOrAfterRequestedPositions() throws Exception {
+    List<Long> requestedPositionsUs = Collections.synchronizedList(new ArrayList<>());
+
+    ListenableFuture<long[]> framesFuture =
+        retrieveFrames(
+            mediaSourceFactory,
+            MEDIA_ITEM,
+            new long[] {500_000, 100_000},
+            SeekParameters.EXACT,
+            format -> new FakeVideoDecoder(/* reorderDepth= */ 3),
+            (requestedPositionUs, outputBuffer) -> requestedPositionsUs.add(requestedPositionUs),
+            clock);
+    long[] frameTimesUs = framesFuture.get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(frameTimesUs).asList().containsExactly(500_500L, 100_100L).inOrder();
+    assertThat(requestedPositionsUs).containsExactly(100_000L, 500_000L).inOrder();
+  }
+
+  @Test
+  public void retrieveFrames_closestSync_outputsSyncFrameForAllPositions() throws Exception {
+    List<Long> frameTimesFromListenerUs = Collections.synchronizedList(new ArrayList<>());
+
+    ListenableFuture<long[]> framesFuture =
+        retrieveFrames(
+            mediaSourceFactory,
+            MEDIA_ITEM,
+            new long[] {300_000, 600_000},
+            SeekParameters.CLOSEST_SYNC,
+            format -> new FakeVideoDecoder(/* reorderDepth= */ 0),
+            (requestedPositionUs, outputBuffer) ->
+                frameTimesFromListenerUs.add(outputBuffer.timeUs),
+            clock);
+    long[] frameTimesUs = framesFuture.get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    // The sample file has a single sync sample, at the start.
+    assertThat(frameTimesUs).asList().containsExactly(0L, 0L);
+    assertThat(frameTimesFromListenerUs).containsExactly(0L, 0L);
+  }
+
+  @Test
+  public void retrieveFrames_multipleMediaItemsInParallel_outputsExpectedFrames()
+      throws Exception {
+    ListenableFuture<long[]> framesFuture1 =
+        retrieveFrames(
+            mediaSourceFactory,
+            MEDIA_ITEM,
+            new long[] {100_000},
+            SeekParameters.EXACT,
+            format -> new FakeVideoDecoder(/* reorderDepth= */ 3),
+            (requestedPositionUs, outputBuffer) -> {},
+            clock);
+    ListenableFuture<long[]> framesFuture2 =
+        retrieveFrames(
+            mediaSourceFactory,
+            MEDIA_ITEM,
+            new long[] {700_000, 2_000_000},
+            SeekParameters.EXACT,
+            format -> new FakeVideoDecoder(/* reorderDepth= */ 3),
+            (requestedPositionUs, outputBuffer) -> {},
+            clock);
+
+    long[] frameTimesUs1 = framesFuture1.get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+    long[] frameTimesUs2 = framesFuture2.get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(frameTimesUs1).asList().containsExactly(100_100L);
+    // The second position is beyond the end of the media.
+    assertThat(frameTimesUs2).asList().containsExactly(700_700L, C.TIME_UNSET).inOrder();
+  }
+
+  @Test
+  public void retrieveFrames_canceled_releasesDecoder() throws Exception {
+    FakeVideoDecoder decoder = new FakeVideoDecoder(/* reorderDepth= */ 0);
+    AtomicReference<ListenableFuture<long[]>> framesFutureReference = new AtomicReference<>();
+    CountDownLatch futureSetLatch = new CountDownLatch(1);
+    AtomicInteger frameCount = new AtomicInteger();
+
+    ListenableFuture<long[]> framesFuture =
+        retrieveFrames(
+            mediaSourceFactory,
+            MEDIA_ITEM,
+            new long[] {100_000, 500_000},
+            SeekParameters.EXACT,
+            format -> decoder,
+            (requestedPositionUs, outputBuffer) -> {
+              // Cancel the retrieval when the first frame is output.
+              frameCount.incrementAndGet();
+              try {
+                futureSetLatch.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              framesFutureReference.get().cancel(/* mayInterruptIfRunning= */ false);
+            },
+            clock);
+    framesFutureReference.set(framesFuture);
+    futureSetLatch.countDown();
+
+    assertThat(decoder.released.await(TEST_TIMEOUT_SEC, TimeUnit.SECONDS)).isTrue();
+    assertThat(framesFuture.isCancelled()).isTrue();
+    assertThat(frameCount.get()).isEqualTo(1);
+  }
+
+  /**
+   * Fake decoder that outputs frames in presentation order, buffering up to {@code reorderDepth}
+   * frames like a decoder of streams with B-frames.
+   */
+  private static final class FakeVideoDecoder
+      extends SimpleDecoder<VideoDecoderInputBuffer, VideoDecoderOutputBuffer, DecoderException> {
+
+    public final CountDownLatch released;
+
+    private final int reorderDepth;
+    private final PriorityQueue<long[]> pendingFrames;
+
+    public FakeVideoDecoder(int reorderDepth) {
+      super(new VideoDecoderInputBuffer[4], new VideoDecoderOutputBuffer[4]);
+      this.reorderDepth = reorderDepth;
+      released = new CountDownLatch(1);
+      pendingFrames =
+          new PriorityQueue<>(/* initialCapacity= */ 4, (a, b) -> Long.compare(a[0], b[0]));
+    }
+
+    @Override
+    public void release() {
+      super.release();
+      released.countDown();
+    }
+
+    @Override
+    public String getName() {
+      return "FakeVideoDecoder";
+    }
+
+    @Override
+    protected VideoDecoderInputBuffer createInputBuffer() {
+      return new VideoDecoderInputBuffer(VideoDecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    @Override
+    protected VideoDecoderOutputBuffer createOutputBuffer() {
+      return new VideoDecoderOutputBuffer(this::releaseOutputBuffer);
+    }
+
+    @Override
+    protected DecoderException createUnexpectedDecodeException(Throwable error) {
+      return new DecoderException(error);
+    }
+
+    @Override
+    @Nullable
+    protected DecoderException decode(
+        VideoDecoderInputBuffer inputBuffer, VideoDecoderOutputBuffer outputBuffer, boolean reset) {
+      if (reset) {
+        pendingFrames.clear();
+      }
+      pendingFrames.add(new long[] {inputBuffer.timeUs, inputBuffer.isDecodeOnly() ? 1 : 0});
+      if (pendingFrames.size() <= reorderDepth) {
+        outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+        return null;
+      }
+      long[] frame = pendingFrames.remove();
+      // The output frame differs from the input frame, so its flags are set here.
+      outputBuffer.clear();
+      outputBuffer.init(frame[0], C.VIDEO_OUTPUT_MODE_YUV, /* supplementalData= */ null);
+      if (frame[1] == 1) {
+        outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.MultiPlayerLoadControl.PlayerLoadControl;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link MultiPlayerLoadControl}. */
+@RunWith(AndroidJUnit4.class)
+public final class MultiPlayerLoadControlTest {
+
+  private static final float SPEED = 1f;
+  private static final int SEGMENT_SIZE = C.DEFAULT_BUFFER_SEGMENT_SIZE;
+  private static final int TARGET_BUFFER_BYTES = 12 * SEGMENT_SIZE;
+  private static final long MIN_BUFFER_US = 5_000_000;
+  private static final long MAX_BUFFER_US = 60_000_000;
+
+  private DefaultAllocator allocator;
+  private MultiPlayerLoadControl multiPlayerLoadControl;
+
+  @Before
+  public void setUp() {
+    allocator = new DefaultAllocator(/* trimOnReset= */ false, SEGMENT_SIZE);
+    multiPlayerLoadControl =
+        new MultiPlayerLoadControl.Builder()
+            .setAllocator(allocator)
+            .setTargetBufferBytes(TARGET_BUFFER_BYTES)
+            .setBufferDurationsMs(
+                /* minBufferMs= */ (int) C.usToMs(MIN_BUFFER_US),
+                /* maxBufferMs= */ (int) C.usToMs(MAX_BUFFER_US),
+                /* bufferForPlaybackMs= */ 1000,
+                /* bufferForPlaybackAfterRebufferMs= */ 2000)
+            .build();
+  }
+
+  @Test
+  public void budgetsAreSharedInProportionToWeightsOfPreparedPlayers() {
+    PlayerLoadControl focusedLoadControl =
+        multiPlayerLoadControl.createLoadControl(/* weight= */ 2);
+    PlayerLoadControl loadControl1 = multiPlayerLoadControl.createLoadControl(/* weight= */ 1);
+    PlayerLoadControl loadControl2 = multiPlayerLoadControl.createLoadControl(/* weight= */ 1);
+
+    focusedLoadControl.onPrepared();
+    loadControl1.onPrepared();
+    loadControl2.onPrepared();
+
+    assertThat(focusedLoadControl.getTargetBufferBytes()).isEqualTo(6 * SEGMENT_SIZE);
+    assertThat(focusedLoadControl.getMaxBufferUs()).isEqualTo(30_000_000);
+    assertThat(loadControl1.getTargetBufferBytes()).isEqualTo(3 * SEGMENT_SIZE);
+    assertThat(loadControl1.getMaxBufferUs()).isEqualTo(15_000_000);
+
+    loadControl2.onReleased();
+
+    assertThat(focusedLoadControl.getTargetBufferBytes()).isEqualTo(8 * SEGMENT_SIZE);
+    assertThat(loadControl1.getTargetBufferBytes()).isEqualTo(4 * SEGMENT_SIZE);
+    assertThat(loadControl2.getTargetBufferBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void maxBufferDuration_isAtLeastMinBufferDuration() {
+    PlayerLoadControl loadControl1 = multiPlayerLoadControl.createLoadControl(/* weight= */ 1);
+    PlayerLoadControl loadControl2 = multiPlayerLoadControl.createLoadControl(/* weight= */ 100);
+    loadControl1.onPrepared();
+    loadControl2.onPrepared();
+
+    assertThat(loadControl1.getMaxBufferUs()).isEqualTo(MIN_BUFFER_US);
+  }
+
+  @Test
+  public void setWeight_updatesShares() {
+    PlayerLoadControl loadControl1 = multiPlayerLoadControl.createLoadControl();
+    PlayerLoadControl loadControl2 = multiPlayerLoadControl.createLoadControl();
+    loadControl1.onPrepared();
+    loadControl2.onPrepared();
+
+    loadControl2.setWeight(3);
+
+    assertThat(loadControl1.getTargetBufferBytes()).isEqualTo(3 * SEGMENT_SIZE);
+    assertThat(loadControl2.getTargetBufferBytes()).isEqualTo(9 * SEGMENT_SIZE);
+  }
+
+  @Test
+  public void shouldContinueLoading_stopsWhenPlayerShareOfTargetBufferBytesReached() {
+    PlayerLoadControl loadControl1 = multiPlayerLoadControl.createLoadControl();
+    PlayerLoadControl loadControl2 = multiPlayerLoadControl.createLoadControl();
+    loadControl1.onPrepared();
+    loadControl2.onPrepared();
+
+    allocate(loadControl1.getAllocator(), /* count= */ 6);
+
+    assertThat(loadControl1.getTotalBytesAllocated()).isEqualTo(6 * SEGMENT_SIZE);
+    assertThat(loadControl2.getTotalBytesAllocated()).isEqualTo(0);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(6 * SEGMENT_SIZE);
+    assertThat(
+            loadControl1.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 10_000_000, SPEED))
+        .isFalse();
+    assertThat(
+            loadControl2.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 1_000_000, SPEED))
+        .isTrue();
+  }
+
+  @Test
+  public void shouldContinueLoading_belowMinBufferWithShareReached_resumesOnceBufferIsReleased() {
+    PlayerLoadControl loadControl1 = multiPlayerLoadControl.createLoadControl();
+    PlayerLoadControl loadControl2 = multiPlayerLoadControl.createLoadControl();
+    loadControl1.onPrepared();
+    loadControl2.onPrepared();
+    Allocation[] allocations = allocate(loadControl1.getAllocator(), /* count= */ 6);
+
+    // The share of the target buffer size is reached before the minimum buffer duration.
+    assertThat(
+            loadControl1.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 2_000_000, SPEED))
+        .isFalse();
+
+    // Playback releases part of the buffer.
+    loadControl1.getAllocator().release(allocations[0]);
+
+    assertThat(
+            loadControl1.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 1_500_000, SPEED))
+        .isTrue();
+  }
+
+  @Test
+  public void shouldContinueLoading_withShareReducedAndBufferAlmostEmpty_continuesLoading() {
+    PlayerLoadControl loadControl1 = multiPlayerLoadControl.createLoadControl();
+    PlayerLoadControl loadControl2 = multiPlayerLoadControl.createLoadControl();
+    loadControl1.onPrepared();
+    loadControl2.onPrepared();
+    allocate(loadControl1.getAllocator(), /* count= */ 6);
+
+    loadControl2.setWeight(11);
+
+    assertThat(
+            loadControl1.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 1_000_000, SPEED))
+        .isFalse();
+    assertThat(
+            loadControl1.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 100_000, SPEED))
+        .isTrue();
+  }
+
+  @Test
+  public void release_updatesPlayerAndSharedAllocatedBytes() {
+    PlayerLoadControl loadControl = multiPlayerLoadControl.createLoadControl();
+    loadControl.onPrepared();
+    Allocator playerAllocator = loadControl.getAllocator();
+    Allocation[] allocations = allocate(playerAllocator, /* count= */ 3);
+
+    playerAllocator.release(allocations[0]);
+    playerAllocator.release(new Allocation[] {allocations[1], allocations[2]});
+
+    assertThat(loadControl.getTotalBytesAllocated()).isEqualTo(0);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldStartPlayback_usesPerPlayerThresholds() {
+    PlayerLoadControl loadControl = multiPlayerLoadControl.createLoadControl();
+    loadControl.onPrepared();
+
+    assertThat(
+            loadControl.shouldStartPlayback(
+                /* bufferedDurationUs= */ 1_000_000,
+                SPEED,
+                /* rebuffering= */ false,
+                /* targetLiveOffsetUs= */ C.TIME_UNSET))
+        .isTrue();
+    assertThat(
+            loadControl.shouldStartPlayback(
+                /* bufferedDurationUs= */ 1_000_000,
+                SPEED,
+                /* rebuffering= */ true,
+                /* targetLiveOffsetUs= */ C.TIME_UNSET))
+        .isFalse();
+  }
+
+  private static Allocation[] allocate(Allocator allocator, int count) {
+    Allocation[] allocations = new Allocation[count];
+    for (int i = 0; i < count; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    return allocations;
+  }
+}
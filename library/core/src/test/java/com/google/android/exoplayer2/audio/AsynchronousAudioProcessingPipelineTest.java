@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.audio.DefaultAudioSink.AudioProcessorChain;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link AsynchronousAudioProcessingPipeline}. */
+@RunWith(AndroidJUnit4.class)
+public final class AsynchronousAudioProcessingPipelineTest {
+
+  private static final int BYTES_PER_FRAME = 4;
+  private static final long TIMEOUT_MS = 10_000;
+  private static final AudioProcessor.AudioFormat AUDIO_FORMAT =
+      new AudioProcessor.AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 2, C.ENCODING_PCM_16BIT);
+
+  private Object lock;
+  private FrameCountingAudioProcessor audioProcessor;
+  private AsynchronousAudioProcessingPipeline pipeline;
+
+  @Before
+  public void setUp() throws Exception {
+    lock = new Object();
+    audioProcessor = new FrameCountingAudioProcessor();
+    audioProcessor.configure(AUDIO_FORMAT);
+    pipeline =
+        new AsynchronousAudioProcessingPipeline(
+            lock, new FakeAudioProcessorChain(audioProcessor), new TrimmingAudioProcessor());
+    pipeline.flush(new AudioProcessor[] {audioProcessor});
+  }
+
+  @After
+  public void tearDown() {
+    pipeline.release();
+  }
+
+  @Test
+  public void getSkippedOutputFrameCount_onlyIncludesReleasedOutput() throws Exception {
+    pipeline.queueInput(createBuffer(/* frameCount= */ 100));
+    pipeline.queueInput(createBuffer(/* frameCount= */ 200));
+    waitForProcessedFrames(/* frameCount= */ 300);
+
+    // Both buffers have been processed, but none of the output has been released.
+    assertThat(pipeline.getSkippedOutputFrameCount()).isEqualTo(0);
+
+    assertThat(getOutputFrameCount()).isEqualTo(100);
+    pipeline.releaseOutput();
+    assertThat(pipeline.getSkippedOutputFrameCount()).isEqualTo(100);
+
+    assertThat(getOutputFrameCount()).isEqualTo(200);
+    pipeline.releaseOutput();
+    assertThat(pipeline.getSkippedOutputFrameCount()).isEqualTo(300);
+    assertThat(pipeline.getOutput()).isNull();
+  }
+
+  @Test
+  public void getMediaDuration_usesAudioProcessorChainSpeed() throws Exception {
+    pipeline.queueInput(createBuffer(/* frameCount= */ 100));
+    waitForProcessedFrames(/* frameCount= */ 100);
+    pipeline.releaseOutput();
+
+    assertThat(pipeline.getMediaDuration(/* playoutDurationUs= */ 1_000_000))
+        .isEqualTo(FakeAudioProcessorChain.SPEED * 1_000_000L);
+  }
+
+  @Test
+  public void flush_whileProcessing_waitsForBufferAndDiscardsOutput() throws Exception {
+    audioProcessor.blockProcessing();
+    pipeline.queueInput(createBuffer(/* frameCount= */ 100));
+    assertThat(audioProcessor.processingStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    Thread unblockingThread =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(/* millis= */ 50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              audioProcessor.unblockProcessing();
+            });
+    unblockingThread.start();
+
+    pipeline.flush(new AudioProcessor[] {audioProcessor});
+
+    // The flush waited for the buffer being processed, and then discarded its output.
+    assertThat(audioProcessor.processingFinished).isTrue();
+    assertThat(pipeline.getOutput()).isNull();
+    assertThat(pipeline.hasPendingData()).isFalse();
+    assertThat(pipeline.getSkippedOutputFrameCount()).isEqualTo(0);
+
+    // Input queued after the flush is processed.
+    pipeline.queueInput(createBuffer(/* frameCount= */ 50));
+    waitForProcessedFrames(/* frameCount= */ 50);
+    assertThat(getOutputFrameCount()).isEqualTo(50);
+    pipeline.releaseOutput();
+    assertThat(pipeline.getSkippedOutputFrameCount()).isEqualTo(50);
+    unblockingThread.join();
+  }
+
+  @Test
+  public void queueEndOfStream_afterFlush_endsOnceOutputIsReleased() throws Exception {
+    pipeline.queueInput(createBuffer(/* frameCount= */ 100));
+    pipeline.flush(new AudioProcessor[] {audioProcessor});
+    pipeline.queueInput(createBuffer(/* frameCount= */ 10));
+    pipeline.queueEndOfStream();
+    waitForProcessedFrames(/* frameCount= */ 10);
+
+    assertThat(getOutputFrameCount()).isEqualTo(10);
+    pipeline.releaseOutput();
+    long timeoutTimeMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!pipeline.isEnded() && System.currentTimeMillis() < timeoutTimeMs) {
+      Thread.sleep(/* millis= */ 1);
+    }
+    assertThat(pipeline.isEnded()).isTrue();
+  }
+
+  private void waitForProcessedFrames(long frameCount) throws InterruptedException {
+    long timeoutTimeMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (audioProcessor.frameCount < frameCount && System.currentTimeMillis() < timeoutTimeMs) {
+      Thread.sleep(/* millis= */ 1);
+    }
+    assertThat(audioProcessor.frameCount).isEqualTo(frameCount);
+    // Wait for the processing thread to finish handling the output of the last processed buffer.
+    synchronized (lock) {
+      while (pipeline.getOutput() == null && System.currentTimeMillis() < timeoutTimeMs) {
+        lock.wait(/* timeout= */ 1);
+      }
+    }
+  }
+
+  private int getOutputFrameCount() {
+    @Nullable ByteBuffer output = pipeline.getOutput();
+    assertThat(output).isNotNull();
+    return output.remaining() / BYTES_PER_FRAME;
+  }
+
+  private static ByteBuffer createBuffer(int frameCount) {
+    return ByteBuffer.allocateDirect(frameCount * BYTES_PER_FRAME).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Passes input through, counting the frames it has processed. Optionally blocks while processing
+   * a buffer until it's unblocked.
+   */
+  private static final class FrameCountingAudioProcessor extends BaseAudioProcessor {
+
+    public final CountDownLatch processingStarted;
+
+    public volatile long frameCount;
+    public volatile boolean processingFinished;
+
+    @Nullable private volatile CountDownLatch unblockLatch;
+
+    public FrameCountingAudioProcessor() {
+      processingStarted = new CountDownLatch(1);
+    }
+
+    public void blockProcessing() {
+      unblockLatch = new CountDownLatch(1);
+    }
+
+    public void unblockProcessing() {
+      @Nullable CountDownLatch unblockLatch = this.unblockLatch;
+      this.unblockLatch = null;
+      if (unblockLatch != null) {
+        unblockLatch.countDown();
+      }
+    }
+
+    @Override
+    public AudioFormat onConfigure(AudioFormat inputAudioFormat) {
+      return inputAudioFormat;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+      processingStarted.countDown();
+      @Nullable CountDownLatch unblockLatch = this.unblockLatch;
+      if (unblockLatch != null) {
+        try {
+          unblockLatch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      int remaining = inputBuffer.remaining();
+      replaceOutputBuffer(remaining).put(inputBuffer).flip();
+      frameCount += remaining / BYTES_PER_FRAME;
+      processingFinished = true;
+    }
+
+    @Override
+    protected void onFlush() {
+      frameCount = 0;
+    }
+  }
+
+  /** Reports all processed frames as skipped, and scales durations by a fixed speed. */
+  private static final class FakeAudioProcessorChain implements AudioProcessorChain {
+
+    public static final int SPEED = 2;
+
+    private final FrameCountingAudioProcessor audioProcessor;
+
+    public FakeAudioProcessorChain(FrameCountingAudioProcessor audioProcessor) {
+      this.audioProcessor = audioProcessor;
+    }
+
+    @Override
+    public AudioProcessor[] getAudioProcessors() {
+      return new AudioProcessor[] {audioProcessor};
+    }
+
+    @Override
+    public PlaybackParameters applyPlaybackParameters(PlaybackParameters playbackParameters) {
+      return PlaybackParameters.DEFAULT;
+    }
+
+    @Override
+    public boolean applySkipSilenceEnabled(boolean skipSilenceEnabled) {
+      return false;
+    }
+
+    @Override
+    public long getMediaDuration(long playoutDuration) {
+      return SPEED * playoutDuration;
+    }
+
+    @Override
+    public long getSkippedOutputFrameCount() {
+      return audioProcessor.frameCount;
+    }
+
+    @Override
+    public boolean supportsFloatPcm() {
+      return false;
+    }
+  }
+}
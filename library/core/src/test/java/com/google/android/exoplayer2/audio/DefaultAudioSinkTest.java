@@ -182,6 +182,59 @@ public final class DefaultAudioSinkTest {
                 * (SAMPLE_RATE_44_1 - TRIM_100_MS_FRAME_COUNT - TRIM_10_MS_FRAME_COUNT)));
   }
 
+  @Test
+  public void trimsStartAndEndFrames_withAudioProcessingThread() throws Exception {
+    defaultAudioSink.experimentalSetAudioProcessingThreadEnabled(true);
+    configureDefaultAudioSink(
+        CHANNEL_COUNT_STEREO,
+        /* trimStartFrames= */ TRIM_100_MS_FRAME_COUNT,
+        /* trimEndFrames= */ TRIM_10_MS_FRAME_COUNT);
+    assertThat(
+            defaultAudioSink.handleBuffer(
+                createDefaultSilenceBuffer(),
+                /* presentationTimeUs= */ 0,
+                /* encodedAccessUnitCount= */ 1))
+        .isTrue();
+
+    int expectedOutputLength =
+        BYTES_PER_FRAME_16_BIT
+            * CHANNEL_COUNT_STEREO
+            * (SAMPLE_RATE_44_1 - TRIM_100_MS_FRAME_COUNT - TRIM_10_MS_FRAME_COUNT);
+    // Processing happens on another thread, so wait for the output to be drained.
+    for (int i = 0; i < 500 && arrayAudioBufferSink.output.length < expectedOutputLength; i++) {
+      defaultAudioSink.playToEndOfStream();
+      Thread.sleep(/* millis= */ 10);
+    }
+
+    assertThat(arrayAudioBufferSink.output).hasLength(expectedOutputLength);
+  }
+
+  @Test
+  public void configureAndFlush_withAudioProcessingThread_outputsInputQueuedAfterFlush()
+      throws Exception {
+    defaultAudioSink.experimentalSetAudioProcessingThreadEnabled(true);
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+    defaultAudioSink.handleBuffer(
+        createDefaultSilenceBuffer(), /* presentationTimeUs= */ 0, /* encodedAccessUnitCount= */ 1);
+
+    // Reconfigure and flush while the first buffer may still be processed on the other thread.
+    configureDefaultAudioSink(CHANNEL_COUNT_MONO);
+    defaultAudioSink.flush();
+    ByteBuffer monoBuffer = createDefaultSilenceBuffer();
+    int expectedOutputLength = monoBuffer.remaining();
+    assertThat(
+            defaultAudioSink.handleBuffer(
+                monoBuffer, /* presentationTimeUs= */ 0, /* encodedAccessUnitCount= */ 1))
+        .isTrue();
+    for (int i = 0; i < 500 && arrayAudioBufferSink.output.length < expectedOutputLength; i++) {
+      defaultAudioSink.playToEndOfStream();
+      Thread.sleep(/* millis= */ 10);
+    }
+
+    assertThat(arrayAudioBufferSink.output).hasLength(expectedOutputLength);
+    assertThat(defaultAudioSink.getCurrentPositionUs(/* sourceEnded= */ false)).isEqualTo(0);
+  }
+
   @Test
   public void getCurrentPosition_returnsPositionFromFirstBuffer() throws Exception {
     configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
@@ -255,6 +308,34 @@ public final class DefaultAudioSinkTest {
         .isEqualTo(SINK_FORMAT_SUPPORTED_DIRECTLY);
   }
 
+  @Config(minSdk = 21, maxSdk = TARGET_SDK)
+  @Test
+  public void floatOutput_withDefaultAudioProcessorChain_appliesPlaybackSpeed() throws Exception {
+    defaultAudioSink =
+        new DefaultAudioSink(
+            AudioCapabilities.DEFAULT_AUDIO_CAPABILITIES,
+            new AudioProcessor[0],
+            /* enableFloatOutput= */ true);
+    defaultAudioSink.setPlaybackParameters(new PlaybackParameters(/* speed= */ 1.5f));
+    Format floatFormat =
+        STEREO_44_1_FORMAT
+            .buildUpon()
+            .setSampleMimeType(MimeTypes.AUDIO_RAW)
+            .setPcmEncoding(C.ENCODING_PCM_FLOAT)
+            .build();
+    defaultAudioSink.configure(
+        floatFormat, /* specifiedBufferSize= */ 0, /* outputChannels= */ null);
+
+    defaultAudioSink.handleBuffer(
+        ByteBuffer.allocateDirect(SAMPLE_RATE_44_1 * CHANNEL_COUNT_STEREO * 4)
+            .order(ByteOrder.nativeOrder()),
+        /* presentationTimeUs= */ 0,
+        /* encodedAccessUnitCount= */ 1);
+
+    assertThat(defaultAudioSink.getPlaybackParameters())
+        .isEqualTo(new PlaybackParameters(/* speed= */ 1.5f));
+  }
+
   @Test
   public void supportsFloatPcm() {
     Format floatFormat =
@@ -334,6 +415,27 @@ public final class DefaultAudioSinkTest {
     assertThat(defaultAudioSink.getPlaybackParameters().speed).isEqualTo(1);
   }
 
+  @Test
+  public void getBufferedDurationUs_beforeHandlingBuffer_returnsZero() throws Exception {
+    assertThat(defaultAudioSink.getBufferedDurationUs()).isEqualTo(0);
+
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+
+    assertThat(defaultAudioSink.getBufferedDurationUs()).isEqualTo(0);
+  }
+
+  @Test
+  public void getBufferedDurationUs_afterHandlingBufferWhilePaused_returnsWrittenDuration()
+      throws Exception {
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+    defaultAudioSink.handleBuffer(
+        createDefaultSilenceBuffer(), /* presentationTimeUs= */ 0, /* encodedAccessUnitCount= */ 1);
+
+    // Nothing has been played out, so everything that was written to the track is buffered.
+    assertThat(defaultAudioSink.getBufferedDurationUs()).isGreaterThan(0);
+    assertThat(defaultAudioSink.getBufferedDurationUs()).isAtMost(C.MICROS_PER_SECOND);
+  }
+
   private void configureDefaultAudioSink(int channelCount) throws AudioSink.ConfigurationException {
     configureDefaultAudioSink(channelCount, /* trimStartFrames= */ 0, /* trimEndFrames= */ 0);
   }
@@ -361,7 +463,8 @@ public final class DefaultAudioSinkTest {
 
   private static final class ArrayAudioBufferSink implements TeeAudioProcessor.AudioBufferSink {
 
-    private byte[] output;
+    // Written on the audio processing thread when processing asynchronously.
+    private volatile byte[] output;
 
     public ArrayAudioBufferSink() {
       output = new byte[0];
@@ -24,6 +24,7 @@ import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import com.google.android.exoplayer2.util.Assertions;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +37,9 @@ public final class SilenceSkippingAudioProcessorTest {
   private static final AudioFormat AUDIO_FORMAT =
       new AudioFormat(
           /* sampleRate= */ 1000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
+  private static final AudioFormat FLOAT_AUDIO_FORMAT =
+      new AudioFormat(
+          /* sampleRate= */ 1000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
   private static final int TEST_SIGNAL_SILENCE_DURATION_MS = 1000;
   private static final int TEST_SIGNAL_NOISE_DURATION_MS = 1000;
   private static final int TEST_SIGNAL_FRAME_COUNT = 100_000;
@@ -153,6 +157,35 @@ public final class SilenceSkippingAudioProcessorTest {
     assertThat(silenceSkippingAudioProcessor.getSkippedFrames()).isEqualTo(42020);
   }
 
+  @Test
+  public void skipInAlternatingFloatTestSignal_hasCorrectOutputAndSkippedFrameCounts()
+      throws Exception {
+    // Given a float signal that alternates between silence and noise.
+    InputBufferProvider inputBufferProvider =
+        getInputBufferProviderForAlternatingSilenceAndNoise(
+            TEST_SIGNAL_SILENCE_DURATION_MS,
+            TEST_SIGNAL_NOISE_DURATION_MS,
+            TEST_SIGNAL_FRAME_COUNT,
+            FLOAT_AUDIO_FORMAT);
+
+    // When processing the entire signal, with the same number of frames per buffer as for 16-bit.
+    SilenceSkippingAudioProcessor silenceSkippingAudioProcessor =
+        new SilenceSkippingAudioProcessor();
+    silenceSkippingAudioProcessor.setEnabled(true);
+    silenceSkippingAudioProcessor.configure(FLOAT_AUDIO_FORMAT);
+    silenceSkippingAudioProcessor.flush();
+    assertThat(silenceSkippingAudioProcessor.isActive()).isTrue();
+    long totalOutputFrames =
+        process(
+            silenceSkippingAudioProcessor,
+            inputBufferProvider,
+            /* inputBufferSize= */ INPUT_BUFFER_SIZE * 2);
+
+    // The same number of frames are skipped/output as for the 16-bit signal.
+    assertThat(totalOutputFrames).isEqualTo(57980);
+    assertThat(silenceSkippingAudioProcessor.getSkippedFrames()).isEqualTo(42020);
+  }
+
   @Test
   public void skipWithSmallerInputBufferSize_hasCorrectOutputAndSkippedFrameCounts()
       throws Exception {
@@ -261,7 +294,7 @@ public final class SilenceSkippingAudioProcessorTest {
       SilenceSkippingAudioProcessor processor,
       InputBufferProvider inputBufferProvider,
       int inputBufferSize) {
-    int bytesPerFrame = AUDIO_FORMAT.bytesPerFrame;
+    int bytesPerFrame = inputBufferProvider.audioFormat.bytesPerFrame;
     processor.flush();
     long totalOutputFrames = 0;
     while (inputBufferProvider.hasRemaining()) {
@@ -290,6 +323,17 @@ public final class SilenceSkippingAudioProcessorTest {
       int silenceDurationMs,
       int noiseDurationMs,
       int totalFrameCount) {
+    return getInputBufferProviderForAlternatingSilenceAndNoise(
+        silenceDurationMs, noiseDurationMs, totalFrameCount, AUDIO_FORMAT);
+  }
+
+  /**
+   * Returns an {@link InputBufferProvider} that provides input buffers in the specified format for a
+   * stream that alternates between silence/noise of the specified durations to fill {@code
+   * totalFrameCount}.
+   */
+  private static InputBufferProvider getInputBufferProviderForAlternatingSilenceAndNoise(
+      int silenceDurationMs, int noiseDurationMs, int totalFrameCount, AudioFormat audioFormat) {
     int sampleRate = AUDIO_FORMAT.sampleRate;
     int channelCount = AUDIO_FORMAT.channelCount;
     Pcm16BitAudioBuilder audioBuilder = new Pcm16BitAudioBuilder(channelCount, totalFrameCount);
@@ -301,24 +345,35 @@ public final class SilenceSkippingAudioProcessorTest {
       audioBuilder.appendFrames(
           /* count= */ noiseDurationFrames, /* channelLevels...= */ Short.MAX_VALUE);
     }
-    return new InputBufferProvider(audioBuilder.build());
+    return new InputBufferProvider(audioBuilder.build(), audioFormat);
   }
 
   /**
    * Wraps a {@link ShortBuffer} and provides a sequence of {@link ByteBuffer}s of specified sizes
-   * that contain copies of its data.
+   * that contain copies of its data, converted to float if the audio format is float PCM.
    */
   private static final class InputBufferProvider {
 
+    public final AudioFormat audioFormat;
+
     private final ShortBuffer buffer;
 
-    public InputBufferProvider(ShortBuffer buffer) {
+    public InputBufferProvider(ShortBuffer buffer, AudioFormat audioFormat) {
       this.buffer = buffer;
+      this.audioFormat = audioFormat;
     }
 
     /** Returns the next buffer with size up to {@code sizeBytes}. */
     public ByteBuffer getNextInputBuffer(int sizeBytes) {
       ByteBuffer inputBuffer = ByteBuffer.allocate(sizeBytes).order(ByteOrder.nativeOrder());
+      if (audioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+        FloatBuffer inputBufferAsFloatBuffer = inputBuffer.asFloatBuffer();
+        while (inputBufferAsFloatBuffer.hasRemaining() && buffer.hasRemaining()) {
+          inputBufferAsFloatBuffer.put(buffer.get() / 32768f);
+        }
+        inputBuffer.limit(inputBufferAsFloatBuffer.position() * 4);
+        return inputBuffer;
+      }
       ShortBuffer inputBufferAsShortBuffer = inputBuffer.asShortBuffer();
       int limit = buffer.limit();
       buffer.limit(min(buffer.position() + sizeBytes / 2, limit));
@@ -16,12 +16,15 @@
 package com.google.android.exoplayer2.audio;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.max;
 import static org.junit.Assert.fail;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -39,6 +42,9 @@ public final class SonicAudioProcessorTest {
   private static final AudioFormat AUDIO_FORMAT_48000_HZ =
       new AudioFormat(
           /* sampleRate= */ 48000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
+  private static final AudioFormat AUDIO_FORMAT_44100_HZ_FLOAT =
+      new AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
 
   private SonicAudioProcessor sonicAudioProcessor;
 
@@ -85,6 +91,48 @@ public final class SonicAudioProcessorTest {
     assertThat(sonicAudioProcessor.isActive()).isTrue();
   }
 
+  @Test
+  public void configureWithFloatInput_outputsFloat() throws Exception {
+    sonicAudioProcessor.setSpeed(1.5f);
+    AudioFormat outputAudioFormat = sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void floatInputWithSpeedChange_outputsFloatWithScaledDuration() throws Exception {
+    sonicAudioProcessor.setSpeed(2f);
+    sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    sonicAudioProcessor.flush();
+    // Queue one second of a 220 Hz sine wave with an amplitude of 0.5.
+    int inputFrameCount = AUDIO_FORMAT_44100_HZ_FLOAT.sampleRate;
+    ByteBuffer inputBuffer =
+        ByteBuffer.allocateDirect(inputFrameCount * AUDIO_FORMAT_44100_HZ_FLOAT.bytesPerFrame)
+            .order(ByteOrder.nativeOrder());
+    for (int i = 0; i < inputFrameCount; i++) {
+      float sample = (float) (0.5 * Math.sin(2 * Math.PI * 220 * i / inputFrameCount));
+      inputBuffer.putFloat(sample).putFloat(sample);
+    }
+    inputBuffer.flip();
+
+    sonicAudioProcessor.queueInput(inputBuffer);
+    sonicAudioProcessor.queueEndOfStream();
+    long outputFrameCount = 0;
+    float maxAbsoluteSample = 0;
+    while (!sonicAudioProcessor.isEnded()) {
+      ByteBuffer outputBuffer = sonicAudioProcessor.getOutput();
+      outputFrameCount += outputBuffer.remaining() / AUDIO_FORMAT_44100_HZ_FLOAT.bytesPerFrame;
+      while (outputBuffer.hasRemaining()) {
+        maxAbsoluteSample = max(maxAbsoluteSample, Math.abs(outputBuffer.getFloat()));
+      }
+    }
+
+    assertThat(inputBuffer.hasRemaining()).isFalse();
+    assertThat(outputFrameCount).isAtLeast(inputFrameCount / 2 - 100);
+    assertThat(outputFrameCount).isAtMost(inputFrameCount / 2);
+    assertThat(maxAbsoluteSample).isWithin(0.01f).of(0.5f);
+  }
+
   @Test
   public void isNotActiveWithNoChange() throws Exception {
     sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ);
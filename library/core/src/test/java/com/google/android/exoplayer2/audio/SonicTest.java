@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link Sonic}. */
+@RunWith(AndroidJUnit4.class)
+public final class SonicTest {
+
+  private static final int SAMPLE_RATE_HZ = 48_000;
+  private static final int CHANNEL_COUNT = 2;
+  // The period of the tone is a whole number of frames, so that the pitch search finds it exactly.
+  private static final int TONE_PERIOD_FRAMES = 240;
+  // Output at the end of the stream is padded with silence, so the last frames are not compared.
+  private static final int END_OF_STREAM_FRAME_COUNT = 4 * (SAMPLE_RATE_HZ / 65);
+
+  @Test
+  public void getAbsoluteDifferenceSum_matchesSequentialSum() {
+    Random random = new Random(/* seed= */ 0);
+    float[] samples = new float[2 * 2 * (SAMPLE_RATE_HZ / 65)];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = (random.nextFloat() * 2 - 1) * Short.MAX_VALUE;
+    }
+
+    // Cover all the periods searched at 8 kHz (after down-sampling) and at 48 kHz.
+    for (int period = 8000 / 400; period <= SAMPLE_RATE_HZ / 65; period++) {
+      float sequentialSum = 0;
+      for (int i = 0; i < period; i++) {
+        sequentialSum += Math.abs(samples[i] - samples[period + i]);
+      }
+
+      float sum =
+          Sonic.getAbsoluteDifferenceSum(
+              samples, /* position= */ 0, /* otherPosition= */ period, /* length= */ period);
+
+      assertThat(sum).isWithin(sequentialSum * 1e-5f).of(sequentialSum);
+    }
+  }
+
+  @Test
+  public void process_withSpeedChange_outputsTone() {
+    assertOutputsTone(/* speed= */ 0.5f, /* pitch= */ 1f);
+    assertOutputsTone(/* speed= */ 1.5f, /* pitch= */ 1f);
+    assertOutputsTone(/* speed= */ 2f, /* pitch= */ 1f);
+  }
+
+  @Test
+  public void process_withPitchChange_outputsTransposedTone() {
+    assertOutputsTone(/* speed= */ 1f, /* pitch= */ 0.75f);
+    assertOutputsTone(/* speed= */ 1f, /* pitch= */ 1.5f);
+    assertOutputsTone(/* speed= */ 1.5f, /* pitch= */ 1.25f);
+  }
+
+  @Test
+  public void process_floatInput_matchesShortInputWithinOneLsb() {
+    assertFloatOutputMatchesShortOutput(/* speed= */ 0.5f, /* pitch= */ 1f);
+    assertFloatOutputMatchesShortOutput(/* speed= */ 2f, /* pitch= */ 1f);
+    assertFloatOutputMatchesShortOutput(/* speed= */ 1f, /* pitch= */ 0.75f);
+    assertFloatOutputMatchesShortOutput(/* speed= */ 1.5f, /* pitch= */ 1.25f);
+  }
+
+  /**
+   * Asserts that processing 16-bit input, and the same input as float PCM, outputs the same number
+   * of frames with samples that differ by at most 1 LSB. The 16-bit output is truncated.
+   */
+  private static void assertFloatOutputMatchesShortOutput(float speed, float pitch) {
+    Random random = new Random(/* seed= */ 0);
+    int inputFrameCount = SAMPLE_RATE_HZ;
+    short[] shortInput = new short[inputFrameCount * CHANNEL_COUNT];
+    float[] floatInput = new float[shortInput.length];
+    for (int i = 0; i < inputFrameCount; i++) {
+      // Two tones with some noise, so that the pitch search doesn't find a period exactly.
+      short value =
+          (short)
+              (8000 * getToneValue(/* pitch= */ 1f, i)
+                  + 4000 * getToneValue(/* pitch= */ 3f, i)
+                  + 1000 * (random.nextFloat() * 2 - 1));
+      for (int j = 0; j < CHANNEL_COUNT; j++) {
+        shortInput[i * CHANNEL_COUNT + j] = value;
+        floatInput[i * CHANNEL_COUNT + j] = value / 32768f;
+      }
+    }
+    Sonic shortSonic =
+        new Sonic(
+            SAMPLE_RATE_HZ, CHANNEL_COUNT, speed, pitch, SAMPLE_RATE_HZ, C.ENCODING_PCM_16BIT);
+    Sonic floatSonic =
+        new Sonic(
+            SAMPLE_RATE_HZ, CHANNEL_COUNT, speed, pitch, SAMPLE_RATE_HZ, C.ENCODING_PCM_FLOAT);
+
+    shortSonic.queueInput(ShortBuffer.wrap(shortInput));
+    shortSonic.queueEndOfStream();
+    floatSonic.queueInput(FloatBuffer.wrap(floatInput));
+    floatSonic.queueEndOfStream();
+    ShortBuffer shortOutput = ShortBuffer.allocate(shortSonic.getOutputSize() / 2);
+    shortSonic.getOutput(shortOutput);
+    shortOutput.flip();
+    FloatBuffer floatOutput = FloatBuffer.allocate(floatSonic.getOutputSize() / 4);
+    floatSonic.getOutput(floatOutput);
+    floatOutput.flip();
+
+    assertThat(floatOutput.remaining()).isEqualTo(shortOutput.remaining());
+    for (int i = 0; i < shortOutput.remaining(); i++) {
+      assertThat(floatOutput.get(i) * 32768f).isWithin(1f).of(shortOutput.get(i));
+    }
+  }
+
+  /**
+   * Asserts that a tone processed by {@link Sonic} has the expected duration, and stays within a
+   * small tolerance of the tone transposed by {@code pitch}. Splicing at a wrong pitch period, or
+   * mixing the wrong frames, would introduce discontinuities.
+   */
+  private static void assertOutputsTone(float speed, float pitch) {
+    Sonic sonic =
+        new Sonic(
+            SAMPLE_RATE_HZ, CHANNEL_COUNT, speed, pitch, SAMPLE_RATE_HZ, C.ENCODING_PCM_FLOAT);
+    int inputFrameCount = SAMPLE_RATE_HZ;
+    FloatBuffer input = FloatBuffer.allocate(inputFrameCount * CHANNEL_COUNT);
+    for (int i = 0; i < inputFrameCount; i++) {
+      float value = getToneValue(/* pitch= */ 1f, i);
+      for (int j = 0; j < CHANNEL_COUNT; j++) {
+        input.put(value);
+      }
+    }
+    input.flip();
+
+    sonic.queueInput(input);
+    sonic.queueEndOfStream();
+    FloatBuffer output = FloatBuffer.allocate(sonic.getOutputSize() / 4);
+    sonic.getOutput(output);
+    output.flip();
+
+    int outputFrameCount = output.remaining() / CHANNEL_COUNT;
+    assertThat((float) outputFrameCount)
+        .isWithin(END_OF_STREAM_FRAME_COUNT)
+        .of(inputFrameCount / speed);
+    for (int i = 0; i < outputFrameCount - END_OF_STREAM_FRAME_COUNT; i++) {
+      float expectedValue = getToneValue(pitch, i);
+      for (int j = 0; j < CHANNEL_COUNT; j++) {
+        assertThat(output.get(i * CHANNEL_COUNT + j)).isWithin(1e-3f).of(expectedValue);
+      }
+    }
+  }
+
+  private static float getToneValue(float pitch, int frameIndex) {
+    return (float) Math.sin(2 * Math.PI * pitch * frameIndex / TONE_PERIOD_FRAMES);
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SimpleDecoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class SimpleDecoderTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+
+  @Nullable private FakeDecoder decoder;
+
+  @After
+  public void tearDown() {
+    if (decoder != null) {
+      decoder.release();
+    }
+  }
+
+  @Test
+  public void decode_withDefaultMaxBatchSize_decodesEachBufferSeparately() throws Exception {
+    decoder = new FakeDecoder(/* bufferCount= */ 4, /* maxBatchSize= */ 1);
+
+    queueInputBuffer(decoder, /* timeUs= */ 0);
+    queueInputBuffer(decoder, /* timeUs= */ 1);
+    queueInputBuffer(decoder, /* timeUs= */ 2);
+
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(0);
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(1);
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(2);
+    assertThat(decoder.batchSizes).containsExactly(1, 1, 1);
+  }
+
+  @Test
+  public void decode_withMaxBatchSize_batchesInputQueuedWhileOutputIsPending() throws Exception {
+    decoder = new FakeDecoder(/* bufferCount= */ 4, /* maxBatchSize= */ 4);
+    decoder.blockFirstBatch();
+
+    // The first buffer is decoded immediately, because there's no output to dequeue.
+    queueInputBuffer(decoder, /* timeUs= */ 0);
+    assertThat(decoder.firstBatchStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    // These buffers are queued while the first one is being decoded.
+    queueInputBuffer(decoder, /* timeUs= */ 1);
+    queueInputBuffer(decoder, /* timeUs= */ 2);
+    queueInputBuffer(decoder, /* timeUs= */ 3);
+    decoder.unblockFirstBatch.countDown();
+
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(0);
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(1);
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(2);
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(3);
+    assertThat(decoder.batchSizes).containsExactly(1, 3).inOrder();
+  }
+
+  @Test
+  public void decode_withMaxBatchSize_decodesEndOfStreamSeparately() throws Exception {
+    decoder = new FakeDecoder(/* bufferCount= */ 4, /* maxBatchSize= */ 4);
+
+    queueInputBuffer(decoder, /* timeUs= */ 0);
+    DecoderInputBuffer inputBuffer = dequeueInputBuffer(decoder);
+    inputBuffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
+    decoder.queueInputBuffer(inputBuffer);
+
+    assertThat(dequeueOutputBuffer(decoder).timeUs).isEqualTo(0);
+    assertThat(dequeueOutputBuffer(decoder).isEndOfStream()).isTrue();
+    assertThat(decoder.batchSizes).containsExactly(1);
+  }
+
+  private static void queueInputBuffer(FakeDecoder decoder, long timeUs) throws Exception {
+    DecoderInputBuffer inputBuffer = dequeueInputBuffer(decoder);
+    inputBuffer.timeUs = timeUs;
+    decoder.queueInputBuffer(inputBuffer);
+  }
+
+  private static DecoderInputBuffer dequeueInputBuffer(FakeDecoder decoder) throws Exception {
+    @Nullable DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    assertThat(inputBuffer).isNotNull();
+    return inputBuffer;
+  }
+
+  private static SimpleOutputBuffer dequeueOutputBuffer(FakeDecoder decoder) throws Exception {
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (System.currentTimeMillis() < deadlineMs) {
+      @Nullable SimpleOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+      if (outputBuffer != null) {
+        return outputBuffer;
+      }
+      Thread.sleep(1);
+    }
+    throw new AssertionError("Timed out waiting for output buffer");
+  }
+
+  private static final class FakeDecoder
+      extends SimpleDecoder<DecoderInputBuffer, SimpleOutputBuffer, DecoderException> {
+
+    public final List<Integer> batchSizes;
+    public final CountDownLatch firstBatchStarted;
+    public final CountDownLatch unblockFirstBatch;
+
+    private volatile boolean blockFirstBatch;
+
+    public FakeDecoder(int bufferCount, int maxBatchSize) {
+      super(new DecoderInputBuffer[bufferCount], new SimpleOutputBuffer[bufferCount]);
+      batchSizes = Collections.synchronizedList(new ArrayList<>());
+      firstBatchStarted = new CountDownLatch(1);
+      unblockFirstBatch = new CountDownLatch(1);
+      setMaxBatchSize(maxBatchSize);
+    }
+
+    public void blockFirstBatch() {
+      blockFirstBatch = true;
+    }
+
+    @Override
+    public String getName() {
+      return "FakeDecoder";
+    }
+
+    @Override
+    protected DecoderInputBuffer createInputBuffer() {
+      return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    @Override
+    protected SimpleOutputBuffer createOutputBuffer() {
+      return new SimpleOutputBuffer(this::releaseOutputBuffer);
+    }
+
+    @Override
+    protected DecoderException createUnexpectedDecodeException(Throwable error) {
+      return new DecoderException(error);
+    }
+
+    @Override
+    @Nullable
+    protected DecoderException decode(
+        DecoderInputBuffer[] inputBuffers,
+        SimpleOutputBuffer[] outputBuffers,
+        int count,
+        boolean reset) {
+      batchSizes.add(count);
+      if (blockFirstBatch) {
+        blockFirstBatch = false;
+        firstBatchStarted.countDown();
+        try {
+          unblockFirstBatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.decode(inputBuffers, outputBuffers, count, reset);
+    }
+
+    @Override
+    @Nullable
+    protected DecoderException decode(
+        DecoderInputBuffer inputBuffer, SimpleOutputBuffer outputBuffer, boolean reset) {
+      outputBuffer.init(inputBuffer.timeUs, /* size= */ 0);
+      return null;
+    }
+  }
+}
@@ -251,6 +251,37 @@ public final class BatchBufferTest {
     assertThat(batchBuffer.append(sampleBuffer)).isTrue();
   }
 
+  @Test
+  public void appendSample_withinMaxDuration_succeeds() {
+    batchBuffer.setMaxDurationUs(1000);
+    initSampleBuffer(/* timeUs= */ 1000);
+    batchBuffer.append(sampleBuffer);
+
+    initSampleBuffer(/* timeUs= */ 2000);
+    assertThat(batchBuffer.append(sampleBuffer)).isTrue();
+  }
+
+  @Test
+  public void appendSample_exceedingMaxDuration_fails() {
+    batchBuffer.setMaxDurationUs(1000);
+    initSampleBuffer(/* timeUs= */ 1000);
+    batchBuffer.append(sampleBuffer);
+
+    initSampleBuffer(/* timeUs= */ 2001);
+    assertThat(batchBuffer.append(sampleBuffer)).isFalse();
+    assertThat(batchBuffer.getSampleCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void appendSample_withZeroMaxDuration_onlyAppendsFirstSample() {
+    batchBuffer.setMaxDurationUs(0);
+    initSampleBuffer(/* timeUs= */ 1000);
+    assertThat(batchBuffer.append(sampleBuffer)).isTrue();
+
+    initSampleBuffer(/* timeUs= */ 1001);
+    assertThat(batchBuffer.append(sampleBuffer)).isFalse();
+  }
+
   private void initSampleBuffer() {
     initSampleBuffer(/* timeUs= */ 0);
   }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.media.MediaCodecInfo.CodecCapabilities;
+import android.media.MediaCodecInfo.CodecProfileLevel;
+import android.media.MediaCodecInfo.VideoCapabilities;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Range;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.MediaCodecInfoBuilder;
+import org.robolectric.shadows.ShadowMediaCodecList;
+import org.robolectric.util.ReflectionHelpers;
+
+/** Unit tests for {@link PersistentDecoderInfoCache}. */
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 29)
+public final class PersistentDecoderInfoCacheTest {
+
+  private static final String DECODER_NAME = "aac.decoder";
+  private static final String VIDEO_DECODER_NAME = "avc.decoder";
+
+  private File file;
+  private String buildFingerprint;
+
+  @Before
+  public void setUp() throws Exception {
+    file =
+        Util.createTempFile(ApplicationProvider.getApplicationContext(), "PersistentDecoderInfo");
+    file.delete();
+    buildFingerprint = Build.FINGERPRINT;
+
+    MediaFormat aacFormat = new MediaFormat();
+    aacFormat.setString(MediaFormat.KEY_MIME, MediaFormat.MIMETYPE_AUDIO_AAC);
+    CodecProfileLevel profileLevel = new CodecProfileLevel();
+    profileLevel.profile = CodecProfileLevel.AACObjectXHE;
+    profileLevel.level = 0;
+    ShadowMediaCodecList.addCodec(
+        MediaCodecInfoBuilder.newBuilder()
+            .setName(DECODER_NAME)
+            .setCapabilities(
+                MediaCodecInfoBuilder.CodecCapabilitiesBuilder.newBuilder()
+                    .setMediaFormat(aacFormat)
+                    .setProfileLevels(new CodecProfileLevel[] {profileLevel})
+                    .build())
+            .build());
+  }
+
+  @After
+  public void tearDown() {
+    ReflectionHelpers.setStaticField(Build.class, "FINGERPRINT", buildFingerprint);
+    MediaCodecUtil.setPersistentDecoderInfoCache(null);
+    MediaCodecUtil.clearDecoderInfoCache();
+    ShadowMediaCodecList.reset();
+    file.delete();
+  }
+
+  @Test
+  public void getDecoderInfos_inNewProcess_restoresPersistedDecoders() throws Exception {
+    MediaCodecUtil.setPersistentDecoderInfoCache(
+        new PersistentDecoderInfoCache(file, Runnable::run));
+    List<MediaCodecInfo> queriedDecoderInfos =
+        MediaCodecUtil.getDecoderInfos(
+            MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false);
+
+    // Simulate a new process in which the platform's decoders aren't queried.
+    MediaCodecUtil.clearDecoderInfoCache();
+    ShadowMediaCodecList.reset();
+    MediaCodecUtil.setPersistentDecoderInfoCache(
+        new PersistentDecoderInfoCache(file, Runnable::run));
+    List<MediaCodecInfo> restoredDecoderInfos =
+        MediaCodecUtil.getDecoderInfos(
+            MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false);
+
+    assertThat(queriedDecoderInfos).hasSize(1);
+    assertThat(restoredDecoderInfos).hasSize(1);
+    MediaCodecInfo queriedDecoderInfo = queriedDecoderInfos.get(0);
+    MediaCodecInfo restoredDecoderInfo = restoredDecoderInfos.get(0);
+    assertThat(restoredDecoderInfo.name).isEqualTo(DECODER_NAME);
+    assertThat(restoredDecoderInfo.codecMimeType).isEqualTo(queriedDecoderInfo.codecMimeType);
+    assertThat(restoredDecoderInfo.hardwareAccelerated)
+        .isEqualTo(queriedDecoderInfo.hardwareAccelerated);
+    assertThat(restoredDecoderInfo.capabilities).isNull();
+    assertThat(restoredDecoderInfo.getProfileLevels()).hasLength(1);
+    assertThat(restoredDecoderInfo.getProfileLevels()[0].profile)
+        .isEqualTo(CodecProfileLevel.AACObjectXHE);
+    assertThat(restoredDecoderInfo.getMaxSupportedInstances())
+        .isEqualTo(queriedDecoderInfo.getMaxSupportedInstances());
+  }
+
+  @Test
+  public void isVideoSizeAndRateSupportedV21_withPortraitSize_matchesQueriedDecoder()
+      throws Exception {
+    addVideoDecoderWithMaxDimension(/* maxDimension= */ 1920);
+    MediaCodecUtil.setPersistentDecoderInfoCache(
+        new PersistentDecoderInfoCache(file, Runnable::run));
+    MediaCodecInfo queriedDecoderInfo =
+        MediaCodecUtil.getDecoderInfos(
+                MimeTypes.VIDEO_H264, /* secure= */ false, /* tunneling= */ false)
+            .get(0);
+
+    MediaCodecUtil.clearDecoderInfoCache();
+    ShadowMediaCodecList.reset();
+    MediaCodecUtil.setPersistentDecoderInfoCache(
+        new PersistentDecoderInfoCache(file, Runnable::run));
+    MediaCodecInfo restoredDecoderInfo =
+        MediaCodecUtil.getDecoderInfos(
+                MimeTypes.VIDEO_H264, /* secure= */ false, /* tunneling= */ false)
+            .get(0);
+
+    assertThat(restoredDecoderInfo.capabilities).isNull();
+    // The decoder supports 1080x1920, but no landscape size that contains it.
+    assertThat(queriedDecoderInfo.isVideoSizeAndRateSupportedV21(1080, 1920, 30)).isTrue();
+    assertThat(restoredDecoderInfo.isVideoSizeAndRateSupportedV21(1080, 1920, 30)).isTrue();
+    assertThat(restoredDecoderInfo.isVideoSizeAndRateSupportedV21(1920, 1080, 30)).isTrue();
+    assertThat(queriedDecoderInfo.isVideoSizeAndRateSupportedV21(1440, 2560, 30)).isFalse();
+    assertThat(restoredDecoderInfo.isVideoSizeAndRateSupportedV21(1440, 2560, 30)).isFalse();
+  }
+
+  @Test
+  public void put_whileWriteIsPending_writesFileOnce() throws Exception {
+    List<Runnable> writeTasks = new ArrayList<>();
+    PersistentDecoderInfoCache persistentDecoderInfoCache =
+        new PersistentDecoderInfoCache(file, writeTasks::add);
+    List<MediaCodecInfo> decoderInfos =
+        MediaCodecUtil.getDecoderInfos(
+            MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false);
+
+    persistentDecoderInfoCache.put(
+        MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false, decoderInfos);
+    persistentDecoderInfoCache.put(
+        MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ true, decoderInfos);
+
+    assertThat(writeTasks).hasSize(1);
+    assertThat(file.exists()).isFalse();
+
+    writeTasks.get(0).run();
+    PersistentDecoderInfoCache restoredPersistentDecoderInfoCache =
+        new PersistentDecoderInfoCache(file, Runnable::run);
+
+    assertThat(
+            restoredPersistentDecoderInfoCache.get(
+                MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false))
+        .hasSize(1);
+    assertThat(
+            restoredPersistentDecoderInfoCache.get(
+                MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ true))
+        .hasSize(1);
+  }
+
+  @Test
+  public void get_afterBuildFingerprintChange_returnsNull() {
+    PersistentDecoderInfoCache persistentDecoderInfoCache =
+        new PersistentDecoderInfoCache(file, Runnable::run);
+    MediaCodecUtil.setPersistentDecoderInfoCache(persistentDecoderInfoCache);
+    MediaCodecUtil.warmDecoderInfoCache(
+        MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false);
+    assertThat(
+            persistentDecoderInfoCache.get(
+                MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false))
+        .hasSize(1);
+
+    ReflectionHelpers.setStaticField(Build.class, "FINGERPRINT", buildFingerprint + ".update");
+    PersistentDecoderInfoCache updatedPersistentDecoderInfoCache =
+        new PersistentDecoderInfoCache(file, Runnable::run);
+
+    assertThat(
+            updatedPersistentDecoderInfoCache.get(
+                MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false))
+        .isNull();
+    assertThat(file.exists()).isFalse();
+  }
+
+  @Test
+  public void get_withCorruptFile_returnsNull() throws Exception {
+    FileOutputStream outputStream = new FileOutputStream(file);
+    outputStream.write(new byte[] {1, 2, 3});
+    outputStream.close();
+
+    PersistentDecoderInfoCache persistentDecoderInfoCache =
+        new PersistentDecoderInfoCache(file, Runnable::run);
+
+    assertThat(
+            persistentDecoderInfoCache.get(
+                MimeTypes.AUDIO_AAC, /* secure= */ false, /* tunneling= */ false))
+        .isNull();
+  }
+
+  private static void addVideoDecoderWithMaxDimension(int maxDimension) {
+    MediaFormat avcFormat = new MediaFormat();
+    avcFormat.setString(MediaFormat.KEY_MIME, MediaFormat.MIMETYPE_VIDEO_AVC);
+    CodecCapabilities capabilities =
+        MediaCodecInfoBuilder.CodecCapabilitiesBuilder.newBuilder()
+            .setMediaFormat(avcFormat)
+            .setProfileLevels(new CodecProfileLevel[0])
+            .setColorFormats(
+                new int[] {CodecCapabilities.COLOR_FormatYUV420Flexible})
+            .build();
+    VideoCapabilities videoCapabilities = capabilities.getVideoCapabilities();
+    ReflectionHelpers.setField(videoCapabilities, "mWidthRange", Range.create(2, maxDimension));
+    ReflectionHelpers.setField(videoCapabilities, "mHeightRange", Range.create(2, maxDimension));
+    ShadowMediaCodecList.addCodec(
+        MediaCodecInfoBuilder.newBuilder()
+            .setName(VIDEO_DECODER_NAME)
+            .setCapabilities(capabilities)
+            .build());
+  }
+}
@@ -375,6 +375,67 @@ public class DownloadManagerTest {
     assertCurrentDownloadCount(0);
   }
 
+  @Test
+  public void setDownloadPriority_maxDownloadsIsOne_higherPriorityDownloadPreemptsRunningDownload()
+      throws Throwable {
+    setupDownloadManager(/* maxParallelDownloads= */ 1);
+    postDownloadRequest(ID1);
+    FakeDownloader downloader0 = getDownloaderAt(0);
+    downloader0.assertId(ID1);
+    downloader0.assertDownloadStarted();
+
+    postDownloadRequest(ID2);
+    assertQueued(ID2);
+    postSetDownloadPriority(ID2, /* priority= */ 1);
+
+    // The first download should be moved back to the queue so that the second one can start.
+    downloader0.assertCanceled();
+    assertQueued(ID1);
+    FakeDownloader downloader1 = getDownloaderAt(1);
+    downloader1.assertId(ID2);
+    downloader1.assertDownloadStarted();
+    downloader1.finish();
+    assertCompleted(ID2);
+
+    // The first download can restart once the second one has completed.
+    FakeDownloader downloader2 = getDownloaderAt(2);
+    downloader2.assertId(ID1);
+    downloader2.assertDownloadStarted();
+    downloader2.finish();
+    assertCompleted(ID1);
+
+    downloadManagerListener.blockUntilIdleAndThrowAnyFailure();
+    assertDownloaderCount(3);
+    assertDownloadIndexSize(2);
+    assertCurrentDownloadCount(0);
+  }
+
+  @Test
+  public void setDownloadPriority_maxDownloadsIsOne_lowerPriorityDownloadWaits() throws Throwable {
+    setupDownloadManager(/* maxParallelDownloads= */ 1);
+    postDownloadRequest(ID1);
+    FakeDownloader downloader0 = getDownloaderAt(0);
+    downloader0.assertId(ID1);
+    downloader0.assertDownloadStarted();
+
+    postDownloadRequest(ID2);
+    postSetDownloadPriority(ID2, /* priority= */ -1);
+
+    // The second download should not preempt the first one.
+    assertNoDownloaderAt(1);
+    downloader0.finish();
+    assertCompleted(ID1);
+
+    FakeDownloader downloader1 = getDownloaderAt(1);
+    downloader1.assertId(ID2);
+    downloader1.assertDownloadStarted();
+    downloader1.finish();
+    assertCompleted(ID2);
+
+    downloadManagerListener.blockUntilIdleAndThrowAnyFailure();
+    assertDownloaderCount(2);
+  }
+
   @Test
   public void downloadAndRemove_withDifferentIds_maxDownloadsIsOne_executeInParallel()
       throws Throwable {
@@ -764,6 +825,10 @@ public class DownloadManagerTest {
     runOnMainThread(() -> downloadManager.setStopReason(id, reason));
   }
 
+  private void postSetDownloadPriority(String id, int priority) {
+    runOnMainThread(() -> downloadManager.setDownloadPriority(id, priority));
+  }
+
   private void postDownloadRequest(String id, StreamKey... keys) {
     runOnMainThread(() -> downloadManager.addDownload(createDownloadRequest(id, keys)));
   }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestExoPlayerBuilder;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PlaylistPreloader}. */
+@RunWith(AndroidJUnit4.class)
+public final class PlaylistPreloaderTest {
+
+  private static final String URI_1 = "test:///1.mp4";
+  private static final String URI_2 = "test:///2.mp4";
+  private static final String URI_3 = "test:///3.mp4";
+  private static final int DATA_LENGTH = 100;
+  private static final int PROGRESSIVE_PRELOAD_LENGTH = 40;
+  private static final long TIMEOUT_MS = 10_000;
+
+  private File testDir;
+  private Cache cache;
+  private SimpleExoPlayer player;
+  private PlaylistPreloader playlistPreloader;
+
+  @Before
+  public void setUp() throws Exception {
+    testDir =
+        Util.createTempFile(ApplicationProvider.getApplicationContext(), "PlaylistPreloaderTest");
+    assertThat(testDir.delete()).isTrue();
+    assertThat(testDir.mkdirs()).isTrue();
+    cache =
+        new SimpleCache(testDir, new NoOpCacheEvictor(), TestUtil.getInMemoryDatabaseProvider());
+
+    FakeDataSet fakeDataSet = new FakeDataSet();
+    fakeDataSet.newData(URI_1).appendReadData(DATA_LENGTH);
+    fakeDataSet.newData(URI_2).appendReadData(DATA_LENGTH);
+    fakeDataSet.newData(URI_3).appendReadData(DATA_LENGTH);
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(new FakeDataSource.Factory().setFakeDataSet(fakeDataSet));
+
+    player = new TestExoPlayerBuilder(ApplicationProvider.getApplicationContext()).build();
+    player.setMediaItems(
+        ImmutableList.of(
+            MediaItem.fromUri(URI_1), MediaItem.fromUri(URI_2), MediaItem.fromUri(URI_3)));
+    playlistPreloader =
+        new PlaylistPreloader(
+            player,
+            cacheDataSourceFactory,
+            /* maxPreloadItemCount= */ 1,
+            PlaylistPreloader.DEFAULT_PRELOAD_DURATION_MS,
+            PROGRESSIVE_PRELOAD_LENGTH);
+  }
+
+  @After
+  public void tearDown() {
+    playlistPreloader.stop();
+    player.release();
+    cache.release();
+    Util.recursiveDelete(testDir);
+  }
+
+  @Test
+  public void start_preloadsStartOfNextItem() throws Exception {
+    playlistPreloader.start();
+
+    waitForCachedBytes(URI_2, PROGRESSIVE_PRELOAD_LENGTH);
+    assertThat(getCachedBytes(URI_1)).isEqualTo(0);
+    assertThat(getCachedBytes(URI_3)).isEqualTo(0);
+  }
+
+  @Test
+  public void mediaItemTransition_preloadsNewNextItem() throws Exception {
+    playlistPreloader.start();
+    waitForCachedBytes(URI_2, PROGRESSIVE_PRELOAD_LENGTH);
+
+    player.seekTo(/* windowIndex= */ 1, /* positionMs= */ 0);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    waitForCachedBytes(URI_3, PROGRESSIVE_PRELOAD_LENGTH);
+    assertThat(getCachedBytes(URI_1)).isEqualTo(0);
+  }
+
+  @Test
+  public void stop_beforeStart_doesNotPreload() {
+    playlistPreloader.stop();
+
+    assertThat(getCachedBytes(URI_2)).isEqualTo(0);
+  }
+
+  private void waitForCachedBytes(String key, long length) throws InterruptedException {
+    long timeoutTimeMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (getCachedBytes(key) < length && System.currentTimeMillis() < timeoutTimeMs) {
+      Thread.sleep(/* millis= */ 1);
+    }
+    assertThat(getCachedBytes(key)).isEqualTo(length);
+  }
+
+  private long getCachedBytes(String key) {
+    return cache.getCachedBytes(key, /* position= */ 0, /* length= */ C.LENGTH_UNSET);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.testutil.FakeMediaPeriod;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PreloadMediaPeriod}. */
+@RunWith(AndroidJUnit4.class)
+public final class PreloadMediaPeriodTest {
+
+  private static final Format FORMAT_1 = new Format.Builder().setId("1").build();
+  private static final Format FORMAT_2 = new Format.Builder().setId("2").build();
+
+  private CountingFakeMediaPeriod fakeMediaPeriod;
+  private PreloadMediaPeriod preloadMediaPeriod;
+
+  @Before
+  public void setUp() {
+    fakeMediaPeriod =
+        new CountingFakeMediaPeriod(
+            new TrackGroupArray(new TrackGroup(FORMAT_1), new TrackGroup(FORMAT_2)));
+    preloadMediaPeriod = new PreloadMediaPeriod(fakeMediaPeriod);
+  }
+
+  @Test
+  public void prepare_afterPreloadPrepared_notifiesPlayerCallbackImmediately() {
+    RecordingCallback preloadCallback = new RecordingCallback();
+    RecordingCallback playerCallback = new RecordingCallback();
+
+    preloadMediaPeriod.prepare(preloadCallback, /* positionUs= */ 0);
+    preloadMediaPeriod.prepare(playerCallback, /* positionUs= */ 0);
+
+    assertThat(preloadCallback.preparedMediaPeriod).isSameInstanceAs(preloadMediaPeriod);
+    assertThat(playerCallback.preparedMediaPeriod).isSameInstanceAs(preloadMediaPeriod);
+    assertThat(fakeMediaPeriod.prepareCount).isEqualTo(1);
+  }
+
+  @Test
+  public void selectTracks_withPreloadedTracks_reusesPreloadedStreams() {
+    preloadMediaPeriod.prepare(new RecordingCallback(), /* positionUs= */ 0);
+    preloadMediaPeriod.selectTracksForPreloading(
+        new ExoTrackSelection[] {createSelection(/* groupIndex= */ 0)}, /* positionUs= */ 0);
+    preloadMediaPeriod.continueLoading(/* positionUs= */ 0);
+
+    @NullableType SampleStream[] streams = new SampleStream[1];
+    boolean[] streamResetFlags = new boolean[1];
+    preloadMediaPeriod.selectTracks(
+        new ExoTrackSelection[] {createSelection(/* groupIndex= */ 0)},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+
+    // The player's selection is passed to the period, which retains the preloaded stream.
+    assertThat(fakeMediaPeriod.selectTracksCount).isEqualTo(2);
+    assertThat(streamResetFlags[0]).isTrue();
+    assertThat(readFormat(streams[0])).isEqualTo(FORMAT_1);
+  }
+
+  @Test
+  public void selectTracks_withDifferentTracks_replacesPreloadedStreams() {
+    preloadMediaPeriod.prepare(new RecordingCallback(), /* positionUs= */ 0);
+    preloadMediaPeriod.selectTracksForPreloading(
+        new ExoTrackSelection[] {createSelection(/* groupIndex= */ 0)}, /* positionUs= */ 0);
+
+    @NullableType SampleStream[] streams = new SampleStream[1];
+    boolean[] streamResetFlags = new boolean[1];
+    preloadMediaPeriod.selectTracks(
+        new ExoTrackSelection[] {createSelection(/* groupIndex= */ 1)},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+    preloadMediaPeriod.continueLoading(/* positionUs= */ 0);
+
+    assertThat(fakeMediaPeriod.selectTracksCount).isEqualTo(3);
+    assertThat(streamResetFlags[0]).isTrue();
+    assertThat(readFormat(streams[0])).isEqualTo(FORMAT_2);
+  }
+
+  private ExoTrackSelection createSelection(int groupIndex) {
+    return new FixedTrackSelection(
+        preloadMediaPeriod.getTrackGroups().get(groupIndex), /* track= */ 0);
+  }
+
+  @Nullable
+  private static Format readFormat(@Nullable SampleStream sampleStream) {
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer inputBuffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    assertThat(sampleStream.readData(formatHolder, inputBuffer, /* formatRequired= */ true))
+        .isEqualTo(C.RESULT_FORMAT_READ);
+    return formatHolder.format;
+  }
+
+  private static final class RecordingCallback implements MediaPeriod.Callback {
+
+    @Nullable public MediaPeriod preparedMediaPeriod;
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      preparedMediaPeriod = mediaPeriod;
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {}
+  }
+
+  private static final class CountingFakeMediaPeriod extends FakeMediaPeriod {
+
+    public int prepareCount;
+    public int selectTracksCount;
+
+    public CountingFakeMediaPeriod(TrackGroupArray trackGroupArray) {
+      super(
+          trackGroupArray,
+          new DefaultAllocator(/* trimOnReset= */ false, /* individualAllocationSize= */ 1024),
+          /* singleSampleTimeUs= */ 0,
+          new EventDispatcher()
+              .withParameters(
+                  /* windowIndex= */ 0,
+                  new MediaPeriodId(/* periodUid= */ new Object()),
+                  /* mediaTimeOffsetMs= */ 0));
+    }
+
+    @Override
+    public synchronized void prepare(Callback callback, long positionUs) {
+      prepareCount++;
+      super.prepare(callback, positionUs);
+    }
+
+    @Override
+    public long selectTracks(
+        @NullableType ExoTrackSelection[] selections,
+        boolean[] mayRetainStreamFlags,
+        @NullableType SampleStream[] streams,
+        boolean[] streamResetFlags,
+        long positionUs) {
+      selectTracksCount++;
+      return super.selectTracks(
+          selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+    }
+  }
+}
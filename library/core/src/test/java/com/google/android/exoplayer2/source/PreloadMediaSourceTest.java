@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.RendererConfiguration;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.drm.DrmSessionEventListener;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmSessionManagerProvider;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.testutil.ExoPlayerTestRunner;
+import com.google.android.exoplayer2.testutil.FakeMediaPeriod;
+import com.google.android.exoplayer2.testutil.FakeMediaSource;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.trackselection.BaseTrackSelection;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PreloadMediaSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class PreloadMediaSourceTest {
+
+  private static final Format VIDEO_FORMAT = ExoPlayerTestRunner.VIDEO_FORMAT;
+
+  private List<TestMediaSource> createdMediaSources;
+  private RecordingTrackSelector trackSelector;
+  private PreloadMediaSource.Factory factory;
+
+  @Before
+  public void setUp() {
+    createdMediaSources = new ArrayList<>();
+    trackSelector = new RecordingTrackSelector();
+    factory =
+        new PreloadMediaSource.Factory(
+            new TestMediaSourceFactory(),
+            Looper.getMainLooper(),
+            trackSelector,
+            new RendererCapabilities[] {new FakeRenderer(C.TRACK_TYPE_VIDEO)});
+  }
+
+  @Test
+  public void createPeriod_afterPreload_handsOverPreloadedPeriod() throws Exception {
+    PreloadMediaSource preloadMediaSource = createAndPreloadMediaSource();
+    TestMediaPeriod preloadedPeriod = getOnlyMediaPeriod(/* sourceIndex= */ 0);
+
+    MediaPeriod mediaPeriod =
+        prepareAndCreatePeriod(
+            preloadMediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+
+    assertThat(mediaPeriod).isInstanceOf(PreloadMediaPeriod.class);
+    assertThat(((PreloadMediaPeriod) mediaPeriod).mediaPeriod).isSameInstanceAs(preloadedPeriod);
+    assertThat(createdMediaSources.get(0).getCreatedMediaPeriods()).hasSize(1);
+  }
+
+  @Test
+  public void createPeriod_afterPreload_allocatesFromPlayerAllocator() throws Exception {
+    PreloadMediaSource preloadMediaSource = createAndPreloadMediaSource();
+    TestMediaPeriod preloadedPeriod = getOnlyMediaPeriod(/* sourceIndex= */ 0);
+    Allocation preloadAllocation = preloadedPeriod.allocator.allocate();
+    DefaultAllocator playerAllocator =
+        new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+
+    prepareAndCreatePeriod(preloadMediaSource, playerAllocator);
+    Allocation playerAllocation = preloadedPeriod.allocator.allocate();
+
+    assertThat(playerAllocator.getTotalBytesAllocated())
+        .isEqualTo(C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    preloadedPeriod.allocator.release(preloadAllocation);
+    assertThat(playerAllocator.getTotalBytesAllocated())
+        .isEqualTo(C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    preloadedPeriod.allocator.release(playerAllocation);
+    assertThat(playerAllocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void createPeriod_withDifferentAllocationLength_createsNewPeriod() throws Exception {
+    PreloadMediaSource preloadMediaSource = createAndPreloadMediaSource();
+
+    MediaPeriod mediaPeriod =
+        prepareAndCreatePeriod(
+            preloadMediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024));
+
+    assertThat(mediaPeriod).isNotInstanceOf(PreloadMediaPeriod.class);
+    assertThat(createdMediaSources.get(0).getCreatedMediaPeriods()).hasSize(2);
+    assertThat(trackSelector.selections.get(0).enabled).isFalse();
+  }
+
+  @Test
+  public void selectTracks_withPreloadedTracks_replacesPreloadSelection() throws Exception {
+    PreloadMediaSource preloadMediaSource = createAndPreloadMediaSource();
+    MediaPeriod mediaPeriod =
+        prepareAndCreatePeriod(
+            preloadMediaSource,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+    RecordingTrackSelection preloadSelection = trackSelector.selections.get(0);
+    assertThat(preloadSelection.enabled).isTrue();
+
+    RecordingTrackSelection playerSelection =
+        new RecordingTrackSelection(mediaPeriod.getTrackGroups().get(0));
+    playerSelection.enable();
+    @NullableType SampleStream[] streams = new SampleStream[1];
+    boolean[] streamResetFlags = new boolean[1];
+    mediaPeriod.selectTracks(
+        new ExoTrackSelection[] {playerSelection},
+        /* mayRetainStreamFlags= */ new boolean[1],
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+
+    assertThat(preloadSelection.enabled).isFalse();
+    assertThat(playerSelection.enabled).isTrue();
+    assertThat(streams[0]).isNotNull();
+    assertThat(streamResetFlags[0]).isTrue();
+  }
+
+  @Test
+  public void releasePreload_disablesPreloadSelection() {
+    PreloadMediaSource preloadMediaSource = createAndPreloadMediaSource();
+
+    preloadMediaSource.releasePreload();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(trackSelector.selections.get(0).enabled).isFalse();
+    createdMediaSources.get(0).assertReleased();
+  }
+
+  @Test
+  public void releasePreload_continuesPreloadingStoppedByBudget() {
+    factory.setMaxPreloadBytes(1);
+    PreloadMediaSource firstMediaSource = createAndPreloadMediaSource();
+    assertThat(getOnlyMediaPeriod(/* sourceIndex= */ 0).continueLoadingCount).isEqualTo(1);
+    createAndPreloadMediaSource();
+    TestMediaPeriod secondMediaPeriod = getOnlyMediaPeriod(/* sourceIndex= */ 1);
+    // The first source holds the whole budget.
+    assertThat(secondMediaPeriod.continueLoadingCount).isEqualTo(0);
+
+    firstMediaSource.releasePreload();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(secondMediaPeriod.continueLoadingCount).isEqualTo(1);
+  }
+
+  private PreloadMediaSource createAndPreloadMediaSource() {
+    PreloadMediaSource preloadMediaSource =
+        factory.createMediaSource(MediaItem.fromUri("http://example.com/media"));
+    preloadMediaSource.preload();
+    shadowOf(Looper.getMainLooper()).idle();
+    return preloadMediaSource;
+  }
+
+  private TestMediaPeriod getOnlyMediaPeriod(int sourceIndex) {
+    TestMediaSource mediaSource = createdMediaSources.get(sourceIndex);
+    assertThat(mediaSource.testMediaPeriods).hasSize(1);
+    return mediaSource.testMediaPeriods.get(0);
+  }
+
+  private static MediaPeriod prepareAndCreatePeriod(
+      PreloadMediaSource preloadMediaSource, Allocator allocator) {
+    List<Timeline> timelines = new ArrayList<>();
+    preloadMediaSource.prepareSource(
+        (source, timeline) -> timelines.add(timeline), /* mediaTransferListener= */ null);
+    shadowOf(Looper.getMainLooper()).idle();
+    assertThat(timelines).hasSize(1);
+    MediaPeriodId mediaPeriodId =
+        new MediaPeriodId(timelines.get(0).getUidOfPeriod(/* periodIndex= */ 0));
+    return preloadMediaSource.createPeriod(mediaPeriodId, allocator, /* startPositionUs= */ 0);
+  }
+
+  private final class TestMediaSourceFactory implements MediaSourceFactory {
+
+    @Override
+    public MediaSourceFactory setDrmSessionManagerProvider(
+        @Nullable DrmSessionManagerProvider drmSessionManagerProvider) {
+      return this;
+    }
+
+    @Override
+    public MediaSourceFactory setDrmSessionManager(
+        @Nullable DrmSessionManager drmSessionManager) {
+      return this;
+    }
+
+    @Override
+    public MediaSourceFactory setDrmHttpDataSourceFactory(
+        @Nullable HttpDataSource.Factory drmHttpDataSourceFactory) {
+      return this;
+    }
+
+    @Override
+    public MediaSourceFactory setDrmUserAgent(@Nullable String userAgent) {
+      return this;
+    }
+
+    @Override
+    public MediaSourceFactory setLoadErrorHandlingPolicy(
+        @Nullable LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+      return this;
+    }
+
+    @Override
+    public int[] getSupportedTypes() {
+      return new int[] {C.TYPE_OTHER};
+    }
+
+    @Override
+    public MediaSource createMediaSource(MediaItem mediaItem) {
+      TestMediaSource mediaSource = new TestMediaSource();
+      createdMediaSources.add(mediaSource);
+      return mediaSource;
+    }
+  }
+
+  private static final class TestMediaSource extends FakeMediaSource {
+
+    public final List<TestMediaPeriod> testMediaPeriods;
+
+    public TestMediaSource() {
+      super(new FakeTimeline(), VIDEO_FORMAT);
+      testMediaPeriods = new ArrayList<>();
+    }
+
+    @Override
+    protected MediaPeriod createMediaPeriod(
+        MediaPeriodId id,
+        TrackGroupArray trackGroupArray,
+        Allocator allocator,
+        MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher,
+        DrmSessionManager drmSessionManager,
+        DrmSessionEventListener.EventDispatcher drmEventDispatcher,
+        @Nullable TransferListener transferListener) {
+      TestMediaPeriod mediaPeriod =
+          new TestMediaPeriod(trackGroupArray, allocator, mediaSourceEventDispatcher);
+      testMediaPeriods.add(mediaPeriod);
+      return mediaPeriod;
+    }
+  }
+
+  /** A {@link FakeMediaPeriod} that exposes its allocator and never finishes loading. */
+  private static final class TestMediaPeriod extends FakeMediaPeriod {
+
+    public final Allocator allocator;
+
+    public int continueLoadingCount;
+
+    public TestMediaPeriod(
+        TrackGroupArray trackGroupArray,
+        Allocator allocator,
+        MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher) {
+      super(trackGroupArray, allocator, /* singleSampleTimeUs= */ 0, mediaSourceEventDispatcher);
+      this.allocator = allocator;
+    }
+
+    @Override
+    public long getBufferedPositionUs() {
+      return 0;
+    }
+
+    @Override
+    public boolean continueLoading(long positionUs) {
+      continueLoadingCount++;
+      // Hold an allocation, as loading media would.
+      allocator.allocate();
+      return true;
+    }
+  }
+
+  private static final class RecordingTrackSelector extends TrackSelector {
+
+    public final List<RecordingTrackSelection> selections;
+
+    public RecordingTrackSelector() {
+      selections = new ArrayList<>();
+    }
+
+    @Override
+    public TrackSelectorResult selectTracks(
+        RendererCapabilities[] rendererCapabilities,
+        TrackGroupArray trackGroups,
+        MediaPeriodId periodId,
+        Timeline timeline) {
+      RecordingTrackSelection selection = new RecordingTrackSelection(trackGroups.get(0));
+      selections.add(selection);
+      return new TrackSelectorResult(
+          new RendererConfiguration[] {RendererConfiguration.DEFAULT},
+          new ExoTrackSelection[] {selection},
+          /* info= */ null);
+    }
+
+    @Override
+    public void onSelectionActivated(@Nullable Object info) {}
+  }
+
+  private static final class RecordingTrackSelection extends BaseTrackSelection {
+
+    public boolean enabled;
+
+    public RecordingTrackSelection(TrackGroup trackGroup) {
+      super(trackGroup, /* tracks= */ 0);
+    }
+
+    @Override
+    public void enable() {
+      enabled = true;
+    }
+
+    @Override
+    public void disable() {
+      enabled = false;
+    }
+
+    @Override
+    public int getSelectedIndex() {
+      return 0;
+    }
+
+    @Override
+    public int getSelectionReason() {
+      return C.SELECTION_REASON_UNKNOWN;
+    }
+
+    @Nullable
+    @Override
+    public Object getSelectionData() {
+      return null;
+    }
+
+    @Override
+    public void updateSelectedTrack(
+        long playbackPositionUs,
+        long bufferedDurationUs,
+        long availableDurationUs,
+        List<? extends MediaChunk> queue,
+        MediaChunkIterator[] mediaChunkIterators) {}
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.trackselection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeMediaChunk;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.testutil.NetworkTrace;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection.Definition;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+/** Unit test for {@link BolaTrackSelection}. */
+@RunWith(AndroidJUnit4.class)
+public final class BolaTrackSelectionTest {
+
+  private static final MediaChunkIterator[] FOUR_EMPTY_MEDIA_CHUNK_ITERATORS =
+      new MediaChunkIterator[] {
+        MediaChunkIterator.EMPTY,
+        MediaChunkIterator.EMPTY,
+        MediaChunkIterator.EMPTY,
+        MediaChunkIterator.EMPTY
+      };
+  private static final int MIN_BUFFER_MS = 8_000;
+  private static final int BUFFER_TARGET_MS = 20_000;
+
+  @Mock private BandwidthMeter mockBandwidthMeter;
+  private FakeClock fakeClock;
+  private Format format1;
+  private Format format2;
+  private Format format3;
+  private Format format4;
+  private TrackGroup trackGroup;
+
+  @Before
+  public void setUp() {
+    initMocks(this);
+    fakeClock = new FakeClock(0);
+    format1 = videoFormat(/* bitrate= */ 400_000, /* width= */ 320, /* height= */ 240);
+    format2 = videoFormat(/* bitrate= */ 1_000_000, /* width= */ 640, /* height= */ 480);
+    format3 = videoFormat(/* bitrate= */ 2_500_000, /* width= */ 960, /* height= */ 720);
+    format4 = videoFormat(/* bitrate= */ 5_000_000, /* width= */ 1920, /* height= */ 1080);
+    trackGroup = new TrackGroup(format1, format2, format3, format4);
+  }
+
+  @Test
+  public void initialSelection_usesBandwidthEstimate() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_500_000L);
+
+    BolaTrackSelection bolaTrackSelection = prepareTrackSelection(bolaTrackSelection());
+
+    assertThat(bolaTrackSelection.getSelectedFormat()).isEqualTo(format2);
+    assertThat(bolaTrackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_INITIAL);
+  }
+
+  @Test
+  public void updateSelectedTrack_whileStartingUp_usesBandwidthEstimate() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_500_000L, 4_000_000L);
+    BolaTrackSelection bolaTrackSelection = prepareTrackSelection(bolaTrackSelection());
+    List<FakeMediaChunk> queue = new ArrayList<>();
+    queue.add(new FakeMediaChunk(format2, /* startTimeUs= */ 0, /* endTimeUs= */ 4_000_000));
+
+    updateSelectedTrack(bolaTrackSelection, /* bufferedDurationUs= */ 4_000_000, queue);
+
+    assertThat(bolaTrackSelection.getSelectedFormat()).isEqualTo(format3);
+    assertThat(bolaTrackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_ADAPTIVE);
+  }
+
+  @Test
+  public void updateSelectedTrack_withBufferAtTarget_selectsHighestQuality() {
+    // The bandwidth estimate is high enough not to limit switching up.
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(500_000L, 100_000_000L);
+    BolaTrackSelection bolaTrackSelection = prepareTrackSelection(bolaTrackSelection());
+    List<FakeMediaChunk> queue = new ArrayList<>();
+    queue.add(new FakeMediaChunk(format1, /* startTimeUs= */ 0, /* endTimeUs= */ 20_000_000));
+
+    updateSelectedTrack(bolaTrackSelection, /* bufferedDurationUs= */ 20_000_000, queue);
+
+    assertThat(bolaTrackSelection.getSelectedFormat()).isEqualTo(format4);
+  }
+
+  @Test
+  public void updateSelectedTrack_withBufferBetweenMinimumAndTarget_selectsIntermediateQuality() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(500_000L, 100_000_000L);
+    BolaTrackSelection bolaTrackSelection = prepareTrackSelection(bolaTrackSelection());
+    List<FakeMediaChunk> queue = new ArrayList<>();
+    queue.add(new FakeMediaChunk(format1, /* startTimeUs= */ 0, /* endTimeUs= */ 14_000_000));
+
+    updateSelectedTrack(bolaTrackSelection, /* bufferedDurationUs= */ 14_000_000, queue);
+
+    assertThat(bolaTrackSelection.getSelectedFormat()).isEqualTo(format2);
+  }
+
+  @Test
+  public void updateSelectedTrack_afterStartup_withLowBuffer_selectsLowestQuality() {
+    // The bandwidth estimate stays high, but the buffer draining shows that throughput dropped.
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(100_000_000L);
+    BolaTrackSelection bolaTrackSelection = prepareTrackSelection(bolaTrackSelection());
+    List<FakeMediaChunk> queue = new ArrayList<>();
+    queue.add(new FakeMediaChunk(format4, /* startTimeUs= */ 0, /* endTimeUs= */ 20_000_000));
+    updateSelectedTrack(bolaTrackSelection, /* bufferedDurationUs= */ 20_000_000, queue);
+
+    updateSelectedTrack(bolaTrackSelection, /* bufferedDurationUs= */ 4_000_000, queue);
+
+    assertThat(bolaTrackSelection.getSelectedFormat()).isEqualTo(format1);
+    assertThat(bolaTrackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_ADAPTIVE);
+  }
+
+  @Test
+  public void updateSelectedTrack_withBufferAtTarget_switchesUpOnlyAsFarAsBandwidthEstimate() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(500_000L, 1_500_000L);
+    BolaTrackSelection bolaTrackSelection = prepareTrackSelection(bolaTrackSelection());
+    List<FakeMediaChunk> queue = new ArrayList<>();
+    queue.add(new FakeMediaChunk(format1, /* startTimeUs= */ 0, /* endTimeUs= */ 20_000_000));
+
+    updateSelectedTrack(bolaTrackSelection, /* bufferedDurationUs= */ 20_000_000, queue);
+
+    assertThat(bolaTrackSelection.getSelectedFormat()).isEqualTo(format2);
+  }
+
+  @Test
+  public void traceDrivenPlayback_onFluctuatingNetwork_improvesQualityOfExperience() {
+    // A mobile network whose throughput fluctuates between 250 kbps and 5 Mbps every few seconds.
+    NetworkTrace networkTrace =
+        NetworkTrace.parse(
+            "5000 3000000\n"
+                + "3000 400000\n"
+                + "7000 5000000\n"
+                + "4000 250000\n"
+                + "6000 1500000\n"
+                + "5000 700000\n");
+
+    PlaybackResult adaptiveResult =
+        simulatePlayback(
+            new AdaptiveTrackSelection.Factory(
+                AdaptiveTrackSelection.DEFAULT_MIN_DURATION_FOR_QUALITY_INCREASE_MS,
+                AdaptiveTrackSelection.DEFAULT_MAX_DURATION_FOR_QUALITY_DECREASE_MS,
+                AdaptiveTrackSelection.DEFAULT_MIN_DURATION_TO_RETAIN_AFTER_DISCARD_MS,
+                AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+                AdaptiveTrackSelection.DEFAULT_BUFFERED_FRACTION_TO_LIVE_EDGE_FOR_QUALITY_INCREASE,
+                fakeClock),
+            networkTrace);
+    fakeClock = new FakeClock(0);
+    PlaybackResult bolaResult =
+        simulatePlayback(
+            new BolaTrackSelection.Factory(
+                MIN_BUFFER_MS,
+                BUFFER_TARGET_MS,
+                BolaTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+                fakeClock),
+            networkTrace);
+
+    assertThat(bolaResult.rebufferingMs).isAtMost(adaptiveResult.rebufferingMs);
+    assertThat(bolaResult.averageBitrate).isGreaterThan(adaptiveResult.averageBitrate);
+    assertThat(bolaResult.switchCount).isLessThan(adaptiveResult.switchCount);
+  }
+
+  private BolaTrackSelection bolaTrackSelection() {
+    return new BolaTrackSelection(
+        trackGroup,
+        /* tracks= */ new int[] {0, 1, 2, 3},
+        mockBandwidthMeter,
+        MIN_BUFFER_MS,
+        BUFFER_TARGET_MS,
+        /* bandwidthFraction= */ 1.0f,
+        fakeClock);
+  }
+
+  private static BolaTrackSelection prepareTrackSelection(BolaTrackSelection bolaTrackSelection) {
+    bolaTrackSelection.enable();
+    updateSelectedTrack(
+        bolaTrackSelection, /* bufferedDurationUs= */ 0, /* queue= */ ImmutableList.of());
+    return bolaTrackSelection;
+  }
+
+  private static void updateSelectedTrack(
+      ExoTrackSelection trackSelection, long bufferedDurationUs, List<FakeMediaChunk> queue) {
+    trackSelection.updateSelectedTrack(
+        /* playbackPositionUs= */ 0,
+        bufferedDurationUs,
+        /* availableDurationUs= */ C.TIME_UNSET,
+        queue,
+        FOUR_EMPTY_MEDIA_CHUNK_ITERATORS);
+  }
+
+  /**
+   * Simulates the playback of 10 minutes of media in 4 second chunks over the network trace, with a
+   * maximum buffer duration of 30 seconds, and returns its quality of experience.
+   */
+  private PlaybackResult simulatePlayback(
+      ExoTrackSelection.Factory trackSelectionFactory, NetworkTrace networkTrace) {
+    long chunkDurationMs = 4_000;
+    int chunkCount = 150;
+    long maxBufferMs = 30_000;
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setInitialBitrateEstimate(1_000_000)
+            .setClock(fakeClock)
+            .build();
+    Timeline timeline = new FakeTimeline();
+    ExoTrackSelection trackSelection =
+        trackSelectionFactory.createTrackSelections(
+            new Definition[] {new Definition(trackGroup, /* tracks= */ 0, 1, 2, 3)},
+            bandwidthMeter,
+            new MediaSource.MediaPeriodId(timeline.getUidOfPeriod(/* periodIndex= */ 0)),
+            timeline)[0];
+    trackSelection.enable();
+
+    PlaybackResult result = new PlaybackResult();
+    List<FakeMediaChunk> queue = new ArrayList<>();
+    long bufferedDurationMs = 0;
+    long totalBitrate = 0;
+    @Nullable Format previousFormat = null;
+    for (int i = 0; i < chunkCount; i++) {
+      trackSelection.updateSelectedTrack(
+          /* playbackPositionUs= */ (i * chunkDurationMs - bufferedDurationMs) * 1000,
+          bufferedDurationMs * 1000,
+          /* availableDurationUs= */ C.TIME_UNSET,
+          queue,
+          FOUR_EMPTY_MEDIA_CHUNK_ITERATORS);
+      Format format = trackSelection.getSelectedFormat();
+      if (previousFormat != null && format != previousFormat) {
+        result.switchCount++;
+      }
+      previousFormat = format;
+      totalBitrate += format.bitrate;
+
+      long loadStartTimeMs = fakeClock.elapsedRealtime();
+      networkTrace.simulateTransfer(
+          bandwidthMeter, fakeClock, /* bytes= */ format.bitrate * chunkDurationMs / 8000);
+      long loadDurationMs = fakeClock.elapsedRealtime() - loadStartTimeMs;
+      if (i == 0) {
+        result.startupTimeMs = loadDurationMs;
+      } else if (loadDurationMs > bufferedDurationMs) {
+        result.rebufferingMs += loadDurationMs - bufferedDurationMs;
+        bufferedDurationMs = 0;
+      } else {
+        bufferedDurationMs -= loadDurationMs;
+      }
+      bufferedDurationMs += chunkDurationMs;
+      queue.add(
+          new FakeMediaChunk(
+              format,
+              /* startTimeUs= */ i * chunkDurationMs * 1000,
+              /* endTimeUs= */ (i + 1) * chunkDurationMs * 1000,
+              trackSelection.getSelectionReason()));
+      // Discard played chunks, but keep the last loaded chunk in the queue as the player does.
+      long playbackPositionUs = ((i + 1) * chunkDurationMs - bufferedDurationMs) * 1000;
+      while (queue.size() > 1 && queue.get(0).endTimeUs <= playbackPositionUs) {
+        queue.remove(0);
+      }
+      // Wait for playback to free buffer space before loading the next chunk.
+      if (bufferedDurationMs > maxBufferMs) {
+        fakeClock.advanceTime(bufferedDurationMs - maxBufferMs);
+        bufferedDurationMs = maxBufferMs;
+      }
+    }
+    result.averageBitrate = totalBitrate / chunkCount;
+    return result;
+  }
+
+  private static Format videoFormat(int bitrate, int width, int height) {
+    return new Format.Builder()
+        .setSampleMimeType(MimeTypes.VIDEO_H264)
+        .setAverageBitrate(bitrate)
+        .setWidth(width)
+        .setHeight(height)
+        .build();
+  }
+
+  /** The quality of experience of a simulated playback. */
+  private static final class PlaybackResult {
+
+    public long startupTimeMs;
+    public long rebufferingMs;
+    public long averageBitrate;
+    public int switchCount;
+  }
+}
@@ -1584,6 +1584,29 @@ public final class DefaultTrackSelectorTest {
     assertFixedSelection(result.selections[0], trackGroups, formatAv1);
   }
 
+  @Test
+  public void selectTracks_withPreferTrickPlayVideoTracks_selectsTrickPlayTrack()
+      throws Exception {
+    Format trickPlayFormat =
+        VIDEO_FORMAT.buildUpon().setId("trickPlay").setRoleFlags(C.ROLE_FLAG_TRICK_PLAY).build();
+    Format mainFormat = VIDEO_FORMAT.buildUpon().setId("main").build();
+    TrackGroupArray trackGroups = wrapFormats(trickPlayFormat, mainFormat);
+
+    TrackSelectorResult result =
+        trackSelector.selectTracks(
+            new RendererCapabilities[] {VIDEO_CAPABILITIES}, trackGroups, periodId, TIMELINE);
+    assertThat(result.length).isEqualTo(1);
+    assertFixedSelection(result.selections[0], trackGroups, mainFormat);
+
+    trackSelector.setParameters(
+        trackSelector.buildUponParameters().setPreferTrickPlayVideoTracks(true));
+    result =
+        trackSelector.selectTracks(
+            new RendererCapabilities[] {VIDEO_CAPABILITIES}, trackGroups, periodId, TIMELINE);
+    assertThat(result.length).isEqualTo(1);
+    assertFixedSelection(result.selections[0], trackGroups, trickPlayFormat);
+  }
+
   @Test
   public void selectTracks_withPreferredAudioMimeTypes_selectsTrackWithPreferredMimeType()
       throws Exception {
@@ -1734,6 +1757,7 @@ public final class DefaultTrackSelectorTest {
         /* viewportHeight= */ 9,
         /* viewportOrientationMayChange= */ true,
         /* preferredVideoMimeTypes= */ ImmutableList.of(MimeTypes.VIDEO_AV1, MimeTypes.VIDEO_H264),
+        /* preferTrickPlayVideoTracks= */ true,
         // Audio
         /* preferredAudioLanguages= */ ImmutableList.of("zh", "jp"),
         /* preferredAudioRoleFlags= */ C.ROLE_FLAG_COMMENTARY,
@@ -30,6 +30,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.FakeClock;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.NetworkTrace;
 import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
@@ -559,6 +560,87 @@ public final class DefaultBandwidthMeterTest {
     assertThat(initialEstimateWithoutBuilder).isLessThan(50_000_000L);
   }
 
+  @Test
+  public void bitrateEstimate_withInFlightSampling_followsThroughputChangeDuringTransfer() {
+    // 8 Mbps for 2 seconds, then 1 Mbps.
+    NetworkTrace networkTrace = NetworkTrace.parse("2000 8000000\n60000 1000000");
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setBandwidthEstimator(new ExponentialWeightedAverageBandwidthEstimator())
+            .setClock(clock)
+            .build();
+    FakeClock inFlightClock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter inFlightBandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setBandwidthEstimator(new ExponentialWeightedAverageBandwidthEstimator())
+            .setInFlightSampleIntervalMs(100)
+            .setClock(inFlightClock)
+            .build();
+
+    networkTrace.simulateTransfer(bandwidthMeter, clock, /* bytes= */ 4 * 1024 * 1024);
+    networkTrace.simulateTransfer(
+        inFlightBandwidthMeter, inFlightClock, /* bytes= */ 4 * 1024 * 1024);
+
+    // Without in-flight samples, the estimate is the average throughput of the whole transfer.
+    assertThat(bandwidthMeter.getBitrateEstimate()).isGreaterThan(1_600_000L);
+    assertThat(inFlightBandwidthMeter.getBitrateEstimate()).isLessThan(1_300_000L);
+  }
+
+  @Test
+  public void bitrateEstimate_withTimeToFirstByteAwareEstimator_accountsForLatency() {
+    // 8 Mbps with a time to first byte of 200ms.
+    NetworkTrace networkTrace = NetworkTrace.parse("60000 8000000 200");
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setBandwidthEstimator(new ExponentialWeightedAverageBandwidthEstimator())
+            .setClock(clock)
+            .build();
+    FakeClock latencyAwareClock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter latencyAwareBandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setBandwidthEstimator(new TimeToFirstByteAwareBandwidthEstimator())
+            .setClock(latencyAwareClock)
+            .build();
+
+    for (int i = 0; i < 20; i++) {
+      networkTrace.simulateTransfer(bandwidthMeter, clock, /* bytes= */ 50_000);
+      networkTrace.simulateTransfer(
+          latencyAwareBandwidthMeter, latencyAwareClock, /* bytes= */ 50_000);
+    }
+
+    // Each request transfers 400 kbit in 50ms after waiting 200ms for the first byte.
+    assertThat(bandwidthMeter.getBitrateEstimate()).isGreaterThan(7_000_000L);
+    assertThat(latencyAwareBandwidthMeter.getBitrateEstimate()).isWithin(100_000L).of(1_600_000L);
+  }
+
+  @Test
+  public void bitrateEstimate_withPacedTransferIdleThreshold_excludesPausesInPacedTransfers() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setBandwidthEstimator(new ExponentialWeightedAverageBandwidthEstimator())
+            .setClock(clock)
+            .build();
+    FakeClock pacedClock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter pacedBandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setBandwidthEstimator(new ExponentialWeightedAverageBandwidthEstimator())
+            .setPacedTransferIdleThresholdMs(50)
+            .setClock(pacedClock)
+            .build();
+    long initialBitrateEstimate = bandwidthMeter.getBitrateEstimate();
+
+    simulatePacedTransfer(bandwidthMeter, clock);
+    simulatePacedTransfer(pacedBandwidthMeter, pacedClock);
+
+    // Paced transfers are ignored by default.
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(initialBitrateEstimate);
+    // Each burst transfers 800 kbit in 100ms.
+    assertThat(pacedBandwidthMeter.getBitrateEstimate()).isWithin(100_000L).of(8_000_000L);
+  }
+
   private void setActiveNetworkInfo(NetworkInfo networkInfo) {
     Shadows.shadowOf(connectivityManager).setActiveNetworkInfo(networkInfo);
   }
@@ -567,6 +649,31 @@ public final class DefaultBandwidthMeterTest {
     Shadows.shadowOf(telephonyManager).setNetworkCountryIso(countryIso);
   }
 
+  /**
+   * Simulates a chunked transfer paced by an encoder, with one chunk every 500ms. Each chunk is
+   * transferred at 8 Mbps after a pause.
+   */
+  private static void simulatePacedTransfer(DefaultBandwidthMeter bandwidthMeter, FakeClock clock) {
+    DataSource dataSource = new FakeDataSource();
+    DataSpec dataSpec =
+        new DataSpec.Builder()
+            .setUri(Uri.parse("https://test.com"))
+            .setFlags(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)
+            .build();
+    bandwidthMeter.onTransferStart(dataSource, dataSpec, /* isNetwork= */ true);
+    for (int i = 0; i < 10; i++) {
+      clock.advanceTime(400);
+      bandwidthMeter.onBytesTransferred(
+          dataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 1000);
+      for (int j = 0; j < 10; j++) {
+        clock.advanceTime(10);
+        bandwidthMeter.onBytesTransferred(
+            dataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 10_000);
+      }
+    }
+    bandwidthMeter.onTransferEnd(dataSource, dataSpec, /* isNetwork= */ true);
+  }
+
   private static long[] simulateTransfers(DefaultBandwidthMeter bandwidthMeter, FakeClock clock) {
     long[] bitrateEstimates = new long[SIMULATED_TRANSFER_COUNT];
     Random random = new Random(/* seed= */ 0);
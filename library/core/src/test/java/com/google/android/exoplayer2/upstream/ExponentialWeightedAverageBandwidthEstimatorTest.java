@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ExponentialWeightedAverageBandwidthEstimator}. */
+@RunWith(AndroidJUnit4.class)
+public final class ExponentialWeightedAverageBandwidthEstimatorTest {
+
+  @Test
+  public void getBandwidthEstimate_withoutSamples_returnsEstimateNotAvailable() {
+    ExponentialWeightedAverageBandwidthEstimator estimator =
+        new ExponentialWeightedAverageBandwidthEstimator();
+
+    assertThat(estimator.getBandwidthEstimate())
+        .isEqualTo(BandwidthEstimator.ESTIMATE_NOT_AVAILABLE);
+  }
+
+  @Test
+  public void getBandwidthEstimate_withSingleSample_returnsSampleThroughput() {
+    ExponentialWeightedAverageBandwidthEstimator estimator =
+        new ExponentialWeightedAverageBandwidthEstimator(/* halfLifeMs= */ 1000);
+
+    estimator.addSample(/* bytes= */ 1000, /* elapsedMs= */ 10);
+
+    assertThat(estimator.getBandwidthEstimate()).isEqualTo(800_000);
+  }
+
+  @Test
+  public void getBandwidthEstimate_afterHalfLife_weighsNewAndOldSamplesEqually() {
+    ExponentialWeightedAverageBandwidthEstimator estimator =
+        new ExponentialWeightedAverageBandwidthEstimator(/* halfLifeMs= */ 1000);
+
+    // 1 Mbps for a long time, then 3 Mbps for one half-life split into several samples.
+    estimator.addSample(/* bytes= */ 1_250_000, /* elapsedMs= */ 10_000);
+    for (int i = 0; i < 4; i++) {
+      estimator.addSample(/* bytes= */ 93_750, /* elapsedMs= */ 250);
+    }
+
+    assertThat((double) estimator.getBandwidthEstimate()).isWithin(2_000).of(2_000_000);
+  }
+
+  @Test
+  public void reset_discardsSamples() {
+    ExponentialWeightedAverageBandwidthEstimator estimator =
+        new ExponentialWeightedAverageBandwidthEstimator();
+    estimator.addSample(/* bytes= */ 1000, /* elapsedMs= */ 10);
+
+    estimator.reset();
+
+    assertThat(estimator.getBandwidthEstimate())
+        .isEqualTo(BandwidthEstimator.ESTIMATE_NOT_AVAILABLE);
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.util.ConditionVariable;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link HedgingDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class HedgingDataSourceTest {
+
+  private static final String MIRROR_1 = "https://cdn1.test/video/";
+  private static final String MIRROR_2 = "https://cdn2.test/video/";
+  private static final byte[] MIRROR_1_DATA = new byte[] {1, 2, 3};
+  private static final byte[] MIRROR_2_DATA = new byte[] {4, 5, 6};
+
+  private static final long TIMEOUT_MS = 10_000;
+
+  private FakeDataSet fakeDataSet;
+  private BlockingDataSourceFactory upstreamFactory;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() {
+    fakeDataSet =
+        new FakeDataSet()
+            .setData(MIRROR_1 + "segment", MIRROR_1_DATA)
+            .setData(MIRROR_2 + "segment", MIRROR_2_DATA);
+    upstreamFactory = new BlockingDataSourceFactory(fakeDataSet);
+    executorService = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void open_primaryResponds_readsFromPrimaryWithoutHedging() throws Exception {
+    HedgingDataSource dataSource =
+        createFactory(/* initialHedgeDelayMs= */ 10_000).createDataSource();
+
+    byte[] data = openAndReadToEnd(dataSource, MIRROR_2 + "segment");
+
+    assertThat(data).isEqualTo(MIRROR_1_DATA);
+    assertThat(upstreamFactory.openedUris).containsExactly(Uri.parse(MIRROR_1 + "segment"));
+  }
+
+  @Test
+  public void open_primaryStalls_usesHedgedRequest() throws Exception {
+    HedgingDataSource dataSource =
+        createFactory(/* initialHedgeDelayMs= */ 10).createDataSource();
+    upstreamFactory.block(MIRROR_1);
+
+    byte[] data = openAndReadToEnd(dataSource, MIRROR_1 + "segment");
+    upstreamFactory.unblock(MIRROR_1);
+
+    assertThat(data).isEqualTo(MIRROR_2_DATA);
+    assertThat(upstreamFactory.openedUris)
+        .containsExactly(Uri.parse(MIRROR_1 + "segment"), Uri.parse(MIRROR_2 + "segment"))
+        .inOrder();
+  }
+
+  @Test
+  public void open_hedgedRequestWins_interruptsAndClosesPrimary() throws Exception {
+    HedgingDataSource dataSource =
+        createFactory(/* initialHedgeDelayMs= */ 10).createDataSource();
+    upstreamFactory.block(MIRROR_1);
+
+    openAndReadToEnd(dataSource, MIRROR_1 + "segment");
+
+    // The primary request is abandoned without having to be unblocked.
+    assertThat(upstreamFactory.interruptedOpenClosed.block(TIMEOUT_MS)).isTrue();
+  }
+
+  @Test
+  public void open_measuresTimeToFirstByteWithFactoryClock() throws Exception {
+    HedgingDataSource.Factory factory =
+        createFactory(/* initialHedgeDelayMs= */ 60_000)
+            .setClock(new FakeClock(/* initialTimeMs= */ 0));
+    upstreamFactory.delayOpen(MIRROR_1, /* delayMs= */ 50);
+    openAndReadToEnd(factory.createDataSource(), MIRROR_1 + "segment");
+    upstreamFactory.openedUris.clear();
+
+    // The primary took no time on the factory's clock, so it's still preferred over the mirror
+    // that hasn't been requested yet.
+    openAndReadToEnd(factory.createDataSource(), MIRROR_1 + "segment");
+
+    assertThat(upstreamFactory.openedUris).containsExactly(Uri.parse(MIRROR_1 + "segment"));
+  }
+
+  @Test
+  public void open_primaryFails_failsOverWithoutWaitingForHedgeDelay() throws Exception {
+    fakeDataSet.setData(MIRROR_1 + "segment", new byte[0]);
+    HedgingDataSource dataSource =
+        createFactory(/* initialHedgeDelayMs= */ 60_000).createDataSource();
+
+    byte[] data = openAndReadToEnd(dataSource, MIRROR_1 + "segment");
+
+    assertThat(data).isEqualTo(MIRROR_2_DATA);
+  }
+
+  @Test
+  public void open_afterPrimaryFailed_prefersOtherMirror() throws Exception {
+    fakeDataSet.setData(MIRROR_1 + "segment", new byte[0]);
+    HedgingDataSource.Factory factory = createFactory(/* initialHedgeDelayMs= */ 60_000);
+    openAndReadToEnd(factory.createDataSource(), MIRROR_1 + "segment");
+    upstreamFactory.openedUris.clear();
+
+    openAndReadToEnd(factory.createDataSource(), MIRROR_1 + "segment");
+
+    assertThat(upstreamFactory.openedUris).containsExactly(Uri.parse(MIRROR_2 + "segment"));
+  }
+
+  @Test
+  public void open_allMirrorsFail_throws() {
+    fakeDataSet.setData(MIRROR_1 + "segment", new byte[0]);
+    fakeDataSet.setData(MIRROR_2 + "segment", new byte[0]);
+    HedgingDataSource dataSource =
+        createFactory(/* initialHedgeDelayMs= */ 60_000).createDataSource();
+
+    assertThrows(
+        IOException.class,
+        () -> dataSource.open(new DataSpec(Uri.parse(MIRROR_1 + "segment"))));
+  }
+
+  @Test
+  public void open_uriNotServedByMirrors_opensUriDirectly() throws Exception {
+    fakeDataSet.setData("https://other.test/segment", MIRROR_1_DATA);
+    HedgingDataSource dataSource =
+        createFactory(/* initialHedgeDelayMs= */ 10_000).createDataSource();
+
+    byte[] data = openAndReadToEnd(dataSource, "https://other.test/segment");
+
+    assertThat(data).isEqualTo(MIRROR_1_DATA);
+    assertThat(upstreamFactory.openedUris).containsExactly(Uri.parse("https://other.test/segment"));
+  }
+
+  private HedgingDataSource.Factory createFactory(long initialHedgeDelayMs) {
+    return new HedgingDataSource.Factory(
+            upstreamFactory,
+            ImmutableList.of(Uri.parse(MIRROR_1), Uri.parse(MIRROR_2)),
+            executorService)
+        .setInitialHedgeDelayMs(initialHedgeDelayMs);
+  }
+
+  private static byte[] openAndReadToEnd(DataSource dataSource, String uri) throws IOException {
+    try {
+      dataSource.open(new DataSpec(Uri.parse(uri)));
+      return Util.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  /** Creates {@link FakeDataSource} instances whose opens can be blocked or delayed per mirror. */
+  private static final class BlockingDataSourceFactory implements DataSource.Factory {
+
+    public final List<Uri> openedUris;
+    /** Opened once a source whose blocked open was interrupted has been closed. */
+    public final ConditionVariable interruptedOpenClosed;
+
+    private final FakeDataSet fakeDataSet;
+    private final Map<String, ConditionVariable> blockedMirrors;
+    private final Map<String, Long> openDelaysMs;
+
+    public BlockingDataSourceFactory(FakeDataSet fakeDataSet) {
+      this.fakeDataSet = fakeDataSet;
+      openedUris = Collections.synchronizedList(new ArrayList<>());
+      interruptedOpenClosed = new ConditionVariable();
+      blockedMirrors = Collections.synchronizedMap(new HashMap<>());
+      openDelaysMs = Collections.synchronizedMap(new HashMap<>());
+    }
+
+    public void delayOpen(String mirror, long delayMs) {
+      openDelaysMs.put(mirror, delayMs);
+    }
+
+    public void block(String mirror) {
+      blockedMirrors.put(mirror, new ConditionVariable());
+    }
+
+    public void unblock(String mirror) {
+      ConditionVariable conditionVariable = blockedMirrors.remove(mirror);
+      if (conditionVariable != null) {
+        conditionVariable.open();
+      }
+    }
+
+    @Override
+    public DataSource createDataSource() {
+      return new BlockingDataSource(new FakeDataSource(fakeDataSet));
+    }
+
+    private final class BlockingDataSource implements DataSource {
+
+      private final FakeDataSource upstream;
+
+      private boolean upstreamOpened;
+      private boolean openInterrupted;
+
+      public BlockingDataSource(FakeDataSource upstream) {
+        this.upstream = upstream;
+      }
+
+      @Override
+      public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+      }
+
+      @Override
+      public long open(DataSpec dataSpec) throws IOException {
+        openedUris.add(dataSpec.uri);
+        String uri = dataSpec.uri.toString();
+        try {
+          for (String mirror : new ArrayList<>(blockedMirrors.keySet())) {
+            @Nullable ConditionVariable conditionVariable = blockedMirrors.get(mirror);
+            if (uri.startsWith(mirror) && conditionVariable != null) {
+              conditionVariable.block();
+            }
+          }
+          for (String mirror : new ArrayList<>(openDelaysMs.keySet())) {
+            @Nullable Long delayMs = openDelaysMs.get(mirror);
+            if (uri.startsWith(mirror) && delayMs != null) {
+              Thread.sleep(delayMs);
+            }
+          }
+        } catch (InterruptedException e) {
+          openInterrupted = true;
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        upstreamOpened = true;
+        return upstream.open(dataSpec);
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return upstream.read(buffer, offset, readLength);
+      }
+
+      @Override
+      @Nullable
+      public Uri getUri() {
+        return upstream.getUri();
+      }
+
+      @Override
+      public void close() {
+        if (upstreamOpened) {
+          upstreamOpened = false;
+          upstream.close();
+        }
+        if (openInterrupted) {
+          interruptedOpenClosed.open();
+        }
+      }
+    }
+  }
+}
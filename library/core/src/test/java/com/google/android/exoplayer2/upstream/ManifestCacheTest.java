@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ManifestCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class ManifestCacheTest {
+
+  private static final Uri URI = Uri.parse("https://example.com/manifest");
+
+  @Test
+  public void load_unchangedManifest_returnsCachedManifestWithoutParsing() throws IOException {
+    ManifestCache manifestCache = new ManifestCache();
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("manifest", /* eTag= */ "\"1\"");
+    CountingParser parser = new CountingParser();
+
+    ParsingLoadable<String> firstLoadable = createLoadable(dataSource, parser, manifestCache);
+    firstLoadable.load();
+    ParsingLoadable<String> secondLoadable = createLoadable(dataSource, parser, manifestCache);
+    secondLoadable.load();
+
+    assertThat(secondLoadable.getResult()).isSameInstanceAs(firstLoadable.getResult());
+    assertThat(secondLoadable.getUri()).isEqualTo(URI);
+    assertThat(parser.parseCount).isEqualTo(1);
+    assertThat(dataSource.lastIfNoneMatch).isEqualTo("\"1\"");
+    assertThat(manifestCache.getHitCount()).isEqualTo(1);
+    assertThat(manifestCache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void load_changedManifest_parsesNewManifest() throws IOException {
+    ManifestCache manifestCache = new ManifestCache();
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("manifest1", /* eTag= */ "\"1\"");
+    CountingParser parser = new CountingParser();
+    createLoadable(dataSource, parser, manifestCache).load();
+
+    dataSource.setContent("manifest2", /* eTag= */ "\"2\"");
+    ParsingLoadable<String> loadable = createLoadable(dataSource, parser, manifestCache);
+    loadable.load();
+
+    assertThat(loadable.getResult()).isEqualTo("manifest2");
+    assertThat(parser.parseCount).isEqualTo(2);
+    assertThat(manifestCache.getHitCount()).isEqualTo(0);
+    assertThat(manifestCache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void load_responseWithoutValidators_isNotCached() throws IOException {
+    ManifestCache manifestCache = new ManifestCache();
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("manifest", /* eTag= */ null);
+    CountingParser parser = new CountingParser();
+
+    createLoadable(dataSource, parser, manifestCache).load();
+    createLoadable(dataSource, parser, manifestCache).load();
+
+    assertThat(manifestCache.getEntryCount()).isEqualTo(0);
+    assertThat(dataSource.lastIfNoneMatch).isNull();
+    assertThat(parser.parseCount).isEqualTo(2);
+  }
+
+  @Test
+  public void load_withFullCache_evictsLeastRecentlyUsedManifest() throws IOException {
+    ManifestCache manifestCache = new ManifestCache(/* maxEntryCount= */ 1);
+    FakeHttpDataSource dataSource = new FakeHttpDataSource("manifest", /* eTag= */ "\"1\"");
+    CountingParser parser = new CountingParser();
+
+    createLoadable(dataSource, parser, manifestCache).load();
+    new ParsingLoadable<>(
+            dataSource,
+            Uri.parse("https://example.com/other"),
+            C.DATA_TYPE_MANIFEST,
+            parser,
+            manifestCache)
+        .load();
+    createLoadable(dataSource, parser, manifestCache).load();
+
+    assertThat(manifestCache.getEntryCount()).isEqualTo(1);
+    assertThat(manifestCache.getHitCount()).isEqualTo(0);
+    assertThat(parser.parseCount).isEqualTo(3);
+  }
+
+  private static ParsingLoadable<String> createLoadable(
+      DataSource dataSource, CountingParser parser, ManifestCache manifestCache) {
+    return new ParsingLoadable<>(dataSource, URI, C.DATA_TYPE_MANIFEST, parser, manifestCache);
+  }
+
+  private static final class CountingParser implements ParsingLoadable.Parser<String> {
+
+    public int parseCount;
+
+    @Override
+    public String parse(Uri uri, InputStream inputStream) throws IOException {
+      parseCount++;
+      return Util.fromUtf8Bytes(Util.toByteArray(inputStream));
+    }
+  }
+
+  /** Serves a single response and honors {@code If-None-Match} like an HTTP server. */
+  private static final class FakeHttpDataSource extends BaseDataSource {
+
+    @Nullable public String lastIfNoneMatch;
+
+    private byte[] content;
+    @Nullable private String eTag;
+    @Nullable private DataSource dataSource;
+
+    public FakeHttpDataSource(String content, @Nullable String eTag) {
+      super(/* isNetwork= */ true);
+      setContent(content, eTag);
+    }
+
+    public void setContent(String content, @Nullable String eTag) {
+      this.content = Util.getUtf8Bytes(content);
+      this.eTag = eTag;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      lastIfNoneMatch = dataSpec.httpRequestHeaders.get("If-None-Match");
+      if (eTag != null && eTag.equals(lastIfNoneMatch)) {
+        throw new HttpDataSource.InvalidResponseCodeException(
+            /* responseCode= */ 304, Collections.emptyMap(), dataSpec);
+      }
+      dataSource = new ByteArrayDataSource(content);
+      return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      return dataSource.read(buffer, offset, readLength);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return dataSource != null ? dataSource.getUri() : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return eTag != null
+          ? ImmutableMap.of("etag", ImmutableList.of(eTag))
+          : Collections.emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (dataSource != null) {
+        dataSource.close();
+        dataSource = null;
+      }
+    }
+  }
+}
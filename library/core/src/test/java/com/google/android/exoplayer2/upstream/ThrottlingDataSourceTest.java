@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ThrottlingDataSource} and {@link BandwidthThrottle}. */
+@RunWith(AndroidJUnit4.class)
+public final class ThrottlingDataSourceTest {
+
+  @Test
+  public void getAllocatedBytesPerSecond_sharesRateInProportionToWeights() {
+    BandwidthThrottle throttle = new BandwidthThrottle(/* maxBytesPerSecond= */ 3000);
+
+    throttle.register(/* weight= */ 1);
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 1)).isEqualTo(3000);
+
+    throttle.register(/* weight= */ 2);
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 1)).isEqualTo(1000);
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 2)).isEqualTo(2000);
+
+    throttle.unregister(/* weight= */ 1);
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 2)).isEqualTo(3000);
+  }
+
+  @Test
+  public void getAllocatedBytesPerSecond_withNoLimit_returnsNoLimit() {
+    BandwidthThrottle throttle = new BandwidthThrottle(BandwidthThrottle.NO_LIMIT);
+    throttle.register(/* weight= */ 1);
+
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 1))
+        .isEqualTo(BandwidthThrottle.NO_LIMIT);
+  }
+
+  @Test
+  public void read_pacesReadsToMaxRate() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 2000);
+    BandwidthThrottle throttle = new BandwidthThrottle(/* maxBytesPerSecond= */ 10_000);
+    SleepRecordingClock clock = new SleepRecordingClock();
+    ThrottlingDataSource dataSource =
+        new ThrottlingDataSource(new ByteArrayDataSource(data), throttle, /* weight= */ 1, clock);
+
+    dataSource.open(new DataSpec(Uri.EMPTY));
+    byte[] buffer = new byte[data.length];
+    int bytesRead = 0;
+    while (bytesRead < data.length) {
+      int result = dataSource.read(buffer, bytesRead, /* length= */ 500);
+      assertThat(result).isNotEqualTo(C.RESULT_END_OF_INPUT);
+      bytesRead += result;
+    }
+    dataSource.close();
+
+    assertThat(buffer).isEqualTo(data);
+    // Reading 500 bytes at 10000 bytes per second takes 50ms.
+    assertThat(clock.sleepTimesMs).containsExactly(50L, 50L, 50L, 50L).inOrder();
+  }
+
+  @Test
+  public void read_afterPause_doesNotReadBurst() throws Exception {
+    BandwidthThrottle throttle = new BandwidthThrottle(/* maxBytesPerSecond= */ 10_000);
+    SleepRecordingClock clock = new SleepRecordingClock();
+    ThrottlingDataSource dataSource =
+        new ThrottlingDataSource(
+            new ByteArrayDataSource(TestUtil.buildTestData(/* length= */ 1000)),
+            throttle,
+            /* weight= */ 1,
+            clock);
+    byte[] buffer = new byte[500];
+
+    dataSource.open(new DataSpec(Uri.EMPTY));
+    dataSource.read(buffer, /* offset= */ 0, /* length= */ 500);
+    clock.advanceTime(/* timeDiffMs= */ 1000);
+    dataSource.read(buffer, /* offset= */ 0, /* length= */ 500);
+    dataSource.close();
+
+    assertThat(clock.sleepTimesMs).containsExactly(50L, 50L).inOrder();
+  }
+
+  @Test
+  public void read_withNoLimit_doesNotSleep() throws Exception {
+    BandwidthThrottle throttle = new BandwidthThrottle(BandwidthThrottle.NO_LIMIT);
+    SleepRecordingClock clock = new SleepRecordingClock();
+    ThrottlingDataSource dataSource =
+        new ThrottlingDataSource(
+            new ByteArrayDataSource(TestUtil.buildTestData(/* length= */ 1000)),
+            throttle,
+            /* weight= */ 1,
+            clock);
+
+    dataSource.open(new DataSpec(Uri.EMPTY));
+    dataSource.read(new byte[1000], /* offset= */ 0, /* length= */ 1000);
+    dataSource.close();
+
+    assertThat(clock.sleepTimesMs).isEmpty();
+  }
+
+  @Test
+  public void close_unregistersFromThrottle() throws Exception {
+    BandwidthThrottle throttle = new BandwidthThrottle(/* maxBytesPerSecond= */ 3000);
+    throttle.register(/* weight= */ 1);
+    ThrottlingDataSource dataSource =
+        new ThrottlingDataSource(
+            new ByteArrayDataSource(TestUtil.buildTestData(/* length= */ 10)),
+            throttle,
+            /* weight= */ 2);
+
+    dataSource.open(new DataSpec(Uri.EMPTY));
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 1)).isEqualTo(1000);
+    dataSource.close();
+
+    assertThat(throttle.getAllocatedBytesPerSecond(/* weight= */ 1)).isEqualTo(3000);
+  }
+
+  /** A {@link FakeClock} that records the requested sleep times, and advances by them. */
+  private static final class SleepRecordingClock extends FakeClock {
+
+    public final List<Long> sleepTimesMs;
+
+    public SleepRecordingClock() {
+      super(/* initialTimeMs= */ 0);
+      sleepTimesMs = new ArrayList<>();
+    }
+
+    @Override
+    public synchronized void sleep(long sleepTimeMs) {
+      sleepTimesMs.add(sleepTimeMs);
+      advanceTime(sleepTimeMs);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link TimeToFirstByteAwareBandwidthEstimator}. */
+@RunWith(AndroidJUnit4.class)
+public final class TimeToFirstByteAwareBandwidthEstimatorTest {
+
+  @Test
+  public void getBandwidthEstimate_withoutTimeToFirstByteSamples_returnsThroughput() {
+    TimeToFirstByteAwareBandwidthEstimator estimator = new TimeToFirstByteAwareBandwidthEstimator();
+
+    estimator.addSample(/* bytes= */ 100_000, /* elapsedMs= */ 100);
+
+    assertThat(estimator.getBandwidthEstimate()).isEqualTo(8_000_000);
+    assertThat(estimator.getTimeToFirstByteEstimateMs()).isEqualTo(C.TIME_UNSET);
+  }
+
+  @Test
+  public void getBandwidthEstimate_withTimeToFirstByte_includesLatencyOfTypicalRequest() {
+    TimeToFirstByteAwareBandwidthEstimator estimator = new TimeToFirstByteAwareBandwidthEstimator();
+
+    // Two requests of 100 kB, each with 100ms to first byte followed by 100ms of transfer.
+    estimator.addTimeToFirstByteSample(100);
+    estimator.addSample(/* bytes= */ 100_000, /* elapsedMs= */ 100);
+    estimator.addTimeToFirstByteSample(100);
+    estimator.addSample(/* bytes= */ 100_000, /* elapsedMs= */ 100);
+
+    assertThat(estimator.getTimeToFirstByteEstimateMs()).isEqualTo(100);
+    assertThat(estimator.getBandwidthEstimate()).isEqualTo(4_000_000);
+  }
+
+  @Test
+  public void reset_discardsSamples() {
+    TimeToFirstByteAwareBandwidthEstimator estimator = new TimeToFirstByteAwareBandwidthEstimator();
+    estimator.addTimeToFirstByteSample(100);
+    estimator.addSample(/* bytes= */ 100_000, /* elapsedMs= */ 100);
+
+    estimator.reset();
+
+    assertThat(estimator.getBandwidthEstimate())
+        .isEqualTo(BandwidthEstimator.ESTIMATE_NOT_AVAILABLE);
+    assertThat(estimator.getTimeToFirstByteEstimateMs()).isEqualTo(C.TIME_UNSET);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ReferenceCountedDecoderContext}. */
+@RunWith(AndroidJUnit4.class)
+public final class ReferenceCountedDecoderContextTest {
+
+  private List<VideoDecoderOutputBuffer> releasedFrames;
+  private int closeCount;
+  private ReferenceCountedDecoderContext decoderContext;
+
+  @Before
+  public void setUp() {
+    releasedFrames = new ArrayList<>();
+    decoderContext =
+        new ReferenceCountedDecoderContext(
+            /* frameReleaser= */ releasedFrames::add, /* contextCloser= */ () -> closeCount++);
+  }
+
+  @Test
+  public void release_withoutReferencedFrames_closesContext() {
+    decoderContext.release();
+
+    assertThat(closeCount).isEqualTo(1);
+  }
+
+  @Test
+  public void release_whileFrameIsHeld_closesContextAfterFrameIsReleased() {
+    VideoDecoderOutputBuffer heldBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+    VideoDecoderOutputBuffer otherBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+    decoderContext.onFrameReferenced(heldBuffer);
+    decoderContext.onFrameReferenced(otherBuffer);
+    decoderContext.releaseFrame(otherBuffer);
+
+    decoderContext.release();
+
+    assertThat(closeCount).isEqualTo(0);
+
+    decoderContext.releaseFrame(heldBuffer);
+
+    assertThat(releasedFrames).containsExactly(otherBuffer, heldBuffer).inOrder();
+    assertThat(closeCount).isEqualTo(1);
+  }
+
+  @Test
+  public void releaseFrame_withoutReferencedFrame_doesNotReleaseFrame() {
+    VideoDecoderOutputBuffer outputBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+
+    decoderContext.releaseFrame(outputBuffer);
+
+    assertThat(releasedFrames).isEmpty();
+  }
+
+  @Test
+  public void releaseFrame_twice_releasesFrameOnce() {
+    VideoDecoderOutputBuffer outputBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+    decoderContext.onFrameReferenced(outputBuffer);
+    decoderContext.release();
+
+    decoderContext.releaseFrame(outputBuffer);
+    decoderContext.releaseFrame(outputBuffer);
+
+    assertThat(releasedFrames).containsExactly(outputBuffer);
+    assertThat(closeCount).isEqualTo(1);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link VideoDecoderOutputBuffer}. */
+@RunWith(AndroidJUnit4.class)
+public final class VideoDecoderOutputBufferTest {
+
+  @Test
+  public void initForDecoderOwnedYuvFrame_referencesPlanesWithoutCopying() {
+    VideoDecoderOutputBuffer outputBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+    ByteBuffer yPlane = ByteBuffer.allocateDirect(32 * 16);
+    ByteBuffer uPlane = ByteBuffer.allocateDirect(16 * 8);
+    ByteBuffer vPlane = ByteBuffer.allocateDirect(16 * 8);
+
+    outputBuffer.init(/* timeUs= */ 0, C.VIDEO_OUTPUT_MODE_YUV, /* supplementalData= */ null);
+    outputBuffer.initForDecoderOwnedYuvFrame(
+        /* width= */ 30,
+        /* height= */ 16,
+        /* yStride= */ 32,
+        /* uvStride= */ 16,
+        VideoDecoderOutputBuffer.COLORSPACE_BT709,
+        yPlane,
+        uPlane,
+        vPlane);
+
+    assertThat(outputBuffer.hasDecoderOwnedYuvPlanes()).isTrue();
+    assertThat(outputBuffer.data).isNull();
+    assertThat(outputBuffer.yuvPlanes).asList().containsExactly(yPlane, uPlane, vPlane).inOrder();
+    assertThat(outputBuffer.yuvStrides).asList().containsExactly(32, 16, 16).inOrder();
+    assertThat(outputBuffer.width).isEqualTo(30);
+    assertThat(outputBuffer.colorspace).isEqualTo(VideoDecoderOutputBuffer.COLORSPACE_BT709);
+  }
+
+  @Test
+  public void clear_withDecoderOwnedYuvPlanes_dropsPlanes() {
+    VideoDecoderOutputBuffer outputBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+    outputBuffer.init(/* timeUs= */ 0, C.VIDEO_OUTPUT_MODE_YUV, /* supplementalData= */ null);
+    outputBuffer.initForDecoderOwnedYuvFrame(
+        /* width= */ 16,
+        /* height= */ 16,
+        /* yStride= */ 16,
+        /* uvStride= */ 8,
+        VideoDecoderOutputBuffer.COLORSPACE_UNKNOWN,
+        ByteBuffer.allocateDirect(16 * 16),
+        ByteBuffer.allocateDirect(8 * 8),
+        ByteBuffer.allocateDirect(8 * 8));
+
+    outputBuffer.clear();
+
+    assertThat(outputBuffer.hasDecoderOwnedYuvPlanes()).isFalse();
+    assertThat(outputBuffer.yuvPlanes).isNull();
+  }
+
+  @Test
+  public void initForYuvFrame_afterDecoderOwnedYuvFrame_copiesIntoData() {
+    VideoDecoderOutputBuffer outputBuffer = new VideoDecoderOutputBuffer(buffer -> {});
+    outputBuffer.init(/* timeUs= */ 0, C.VIDEO_OUTPUT_MODE_YUV, /* supplementalData= */ null);
+    outputBuffer.initForDecoderOwnedYuvFrame(
+        /* width= */ 16,
+        /* height= */ 16,
+        /* yStride= */ 16,
+        /* uvStride= */ 8,
+        VideoDecoderOutputBuffer.COLORSPACE_UNKNOWN,
+        ByteBuffer.allocateDirect(16 * 16),
+        ByteBuffer.allocateDirect(8 * 8),
+        ByteBuffer.allocateDirect(8 * 8));
+
+    assertThat(
+            outputBuffer.initForYuvFrame(
+                /* width= */ 16,
+                /* height= */ 16,
+                /* yStride= */ 16,
+                /* uvStride= */ 8,
+                VideoDecoderOutputBuffer.COLORSPACE_UNKNOWN))
+        .isTrue();
+
+    assertThat(outputBuffer.hasDecoderOwnedYuvPlanes()).isFalse();
+    assertThat(outputBuffer.data).isNotNull();
+    assertThat(outputBuffer.yuvPlanes).hasLength(3);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash;
+
+import static java.lang.Math.max;
+
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.source.dash.manifest.BaseUrl;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Holds the service locations of {@link BaseUrl base URLs} that are temporarily excluded after a
+ * load error, and selects a base URL from those that aren't excluded.
+ *
+ * <p>Base URLs are selected as described in ETSI TS 103 285 V1.2.1, 10.8.2.1: among the base URLs
+ * with the lowest priority value, one is selected at random in proportion to its weight. The
+ * selection is remembered, so that the same base URL is selected for the same set of candidates
+ * until it's excluded.
+ */
+public final class BaseUrlExclusionList {
+
+  private final Map<String, Long> excludedServiceLocations;
+  private final Map<List<BaseUrl>, BaseUrl> selectionsTaken;
+  private final Random random;
+
+  /** Creates an instance. */
+  public BaseUrlExclusionList() {
+    this(new Random());
+  }
+
+  /** Creates an instance with the given {@link Random}. */
+  @VisibleForTesting
+  /* package */ BaseUrlExclusionList(Random random) {
+    this.random = random;
+    excludedServiceLocations = new HashMap<>();
+    selectionsTaken = new HashMap<>();
+  }
+
+  /**
+   * Excludes the service location of the given base URL, and with it all base URLs served from the
+   * same location.
+   *
+   * @param baseUrlToExclude The base URL whose service location should be excluded.
+   * @param exclusionDurationMs The duration of the exclusion, in milliseconds.
+   */
+  public void exclude(BaseUrl baseUrlToExclude, long exclusionDurationMs) {
+    long excludeUntilMs = SystemClock.elapsedRealtime() + exclusionDurationMs;
+    @Nullable Long currentExcludeUntilMs =
+        excludedServiceLocations.get(baseUrlToExclude.serviceLocation);
+    if (currentExcludeUntilMs != null) {
+      excludeUntilMs = max(excludeUntilMs, currentExcludeUntilMs);
+    }
+    excludedServiceLocations.put(baseUrlToExclude.serviceLocation, excludeUntilMs);
+  }
+
+  /**
+   * Selects a base URL from the given base URLs that isn't excluded.
+   *
+   * @param baseUrls The base URLs to select from.
+   * @return The selected base URL, or null if all base URLs are excluded.
+   */
+  @Nullable
+  public BaseUrl selectBaseUrl(List<BaseUrl> baseUrls) {
+    List<BaseUrl> candidates = getCandidatesWithLowestPriority(baseUrls);
+    if (candidates.isEmpty()) {
+      return null;
+    } else if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+    @Nullable BaseUrl selection = selectionsTaken.get(candidates);
+    if (selection == null) {
+      selection = selectWeighted(candidates);
+      selectionsTaken.put(candidates, selection);
+    }
+    return selection;
+  }
+
+  /**
+   * Returns the number of distinct service locations among the given base URLs that aren't
+   * excluded.
+   *
+   * @param baseUrls The base URLs.
+   * @return The number of service locations that can still be selected.
+   */
+  public int getServiceLocationCountAfterExclusion(List<BaseUrl> baseUrls) {
+    pruneExpiredExclusions();
+    Set<String> serviceLocations = new HashSet<>();
+    for (int i = 0; i < baseUrls.size(); i++) {
+      BaseUrl baseUrl = baseUrls.get(i);
+      if (!excludedServiceLocations.containsKey(baseUrl.serviceLocation)) {
+        serviceLocations.add(baseUrl.serviceLocation);
+      }
+    }
+    return serviceLocations.size();
+  }
+
+  /** Removes all exclusions and remembered selections. */
+  public void reset() {
+    excludedServiceLocations.clear();
+    selectionsTaken.clear();
+  }
+
+  private List<BaseUrl> getCandidatesWithLowestPriority(List<BaseUrl> baseUrls) {
+    pruneExpiredExclusions();
+    List<BaseUrl> candidates = new ArrayList<>();
+    int lowestPriority = Integer.MAX_VALUE;
+    for (int i = 0; i < baseUrls.size(); i++) {
+      BaseUrl baseUrl = baseUrls.get(i);
+      if (excludedServiceLocations.containsKey(baseUrl.serviceLocation)) {
+        continue;
+      }
+      if (baseUrl.priority < lowestPriority) {
+        lowestPriority = baseUrl.priority;
+        candidates.clear();
+      }
+      if (baseUrl.priority == lowestPriority) {
+        candidates.add(baseUrl);
+      }
+    }
+    return candidates;
+  }
+
+  private BaseUrl selectWeighted(List<BaseUrl> candidates) {
+    int totalWeight = 0;
+    for (int i = 0; i < candidates.size(); i++) {
+      totalWeight += max(0, candidates.get(i).weight);
+    }
+    if (totalWeight == 0) {
+      return candidates.get(random.nextInt(candidates.size()));
+    }
+    int randomWeight = random.nextInt(totalWeight);
+    int cumulativeWeight = 0;
+    for (int i = 0; i < candidates.size(); i++) {
+      BaseUrl candidate = candidates.get(i);
+      cumulativeWeight += max(0, candidate.weight);
+      if (randomWeight < cumulativeWeight) {
+        return candidate;
+      }
+    }
+    return candidates.get(candidates.size() - 1);
+  }
+
+  private void pruneExpiredExclusions() {
+    long nowMs = SystemClock.elapsedRealtime();
+    Iterator<Long> iterator = excludedServiceLocations.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next() <= nowMs) {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -80,6 +80,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       Pattern.compile("([1-4])=lang:(\\w+)(,.+)?");
 
   /* package */ final int id;
+  private final BaseUrlExclusionList baseUrlExclusionList;
   private final DashChunkSource.Factory chunkSourceFactory;
   @Nullable private final TransferListener transferListener;
   private final DrmSessionManager drmSessionManager;
@@ -107,6 +108,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   public DashMediaPeriod(
       int id,
       DashManifest manifest,
+      BaseUrlExclusionList baseUrlExclusionList,
       int periodIndex,
       DashChunkSource.Factory chunkSourceFactory,
       @Nullable TransferListener transferListener,
@@ -121,6 +123,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       PlayerEmsgCallback playerEmsgCallback) {
     this.id = id;
     this.manifest = manifest;
+    this.baseUrlExclusionList = baseUrlExclusionList;
     this.periodIndex = periodIndex;
     this.chunkSourceFactory = chunkSourceFactory;
     this.transferListener = transferListener;
@@ -766,6 +769,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         chunkSourceFactory.createDashChunkSource(
             manifestLoaderErrorThrower,
             manifest,
+            baseUrlExclusionList,
             periodIndex,
             trackGroupInfo.adaptationSetIndices,
             selection,
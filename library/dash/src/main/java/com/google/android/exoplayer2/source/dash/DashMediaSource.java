@@ -66,6 +66,7 @@ import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy.LoadErrorI
 import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
@@ -109,6 +110,7 @@ public final class DashMediaSource extends BaseMediaSource {
     private long targetLiveOffsetOverrideMs;
     private long fallbackTargetLiveOffsetMs;
     @Nullable private ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+    @Nullable private ManifestCache manifestCache;
     private List<StreamKey> streamKeys;
     @Nullable private Object tag;
 
@@ -263,6 +265,19 @@ public final class DashMediaSource extends BaseMediaSource {
       return this;
     }
 
+    /**
+     * Sets a {@link ManifestCache} from which unchanged manifests are reused instead of being
+     * downloaded and parsed again. The cache isn't used for media items with {@link StreamKey
+     * stream keys}, since their manifests are filtered. The default is {@code null}.
+     *
+     * @param manifestCache A {@link ManifestCache}, or {@code null} to load every manifest.
+     * @return This factory, for convenience.
+     */
+    public Factory setManifestCache(@Nullable ManifestCache manifestCache) {
+      this.manifestCache = manifestCache;
+      return this;
+    }
+
     /**
      * Sets the factory to create composite {@link SequenceableLoader}s for when this media source
      * loads data from multiple streams (video, audio etc...). The default is an instance of {@link
@@ -340,6 +355,7 @@ public final class DashMediaSource extends BaseMediaSource {
           manifest,
           /* manifestDataSourceFactory= */ null,
           /* manifestParser= */ null,
+          /* manifestCache= */ null,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
@@ -406,6 +422,7 @@ public final class DashMediaSource extends BaseMediaSource {
           /* manifest= */ null,
           manifestDataSourceFactory,
           manifestParser,
+          streamKeys.isEmpty() ? manifestCache : null,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
@@ -449,9 +466,11 @@ public final class DashMediaSource extends BaseMediaSource {
   private final CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory;
   private final DrmSessionManager drmSessionManager;
   private final LoadErrorHandlingPolicy loadErrorHandlingPolicy;
+  private final BaseUrlExclusionList baseUrlExclusionList;
   private final long fallbackTargetLiveOffsetMs;
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+  @Nullable private final ManifestCache manifestCache;
   private final ManifestCallback manifestCallback;
   private final Object manifestUriLock;
   private final SparseArray<DashMediaPeriod> periodsById;
@@ -486,6 +505,7 @@ public final class DashMediaSource extends BaseMediaSource {
       @Nullable DashManifest manifest,
       @Nullable DataSource.Factory manifestDataSourceFactory,
       @Nullable ParsingLoadable.Parser<? extends DashManifest> manifestParser,
+      @Nullable ManifestCache manifestCache,
       DashChunkSource.Factory chunkSourceFactory,
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       DrmSessionManager drmSessionManager,
@@ -498,6 +518,7 @@ public final class DashMediaSource extends BaseMediaSource {
     this.manifest = manifest;
     this.manifestDataSourceFactory = manifestDataSourceFactory;
     this.manifestParser = manifestParser;
+    this.manifestCache = manifestCache;
     this.chunkSourceFactory = chunkSourceFactory;
     this.drmSessionManager = drmSessionManager;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
@@ -505,6 +526,7 @@ public final class DashMediaSource extends BaseMediaSource {
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
     sideloadedManifest = manifest != null;
     manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
+    baseUrlExclusionList = new BaseUrlExclusionList();
     manifestUriLock = new Object();
     periodsById = new SparseArray<>();
     playerEmsgCallback = new DefaultPlayerEmsgCallback();
@@ -584,6 +606,7 @@ public final class DashMediaSource extends BaseMediaSource {
         new DashMediaPeriod(
             firstPeriodId + periodIndex,
             manifest,
+            baseUrlExclusionList,
             periodIndex,
             chunkSourceFactory,
             mediaTransferListener,
@@ -629,6 +652,7 @@ public final class DashMediaSource extends BaseMediaSource {
     expiredManifestPublishTimeUs = C.TIME_UNSET;
     firstPeriodId = 0;
     periodsById.clear();
+    baseUrlExclusionList.reset();
     drmSessionManager.release();
   }
 
@@ -1072,7 +1096,8 @@ public final class DashMediaSource extends BaseMediaSource {
     }
     manifestLoadPending = false;
     startLoading(
-        new ParsingLoadable<>(dataSource, manifestUri, C.DATA_TYPE_MANIFEST, manifestParser),
+        new ParsingLoadable<>(
+            dataSource, manifestUri, C.DATA_TYPE_MANIFEST, manifestParser, manifestCache),
         manifestCallback,
         loadErrorHandlingPolicy.getMinimumLoadableRetryCount(C.DATA_TYPE_MANIFEST));
   }
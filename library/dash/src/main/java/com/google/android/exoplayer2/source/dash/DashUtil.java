@@ -56,11 +56,36 @@ public final class DashUtil {
    */
   public static DataSpec buildDataSpec(
       Representation representation, RangedUri requestUri, int flags) {
+    return buildDataSpec(representation, representation.baseUrl, requestUri, flags);
+  }
+
+  /**
+   * Builds a {@link DataSpec} for a given {@link RangedUri} belonging to {@link Representation},
+   * resolved against one of the representation's base URLs.
+   *
+   * <p>The cache key of the returned {@link DataSpec} doesn't depend on which base URL is used, so
+   * that data loaded from one base URL can be read from the cache when another one is selected.
+   *
+   * @param representation The {@link Representation} to which the request belongs.
+   * @param baseUrl The base URL against which to resolve the request.
+   * @param requestUri The {@link RangedUri} of the data to request.
+   * @param flags Flags to be set on the returned {@link DataSpec}. See {@link
+   *     DataSpec.Builder#setFlags(int)}.
+   * @return The {@link DataSpec}.
+   */
+  public static DataSpec buildDataSpec(
+      Representation representation, String baseUrl, RangedUri requestUri, int flags) {
+    @Nullable String cacheKey = representation.getCacheKey();
+    if (cacheKey == null && !baseUrl.equals(representation.baseUrl)) {
+      // Use the URI resolved against the first base URL, which is what's used when no other base
+      // URL is selected.
+      cacheKey = requestUri.resolveUri(representation.baseUrl).toString();
+    }
     return new DataSpec.Builder()
-        .setUri(requestUri.resolveUri(representation.baseUrl))
+        .setUri(requestUri.resolveUri(baseUrl))
         .setPosition(requestUri.start)
         .setLength(requestUri.length)
-        .setKey(representation.getCacheKey())
+        .setKey(cacheKey)
         .setFlags(flags)
         .build();
   }
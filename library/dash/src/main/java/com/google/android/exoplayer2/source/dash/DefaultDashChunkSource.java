@@ -44,12 +44,15 @@ import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
 import com.google.android.exoplayer2.source.chunk.SingleSampleMediaChunk;
 import com.google.android.exoplayer2.source.dash.PlayerEmsgHandler.PlayerTrackEmsgHandler;
 import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.BaseUrl;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.manifest.RangedUri;
 import com.google.android.exoplayer2.source.dash.manifest.Representation;
 import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.HttpDataSource.HttpDataSourceException;
 import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidResponseCodeException;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
 import com.google.android.exoplayer2.upstream.TransferListener;
@@ -82,6 +85,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
     public DashChunkSource createDashChunkSource(
         LoaderErrorThrower manifestLoaderErrorThrower,
         DashManifest manifest,
+        BaseUrlExclusionList baseUrlExclusionList,
         int periodIndex,
         int[] adaptationSetIndices,
         ExoTrackSelection trackSelection,
@@ -98,6 +102,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
       return new DefaultDashChunkSource(
           manifestLoaderErrorThrower,
           manifest,
+          baseUrlExclusionList,
           periodIndex,
           adaptationSetIndices,
           trackSelection,
@@ -113,6 +118,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
   }
 
   private final LoaderErrorThrower manifestLoaderErrorThrower;
+  private final BaseUrlExclusionList baseUrlExclusionList;
   private final int[] adaptationSetIndices;
   private final int trackType;
   private final DataSource dataSource;
@@ -131,6 +137,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
   /**
    * @param manifestLoaderErrorThrower Throws errors affecting loading of manifests.
    * @param manifest The initial manifest.
+   * @param baseUrlExclusionList The {@link BaseUrlExclusionList} from which base URLs are selected.
    * @param periodIndex The index of the period in the manifest.
    * @param adaptationSetIndices The indices of the adaptation sets in the period.
    * @param trackSelection The track selection.
@@ -150,6 +157,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
   public DefaultDashChunkSource(
       LoaderErrorThrower manifestLoaderErrorThrower,
       DashManifest manifest,
+      BaseUrlExclusionList baseUrlExclusionList,
       int periodIndex,
       int[] adaptationSetIndices,
       ExoTrackSelection trackSelection,
@@ -162,6 +170,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
       @Nullable PlayerTrackEmsgHandler playerTrackEmsgHandler) {
     this.manifestLoaderErrorThrower = manifestLoaderErrorThrower;
     this.manifest = manifest;
+    this.baseUrlExclusionList = baseUrlExclusionList;
     this.adaptationSetIndices = adaptationSetIndices;
     this.trackSelection = trackSelection;
     this.trackType = trackType;
@@ -177,11 +186,14 @@ public class DefaultDashChunkSource implements DashChunkSource {
     representationHolders = new RepresentationHolder[trackSelection.length()];
     for (int i = 0; i < representationHolders.length; i++) {
       Representation representation = representations.get(trackSelection.getIndexInTrackGroup(i));
+      @Nullable
+      BaseUrl selectedBaseUrl = baseUrlExclusionList.selectBaseUrl(representation.baseUrls);
       representationHolders[i] =
           new RepresentationHolder(
               periodDurationUs,
               trackType,
               representation,
+              selectedBaseUrl != null ? selectedBaseUrl : representation.baseUrls.get(0),
               enableEventMessageTrack,
               closedCaptionFormats,
               playerTrackEmsgHandler);
@@ -315,7 +327,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
         playbackPositionUs, bufferedDurationUs, availableLiveDurationUs, queue, chunkIterators);
 
     RepresentationHolder representationHolder =
-        representationHolders[trackSelection.getSelectedIndex()];
+        updateSelectedBaseUrl(trackSelection.getSelectedIndex());
 
     if (representationHolder.chunkExtractor != null) {
       Representation selectedRepresentation = representationHolder.representation;
@@ -447,8 +459,14 @@ public class DefaultDashChunkSource implements DashChunkSource {
         }
       }
     }
+    int trackIndex = trackSelection.indexOf(chunk.trackFormat);
+    if (e instanceof HttpDataSourceException
+        && maybeExcludeSelectedBaseUrl(representationHolders[trackIndex], exclusionDurationMs)) {
+      // Retry straight away from another location instead of excluding the track.
+      return true;
+    }
     return exclusionDurationMs != C.TIME_UNSET
-        && trackSelection.blacklist(trackSelection.indexOf(chunk.trackFormat), exclusionDurationMs);
+        && trackSelection.blacklist(trackIndex, exclusionDurationMs);
   }
 
   @Override
@@ -477,6 +495,36 @@ public class DefaultDashChunkSource implements DashChunkSource {
             lastAvailableSegmentNum);
   }
 
+  /**
+   * Excludes the location of the selected base URL of a representation if there's another location
+   * from which it can be loaded.
+   */
+  private boolean maybeExcludeSelectedBaseUrl(
+      RepresentationHolder representationHolder, long exclusionDurationMs) {
+    List<BaseUrl> baseUrls = representationHolder.representation.baseUrls;
+    if (baseUrlExclusionList.getServiceLocationCountAfterExclusion(baseUrls) < 2) {
+      return false;
+    }
+    baseUrlExclusionList.exclude(
+        representationHolder.selectedBaseUrl,
+        exclusionDurationMs != C.TIME_UNSET
+            ? exclusionDurationMs
+            : DefaultLoadErrorHandlingPolicy.DEFAULT_TRACK_BLACKLIST_MS);
+    return true;
+  }
+
+  private RepresentationHolder updateSelectedBaseUrl(int trackIndex) {
+    RepresentationHolder representationHolder = representationHolders[trackIndex];
+    @Nullable
+    BaseUrl selectedBaseUrl =
+        baseUrlExclusionList.selectBaseUrl(representationHolder.representation.baseUrls);
+    if (selectedBaseUrl != null && !selectedBaseUrl.equals(representationHolder.selectedBaseUrl)) {
+      representationHolder = representationHolder.copyWithNewSelectedBaseUrl(selectedBaseUrl);
+      representationHolders[trackIndex] = representationHolder;
+    }
+    return representationHolder;
+  }
+
   private ArrayList<Representation> getRepresentations() {
     List<AdaptationSet> manifestAdaptationSets = manifest.getPeriod(periodIndex).adaptationSets;
     ArrayList<Representation> representations = new ArrayList<>();
@@ -517,14 +565,17 @@ public class DefaultDashChunkSource implements DashChunkSource {
     if (initializationUri != null) {
       // It's common for initialization and index data to be stored adjacently. Attempt to merge
       // the two requests together to request both at once.
-      requestUri = initializationUri.attemptMerge(indexUri, representation.baseUrl);
+      requestUri =
+          initializationUri.attemptMerge(indexUri, representationHolder.selectedBaseUrl.url);
       if (requestUri == null) {
         requestUri = initializationUri;
       }
     } else {
       requestUri = indexUri;
     }
-    DataSpec dataSpec = DashUtil.buildDataSpec(representation, requestUri, /* flags= */ 0);
+    DataSpec dataSpec =
+        DashUtil.buildDataSpec(
+            representation, representationHolder.selectedBaseUrl.url, requestUri, /* flags= */ 0);
     return new InitializationChunk(
         dataSource,
         dataSpec,
@@ -548,7 +599,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
     Representation representation = representationHolder.representation;
     long startTimeUs = representationHolder.getSegmentStartTimeUs(firstSegmentNum);
     RangedUri segmentUri = representationHolder.getSegmentUrl(firstSegmentNum);
-    String baseUrl = representation.baseUrl;
+    String baseUrl = representationHolder.selectedBaseUrl.url;
     if (representationHolder.chunkExtractor == null) {
       long endTimeUs = representationHolder.getSegmentEndTimeUs(firstSegmentNum);
       int flags =
@@ -556,7 +607,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
                   firstSegmentNum, nowPeriodTimeUs)
               ? 0
               : DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
-      DataSpec dataSpec = DashUtil.buildDataSpec(representation, segmentUri, flags);
+      DataSpec dataSpec = DashUtil.buildDataSpec(representation, baseUrl, segmentUri, flags);
       return new SingleSampleMediaChunk(dataSource, dataSpec, trackFormat, trackSelectionReason,
           trackSelectionData, startTimeUs, endTimeUs, firstSegmentNum, trackType, trackFormat);
     } else {
@@ -582,7 +633,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
           representationHolder.isSegmentAvailableAtFullNetworkSpeed(segmentNum, nowPeriodTimeUs)
               ? 0
               : DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
-      DataSpec dataSpec = DashUtil.buildDataSpec(representation, segmentUri, flags);
+      DataSpec dataSpec = DashUtil.buildDataSpec(representation, baseUrl, segmentUri, flags);
       long sampleOffsetUs = -representation.presentationTimeOffsetUs;
       return new ContainerMediaChunk(
           dataSource,
@@ -637,7 +688,11 @@ public class DefaultDashChunkSource implements DashChunkSource {
           representationHolder.isSegmentAvailableAtFullNetworkSpeed(currentIndex, nowPeriodTimeUs)
               ? 0
               : DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
-      return DashUtil.buildDataSpec(representationHolder.representation, segmentUri, flags);
+      return DashUtil.buildDataSpec(
+          representationHolder.representation,
+          representationHolder.selectedBaseUrl.url,
+          segmentUri,
+          flags);
     }
 
     @Override
@@ -659,6 +714,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
     @Nullable /* package */ final ChunkExtractor chunkExtractor;
 
     public final Representation representation;
+    public final BaseUrl selectedBaseUrl;
     @Nullable public final DashSegmentIndex segmentIndex;
 
     private final long periodDurationUs;
@@ -668,12 +724,14 @@ public class DefaultDashChunkSource implements DashChunkSource {
         long periodDurationUs,
         int trackType,
         Representation representation,
+        BaseUrl selectedBaseUrl,
         boolean enableEventMessageTrack,
         List<Format> closedCaptionFormats,
         @Nullable TrackOutput playerEmsgTrackOutput) {
       this(
           periodDurationUs,
           representation,
+          selectedBaseUrl,
           createChunkExtractor(
               trackType,
               representation,
@@ -687,11 +745,13 @@ public class DefaultDashChunkSource implements DashChunkSource {
     private RepresentationHolder(
         long periodDurationUs,
         Representation representation,
+        BaseUrl selectedBaseUrl,
         @Nullable ChunkExtractor chunkExtractor,
         long segmentNumShift,
         @Nullable DashSegmentIndex segmentIndex) {
       this.periodDurationUs = periodDurationUs;
       this.representation = representation;
+      this.selectedBaseUrl = selectedBaseUrl;
       this.segmentNumShift = segmentNumShift;
       this.chunkExtractor = chunkExtractor;
       this.segmentIndex = segmentIndex;
@@ -707,20 +767,35 @@ public class DefaultDashChunkSource implements DashChunkSource {
       if (oldIndex == null) {
         // Segment numbers cannot shift if the index isn't defined by the manifest.
         return new RepresentationHolder(
-            newPeriodDurationUs, newRepresentation, chunkExtractor, segmentNumShift, oldIndex);
+            newPeriodDurationUs,
+            newRepresentation,
+            selectedBaseUrl,
+            chunkExtractor,
+            segmentNumShift,
+            oldIndex);
       }
 
       if (!oldIndex.isExplicit()) {
         // Segment numbers cannot shift if the index isn't explicit.
         return new RepresentationHolder(
-            newPeriodDurationUs, newRepresentation, chunkExtractor, segmentNumShift, newIndex);
+            newPeriodDurationUs,
+            newRepresentation,
+            selectedBaseUrl,
+            chunkExtractor,
+            segmentNumShift,
+            newIndex);
       }
 
       int oldIndexSegmentCount = oldIndex.getSegmentCount(newPeriodDurationUs);
       if (oldIndexSegmentCount == 0) {
         // Segment numbers cannot shift if the old index was empty.
         return new RepresentationHolder(
-            newPeriodDurationUs, newRepresentation, chunkExtractor, segmentNumShift, newIndex);
+            newPeriodDurationUs,
+            newRepresentation,
+            selectedBaseUrl,
+            chunkExtractor,
+            segmentNumShift,
+            newIndex);
       }
 
       long oldIndexFirstSegmentNum = oldIndex.getFirstSegmentNum();
@@ -752,13 +827,34 @@ public class DefaultDashChunkSource implements DashChunkSource {
                 - newIndexFirstSegmentNum;
       }
       return new RepresentationHolder(
-          newPeriodDurationUs, newRepresentation, chunkExtractor, newSegmentNumShift, newIndex);
+          newPeriodDurationUs,
+          newRepresentation,
+          selectedBaseUrl,
+          chunkExtractor,
+          newSegmentNumShift,
+          newIndex);
     }
 
     @CheckResult
     /* package */ RepresentationHolder copyWithNewSegmentIndex(DashSegmentIndex segmentIndex) {
       return new RepresentationHolder(
-          periodDurationUs, representation, chunkExtractor, segmentNumShift, segmentIndex);
+          periodDurationUs,
+          representation,
+          selectedBaseUrl,
+          chunkExtractor,
+          segmentNumShift,
+          segmentIndex);
+    }
+
+    @CheckResult
+    /* package */ RepresentationHolder copyWithNewSelectedBaseUrl(BaseUrl selectedBaseUrl) {
+      return new RepresentationHolder(
+          periodDurationUs,
+          representation,
+          selectedBaseUrl,
+          chunkExtractor,
+          segmentNumShift,
+          segmentIndex);
     }
 
     public long getFirstSegmentNum() {
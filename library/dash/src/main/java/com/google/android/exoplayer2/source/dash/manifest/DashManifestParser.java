@@ -110,6 +110,7 @@ public class DashManifestParser extends DefaultHandler
 
   protected DashManifest parseMediaPresentationDescription(XmlPullParser xpp,
       String baseUrl) throws XmlPullParserException, IOException {
+    List<BaseUrl> parentBaseUrls = ImmutableList.of(new BaseUrl(baseUrl));
     long availabilityStartTime = parseDateTime(xpp, "availabilityStartTime", C.TIME_UNSET);
     long durationMs = parseDuration(xpp, "mediaPresentationDuration", C.TIME_UNSET);
     long minBufferTimeMs = parseDuration(xpp, "minBufferTime", C.TIME_UNSET);
@@ -131,6 +132,7 @@ public class DashManifestParser extends DefaultHandler
     List<Period> periods = new ArrayList<>();
     long nextPeriodStartMs = dynamic ? C.TIME_UNSET : 0;
     boolean seenEarlyAccessPeriod = false;
+    ArrayList<BaseUrl> baseUrls = new ArrayList<>();
     boolean seenFirstBaseUrl = false;
     do {
       xpp.next();
@@ -138,9 +140,9 @@ public class DashManifestParser extends DefaultHandler
         if (!seenFirstBaseUrl) {
           baseUrlAvailabilityTimeOffsetUs =
               parseAvailabilityTimeOffsetUs(xpp, baseUrlAvailabilityTimeOffsetUs);
-          baseUrl = parseBaseUrl(xpp, baseUrl);
           seenFirstBaseUrl = true;
         }
+        baseUrls.addAll(parseBaseUrl(xpp, parentBaseUrls));
       } else if (XmlPullParserUtil.isStartTag(xpp, "ProgramInformation")) {
         programInformation = parseProgramInformation(xpp);
       } else if (XmlPullParserUtil.isStartTag(xpp, "UTCTiming")) {
@@ -153,7 +155,7 @@ public class DashManifestParser extends DefaultHandler
         Pair<Period, Long> periodWithDurationMs =
             parsePeriod(
                 xpp,
-                baseUrl,
+                !baseUrls.isEmpty() ? baseUrls : parentBaseUrls,
                 nextPeriodStartMs,
                 baseUrlAvailabilityTimeOffsetUs,
                 availabilityStartTime,
@@ -271,7 +273,7 @@ public class DashManifestParser extends DefaultHandler
 
   protected Pair<Period, Long> parsePeriod(
       XmlPullParser xpp,
-      String baseUrl,
+      List<BaseUrl> parentBaseUrls,
       long defaultStartMs,
       long baseUrlAvailabilityTimeOffsetUs,
       long availabilityStartTimeMs,
@@ -286,6 +288,7 @@ public class DashManifestParser extends DefaultHandler
     @Nullable Descriptor assetIdentifier = null;
     List<AdaptationSet> adaptationSets = new ArrayList<>();
     List<EventStream> eventStreams = new ArrayList<>();
+    ArrayList<BaseUrl> baseUrls = new ArrayList<>();
     boolean seenFirstBaseUrl = false;
     long segmentBaseAvailabilityTimeOffsetUs = C.TIME_UNSET;
     do {
@@ -294,14 +297,14 @@ public class DashManifestParser extends DefaultHandler
         if (!seenFirstBaseUrl) {
           baseUrlAvailabilityTimeOffsetUs =
               parseAvailabilityTimeOffsetUs(xpp, baseUrlAvailabilityTimeOffsetUs);
-          baseUrl = parseBaseUrl(xpp, baseUrl);
           seenFirstBaseUrl = true;
         }
+        baseUrls.addAll(parseBaseUrl(xpp, parentBaseUrls));
       } else if (XmlPullParserUtil.isStartTag(xpp, "AdaptationSet")) {
         adaptationSets.add(
             parseAdaptationSet(
                 xpp,
-                baseUrl,
+                !baseUrls.isEmpty() ? baseUrls : parentBaseUrls,
                 segmentBase,
                 durationMs,
                 baseUrlAvailabilityTimeOffsetUs,
@@ -361,7 +364,7 @@ public class DashManifestParser extends DefaultHandler
 
   protected AdaptationSet parseAdaptationSet(
       XmlPullParser xpp,
-      String baseUrl,
+      List<BaseUrl> parentBaseUrls,
       @Nullable SegmentBase segmentBase,
       long periodDurationMs,
       long baseUrlAvailabilityTimeOffsetUs,
@@ -390,6 +393,7 @@ public class DashManifestParser extends DefaultHandler
     ArrayList<Descriptor> supplementalProperties = new ArrayList<>();
     List<RepresentationInfo> representationInfos = new ArrayList<>();
 
+    ArrayList<BaseUrl> baseUrls = new ArrayList<>();
     boolean seenFirstBaseUrl = false;
     do {
       xpp.next();
@@ -397,9 +401,9 @@ public class DashManifestParser extends DefaultHandler
         if (!seenFirstBaseUrl) {
           baseUrlAvailabilityTimeOffsetUs =
               parseAvailabilityTimeOffsetUs(xpp, baseUrlAvailabilityTimeOffsetUs);
-          baseUrl = parseBaseUrl(xpp, baseUrl);
           seenFirstBaseUrl = true;
         }
+        baseUrls.addAll(parseBaseUrl(xpp, parentBaseUrls));
       } else if (XmlPullParserUtil.isStartTag(xpp, "ContentProtection")) {
         Pair<String, SchemeData> contentProtection = parseContentProtection(xpp);
         if (contentProtection.first != null) {
@@ -425,7 +429,7 @@ public class DashManifestParser extends DefaultHandler
         RepresentationInfo representationInfo =
             parseRepresentation(
                 xpp,
-                baseUrl,
+                !baseUrls.isEmpty() ? baseUrls : parentBaseUrls,
                 mimeType,
                 codecs,
                 width,
@@ -621,7 +625,7 @@ public class DashManifestParser extends DefaultHandler
 
   protected RepresentationInfo parseRepresentation(
       XmlPullParser xpp,
-      String baseUrl,
+      List<BaseUrl> parentBaseUrls,
       @Nullable String adaptationSetMimeType,
       @Nullable String adaptationSetCodecs,
       int adaptationSetWidth,
@@ -658,6 +662,7 @@ public class DashManifestParser extends DefaultHandler
     ArrayList<Descriptor> supplementalProperties =
         new ArrayList<>(adaptationSetSupplementalProperties);
 
+    ArrayList<BaseUrl> baseUrls = new ArrayList<>();
     boolean seenFirstBaseUrl = false;
     do {
       xpp.next();
@@ -665,9 +670,9 @@ public class DashManifestParser extends DefaultHandler
         if (!seenFirstBaseUrl) {
           baseUrlAvailabilityTimeOffsetUs =
               parseAvailabilityTimeOffsetUs(xpp, baseUrlAvailabilityTimeOffsetUs);
-          baseUrl = parseBaseUrl(xpp, baseUrl);
           seenFirstBaseUrl = true;
         }
+        baseUrls.addAll(parseBaseUrl(xpp, parentBaseUrls));
       } else if (XmlPullParserUtil.isStartTag(xpp, "AudioChannelConfiguration")) {
         audioChannels = parseAudioChannelConfiguration(xpp);
       } else if (XmlPullParserUtil.isStartTag(xpp, "SegmentBase")) {
@@ -734,8 +739,14 @@ public class DashManifestParser extends DefaultHandler
             supplementalProperties);
     segmentBase = segmentBase != null ? segmentBase : new SingleSegmentBase();
 
-    return new RepresentationInfo(format, baseUrl, segmentBase, drmSchemeType, drmSchemeDatas,
-        inbandEventStreams, Representation.REVISION_ID_DEFAULT);
+    return new RepresentationInfo(
+        format,
+        !baseUrls.isEmpty() ? baseUrls : parentBaseUrls,
+        segmentBase,
+        drmSchemeType,
+        drmSchemeDatas,
+        inbandEventStreams,
+        Representation.REVISION_ID_DEFAULT);
   }
 
   protected Format buildFormat(
@@ -816,9 +827,10 @@ public class DashManifestParser extends DefaultHandler
     return Representation.newInstance(
         representationInfo.revisionId,
         formatBuilder.build(),
-        representationInfo.baseUrl,
+        representationInfo.baseUrls,
         representationInfo.segmentBase,
-        inbandEventStreams);
+        inbandEventStreams,
+        /* cacheKey= */ null);
   }
 
   // SegmentBase, SegmentList and SegmentTemplate parsing.
@@ -1329,15 +1341,41 @@ public class DashManifestParser extends DefaultHandler
   /**
    * Parses a BaseURL element.
    *
+   * <p>A relative URL is resolved against each of the parent base URLs, and inherits the service
+   * location, DVB priority and DVB weight of the parent unless the element specifies them.
+   *
    * @param xpp The parser from which to read.
-   * @param parentBaseUrl A base URL for resolving the parsed URL.
+   * @param parentBaseUrls The parent base URLs for resolving the parsed URL.
    * @throws XmlPullParserException If an error occurs parsing the element.
    * @throws IOException If an error occurs reading the element.
-   * @return The parsed and resolved URL.
+   * @return The parsed and resolved base URLs.
    */
-  protected String parseBaseUrl(XmlPullParser xpp, String parentBaseUrl)
+  protected List<BaseUrl> parseBaseUrl(XmlPullParser xpp, List<BaseUrl> parentBaseUrls)
       throws XmlPullParserException, IOException {
-    return UriUtil.resolve(parentBaseUrl, parseText(xpp, "BaseURL"));
+    @Nullable String serviceLocation = xpp.getAttributeValue(null, "serviceLocation");
+    @Nullable String priorityValue = xpp.getAttributeValue(null, "dvb:priority");
+    @Nullable String weightValue = xpp.getAttributeValue(null, "dvb:weight");
+    String url = parseText(xpp, "BaseURL");
+    List<BaseUrl> baseUrls = new ArrayList<>();
+    if (Uri.parse(url).isAbsolute()) {
+      baseUrls.add(
+          new BaseUrl(
+              url,
+              serviceLocation != null ? serviceLocation : url,
+              priorityValue != null ? Integer.parseInt(priorityValue) : BaseUrl.DEFAULT_PRIORITY,
+              weightValue != null ? Integer.parseInt(weightValue) : BaseUrl.DEFAULT_WEIGHT));
+      return baseUrls;
+    }
+    for (int i = 0; i < parentBaseUrls.size(); i++) {
+      BaseUrl parentBaseUrl = parentBaseUrls.get(i);
+      baseUrls.add(
+          new BaseUrl(
+              UriUtil.resolve(parentBaseUrl.url, url),
+              serviceLocation != null ? serviceLocation : parentBaseUrl.serviceLocation,
+              priorityValue != null ? Integer.parseInt(priorityValue) : parentBaseUrl.priority,
+              weightValue != null ? Integer.parseInt(weightValue) : parentBaseUrl.weight));
+    }
+    return baseUrls;
   }
 
   /**
@@ -1827,7 +1865,7 @@ public class DashManifestParser extends DefaultHandler
   protected static final class RepresentationInfo {
 
     public final Format format;
-    public final String baseUrl;
+    public final ImmutableList<BaseUrl> baseUrls;
     public final SegmentBase segmentBase;
     @Nullable public final String drmSchemeType;
     public final ArrayList<SchemeData> drmSchemeDatas;
@@ -1836,14 +1874,14 @@ public class DashManifestParser extends DefaultHandler
 
     public RepresentationInfo(
         Format format,
-        String baseUrl,
+        List<BaseUrl> baseUrls,
         SegmentBase segmentBase,
         @Nullable String drmSchemeType,
         ArrayList<SchemeData> drmSchemeDatas,
         ArrayList<Descriptor> inbandEventStreams,
         long revisionId) {
       this.format = format;
-      this.baseUrl = baseUrl;
+      this.baseUrls = ImmutableList.copyOf(baseUrls);
       this.segmentBase = segmentBase;
       this.drmSchemeType = drmSchemeType;
       this.drmSchemeDatas = drmSchemeDatas;
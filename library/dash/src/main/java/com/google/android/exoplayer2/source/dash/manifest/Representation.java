@@ -23,6 +23,8 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.MultiSegmentBase;
 import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SingleSegmentBase;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.common.collect.ImmutableList;
 import java.util.Collections;
 import java.util.List;
 
@@ -47,10 +49,10 @@ public abstract class Representation {
    * The format of the representation.
    */
   public final Format format;
-  /**
-   * The base URL of the representation.
-   */
+  /** The URL of the first of the {@link #baseUrls}. */
   public final String baseUrl;
+  /** The base URLs of the representation, in the order in which they were defined. */
+  public final ImmutableList<BaseUrl> baseUrls;
   /**
    * The offset of the presentation timestamps in the media stream relative to media time.
    */
@@ -118,18 +120,46 @@ public abstract class Representation {
       SegmentBase segmentBase,
       @Nullable List<Descriptor> inbandEventStreams,
       @Nullable String cacheKey) {
+    return newInstance(
+        revisionId,
+        format,
+        ImmutableList.of(new BaseUrl(baseUrl)),
+        segmentBase,
+        inbandEventStreams,
+        cacheKey);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param revisionId Identifies the revision of the content.
+   * @param format The format of the representation.
+   * @param baseUrls The base URLs of the representation. Must not be empty.
+   * @param segmentBase A segment base element for the representation.
+   * @param inbandEventStreams The in-band event streams in the representation. May be null.
+   * @param cacheKey An optional key to be returned from {@link #getCacheKey()}, or null. This
+   *     parameter is ignored if {@code segmentBase} consists of multiple segments.
+   * @return The constructed instance.
+   */
+  public static Representation newInstance(
+      long revisionId,
+      Format format,
+      List<BaseUrl> baseUrls,
+      SegmentBase segmentBase,
+      @Nullable List<Descriptor> inbandEventStreams,
+      @Nullable String cacheKey) {
     if (segmentBase instanceof SingleSegmentBase) {
       return new SingleSegmentRepresentation(
           revisionId,
           format,
-          baseUrl,
+          baseUrls,
           (SingleSegmentBase) segmentBase,
           inbandEventStreams,
           cacheKey,
           C.LENGTH_UNSET);
     } else if (segmentBase instanceof MultiSegmentBase) {
       return new MultiSegmentRepresentation(
-          revisionId, format, baseUrl, (MultiSegmentBase) segmentBase, inbandEventStreams);
+          revisionId, format, baseUrls, (MultiSegmentBase) segmentBase, inbandEventStreams);
     } else {
       throw new IllegalArgumentException("segmentBase must be of type SingleSegmentBase or "
           + "MultiSegmentBase");
@@ -139,12 +169,14 @@ public abstract class Representation {
   private Representation(
       long revisionId,
       Format format,
-      String baseUrl,
+      List<BaseUrl> baseUrls,
       SegmentBase segmentBase,
       @Nullable List<Descriptor> inbandEventStreams) {
+    Assertions.checkArgument(!baseUrls.isEmpty());
     this.revisionId = revisionId;
     this.format = format;
-    this.baseUrl = baseUrl;
+    this.baseUrls = ImmutableList.copyOf(baseUrls);
+    this.baseUrl = baseUrls.get(0).url;
     this.inbandEventStreams =
         inbandEventStreams == null
             ? Collections.emptyList()
@@ -244,7 +276,34 @@ public abstract class Representation {
         @Nullable List<Descriptor> inbandEventStreams,
         @Nullable String cacheKey,
         long contentLength) {
-      super(revisionId, format, baseUrl, segmentBase, inbandEventStreams);
+      this(
+          revisionId,
+          format,
+          ImmutableList.of(new BaseUrl(baseUrl)),
+          segmentBase,
+          inbandEventStreams,
+          cacheKey,
+          contentLength);
+    }
+
+    /**
+     * @param revisionId Identifies the revision of the content.
+     * @param format The format of the representation.
+     * @param baseUrls The base URLs of the representation. Must not be empty.
+     * @param segmentBase The segment base underlying the representation.
+     * @param inbandEventStreams The in-band event streams in the representation. May be null.
+     * @param cacheKey An optional key to be returned from {@link #getCacheKey()}, or null.
+     * @param contentLength The content length, or {@link C#LENGTH_UNSET} if unknown.
+     */
+    public SingleSegmentRepresentation(
+        long revisionId,
+        Format format,
+        List<BaseUrl> baseUrls,
+        SingleSegmentBase segmentBase,
+        @Nullable List<Descriptor> inbandEventStreams,
+        @Nullable String cacheKey,
+        long contentLength) {
+      super(revisionId, format, baseUrls, segmentBase, inbandEventStreams);
       this.uri = Uri.parse(baseUrl);
       this.indexUri = segmentBase.getIndex();
       this.cacheKey = cacheKey;
@@ -298,7 +357,30 @@ public abstract class Representation {
         String baseUrl,
         MultiSegmentBase segmentBase,
         @Nullable List<Descriptor> inbandEventStreams) {
-      super(revisionId, format, baseUrl, segmentBase, inbandEventStreams);
+      this(
+          revisionId,
+          format,
+          ImmutableList.of(new BaseUrl(baseUrl)),
+          segmentBase,
+          inbandEventStreams);
+    }
+
+    /**
+     * Creates the multi-segment Representation.
+     *
+     * @param revisionId Identifies the revision of the content.
+     * @param format The format of the representation.
+     * @param baseUrls The base URLs of the representation. Must not be empty.
+     * @param segmentBase The segment base underlying the representation.
+     * @param inbandEventStreams The in-band event streams in the representation. May be null.
+     */
+    public MultiSegmentRepresentation(
+        long revisionId,
+        Format format,
+        List<BaseUrl> baseUrls,
+        MultiSegmentBase segmentBase,
+        @Nullable List<Descriptor> inbandEventStreams) {
+      super(revisionId, format, baseUrls, segmentBase, inbandEventStreams);
       this.segmentBase = segmentBase;
     }
 
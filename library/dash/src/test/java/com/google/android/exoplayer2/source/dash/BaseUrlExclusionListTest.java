@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.dash.manifest.BaseUrl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowSystemClock;
+
+/** Unit tests for {@link BaseUrlExclusionList}. */
+@RunWith(AndroidJUnit4.class)
+public final class BaseUrlExclusionListTest {
+
+  private static final long EXCLUSION_DURATION_MS = 5000;
+
+  @Test
+  public void selectBaseUrl_selectsFromLowestPriority() {
+    List<BaseUrl> baseUrls =
+        ImmutableList.of(
+            new BaseUrl("a", /* serviceLocation= */ "a", /* priority= */ 2, /* weight= */ 1),
+            new BaseUrl("b", /* serviceLocation= */ "b", /* priority= */ 1, /* weight= */ 1),
+            new BaseUrl("c", /* serviceLocation= */ "c", /* priority= */ 3, /* weight= */ 1));
+    BaseUrlExclusionList exclusionList = new BaseUrlExclusionList();
+
+    assertThat(exclusionList.selectBaseUrl(baseUrls)).isEqualTo(baseUrls.get(1));
+  }
+
+  @Test
+  public void selectBaseUrl_samePriority_selectsInProportionToWeight() {
+    List<BaseUrl> baseUrls =
+        ImmutableList.of(
+            new BaseUrl("a", /* serviceLocation= */ "a", /* priority= */ 1, /* weight= */ 0),
+            new BaseUrl("b", /* serviceLocation= */ "b", /* priority= */ 1, /* weight= */ 1),
+            new BaseUrl("c", /* serviceLocation= */ "c", /* priority= */ 1, /* weight= */ 3));
+    Random random = new Random(/* seed= */ 1234);
+    int selectedCCount = 0;
+    Set<BaseUrl> selectedBaseUrls = new HashSet<>();
+
+    for (int i = 0; i < 1000; i++) {
+      // Use a new list each time, as selections are remembered.
+      BaseUrl selectedBaseUrl = new BaseUrlExclusionList(random).selectBaseUrl(baseUrls);
+      selectedBaseUrls.add(selectedBaseUrl);
+      if (selectedBaseUrl.equals(baseUrls.get(2))) {
+        selectedCCount++;
+      }
+    }
+
+    assertThat(selectedBaseUrls).containsExactly(baseUrls.get(1), baseUrls.get(2));
+    assertThat(selectedCCount).isIn(Range.closed(700, 800));
+  }
+
+  @Test
+  public void selectBaseUrl_remembersSelection() {
+    List<BaseUrl> baseUrls =
+        ImmutableList.of(
+            new BaseUrl("a", /* serviceLocation= */ "a", /* priority= */ 1, /* weight= */ 1),
+            new BaseUrl("b", /* serviceLocation= */ "b", /* priority= */ 1, /* weight= */ 1));
+    BaseUrlExclusionList exclusionList = new BaseUrlExclusionList();
+
+    BaseUrl selectedBaseUrl = exclusionList.selectBaseUrl(baseUrls);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(exclusionList.selectBaseUrl(baseUrls)).isEqualTo(selectedBaseUrl);
+    }
+  }
+
+  @Test
+  public void exclude_excludesServiceLocationUntilExclusionExpires() {
+    List<BaseUrl> baseUrls =
+        ImmutableList.of(
+            new BaseUrl("a1", /* serviceLocation= */ "a", /* priority= */ 1, /* weight= */ 1),
+            new BaseUrl("a2", /* serviceLocation= */ "a", /* priority= */ 2, /* weight= */ 1),
+            new BaseUrl("b", /* serviceLocation= */ "b", /* priority= */ 3, /* weight= */ 1));
+    BaseUrlExclusionList exclusionList = new BaseUrlExclusionList();
+
+    exclusionList.exclude(baseUrls.get(0), EXCLUSION_DURATION_MS);
+
+    assertThat(exclusionList.selectBaseUrl(baseUrls)).isEqualTo(baseUrls.get(2));
+    assertThat(exclusionList.getServiceLocationCountAfterExclusion(baseUrls)).isEqualTo(1);
+
+    ShadowSystemClock.advanceBy(Duration.ofMillis(EXCLUSION_DURATION_MS));
+
+    assertThat(exclusionList.selectBaseUrl(baseUrls)).isEqualTo(baseUrls.get(0));
+    assertThat(exclusionList.getServiceLocationCountAfterExclusion(baseUrls)).isEqualTo(2);
+  }
+
+  @Test
+  public void selectBaseUrl_allExcluded_returnsNull() {
+    List<BaseUrl> baseUrls = ImmutableList.of(new BaseUrl("a"), new BaseUrl("b"));
+    BaseUrlExclusionList exclusionList = new BaseUrlExclusionList();
+
+    exclusionList.exclude(baseUrls.get(0), EXCLUSION_DURATION_MS);
+    exclusionList.exclude(baseUrls.get(1), EXCLUSION_DURATION_MS);
+
+    assertThat(exclusionList.selectBaseUrl(baseUrls)).isNull();
+    assertThat(exclusionList.getServiceLocationCountAfterExclusion(baseUrls)).isEqualTo(0);
+  }
+
+  @Test
+  public void reset_removesExclusions() {
+    List<BaseUrl> baseUrls = ImmutableList.of(new BaseUrl("a"));
+    BaseUrlExclusionList exclusionList = new BaseUrlExclusionList();
+    exclusionList.exclude(baseUrls.get(0), EXCLUSION_DURATION_MS);
+
+    exclusionList.reset();
+
+    assertThat(exclusionList.selectBaseUrl(baseUrls)).isEqualTo(baseUrls.get(0));
+  }
+}
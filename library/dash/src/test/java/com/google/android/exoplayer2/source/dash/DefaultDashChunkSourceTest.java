@@ -31,8 +31,12 @@ import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidResponseCodeException;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.util.Util;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -43,6 +47,8 @@ public class DefaultDashChunkSourceTest {
   private static final String SAMPLE_MPD_LIVE_WITH_OFFSET_INSIDE_WINDOW =
       "media/mpd/sample_mpd_live_with_offset_inside_window";
   private static final String SAMPLE_MPD_VOD = "media/mpd/sample_mpd_vod";
+  private static final String SAMPLE_MPD_MULTIPLE_BASE_URLS =
+      "media/mpd/sample_mpd_multiple_baseurls";
 
   @Test
   public void getNextChunk_forLowLatencyManifest_setsCorrectMayNotLoadAtFullNetworkSpeedFlag()
@@ -60,6 +66,7 @@ public class DefaultDashChunkSourceTest {
         new DefaultDashChunkSource(
             new LoaderErrorThrower.Dummy(),
             manifest,
+            new BaseUrlExclusionList(),
             /* periodIndex= */ 0,
             /* adaptationSetIndices= */ new int[] {0},
             new FixedTrackSelection(new TrackGroup(new Format.Builder().build()), /* track= */ 0),
@@ -106,6 +113,7 @@ public class DefaultDashChunkSourceTest {
         new DefaultDashChunkSource(
             new LoaderErrorThrower.Dummy(),
             manifest,
+            new BaseUrlExclusionList(),
             /* periodIndex= */ 0,
             /* adaptationSetIndices= */ new int[] {0},
             new FixedTrackSelection(new TrackGroup(new Format.Builder().build()), /* track= */ 0),
@@ -127,4 +135,74 @@ public class DefaultDashChunkSourceTest {
     assertThat(output.chunk.dataSpec.flags & DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)
         .isEqualTo(0);
   }
+
+  @Test
+  public void onChunkLoadError_withOtherBaseUrls_excludesBaseUrlAndLoadsFromNextBaseUrl()
+      throws Exception {
+    DashManifest manifest =
+        new DashManifestParser()
+            .parse(
+                Uri.parse("https://example.com/test.mpd"),
+                TestUtil.getInputStream(
+                    ApplicationProvider.getApplicationContext(), SAMPLE_MPD_MULTIPLE_BASE_URLS));
+    DefaultDashChunkSource chunkSource =
+        new DefaultDashChunkSource(
+            new LoaderErrorThrower.Dummy(),
+            manifest,
+            new BaseUrlExclusionList(new Random(/* seed= */ 1234)),
+            /* periodIndex= */ 0,
+            /* adaptationSetIndices= */ new int[] {0},
+            new FixedTrackSelection(new TrackGroup(new Format.Builder().build()), /* track= */ 0),
+            C.TRACK_TYPE_VIDEO,
+            new FakeDataSource(),
+            /* elapsedRealtimeOffsetMs= */ 0,
+            /* maxSegmentsPerLoad= */ 1,
+            /* enableEventMessageTrack= */ false,
+            /* closedCaptionFormats */ ImmutableList.of(),
+            /* playerTrackEmsgHandler= */ null);
+    ChunkHolder output = new ChunkHolder();
+
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ 0,
+        /* queue= */ ImmutableList.of(),
+        output);
+    String firstHost = output.chunk.dataSpec.uri.getHost();
+    boolean firstErrorHandled = onChunkLoadError(chunkSource, output);
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ 0,
+        /* queue= */ ImmutableList.of(),
+        output);
+    String secondHost = output.chunk.dataSpec.uri.getHost();
+    boolean secondErrorHandled = onChunkLoadError(chunkSource, output);
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ 0,
+        /* queue= */ ImmutableList.of(),
+        output);
+    String thirdHost = output.chunk.dataSpec.uri.getHost();
+    boolean thirdErrorHandled = onChunkLoadError(chunkSource, output);
+
+    assertThat(ImmutableList.of(firstHost, secondHost))
+        .containsExactly("a.example.com", "b.example.com");
+    assertThat(thirdHost).isEqualTo("c.example.com");
+    assertThat(firstErrorHandled).isTrue();
+    assertThat(secondErrorHandled).isTrue();
+    // The last location isn't excluded, and the only track can't be excluded either.
+    assertThat(thirdErrorHandled).isFalse();
+  }
+
+  private static boolean onChunkLoadError(DefaultDashChunkSource chunkSource, ChunkHolder output) {
+    return chunkSource.onChunkLoadError(
+        output.chunk,
+        /* cancelable= */ true,
+        new InvalidResponseCodeException(
+            /* responseCode= */ 503,
+            /* responseMessage= */ null,
+            ImmutableMap.of(),
+            output.chunk.dataSpec,
+            Util.EMPTY_BYTE_ARRAY),
+        /* exclusionDurationMs= */ 60_000);
+  }
 }
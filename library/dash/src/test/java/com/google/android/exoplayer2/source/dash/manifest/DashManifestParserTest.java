@@ -64,6 +64,10 @@ public class DashManifestParserTest {
   private static final String SAMPLE_MPD_SERVICE_DESCRIPTION_LOW_LATENCY_ONLY_TARGET_LATENCY =
       "media/mpd/sample_mpd_service_description_low_latency_only_target_latency";
 
+  private static final String SAMPLE_MPD_VOD = "media/mpd/sample_mpd_vod";
+  private static final String SAMPLE_MPD_MULTIPLE_BASE_URLS =
+      "media/mpd/sample_mpd_multiple_baseurls";
+
   private static final String NEXT_TAG_NAME = "Next";
   private static final String NEXT_TAG = "<" + NEXT_TAG_NAME + "/>";
 
@@ -638,6 +642,59 @@ public class DashManifestParserTest {
     assertThat(manifest.serviceDescription).isNull();
   }
 
+  @Test
+  public void baseUrl_multipleBaseUrls_keepsAllBaseUrlsWithPriorityAndWeight() throws IOException {
+    DashManifestParser parser = new DashManifestParser();
+
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            TestUtil.getInputStream(
+                ApplicationProvider.getApplicationContext(), SAMPLE_MPD_MULTIPLE_BASE_URLS));
+
+    List<AdaptationSet> adaptationSets = manifest.getPeriod(0).adaptationSets;
+    assertThat(adaptationSets.get(0).representations.get(0).baseUrls)
+        .containsExactly(
+            new BaseUrl(
+                "https://a.example.com/video/",
+                /* serviceLocation= */ "a",
+                /* priority= */ 1,
+                /* weight= */ 1),
+            new BaseUrl(
+                "https://b.example.com/video/",
+                /* serviceLocation= */ "b",
+                /* priority= */ 1,
+                /* weight= */ 1),
+            new BaseUrl(
+                "https://c.example.com/video/",
+                /* serviceLocation= */ "c",
+                /* priority= */ 2,
+                /* weight= */ 1))
+        .inOrder();
+    assertThat(adaptationSets.get(0).representations.get(0).baseUrl)
+        .isEqualTo("https://a.example.com/video/");
+    assertThat(adaptationSets.get(1).representations.get(0).baseUrls)
+        .containsExactly(
+            new BaseUrl(
+                "https://d.example.com/audio/",
+                /* serviceLocation= */ "d",
+                /* priority= */ 1,
+                /* weight= */ 2));
+  }
+
+  @Test
+  public void baseUrl_noBaseUrl_usesManifestUri() throws IOException {
+    DashManifestParser parser = new DashManifestParser();
+
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            TestUtil.getInputStream(ApplicationProvider.getApplicationContext(), SAMPLE_MPD_VOD));
+
+    assertThat(manifest.getPeriod(0).adaptationSets.get(0).representations.get(0).baseUrls)
+        .containsExactly(new BaseUrl("https://example.com/test.mpd"));
+  }
+
   private static List<Descriptor> buildCea608AccessibilityDescriptors(String value) {
     return Collections.singletonList(new Descriptor("urn:scte:dash:cc:cea-608:2015", value, null));
   }
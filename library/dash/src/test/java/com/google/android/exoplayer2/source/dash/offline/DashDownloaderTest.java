@@ -239,6 +239,40 @@ public class DashDownloaderTest {
     assertThat(openedDataSpecs[7].uri.getPath()).isEqualTo("period_2_segment_3");
   }
 
+  @Test
+  public void downloadClippedMediaItem_onlyDownloadsSegmentsStartingBeforeClipEnd()
+      throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6);
+    FakeDataSource fakeDataSource = new FakeDataSource(fakeDataSet);
+    FakeDataSource.Factory factory = mock(FakeDataSource.Factory.class);
+    when(factory.createDataSource()).thenReturn(fakeDataSource);
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory().setCache(cache).setUpstreamDataSourceFactory(factory);
+    MediaItem mediaItem =
+        new MediaItem.Builder()
+            .setUri(TEST_MPD_URI)
+            .setStreamKeys(keysList(new StreamKey(0, 0, 0)))
+            .setClipEndPositionMs(6_000)
+            .build();
+
+    DashDownloader dashDownloader = new DashDownloader(mediaItem, cacheDataSourceFactory);
+    dashDownloader.download(progressListener);
+
+    // The third segment starts at 10 seconds, after the end of the clipped item.
+    DataSpec[] openedDataSpecs = fakeDataSource.getAndClearOpenedDataSpecs();
+    assertThat(openedDataSpecs.length).isEqualTo(4);
+    assertThat(openedDataSpecs[0].uri).isEqualTo(TEST_MPD_URI);
+    assertThat(openedDataSpecs[1].uri.getPath()).isEqualTo("audio_init_data");
+    assertThat(openedDataSpecs[2].uri.getPath()).isEqualTo("audio_segment_1");
+    assertThat(openedDataSpecs[3].uri.getPath()).isEqualTo("audio_segment_2");
+  }
+
   @Test
   public void downloadRepresentationFailure() throws Exception {
     FakeDataSet fakeDataSet =
@@ -26,6 +26,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.SeekParameters;
 import com.google.android.exoplayer2.source.BehindLiveWindowException;
 import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.chunk.BaseMediaChunkIterator;
@@ -33,6 +34,7 @@ import com.google.android.exoplayer2.source.chunk.Chunk;
 import com.google.android.exoplayer2.source.chunk.DataChunk;
 import com.google.android.exoplayer2.source.chunk.MediaChunk;
 import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Segment;
 import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistTracker;
@@ -40,6 +42,7 @@ import com.google.android.exoplayer2.trackselection.BaseTrackSelection;
 import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.TimestampAdjuster;
 import com.google.android.exoplayer2.util.UriUtil;
@@ -53,7 +56,9 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /** Source of Hls (possibly adaptive) chunks. */
@@ -122,8 +127,13 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final DataSource mediaDataSource;
   private final DataSource encryptionDataSource;
   private final TimestampAdjusterProvider timestampAdjusterProvider;
+  // The playlist URL of the currently selected pathway of each track.
   private final Uri[] playlistUrls;
   private final Format[] playlistFormats;
+  private final Uri[][] pathwayPlaylistUrls;
+  private final String[][] pathways;
+  private final int[] selectedPathwayIndices;
+  private final PathwaySelector pathwaySelector;
   private final HlsPlaylistTracker playlistTracker;
   private final TrackGroup trackGroup;
   @Nullable private final List<Format> muxedCaptionFormats;
@@ -149,6 +159,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @param playlistUrls The {@link Uri}s of the media playlists that can be adapted between by this
    *     chunk source.
    * @param playlistFormats The {@link Format Formats} corresponding to the media playlists.
+   * @param redundantPlaylistUrls For each of the {@code playlistUrls}, the {@link Uri}s of the
+   *     redundant copies of the media playlist that are served through other pathways, in order of
+   *     preference. The chunk source switches to a redundant copy if loading through the pathway
+   *     in use fails, or if the redundant copy is served with a lower latency.
    * @param dataSourceFactory An {@link HlsDataSourceFactory} to create {@link DataSource}s for the
    *     chunks.
    * @param mediaTransferListener The transfer listener which should be informed of any media data
@@ -164,14 +178,30 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       HlsPlaylistTracker playlistTracker,
       Uri[] playlistUrls,
       Format[] playlistFormats,
+      Uri[][] redundantPlaylistUrls,
       HlsDataSourceFactory dataSourceFactory,
       @Nullable TransferListener mediaTransferListener,
       TimestampAdjusterProvider timestampAdjusterProvider,
       @Nullable List<Format> muxedCaptionFormats) {
     this.extractorFactory = extractorFactory;
     this.playlistTracker = playlistTracker;
-    this.playlistUrls = playlistUrls;
+    this.playlistUrls = playlistUrls.clone();
     this.playlistFormats = playlistFormats;
+    pathwayPlaylistUrls = new Uri[playlistUrls.length][];
+    pathways = new String[playlistUrls.length][];
+    for (int i = 0; i < playlistUrls.length; i++) {
+      pathwayPlaylistUrls[i] = new Uri[1 + redundantPlaylistUrls[i].length];
+      pathwayPlaylistUrls[i][0] = playlistUrls[i];
+      System.arraycopy(
+          redundantPlaylistUrls[i],
+          /* srcPos= */ 0,
+          pathwayPlaylistUrls[i],
+          /* destPos= */ 1,
+          redundantPlaylistUrls[i].length);
+      pathways[i] = getPathways(playlistTracker.getMasterPlaylist(), pathwayPlaylistUrls[i]);
+    }
+    selectedPathwayIndices = new int[playlistUrls.length];
+    pathwaySelector = new PathwaySelector();
     this.timestampAdjusterProvider = timestampAdjusterProvider;
     this.muxedCaptionFormats = muxedCaptionFormats;
     keyCache = new FullSegmentEncryptionKeyCache(KEY_CACHE_SIZE);
@@ -230,6 +260,47 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     return trackSelection;
   }
 
+  /**
+   * Adjusts a seek position given the specified {@link SeekParameters}. The position is only
+   * adjusted if the selected playlist's segments start with sync samples, which is the case for
+   * playlists with independent segments and I-frame only playlists.
+   *
+   * @param positionUs The seek position in microseconds.
+   * @param seekParameters Parameters that control how the seek is performed.
+   * @return The adjusted seek position, in microseconds.
+   */
+  public long getAdjustedSeekPositionUs(long positionUs, SeekParameters seekParameters) {
+    int selectedIndex = trackSelection.getSelectedIndexInTrackGroup();
+    @Nullable
+    HlsMediaPlaylist mediaPlaylist =
+        selectedIndex < playlistUrls.length && selectedIndex != C.INDEX_UNSET
+            ? playlistTracker.getPlaylistSnapshot(
+                playlistUrls[selectedIndex], /* isForPlayback= */ false)
+            : null;
+    if (mediaPlaylist == null
+        || mediaPlaylist.segments.isEmpty()
+        || (!mediaPlaylist.hasIndependentSegments
+            && (playlistFormats[selectedIndex].roleFlags & C.ROLE_FLAG_TRICK_PLAY) == 0)) {
+      return positionUs;
+    }
+    long startOfPlaylistInPeriodUs =
+        mediaPlaylist.startTimeUs - playlistTracker.getInitialStartTimeUs();
+    long relativePositionUs = positionUs - startOfPlaylistInPeriodUs;
+    int segmentIndex =
+        Util.binarySearchFloor(
+            mediaPlaylist.segments,
+            relativePositionUs,
+            /* inclusive= */ true,
+            /* stayInBounds= */ true);
+    long firstSyncUs = mediaPlaylist.segments.get(segmentIndex).relativeStartTimeUs;
+    long secondSyncUs =
+        firstSyncUs < relativePositionUs && segmentIndex < mediaPlaylist.segments.size() - 1
+            ? mediaPlaylist.segments.get(segmentIndex + 1).relativeStartTimeUs
+            : firstSyncUs;
+    return seekParameters.resolveSeekPositionUs(relativePositionUs, firstSyncUs, secondSyncUs)
+        + startOfPlaylistInPeriodUs;
+  }
+
   /**
    * Resets the source.
    */
@@ -343,6 +414,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         playbackPositionUs, bufferedDurationUs, timeToLiveEdgeUs, queue, mediaChunkIterators);
     int selectedTrackIndex = trackSelection.getSelectedIndexInTrackGroup();
     boolean switchingTrack = oldTrackIndex != selectedTrackIndex;
+    updateSelectedPathway(selectedTrackIndex);
     Uri selectedPlaylistUrl = playlistUrls[selectedTrackIndex];
     if (!playlistTracker.isSnapshotValid(selectedPlaylistUrl)) {
       out.playlistUrl = selectedPlaylistUrl;
@@ -502,6 +574,16 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       EncryptionKeyChunk encryptionKeyChunk = (EncryptionKeyChunk) chunk;
       scratchSpace = encryptionKeyChunk.getDataHolder();
       keyCache.put(encryptionKeyChunk.dataSpec.uri, checkNotNull(encryptionKeyChunk.getResult()));
+    } else if (chunk instanceof HlsMediaChunk) {
+      HlsMediaChunk mediaChunk = (HlsMediaChunk) chunk;
+      long openLatencyMs = mediaChunk.getOpenLatencyMs();
+      int trackIndex = trackGroup.indexOf(mediaChunk.trackFormat);
+      @Nullable
+      String pathway =
+          trackIndex != C.INDEX_UNSET ? getPathway(trackIndex, mediaChunk.playlistUrl) : null;
+      if (openLatencyMs != C.TIME_UNSET && pathway != null) {
+        pathwaySelector.onLatencyMeasured(pathway, openLatencyMs);
+      }
     }
   }
 
@@ -519,6 +601,25 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         trackSelection.indexOf(trackGroup.indexOf(chunk.trackFormat)), exclusionDurationMs);
   }
 
+  /**
+   * Attempts to exclude the pathway through which the given chunk was loaded, so that the track
+   * associated with the chunk is loaded from a redundant copy served through another pathway.
+   * Exclusion will fail if no other pathway is available for the track.
+   *
+   * @param chunk The chunk whose load caused the exclusion attempt.
+   * @param exclusionDurationMs The number of milliseconds for which the pathway should be excluded.
+   * @return Whether the exclusion succeeded.
+   */
+  public boolean maybeExcludePathway(Chunk chunk, long exclusionDurationMs) {
+    if (!(chunk instanceof HlsMediaChunk)) {
+      return false;
+    }
+    return maybeExcludePathway(
+        trackGroup.indexOf(chunk.trackFormat),
+        ((HlsMediaChunk) chunk).playlistUrl,
+        exclusionDurationMs);
+  }
+
   /**
    * Called when a playlist load encounters an error.
    *
@@ -529,10 +630,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    */
   public boolean onPlaylistError(Uri playlistUrl, long exclusionDurationMs) {
     int trackGroupIndex = C.INDEX_UNSET;
-    for (int i = 0; i < playlistUrls.length; i++) {
-      if (playlistUrls[i].equals(playlistUrl)) {
-        trackGroupIndex = i;
-        break;
+    for (int i = 0; i < pathwayPlaylistUrls.length && trackGroupIndex == C.INDEX_UNSET; i++) {
+      for (Uri pathwayPlaylistUrl : pathwayPlaylistUrls[i]) {
+        if (pathwayPlaylistUrl.equals(playlistUrl)) {
+          trackGroupIndex = i;
+          break;
+        }
       }
     }
     if (trackGroupIndex == C.INDEX_UNSET) {
@@ -542,6 +645,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     if (trackSelectionIndex == C.INDEX_UNSET) {
       return true;
     }
+    if (maybeExcludePathway(
+        trackGroupIndex,
+        playlistUrl,
+        exclusionDurationMs != C.TIME_UNSET
+            ? exclusionDurationMs
+            : DefaultLoadErrorHandlingPolicy.DEFAULT_TRACK_BLACKLIST_MS)) {
+      return true;
+    }
     seenExpectedPlaylistError |= playlistUrl.equals(expectedPlaylistUrl);
     return exclusionDurationMs == C.TIME_UNSET
         || trackSelection.blacklist(trackSelectionIndex, exclusionDurationMs);
@@ -735,10 +846,136 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             previous.partIndex == C.INDEX_UNSET
                 ? previous.getNextChunkIndex()
                 : previous.chunkIndex,
-            previous.partIndex == C.INDEX_UNSET ? C.INDEX_UNSET : previous.partIndex + 1)
+            previous.partIndex == C.INDEX_UNSET
+                ? C.INDEX_UNSET
+                : getNextPartIndex(previous, mediaPlaylist))
         : new Pair<>(previous.chunkIndex, previous.partIndex));
   }
 
+  /**
+   * Returns the index of the part that follows the given loaded part chunk in its parent segment.
+   * The returned index may be equal to the number of parts of the segment.
+   *
+   * <p>A chunk that requested an open-ended byte range, as hinted by a preload hint without a
+   * length, loads the remainder of the resource as the server produces it. The parts of the same
+   * resource that were loaded entirely with it are skipped, so that loading continues after the
+   * data already loaded rather than requesting it again. Parts are matched by their URL relative to
+   * the playlist, so that this also works if the next part is loaded from a redundant copy.
+   */
+  private static int getNextPartIndex(HlsMediaChunk previous, HlsMediaPlaylist mediaPlaylist) {
+    int nextPartIndex = previous.partIndex + 1;
+    int segmentIndexInPlaylist = (int) (previous.chunkIndex - mediaPlaylist.mediaSequence);
+    if (previous.dataSpec.length != C.LENGTH_UNSET
+        || segmentIndexInPlaylist < 0
+        || segmentIndexInPlaylist > mediaPlaylist.segments.size()) {
+      return nextPartIndex;
+    }
+    List<HlsMediaPlaylist.Part> parts =
+        segmentIndexInPlaylist < mediaPlaylist.segments.size()
+            ? mediaPlaylist.segments.get(segmentIndexInPlaylist).parts
+            : mediaPlaylist.trailingParts;
+    if (previous.partIndex >= parts.size()) {
+      return nextPartIndex;
+    }
+    String previousPartUrl = parts.get(previous.partIndex).url;
+    long loadedEndPosition = previous.getLoadedEndPosition();
+    while (nextPartIndex < parts.size()) {
+      HlsMediaPlaylist.Part part = parts.get(nextPartIndex);
+      if (!part.url.equals(previousPartUrl)
+          || part.byteRangeLength == C.LENGTH_UNSET
+          || part.byteRangeOffset + part.byteRangeLength > loadedEndPosition) {
+        break;
+      }
+      nextPartIndex++;
+    }
+    return nextPartIndex;
+  }
+
+  private boolean maybeExcludePathway(
+      int trackIndex, Uri playlistUrl, long exclusionDurationMs) {
+    String[] trackPathways = pathways[trackIndex];
+    if (trackPathways.length < 2) {
+      return false;
+    }
+    @Nullable String pathway = getPathway(trackIndex, playlistUrl);
+    if (pathway == null) {
+      return false;
+    }
+    boolean isExcluded = pathwaySelector.isExcluded(pathway);
+    int otherPathwayCount =
+        pathwaySelector.getNonExcludedPathwayCount(trackPathways) - (isExcluded ? 0 : 1);
+    if (otherPathwayCount == 0) {
+      return false;
+    }
+    if (!isExcluded) {
+      pathwaySelector.exclude(pathway, exclusionDurationMs);
+    }
+    updateSelectedPathway(trackIndex);
+    return true;
+  }
+
+  private void updateSelectedPathway(int trackIndex) {
+    if (pathways[trackIndex].length < 2) {
+      return;
+    }
+    int pathwayIndex =
+        pathwaySelector.selectPathway(pathways[trackIndex], selectedPathwayIndices[trackIndex]);
+    if (pathwayIndex != C.INDEX_UNSET) {
+      selectedPathwayIndices[trackIndex] = pathwayIndex;
+      playlistUrls[trackIndex] = pathwayPlaylistUrls[trackIndex][pathwayIndex];
+    }
+  }
+
+  @Nullable
+  private String getPathway(int trackIndex, Uri playlistUrl) {
+    for (int i = 0; i < pathwayPlaylistUrls[trackIndex].length; i++) {
+      if (pathwayPlaylistUrls[trackIndex][i].equals(playlistUrl)) {
+        return pathways[trackIndex][i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the pathways through which the given redundant copies of a media playlist are served.
+   *
+   * <p>A copy is served through the pathway declared by the PATHWAY-ID attribute of its variant, or
+   * otherwise through the host serving its playlist. If this doesn't tell the copies apart, each
+   * copy is treated as a pathway of its own. The latency of a pathway is measured on the segment
+   * requests made through its playlists, wherever the segments are hosted.
+   */
+  private static String[] getPathways(
+      @Nullable HlsMasterPlaylist masterPlaylist, Uri[] playlistUrls) {
+    String[] pathways = new String[playlistUrls.length];
+    Set<String> distinctPathways = new HashSet<>();
+    for (int i = 0; i < playlistUrls.length; i++) {
+      @Nullable String pathwayId = getPathwayId(masterPlaylist, playlistUrls[i]);
+      @Nullable String authority = playlistUrls[i].getAuthority();
+      pathways[i] = pathwayId != null ? pathwayId : (authority != null ? authority : "");
+      distinctPathways.add(pathways[i]);
+    }
+    if (distinctPathways.size() < pathways.length) {
+      for (int i = 0; i < playlistUrls.length; i++) {
+        pathways[i] = playlistUrls[i].toString();
+      }
+    }
+    return pathways;
+  }
+
+  @Nullable
+  private static String getPathwayId(@Nullable HlsMasterPlaylist masterPlaylist, Uri playlistUrl) {
+    if (masterPlaylist == null) {
+      return null;
+    }
+    for (int i = 0; i < masterPlaylist.variants.size(); i++) {
+      HlsMasterPlaylist.Variant variant = masterPlaylist.variants.get(i);
+      if (variant.url.equals(playlistUrl)) {
+        return variant.pathwayId;
+      }
+    }
+    return null;
+  }
+
   private long resolveTimeToLiveEdgeUs(long playbackPositionUs) {
     final boolean resolveTimeToLiveEdgePossible = liveEdgeInPeriodTimeUs != C.TIME_UNSET;
     return resolveTimeToLiveEdgePossible
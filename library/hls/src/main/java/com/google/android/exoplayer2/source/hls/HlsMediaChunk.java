@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.source.hls;
 import static com.google.android.exoplayer2.upstream.DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
@@ -235,6 +236,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private ImmutableList<Integer> sampleQueueFirstSampleIndices;
   private boolean extractorInvalidated;
   private boolean isPublished;
+  private long openLatencyMs;
 
   private HlsMediaChunk(
       HlsExtractorFactory extractorFactory,
@@ -292,6 +294,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     this.scratchId3Data = scratchId3Data;
     this.shouldSpliceIn = shouldSpliceIn;
     sampleQueueFirstSampleIndices = ImmutableList.of();
+    openLatencyMs = C.TIME_UNSET;
     uid = uidSource.getAndIncrement();
   }
 
@@ -334,6 +337,24 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     return loadCompleted;
   }
 
+  /**
+   * Returns the time it took to open the most recently opened data source of this chunk, which is
+   * the latency of the request up to the response, in milliseconds. Returns {@link C#TIME_UNSET} if
+   * no data source has been opened. Must only be called after the load has completed.
+   */
+  public long getOpenLatencyMs() {
+    return openLatencyMs;
+  }
+
+  /**
+   * Returns the position in the media resource up to which data has been loaded. This is the end of
+   * the requested byte range, unless the chunk requested an open-ended byte range. Must only be
+   * called after the load has completed.
+   */
+  public long getLoadedEndPosition() {
+    return dataSpec.position + nextLoadPosition;
+  }
+
   // Loadable implementation
 
   @Override
@@ -452,7 +473,9 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   @EnsuresNonNull("extractor")
   private DefaultExtractorInput prepareExtraction(DataSource dataSource, DataSpec dataSpec)
       throws IOException {
+    long openStartTimeMs = SystemClock.elapsedRealtime();
     long bytesToRead = dataSource.open(dataSpec);
+    openLatencyMs = SystemClock.elapsedRealtime() - openStartTimeMs;
     DefaultExtractorInput extractorInput =
         new DefaultExtractorInput(dataSource, dataSpec.position, bytesToRead);
 
@@ -56,6 +56,7 @@ import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
@@ -404,6 +405,11 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
 
   @Override
   public long getAdjustedSeekPositionUs(long positionUs, SeekParameters seekParameters) {
+    for (HlsSampleStreamWrapper sampleStreamWrapper : enabledSampleStreamWrappers) {
+      if (sampleStreamWrapper.isVideoSampleStream()) {
+        return sampleStreamWrapper.getAdjustedSeekPositionUs(positionUs, seekParameters);
+      }
+    }
     return positionUs;
   }
 
@@ -504,6 +510,7 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
               C.TRACK_TYPE_TEXT,
               new Uri[] {subtitleRendition.url},
               new Format[] {subtitleRendition.format},
+              /* redundantPlaylistUrls= */ new Uri[1][0],
               null,
               Collections.emptyList(),
               overridingDrmInitData,
@@ -579,32 +586,47 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
     }
     boolean useVideoVariantsOnly = false;
     boolean useNonAudioVariantsOnly = false;
-    int selectedVariantsCount = variantTypes.length;
     if (videoVariantCount > 0) {
       // We've identified some variants as definitely containing video. Assume variants within the
       // master playlist are marked consistently, and hence that we have the full set. Filter out
       // any other variants, which are likely to be audio only.
       useVideoVariantsOnly = true;
-      selectedVariantsCount = videoVariantCount;
     } else if (audioVariantCount < variantTypes.length) {
       // We've identified some variants, but not all, as being audio only. Filter them out to leave
       // the remaining variants, which are likely to contain video.
       useNonAudioVariantsOnly = true;
-      selectedVariantsCount = variantTypes.length - audioVariantCount;
     }
-    Uri[] selectedPlaylistUrls = new Uri[selectedVariantsCount];
-    Format[] selectedPlaylistFormats = new Format[selectedVariantsCount];
-    int[] selectedVariantIndices = new int[selectedVariantsCount];
-    int outIndex = 0;
+    ArrayList<Uri> selectedPlaylistUrlsList = new ArrayList<>();
+    ArrayList<Format> selectedPlaylistFormatsList = new ArrayList<>();
+    ArrayList<Uri[]> redundantPlaylistUrlsList = new ArrayList<>();
+    ArrayList<Integer> selectedVariantIndicesList = new ArrayList<>();
+    Set<Variant> redundantVariants = Collections.newSetFromMap(new IdentityHashMap<>());
     for (int i = 0; i < masterPlaylist.variants.size(); i++) {
+      Variant variant = masterPlaylist.variants.get(i);
       if ((!useVideoVariantsOnly || variantTypes[i] == C.TRACK_TYPE_VIDEO)
-          && (!useNonAudioVariantsOnly || variantTypes[i] != C.TRACK_TYPE_AUDIO)) {
-        Variant variant = masterPlaylist.variants.get(i);
-        selectedPlaylistUrls[outIndex] = variant.url;
-        selectedPlaylistFormats[outIndex] = variant.format;
-        selectedVariantIndices[outIndex++] = i;
+          && (!useNonAudioVariantsOnly || variantTypes[i] != C.TRACK_TYPE_AUDIO)
+          && !redundantVariants.contains(variant)) {
+        // Redundant copies of the variant are exposed as a single track, whose chunk source
+        // switches between the pathways serving them. The track keeps the format and index of the
+        // first declared copy, so that stream keys remain stable.
+        List<Variant> pathwayVariants = masterPlaylist.getRedundantVariants(variant);
+        redundantVariants.addAll(pathwayVariants);
+        Uri[] redundantPlaylistUrls = new Uri[pathwayVariants.size() - 1];
+        for (int j = 1; j < pathwayVariants.size(); j++) {
+          redundantPlaylistUrls[j - 1] = pathwayVariants.get(j).url;
+        }
+        selectedPlaylistUrlsList.add(pathwayVariants.get(0).url);
+        selectedPlaylistFormatsList.add(variant.format);
+        redundantPlaylistUrlsList.add(redundantPlaylistUrls);
+        selectedVariantIndicesList.add(i);
       }
     }
+    int selectedVariantsCount = selectedPlaylistUrlsList.size();
+    Uri[] selectedPlaylistUrls =
+        selectedPlaylistUrlsList.toArray(Util.castNonNullTypeArray(new Uri[0]));
+    Format[] selectedPlaylistFormats = selectedPlaylistFormatsList.toArray(new Format[0]);
+    Uri[][] redundantPlaylistUrls = redundantPlaylistUrlsList.toArray(new Uri[0][]);
+    int[] selectedVariantIndices = Ints.toArray(selectedVariantIndicesList);
     String codecs = selectedPlaylistFormats[0].codecs;
     int numberOfVideoCodecs = Util.getCodecCountOfType(codecs, C.TRACK_TYPE_VIDEO);
     int numberOfAudioCodecs = Util.getCodecCountOfType(codecs, C.TRACK_TYPE_AUDIO);
@@ -617,6 +639,7 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
             C.TRACK_TYPE_DEFAULT,
             selectedPlaylistUrls,
             selectedPlaylistFormats,
+            redundantPlaylistUrls,
             masterPlaylist.muxedAudioFormat,
             masterPlaylist.muxedCaptionFormats,
             overridingDrmInitData,
@@ -718,6 +741,7 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
               C.TRACK_TYPE_AUDIO,
               scratchPlaylistUrls.toArray(Util.castNonNullTypeArray(new Uri[0])),
               scratchPlaylistFormats.toArray(new Format[0]),
+              /* redundantPlaylistUrls= */ new Uri[scratchPlaylistUrls.size()][0],
               /* muxedAudioFormat= */ null,
               /* muxedCaptionFormats= */ Collections.emptyList(),
               overridingDrmInitData,
@@ -737,6 +761,7 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
       int trackType,
       Uri[] playlistUrls,
       Format[] playlistFormats,
+      Uri[][] redundantPlaylistUrls,
       @Nullable Format muxedAudioFormat,
       @Nullable List<Format> muxedCaptionFormats,
       Map<String, DrmInitData> overridingDrmInitData,
@@ -747,6 +772,7 @@ public final class HlsMediaPeriod implements MediaPeriod, HlsSampleStreamWrapper
             playlistTracker,
             playlistUrls,
             playlistFormats,
+            redundantPlaylistUrls,
             dataSourceFactory,
             mediaTransferListener,
             timestampAdjusterProvider,
@@ -52,6 +52,7 @@ import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
@@ -99,6 +100,7 @@ public final class HlsMediaSource extends BaseMediaSource
     private HlsExtractorFactory extractorFactory;
     private HlsPlaylistParserFactory playlistParserFactory;
     private HlsPlaylistTracker.Factory playlistTrackerFactory;
+    @Nullable private ManifestCache manifestCache;
     private CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory;
     private boolean usingCustomDrmSessionManagerProvider;
     private DrmSessionManagerProvider drmSessionManagerProvider;
@@ -212,6 +214,21 @@ public final class HlsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link ManifestCache} from which unchanged playlists are reused instead of being
+     * downloaded and parsed again. The cache is only used by the default {@link
+     * DefaultHlsPlaylistTracker#FACTORY playlist tracker factory}, and isn't used for media items
+     * with {@link StreamKey stream keys}, since their playlists are filtered. The default is {@code
+     * null}.
+     *
+     * @param manifestCache A {@link ManifestCache}, or {@code null} to load every playlist.
+     * @return This factory, for convenience.
+     */
+    public Factory setManifestCache(@Nullable ManifestCache manifestCache) {
+      this.manifestCache = manifestCache;
+      return this;
+    }
+
     /**
      * Sets the factory to create composite {@link SequenceableLoader}s for when this media source
      * loads data from multiple streams (video, audio etc...). The default is an instance of {@link
@@ -387,6 +404,18 @@ public final class HlsMediaSource extends BaseMediaSource
       } else if (needsStreamKeys) {
         mediaItem = mediaItem.buildUpon().setStreamKeys(streamKeys).build();
       }
+      HlsPlaylistTracker playlistTracker =
+          manifestCache != null
+                  && streamKeys.isEmpty()
+                  && playlistTrackerFactory == DefaultHlsPlaylistTracker.FACTORY
+              ? new DefaultHlsPlaylistTracker(
+                  hlsDataSourceFactory,
+                  loadErrorHandlingPolicy,
+                  playlistParserFactory,
+                  DefaultHlsPlaylistTracker.DEFAULT_PLAYLIST_STUCK_TARGET_DURATION_COEFFICIENT,
+                  manifestCache)
+              : playlistTrackerFactory.createTracker(
+                  hlsDataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory);
       return new HlsMediaSource(
           mediaItem,
           hlsDataSourceFactory,
@@ -394,8 +423,7 @@ public final class HlsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          playlistTrackerFactory.createTracker(
-              hlsDataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory),
+          playlistTracker,
           elapsedRealTimeOffsetMs,
           allowChunklessPreparation,
           metadataType,
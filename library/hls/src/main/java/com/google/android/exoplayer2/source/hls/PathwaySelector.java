@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static java.lang.Math.max;
+
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects among the pathways through which redundant copies of a variant stream are served.
+ *
+ * <p>Pathways are temporarily excluded after load errors. Among the pathways that aren't excluded,
+ * the one with the lowest measured request latency is preferred. Pathways whose latency hasn't
+ * been measured yet are only selected when no measured pathway is available, in order of
+ * preference.
+ *
+ * <p>Latency is only measured for requests made through the selected pathway, so the other
+ * pathways are probed periodically: after every {@link #PROBE_INTERVAL_MEASUREMENT_COUNT}
+ * measurements, the pathway that was measured least recently is selected for a single request.
+ * Once it has been measured, the pathway with the lowest latency is selected again.
+ */
+/* package */ final class PathwaySelector {
+
+  /** The weight of a new sample in the latency estimate of a pathway. */
+  private static final double LATENCY_SAMPLE_WEIGHT = 0.3;
+  /**
+   * The fraction of the current pathway's latency estimate that another pathway's estimate must
+   * not exceed for the selection to switch to it. Avoids switching back and forth between pathways
+   * with similar latency.
+   */
+  private static final double SWITCH_LATENCY_FRACTION = 0.75;
+  /** The number of latency measurements after which another pathway is probed. */
+  @VisibleForTesting /* package */ static final int PROBE_INTERVAL_MEASUREMENT_COUNT = 20;
+
+  private final Map<String, Long> excludedPathways;
+  private final Map<String, Double> latencyEstimatesMs;
+  private final Map<String, Integer> lastMeasurementIndices;
+
+  private int measurementCount;
+  private int measurementCountAtLastProbe;
+  @Nullable private String probedPathway;
+  private boolean probedPathwayMeasured;
+
+  /** Creates an instance. */
+  public PathwaySelector() {
+    excludedPathways = new HashMap<>();
+    latencyEstimatesMs = new HashMap<>();
+    lastMeasurementIndices = new HashMap<>();
+  }
+
+  /**
+   * Excludes a pathway.
+   *
+   * @param pathway The pathway to exclude.
+   * @param exclusionDurationMs The duration of the exclusion, in milliseconds.
+   */
+  public void exclude(String pathway, long exclusionDurationMs) {
+    long excludeUntilMs = SystemClock.elapsedRealtime() + exclusionDurationMs;
+    @Nullable Long currentExcludeUntilMs = excludedPathways.get(pathway);
+    if (currentExcludeUntilMs != null) {
+      excludeUntilMs = max(excludeUntilMs, currentExcludeUntilMs);
+    }
+    excludedPathways.put(pathway, excludeUntilMs);
+  }
+
+  /** Returns whether the given pathway is currently excluded. */
+  public boolean isExcluded(String pathway) {
+    pruneExpiredExclusions();
+    return excludedPathways.containsKey(pathway);
+  }
+
+  /**
+   * Returns the number of distinct pathways among the given pathways that aren't excluded.
+   *
+   * @param pathways The pathways.
+   * @return The number of pathways that can still be selected.
+   */
+  public int getNonExcludedPathwayCount(String[] pathways) {
+    pruneExpiredExclusions();
+    Set<String> nonExcludedPathways = new HashSet<>();
+    for (String pathway : pathways) {
+      if (!excludedPathways.containsKey(pathway)) {
+        nonExcludedPathways.add(pathway);
+      }
+    }
+    return nonExcludedPathways.size();
+  }
+
+  /**
+   * Called when the latency of a request made through a pathway has been measured.
+   *
+   * @param pathway The pathway.
+   * @param latencyMs The measured latency, in milliseconds.
+   */
+  public void onLatencyMeasured(String pathway, long latencyMs) {
+    @Nullable Double latencyEstimateMs = latencyEstimatesMs.get(pathway);
+    latencyEstimatesMs.put(
+        pathway,
+        latencyEstimateMs == null
+            ? latencyMs
+            : LATENCY_SAMPLE_WEIGHT * latencyMs
+                + (1 - LATENCY_SAMPLE_WEIGHT) * latencyEstimateMs);
+    lastMeasurementIndices.put(pathway, measurementCount++);
+    if (pathway.equals(probedPathway)) {
+      probedPathwayMeasured = true;
+    }
+  }
+
+  /**
+   * Selects a pathway.
+   *
+   * @param pathways The pathways to select from, in order of preference.
+   * @param currentIndex The index of the currently selected pathway in {@code pathways}.
+   * @return The index of the selected pathway in {@code pathways}, or {@link C#INDEX_UNSET} if all
+   *     pathways are excluded.
+   */
+  public int selectPathway(String[] pathways, int currentIndex) {
+    pruneExpiredExclusions();
+    if (probedPathway != null) {
+      if (pathways[currentIndex].equals(probedPathway)
+          && !excludedPathways.containsKey(probedPathway)) {
+        if (!probedPathwayMeasured) {
+          return currentIndex;
+        }
+        // The probe is complete. Select the pathway with the lowest latency, without favoring the
+        // probed pathway.
+        probedPathway = null;
+        return selectPathway(pathways, currentIndex, /* switchLatencyFraction= */ 1);
+      } else if (measurementCount - measurementCountAtLastProbe
+          >= PROBE_INTERVAL_MEASUREMENT_COUNT) {
+        // The probed pathway wasn't measured, for example because another track was selected.
+        probedPathway = null;
+      }
+    }
+    int selectedIndex = selectPathway(pathways, currentIndex, SWITCH_LATENCY_FRACTION);
+    if (selectedIndex != C.INDEX_UNSET
+        && probedPathway == null
+        && measurementCount - measurementCountAtLastProbe >= PROBE_INTERVAL_MEASUREMENT_COUNT) {
+      int probeIndex = getLeastRecentlyMeasuredIndex(pathways, pathways[selectedIndex]);
+      if (probeIndex != C.INDEX_UNSET) {
+        probedPathway = pathways[probeIndex];
+        probedPathwayMeasured = false;
+        measurementCountAtLastProbe = measurementCount;
+        return probeIndex;
+      }
+    }
+    return selectedIndex;
+  }
+
+  private int selectPathway(String[] pathways, int currentIndex, double switchLatencyFraction) {
+    int selectedIndex = currentIndex;
+    double selectedLatencyMs = Double.MAX_VALUE;
+    if (excludedPathways.containsKey(pathways[currentIndex])) {
+      selectedIndex = C.INDEX_UNSET;
+    } else {
+      @Nullable Double currentLatencyMs = latencyEstimatesMs.get(pathways[currentIndex]);
+      if (currentLatencyMs == null) {
+        // Keep using the current pathway until its latency has been measured.
+        return currentIndex;
+      }
+      selectedLatencyMs = currentLatencyMs * switchLatencyFraction;
+    }
+    int firstUnmeasuredIndex = C.INDEX_UNSET;
+    for (int i = 0; i < pathways.length; i++) {
+      if (excludedPathways.containsKey(pathways[i])) {
+        continue;
+      }
+      @Nullable Double latencyMs = latencyEstimatesMs.get(pathways[i]);
+      if (latencyMs == null) {
+        if (firstUnmeasuredIndex == C.INDEX_UNSET) {
+          firstUnmeasuredIndex = i;
+        }
+      } else if (latencyMs < selectedLatencyMs) {
+        selectedIndex = i;
+        selectedLatencyMs = latencyMs;
+      }
+    }
+    return selectedIndex != C.INDEX_UNSET ? selectedIndex : firstUnmeasuredIndex;
+  }
+
+  private int getLeastRecentlyMeasuredIndex(String[] pathways, String selectedPathway) {
+    int leastRecentlyMeasuredIndex = C.INDEX_UNSET;
+    int leastRecentMeasurementIndex = Integer.MAX_VALUE;
+    for (int i = 0; i < pathways.length; i++) {
+      if (pathways[i].equals(selectedPathway) || excludedPathways.containsKey(pathways[i])) {
+        continue;
+      }
+      @Nullable Integer lastMeasurementIndex = lastMeasurementIndices.get(pathways[i]);
+      int measurementIndex = lastMeasurementIndex != null ? lastMeasurementIndex : -1;
+      if (measurementIndex < leastRecentMeasurementIndex) {
+        leastRecentlyMeasuredIndex = i;
+        leastRecentMeasurementIndex = measurementIndex;
+      }
+    }
+    return leastRecentlyMeasuredIndex;
+  }
+
+  private void pruneExpiredExclusions() {
+    long nowMs = SystemClock.elapsedRealtime();
+    Iterator<Long> iterator = excludedPathways.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next() <= nowMs) {
+        iterator.remove();
+      }
+    }
+  }
+}
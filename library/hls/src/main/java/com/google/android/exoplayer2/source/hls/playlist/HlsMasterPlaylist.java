@@ -21,6 +21,7 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.offline.StreamKey;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -43,7 +44,8 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
           /* muxedCaptionFormats= */ Collections.emptyList(),
           /* hasIndependentSegments= */ false,
           /* variableDefinitions= */ Collections.emptyMap(),
-          /* sessionKeyDrmInitData= */ Collections.emptyList());
+          /* sessionKeyDrmInitData= */ Collections.emptyList(),
+          /* contentSteeringPathwayId= */ null);
 
   // These constants must not be changed because they are persisted in offline stream keys.
   public static final int GROUP_INDEX_VARIANT = 0;
@@ -71,6 +73,12 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
     /** The caption rendition group referenced by this variant, or {@code null}. */
     @Nullable public final String captionGroupId;
 
+    /**
+     * The pathway (i.e. the PATHWAY-ID attribute) through which this variant is served, or {@code
+     * null} if the variant does not declare a pathway.
+     */
+    @Nullable public final String pathwayId;
+
     /**
      * @param url See {@link #url}.
      * @param format See {@link #format}.
@@ -86,12 +94,40 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
         @Nullable String audioGroupId,
         @Nullable String subtitleGroupId,
         @Nullable String captionGroupId) {
+      this(
+          url,
+          format,
+          videoGroupId,
+          audioGroupId,
+          subtitleGroupId,
+          captionGroupId,
+          /* pathwayId= */ null);
+    }
+
+    /**
+     * @param url See {@link #url}.
+     * @param format See {@link #format}.
+     * @param videoGroupId See {@link #videoGroupId}.
+     * @param audioGroupId See {@link #audioGroupId}.
+     * @param subtitleGroupId See {@link #subtitleGroupId}.
+     * @param captionGroupId See {@link #captionGroupId}.
+     * @param pathwayId See {@link #pathwayId}.
+     */
+    public Variant(
+        Uri url,
+        Format format,
+        @Nullable String videoGroupId,
+        @Nullable String audioGroupId,
+        @Nullable String subtitleGroupId,
+        @Nullable String captionGroupId,
+        @Nullable String pathwayId) {
       this.url = url;
       this.format = format;
       this.videoGroupId = videoGroupId;
       this.audioGroupId = audioGroupId;
       this.subtitleGroupId = subtitleGroupId;
       this.captionGroupId = captionGroupId;
+      this.pathwayId = pathwayId;
     }
 
     /**
@@ -114,7 +150,34 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
 
     /** Returns a copy of this instance with the given {@link Format}. */
     public Variant copyWithFormat(Format format) {
-      return new Variant(url, format, videoGroupId, audioGroupId, subtitleGroupId, captionGroupId);
+      return new Variant(
+          url, format, videoGroupId, audioGroupId, subtitleGroupId, captionGroupId, pathwayId);
+    }
+
+    /**
+     * Returns whether the given variant is a redundant copy of this one, meaning that it is served
+     * from a different URL but declares the same attributes. Rendition groups are only compared
+     * between variants of the same pathway, as each pathway may declare its own renditions.
+     *
+     * @param other The variant to compare with.
+     * @return Whether the variants are redundant copies of the same stream.
+     */
+    public boolean isRedundantWith(Variant other) {
+      if (url.equals(other.url)
+          || format.peakBitrate != other.format.peakBitrate
+          || format.averageBitrate != other.format.averageBitrate
+          || format.width != other.format.width
+          || format.height != other.format.height
+          || format.frameRate != other.format.frameRate
+          || format.roleFlags != other.format.roleFlags
+          || !Util.areEqual(format.codecs, other.format.codecs)) {
+        return false;
+      }
+      return !Util.areEqual(pathwayId, other.pathwayId)
+          || (Util.areEqual(videoGroupId, other.videoGroupId)
+              && Util.areEqual(audioGroupId, other.audioGroupId)
+              && Util.areEqual(subtitleGroupId, other.subtitleGroupId)
+              && Util.areEqual(captionGroupId, other.captionGroupId));
     }
   }
 
@@ -176,6 +239,11 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
   public final Map<String, String> variableDefinitions;
   /** DRM initialization data derived from #EXT-X-SESSION-KEY tags. */
   public final List<DrmInitData> sessionKeyDrmInitData;
+  /**
+   * The pathway that should be used initially, as declared by the PATHWAY-ID attribute of the
+   * #EXT-X-CONTENT-STEERING tag, or null if the playlist does not declare one.
+   */
+  @Nullable public final String contentSteeringPathwayId;
 
   /**
    * @param baseUri See {@link #baseUri}.
@@ -204,6 +272,51 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
       boolean hasIndependentSegments,
       Map<String, String> variableDefinitions,
       List<DrmInitData> sessionKeyDrmInitData) {
+    this(
+        baseUri,
+        tags,
+        variants,
+        videos,
+        audios,
+        subtitles,
+        closedCaptions,
+        muxedAudioFormat,
+        muxedCaptionFormats,
+        hasIndependentSegments,
+        variableDefinitions,
+        sessionKeyDrmInitData,
+        /* contentSteeringPathwayId= */ null);
+  }
+
+  /**
+   * @param baseUri See {@link #baseUri}.
+   * @param tags See {@link #tags}.
+   * @param variants See {@link #variants}.
+   * @param videos See {@link #videos}.
+   * @param audios See {@link #audios}.
+   * @param subtitles See {@link #subtitles}.
+   * @param closedCaptions See {@link #closedCaptions}.
+   * @param muxedAudioFormat See {@link #muxedAudioFormat}.
+   * @param muxedCaptionFormats See {@link #muxedCaptionFormats}.
+   * @param hasIndependentSegments See {@link #hasIndependentSegments}.
+   * @param variableDefinitions See {@link #variableDefinitions}.
+   * @param sessionKeyDrmInitData See {@link #sessionKeyDrmInitData}.
+   * @param contentSteeringPathwayId See {@link #contentSteeringPathwayId}.
+   */
+  public HlsMasterPlaylist(
+      String baseUri,
+      List<String> tags,
+      List<Variant> variants,
+      List<Rendition> videos,
+      List<Rendition> audios,
+      List<Rendition> subtitles,
+      List<Rendition> closedCaptions,
+      @Nullable Format muxedAudioFormat,
+      @Nullable List<Format> muxedCaptionFormats,
+      boolean hasIndependentSegments,
+      Map<String, String> variableDefinitions,
+      List<DrmInitData> sessionKeyDrmInitData,
+      @Nullable String contentSteeringPathwayId) {
     super(baseUri, tags, hasIndependentSegments);
     this.mediaPlaylistUrls =
         Collections.unmodifiableList(
@@ -218,6 +331,7 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
         ? Collections.unmodifiableList(muxedCaptionFormats) : null;
     this.variableDefinitions = Collections.unmodifiableMap(variableDefinitions);
     this.sessionKeyDrmInitData = Collections.unmodifiableList(sessionKeyDrmInitData);
+    this.contentSteeringPathwayId = contentSteeringPathwayId;
   }
 
   @Override
@@ -236,7 +350,36 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
         muxedCaptionFormats,
         hasIndependentSegments,
         variableDefinitions,
-        sessionKeyDrmInitData);
+        sessionKeyDrmInitData,
+        contentSteeringPathwayId);
+  }
+
+  /**
+   * Returns the redundant copies of a variant, which are the variants that declare the same
+   * attributes but are served from different URLs, typically through different pathways. The
+   * returned list includes the given variant. Variants of the {@link #contentSteeringPathwayId
+   * content steering pathway} come first, followed by the others in order of declaration.
+   *
+   * @param variant A variant of this playlist.
+   * @return The redundant copies of the variant, in order of preference.
+   */
+  public List<Variant> getRedundantVariants(Variant variant) {
+    List<Variant> redundantVariants = new ArrayList<>();
+    for (int i = 0; i < variants.size(); i++) {
+      Variant otherVariant = variants.get(i);
+      if (otherVariant == variant || variant.isRedundantWith(otherVariant)) {
+        redundantVariants.add(otherVariant);
+      }
+    }
+    if (contentSteeringPathwayId != null) {
+      int preferredCount = 0;
+      for (int i = 0; i < redundantVariants.size(); i++) {
+        if (contentSteeringPathwayId.equals(redundantVariants.get(i).pathwayId)) {
+          redundantVariants.add(preferredCount++, redundantVariants.remove(i));
+        }
+      }
+    }
+    return redundantVariants;
   }
 
   /**
@@ -260,7 +403,8 @@ public final class HlsMasterPlaylist extends HlsPlaylist {
         /* muxedCaptionFormats= */ null,
         /* hasIndependentSegments= */ false,
         /* variableDefinitions= */ Collections.emptyMap(),
-        /* sessionKeyDrmInitData= */ Collections.emptyList());
+        /* sessionKeyDrmInitData= */ Collections.emptyList(),
+        /* contentSteeringPathwayId= */ null);
   }
 
   private static List<Uri> getMediaPlaylistUrls(
@@ -105,6 +105,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final String TAG_SKIP = "#EXT-X-SKIP";
   private static final String TAG_PRELOAD_HINT = "#EXT-X-PRELOAD-HINT";
   private static final String TAG_RENDITION_REPORT = "#EXT-X-RENDITION-REPORT";
+  private static final String TAG_CONTENT_STEERING = "#EXT-X-CONTENT-STEERING";
 
   private static final String TYPE_AUDIO = "AUDIO";
   private static final String TYPE_VIDEO = "VIDEO";
@@ -202,6 +203,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final Pattern REGEX_LANGUAGE = Pattern.compile("LANGUAGE=\"(.+?)\"");
   private static final Pattern REGEX_NAME = Pattern.compile("NAME=\"(.+?)\"");
   private static final Pattern REGEX_GROUP_ID = Pattern.compile("GROUP-ID=\"(.+?)\"");
+  private static final Pattern REGEX_PATHWAY_ID = Pattern.compile("PATHWAY-ID=\"(.+?)\"");
   private static final Pattern REGEX_CHARACTERISTICS = Pattern.compile("CHARACTERISTICS=\"(.+?)\"");
   private static final Pattern REGEX_INSTREAM_ID =
       Pattern.compile("INSTREAM-ID=\"((?:CC|SERVICE)\\d+)\"");
@@ -326,6 +328,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     List<Format> muxedCaptionFormats = null;
     boolean noClosedCaptions = false;
     boolean hasIndependentSegmentsTag = false;
+    @Nullable String contentSteeringPathwayId = null;
 
     String line;
     while (iterator.hasNext()) {
@@ -343,6 +346,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             /* value= */ parseStringAttr(line, REGEX_VALUE, variableDefinitions));
       } else if (line.equals(TAG_INDEPENDENT_SEGMENTS)) {
         hasIndependentSegmentsTag = true;
+      } else if (line.startsWith(TAG_CONTENT_STEERING)) {
+        contentSteeringPathwayId =
+            parseOptionalStringAttr(line, REGEX_PATHWAY_ID, variableDefinitions);
       } else if (line.startsWith(TAG_MEDIA)) {
         // Media tags are parsed at the end to include codec information from #EXT-X-STREAM-INF
         // tags.
@@ -391,6 +397,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             parseOptionalStringAttr(line, REGEX_SUBTITLES, variableDefinitions);
         String closedCaptionsGroupId =
             parseOptionalStringAttr(line, REGEX_CLOSED_CAPTIONS, variableDefinitions);
+        @Nullable
+        String pathwayId = parseOptionalStringAttr(line, REGEX_PATHWAY_ID, variableDefinitions);
         Uri uri;
         if (isIFrameOnlyVariant) {
           uri =
@@ -417,7 +425,13 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
                 .build();
         Variant variant =
             new Variant(
-                uri, format, videoGroupId, audioGroupId, subtitlesGroupId, closedCaptionsGroupId);
+                uri,
+                format,
+                videoGroupId,
+                audioGroupId,
+                subtitlesGroupId,
+                closedCaptionsGroupId,
+                pathwayId);
         variants.add(variant);
         @Nullable ArrayList<VariantInfo> variantInfosForUrl = urlToVariantInfos.get(uri);
         if (variantInfosForUrl == null) {
@@ -579,7 +593,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         muxedCaptionFormats,
         hasIndependentSegmentsTag,
         variableDefinitions,
-        sessionKeyDrmInitData);
+        sessionKeyDrmInitData,
+        contentSteeringPathwayId);
   }
 
   @Nullable
@@ -869,24 +884,23 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             playlistProtectionSchemes = getPlaylistProtectionSchemes(encryptionScheme, schemeDatas);
           }
         }
-        if (byteRangeStart == C.LENGTH_UNSET || byteRangeLength != C.LENGTH_UNSET) {
-          // Skip preload part if it is an unbounded range request.
-          preloadPart =
-              new Part(
-                  url,
-                  initializationSegment,
-                  /* durationUs= */ 0,
-                  relativeDiscontinuitySequence,
-                  partStartTimeUs,
-                  cachedDrmInitData,
-                  fullSegmentEncryptionKeyUri,
-                  segmentEncryptionIV,
-                  byteRangeStart != C.LENGTH_UNSET ? byteRangeStart : 0,
-                  byteRangeLength,
-                  /* hasGapTag= */ false,
-                  /* isIndependent= */ false,
-                  /* isPreload= */ true);
-        }
+        // A hint with a start but without a length is an unbounded range request, which loads the
+        // remainder of the resource as the server produces it.
+        preloadPart =
+            new Part(
+                url,
+                initializationSegment,
+                /* durationUs= */ 0,
+                relativeDiscontinuitySequence,
+                partStartTimeUs,
+                cachedDrmInitData,
+                fullSegmentEncryptionKeyUri,
+                segmentEncryptionIV,
+                byteRangeStart != C.LENGTH_UNSET ? byteRangeStart : 0,
+                byteRangeLength,
+                /* hasGapTag= */ false,
+                /* isIndependent= */ false,
+                /* isPreload= */ true);
       } else if (line.startsWith(TAG_PART)) {
         @Nullable
         String segmentEncryptionIV =
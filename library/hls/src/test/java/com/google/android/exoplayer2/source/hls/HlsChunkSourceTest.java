@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.drm.DrmSessionEventListener;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.source.chunk.Chunk;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistTracker;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link HlsChunkSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class HlsChunkSourceTest {
+
+  private static final Uri PLAYLIST_URL_1 = Uri.parse("https://cdn1.example.com/video.m3u8");
+  private static final Uri PLAYLIST_URL_2 = Uri.parse("https://cdn2.example.com/video.m3u8");
+  private static final long EXCLUSION_DURATION_MS = 60_000;
+  private static final Format FORMAT =
+      new Format.Builder()
+          .setContainerMimeType(MimeTypes.APPLICATION_M3U8)
+          .setCodecs("avc1.42000a")
+          .setPeakBitrate(1280000)
+          .build();
+  private static final String MEDIA_PLAYLIST =
+      "#EXTM3U\n"
+          + "#EXT-X-VERSION:3\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-MEDIA-SEQUENCE:0\n"
+          + "#EXTINF:4.0,\n"
+          + "segment0.ts\n"
+          + "#EXTINF:4.0,\n"
+          + "segment1.ts\n"
+          + "#EXT-X-ENDLIST\n";
+  private static final String MEDIA_PLAYLIST_WITH_INDEPENDENT_SEGMENTS =
+      "#EXTM3U\n"
+          + "#EXT-X-VERSION:3\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-INDEPENDENT-SEGMENTS\n"
+          + "#EXT-X-MEDIA-SEQUENCE:0\n"
+          + "#EXTINF:4.0,\n"
+          + "segment0.ts\n"
+          + "#EXTINF:4.0,\n"
+          + "segment1.ts\n"
+          + "#EXT-X-ENDLIST\n";
+  private static final String MASTER_PLAYLIST_WITH_PATHWAY_IDS =
+      "#EXTM3U\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,CODECS=\"avc1.42000a\",PATHWAY-ID=\"A\"\n"
+          + "https://cdn.example.com/a/video.m3u8\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,CODECS=\"avc1.42000a\",PATHWAY-ID=\"B\"\n"
+          + "https://cdn.example.com/b/video.m3u8\n";
+  private static final String PLAYLIST_HEADER =
+      "#EXTM3U\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-VERSION:6\n"
+          + "#EXT-X-PART-INF:PART-TARGET=1.0\n"
+          + "#EXT-X-MEDIA-SEQUENCE:0\n"
+          + "#EXTINF:4.0,\n"
+          + "segment0.ts\n";
+  // The preload hint requests the remainder of segment1.ts, of which 300 bytes are served.
+  private static final String PLAYLIST_WITH_OPEN_ENDED_PRELOAD_HINT =
+      PLAYLIST_HEADER
+          + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n"
+          + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"segment1.ts\",BYTERANGE-START=100\n";
+  private static final int PRELOADED_SEGMENT_LENGTH = 300;
+
+  @Test
+  public void getNextChunk_withRedundantCopy_loadsFromFirstCopy() throws IOException {
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, PLAYLIST_URL_1, PLAYLIST_URL_2),
+            PLAYLIST_URL_1,
+            PLAYLIST_URL_2);
+
+    Chunk chunk = getNextChunk(chunkSource);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn1.example.com/segment0.ts");
+  }
+
+  @Test
+  public void maybeExcludePathway_withRedundantCopy_loadsNextChunkFromRedundantCopy()
+      throws IOException {
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, PLAYLIST_URL_1, PLAYLIST_URL_2),
+            PLAYLIST_URL_1,
+            PLAYLIST_URL_2);
+    Chunk failedChunk = getNextChunk(chunkSource);
+
+    assertThat(chunkSource.maybeExcludePathway(failedChunk, EXCLUSION_DURATION_MS)).isTrue();
+    Chunk chunk = getNextChunk(chunkSource);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn2.example.com/segment0.ts");
+    // No other pathway remains.
+    assertThat(chunkSource.maybeExcludePathway(chunk, EXCLUSION_DURATION_MS)).isFalse();
+  }
+
+  @Test
+  public void maybeExcludePathway_withoutRedundantCopy_returnsFalse() throws IOException {
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, PLAYLIST_URL_1), PLAYLIST_URL_1);
+    Chunk chunk = getNextChunk(chunkSource);
+
+    assertThat(chunkSource.maybeExcludePathway(chunk, EXCLUSION_DURATION_MS)).isFalse();
+  }
+
+  @Test
+  public void onPlaylistError_withRedundantCopy_loadsNextChunkFromRedundantCopy()
+      throws IOException {
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, PLAYLIST_URL_1, PLAYLIST_URL_2),
+            PLAYLIST_URL_1,
+            PLAYLIST_URL_2);
+    getNextChunk(chunkSource);
+
+    assertThat(chunkSource.onPlaylistError(PLAYLIST_URL_1, EXCLUSION_DURATION_MS)).isTrue();
+    Chunk chunk = getNextChunk(chunkSource);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn2.example.com/segment0.ts");
+  }
+
+  @Test
+  public void maybeExcludePathway_copiesWithPathwayIdsOnSameHost_loadsNextChunkFromRedundantCopy()
+      throws IOException {
+    Uri playlistUrlA = Uri.parse("https://cdn.example.com/a/video.m3u8");
+    Uri playlistUrlB = Uri.parse("https://cdn.example.com/b/video.m3u8");
+    HlsMasterPlaylist masterPlaylist =
+        (HlsMasterPlaylist)
+            parsePlaylist("https://cdn.example.com/master.m3u8", MASTER_PLAYLIST_WITH_PATHWAY_IDS);
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(masterPlaylist, playlistUrlA, playlistUrlB),
+            playlistUrlA,
+            playlistUrlB);
+    Chunk failedChunk = getNextChunk(chunkSource);
+
+    assertThat(chunkSource.maybeExcludePathway(failedChunk, EXCLUSION_DURATION_MS)).isTrue();
+    Chunk chunk = getNextChunk(chunkSource);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn.example.com/b/segment0.ts");
+  }
+
+  @Test
+  public void maybeExcludePathway_copiesOnSameHost_loadsNextChunkFromRedundantCopy()
+      throws IOException {
+    Uri playlistUrlA = Uri.parse("https://cdn.example.com/a/video.m3u8");
+    Uri playlistUrlB = Uri.parse("https://cdn.example.com/b/video.m3u8");
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, playlistUrlA, playlistUrlB),
+            playlistUrlA,
+            playlistUrlB);
+    Chunk failedChunk = getNextChunk(chunkSource);
+
+    assertThat(chunkSource.maybeExcludePathway(failedChunk, EXCLUSION_DURATION_MS)).isTrue();
+    Chunk chunk = getNextChunk(chunkSource);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn.example.com/b/segment0.ts");
+  }
+
+  @Test
+  public void getAdjustedSeekPositionUs_withIndependentSegments_snapsToSegmentBoundaries()
+      throws IOException {
+    HlsPlaylistTracker playlistTracker = mock(HlsPlaylistTracker.class);
+    when(playlistTracker.getPlaylistSnapshot(eq(PLAYLIST_URL_1), anyBoolean()))
+        .thenReturn(
+            (HlsMediaPlaylist)
+                parsePlaylist(PLAYLIST_URL_1.toString(), MEDIA_PLAYLIST_WITH_INDEPENDENT_SEGMENTS));
+    HlsChunkSource chunkSource = createChunkSource(playlistTracker, FORMAT, PLAYLIST_URL_1);
+
+    assertThat(chunkSource.getAdjustedSeekPositionUs(3_000_000, SeekParameters.CLOSEST_SYNC))
+        .isEqualTo(4_000_000);
+    assertThat(chunkSource.getAdjustedSeekPositionUs(3_000_000, SeekParameters.PREVIOUS_SYNC))
+        .isEqualTo(0);
+    assertThat(chunkSource.getAdjustedSeekPositionUs(5_000_000, SeekParameters.CLOSEST_SYNC))
+        .isEqualTo(4_000_000);
+    assertThat(chunkSource.getAdjustedSeekPositionUs(5_000_000, SeekParameters.EXACT))
+        .isEqualTo(5_000_000);
+  }
+
+  @Test
+  public void getAdjustedSeekPositionUs_withIFramePlaylist_snapsToSegmentBoundaries()
+      throws IOException {
+    Format trickPlayFormat = FORMAT.buildUpon().setRoleFlags(C.ROLE_FLAG_TRICK_PLAY).build();
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, PLAYLIST_URL_1),
+            trickPlayFormat,
+            PLAYLIST_URL_1);
+
+    assertThat(chunkSource.getAdjustedSeekPositionUs(3_000_000, SeekParameters.CLOSEST_SYNC))
+        .isEqualTo(4_000_000);
+    assertThat(chunkSource.getAdjustedSeekPositionUs(1_000_000, SeekParameters.NEXT_SYNC))
+        .isEqualTo(4_000_000);
+  }
+
+  @Test
+  public void getAdjustedSeekPositionUs_withDependentSegments_returnsPosition()
+      throws IOException {
+    HlsChunkSource chunkSource =
+        createChunkSource(
+            createPlaylistTracker(/* masterPlaylist= */ null, PLAYLIST_URL_1), PLAYLIST_URL_1);
+
+    assertThat(chunkSource.getAdjustedSeekPositionUs(3_000_000, SeekParameters.CLOSEST_SYNC))
+        .isEqualTo(3_000_000);
+  }
+
+  @Test
+  public void getNextChunk_afterOpenEndedPreloadPart_continuesAfterLoadedByteRange()
+      throws IOException {
+    String updatedPlaylist =
+        PLAYLIST_HEADER
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@100\"\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@200\"\n"
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"segment1.ts\",BYTERANGE-START=300\n";
+
+    Chunk chunk = getNextChunkAfterOpenEndedPreloadPart(updatedPlaylist);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn1.example.com/segment1.ts");
+    assertThat(chunk.dataSpec.position).isEqualTo(PRELOADED_SEGMENT_LENGTH);
+    assertThat(chunk.dataSpec.length).isEqualTo(C.LENGTH_UNSET);
+  }
+
+  @Test
+  public void getNextChunk_afterOpenEndedPreloadPartLoadedAllParts_continuesWithNextSegment()
+      throws IOException {
+    String updatedPlaylist =
+        PLAYLIST_HEADER
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@100\"\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@200\"\n"
+            + "#EXTINF:3.0,\n"
+            + "segment1.ts\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment2.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n";
+
+    Chunk chunk = getNextChunkAfterOpenEndedPreloadPart(updatedPlaylist);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn1.example.com/segment2.ts");
+    assertThat(chunk.dataSpec.position).isEqualTo(0);
+    assertThat(((HlsMediaChunk) chunk).chunkIndex).isEqualTo(2);
+  }
+
+  @Test
+  public void getNextChunk_afterOpenEndedPreloadPart_doesNotSkipPartWithOtherUri()
+      throws IOException {
+    String updatedPlaylist =
+        PLAYLIST_HEADER
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"200@100\"\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.part3.ts\"\n";
+
+    Chunk chunk = getNextChunkAfterOpenEndedPreloadPart(updatedPlaylist);
+
+    assertThat(chunk.dataSpec.uri.toString())
+        .isEqualTo("https://cdn1.example.com/segment1.part3.ts");
+  }
+
+  @Test
+  public void getNextChunk_afterOpenEndedPreloadPart_loadsPartCrossingLoadedEnd()
+      throws IOException {
+    String updatedPlaylist =
+        PLAYLIST_HEADER
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@100\"\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"150@200\"\n"
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"segment1.ts\",BYTERANGE-START=350\n";
+
+    Chunk chunk = getNextChunkAfterOpenEndedPreloadPart(updatedPlaylist);
+
+    // The part ends after the loaded data, so it's loaded rather than skipped.
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn1.example.com/segment1.ts");
+    assertThat(chunk.dataSpec.position).isEqualTo(200);
+    assertThat(chunk.dataSpec.length).isEqualTo(150);
+  }
+
+  @Test
+  public void getNextChunk_afterOpenEndedPreloadPartAndFailover_continuesAfterLoadedByteRange()
+      throws IOException {
+    String updatedPlaylist =
+        PLAYLIST_HEADER
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@0\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@100\"\n"
+            + "#EXT-X-PART:DURATION=1.0,URI=\"segment1.ts\",BYTERANGE=\"100@200\"\n"
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"segment1.ts\",BYTERANGE-START=300\n";
+
+    Chunk chunk =
+        getNextChunkAfterOpenEndedPreloadPart(updatedPlaylist, /* failOverToRedundantCopy= */ true);
+
+    assertThat(chunk.dataSpec.uri.toString()).isEqualTo("https://cdn2.example.com/segment1.ts");
+    assertThat(chunk.dataSpec.position).isEqualTo(PRELOADED_SEGMENT_LENGTH);
+    assertThat(chunk.dataSpec.length).isEqualTo(C.LENGTH_UNSET);
+  }
+
+  private static Chunk getNextChunkAfterOpenEndedPreloadPart(String updatedPlaylistString)
+      throws IOException {
+    return getNextChunkAfterOpenEndedPreloadPart(
+        updatedPlaylistString, /* failOverToRedundantCopy= */ false);
+  }
+
+  /**
+   * Loads the open-ended preload part of {@link #PLAYLIST_WITH_OPEN_ENDED_PRELOAD_HINT}, and
+   * returns the chunk that follows it in the given updated playlist. If {@code
+   * failOverToRedundantCopy} is true, the playlist has a redundant copy that the next chunk is
+   * loaded from.
+   */
+  private static Chunk getNextChunkAfterOpenEndedPreloadPart(
+      String updatedPlaylistString, boolean failOverToRedundantCopy) throws IOException {
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            parsePlaylist(PLAYLIST_URL_1.toString(), PLAYLIST_WITH_OPEN_ENDED_PRELOAD_HINT);
+    HlsPlaylistTracker playlistTracker = mock(HlsPlaylistTracker.class);
+    when(playlistTracker.isSnapshotValid(any())).thenReturn(true);
+    for (Uri playlistUrl : new Uri[] {PLAYLIST_URL_1, PLAYLIST_URL_2}) {
+      when(playlistTracker.getPlaylistSnapshot(eq(playlistUrl), anyBoolean()))
+          .thenReturn(
+              (HlsMediaPlaylist) parsePlaylist(playlistUrl.toString(), updatedPlaylistString));
+    }
+    HlsChunkSource chunkSource =
+        failOverToRedundantCopy
+            ? createChunkSource(playlistTracker, PLAYLIST_URL_1, PLAYLIST_URL_2)
+            : createChunkSource(playlistTracker, PLAYLIST_URL_1);
+    FakeDataSet fakeDataSet = new FakeDataSet();
+    fakeDataSet
+        .newData("https://cdn1.example.com/segment1.ts")
+        .appendReadData(PRELOADED_SEGMENT_LENGTH);
+    int preloadPartIndex = playlist.trailingParts.size() - 1;
+    HlsMediaChunk preloadChunk =
+        HlsMediaChunk.createInstance(
+            (uri, format, muxedCaptionFormats, timestampAdjuster, responseHeaders, input) ->
+                new DiscardingHlsMediaChunkExtractor(),
+            new FakeDataSource(fakeDataSet),
+            FORMAT,
+            /* startOfPlaylistInPeriodUs= */ 0,
+            playlist,
+            new HlsChunkSource.SegmentBaseHolder(
+                playlist.trailingParts.get(preloadPartIndex),
+                /* mediaSequence= */ 1,
+                preloadPartIndex),
+            PLAYLIST_URL_1,
+            /* muxedCaptionFormats= */ null,
+            C.SELECTION_REASON_INITIAL,
+            /* trackSelectionData= */ null,
+            /* isMasterTimestampSource= */ true,
+            new TimestampAdjusterProvider(),
+            /* previousChunk= */ null,
+            /* mediaSegmentKey= */ null,
+            /* initSegmentKey= */ null);
+    HlsSampleStreamWrapper sampleStreamWrapper = createSampleStreamWrapper(chunkSource);
+    preloadChunk.init(sampleStreamWrapper, ImmutableList.of());
+    preloadChunk.load();
+    sampleStreamWrapper.release();
+    chunkSource.onChunkLoadCompleted(preloadChunk);
+    assertThat(preloadChunk.getLoadedEndPosition()).isEqualTo(PRELOADED_SEGMENT_LENGTH);
+    if (failOverToRedundantCopy) {
+      assertThat(chunkSource.onPlaylistError(PLAYLIST_URL_1, EXCLUSION_DURATION_MS)).isTrue();
+    }
+
+    return getNextChunk(chunkSource, Collections.singletonList(preloadChunk));
+  }
+
+  private static HlsSampleStreamWrapper createSampleStreamWrapper(HlsChunkSource chunkSource) {
+    return new HlsSampleStreamWrapper(
+        C.TRACK_TYPE_DEFAULT,
+        mock(HlsSampleStreamWrapper.Callback.class),
+        chunkSource,
+        /* overridingDrmInitData= */ Collections.emptyMap(),
+        new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+        /* positionUs= */ 0,
+        /* muxedAudioFormat= */ null,
+        DrmSessionManager.DRM_UNSUPPORTED,
+        new DrmSessionEventListener.EventDispatcher(),
+        new DefaultLoadErrorHandlingPolicy(),
+        new MediaSourceEventListener.EventDispatcher(),
+        HlsMediaSource.METADATA_TYPE_ID3);
+  }
+
+  private static HlsChunkSource createChunkSource(
+      HlsPlaylistTracker playlistTracker, Uri playlistUrl, Uri... redundantPlaylistUrls) {
+    return createChunkSource(playlistTracker, FORMAT, playlistUrl, redundantPlaylistUrls);
+  }
+
+  private static HlsChunkSource createChunkSource(
+      HlsPlaylistTracker playlistTracker,
+      Format format,
+      Uri playlistUrl,
+      Uri... redundantPlaylistUrls) {
+    return new HlsChunkSource(
+        HlsExtractorFactory.DEFAULT,
+        playlistTracker,
+        new Uri[] {playlistUrl},
+        new Format[] {format},
+        new Uri[][] {redundantPlaylistUrls},
+        new DefaultHlsDataSourceFactory(new FakeDataSource.Factory()),
+        /* mediaTransferListener= */ null,
+        new TimestampAdjusterProvider(),
+        /* muxedCaptionFormats= */ null);
+  }
+
+  private static HlsPlaylistTracker createPlaylistTracker(
+      @Nullable HlsMasterPlaylist masterPlaylist, Uri... mediaPlaylistUrls) throws IOException {
+    HlsPlaylistTracker playlistTracker = mock(HlsPlaylistTracker.class);
+    when(playlistTracker.getMasterPlaylist()).thenReturn(masterPlaylist);
+    when(playlistTracker.isSnapshotValid(any())).thenReturn(true);
+    for (Uri mediaPlaylistUrl : mediaPlaylistUrls) {
+      when(playlistTracker.getPlaylistSnapshot(eq(mediaPlaylistUrl), anyBoolean()))
+          .thenReturn(
+              (HlsMediaPlaylist) parsePlaylist(mediaPlaylistUrl.toString(), MEDIA_PLAYLIST));
+    }
+    return playlistTracker;
+  }
+
+  private static HlsPlaylist parsePlaylist(String url, String playlistString) throws IOException {
+    return new HlsPlaylistParser()
+        .parse(Uri.parse(url), new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+  }
+
+  private static Chunk getNextChunk(HlsChunkSource chunkSource) {
+    return getNextChunk(chunkSource, /* queue= */ Collections.emptyList());
+  }
+
+  private static Chunk getNextChunk(HlsChunkSource chunkSource, List<HlsMediaChunk> queue) {
+    HlsChunkSource.HlsChunkHolder chunkHolder = new HlsChunkSource.HlsChunkHolder();
+    long loadPositionUs = queue.isEmpty() ? 0 : Iterables.getLast(queue).endTimeUs;
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        loadPositionUs,
+        queue,
+        /* allowEndOfStream= */ true,
+        chunkHolder);
+    assertThat(chunkHolder.chunk).isNotNull();
+    return chunkHolder.chunk;
+  }
+
+  /** Discards all the data it reads. */
+  private static final class DiscardingHlsMediaChunkExtractor implements HlsMediaChunkExtractor {
+
+    @Override
+    public void init(ExtractorOutput extractorOutput) {}
+
+    @Override
+    public boolean read(ExtractorInput extractorInput) throws IOException {
+      return extractorInput.skip(/* length= */ 1024) != C.RESULT_END_OF_INPUT;
+    }
+
+    @Override
+    public boolean isPackedAudioExtractor() {
+      return false;
+    }
+
+    @Override
+    public boolean isReusable() {
+      return true;
+    }
+
+    @Override
+    public HlsMediaChunkExtractor recreate() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void onTruncatedSegmentParsed() {}
+  }
+}
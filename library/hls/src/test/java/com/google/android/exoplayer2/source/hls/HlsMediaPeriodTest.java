@@ -15,18 +15,25 @@
  */
 package com.google.android.exoplayer2.source.hls;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.net.Uri;
+import android.os.Looper;
+import androidx.annotation.Nullable;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.offline.StreamKey;
 import com.google.android.exoplayer2.source.CompositeSequenceableLoaderFactory;
+import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
 import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist.Rendition;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist.Variant;
@@ -34,6 +41,7 @@ import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistTracker;
 import com.google.android.exoplayer2.testutil.MediaPeriodAsserts;
 import com.google.android.exoplayer2.testutil.MediaPeriodAsserts.FilterableManifestMediaPeriodFactory;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
@@ -42,6 +50,7 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -71,39 +80,84 @@ public final class HlsMediaPeriodTest {
             /* muxedCaptionFormats= */ Arrays.asList(
                 createSubtitleFormat("eng"), createSubtitleFormat("gsw")));
     FilterableManifestMediaPeriodFactory<HlsPlaylist> mediaPeriodFactory =
-        (playlist, periodIndex) -> {
-          HlsDataSourceFactory mockDataSourceFactory = mock(HlsDataSourceFactory.class);
-          when(mockDataSourceFactory.createDataSource(anyInt())).thenReturn(mock(DataSource.class));
-          HlsPlaylistTracker mockPlaylistTracker = mock(HlsPlaylistTracker.class);
-          when(mockPlaylistTracker.getMasterPlaylist()).thenReturn((HlsMasterPlaylist) playlist);
-          MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
-          return new HlsMediaPeriod(
-              mock(HlsExtractorFactory.class),
-              mockPlaylistTracker,
-              mockDataSourceFactory,
-              mock(TransferListener.class),
-              mock(DrmSessionManager.class),
-              new DrmSessionEventListener.EventDispatcher()
-                  .withParameters(/* windowIndex= */ 0, mediaPeriodId),
-              mock(LoadErrorHandlingPolicy.class),
-              new MediaSourceEventListener.EventDispatcher()
-                  .withParameters(/* windowIndex= */ 0, mediaPeriodId, /* mediaTimeOffsetMs= */ 0),
-              mock(Allocator.class),
-              mock(CompositeSequenceableLoaderFactory.class),
-              /* allowChunklessPreparation= */ true,
-              HlsMediaSource.METADATA_TYPE_ID3,
-              /* useSessionKeys= */ false);
-        };
+        (playlist, periodIndex) -> createMediaPeriod((HlsMasterPlaylist) playlist);
 
     MediaPeriodAsserts.assertGetStreamKeysAndManifestFilterIntegration(
         mediaPeriodFactory, testMasterPlaylist);
   }
 
+  @Test
+  public void prepare_withRedundantVariants_mergesRedundantVariantsIntoSingleTrack() {
+    HlsMasterPlaylist testMasterPlaylist =
+        createMasterPlaylist(
+            /* variants= */ Arrays.asList(
+                createMuxedVideoAudioVariant("https://cdn1/low.m3u8", /* peakBitrate= */ 200000),
+                createMuxedVideoAudioVariant("https://cdn2/low.m3u8", /* peakBitrate= */ 200000),
+                createMuxedVideoAudioVariant("https://cdn1/high.m3u8", /* peakBitrate= */ 400000)),
+            /* audios= */ Collections.emptyList(),
+            /* subtitles= */ Collections.emptyList(),
+            /* muxedAudioFormat= */ null,
+            /* muxedCaptionFormats= */ Collections.emptyList());
+    HlsMediaPeriod mediaPeriod = createMediaPeriod(testMasterPlaylist);
+
+    AtomicBoolean prepared = new AtomicBoolean();
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepared.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            // Ignore.
+          }
+        },
+        /* positionUs= */ 0);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(prepared.get()).isTrue();
+    TrackGroup variantTrackGroup = mediaPeriod.getTrackGroups().get(0);
+    assertThat(variantTrackGroup.length).isEqualTo(2);
+    assertThat(variantTrackGroup.getFormat(0).peakBitrate).isEqualTo(200000);
+    assertThat(variantTrackGroup.getFormat(1).peakBitrate).isEqualTo(400000);
+    // The merged track keeps the index of the first declared copy.
+    assertThat(
+            mediaPeriod.getStreamKeys(
+                Collections.singletonList(
+                    new FixedTrackSelection(variantTrackGroup, /* track= */ 1))))
+        .containsExactly(new StreamKey(HlsMasterPlaylist.GROUP_INDEX_VARIANT, 2));
+  }
+
+  private static HlsMediaPeriod createMediaPeriod(HlsMasterPlaylist masterPlaylist) {
+    HlsDataSourceFactory mockDataSourceFactory = mock(HlsDataSourceFactory.class);
+    when(mockDataSourceFactory.createDataSource(anyInt())).thenReturn(mock(DataSource.class));
+    HlsPlaylistTracker mockPlaylistTracker = mock(HlsPlaylistTracker.class);
+    when(mockPlaylistTracker.getMasterPlaylist()).thenReturn(masterPlaylist);
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    return new HlsMediaPeriod(
+        mock(HlsExtractorFactory.class),
+        mockPlaylistTracker,
+        mockDataSourceFactory,
+        mock(TransferListener.class),
+        mock(DrmSessionManager.class),
+        new DrmSessionEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+        mock(LoadErrorHandlingPolicy.class),
+        new MediaSourceEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId, /* mediaTimeOffsetMs= */ 0),
+        mock(Allocator.class),
+        mock(CompositeSequenceableLoaderFactory.class),
+        /* allowChunklessPreparation= */ true,
+        HlsMediaSource.METADATA_TYPE_ID3,
+        /* useSessionKeys= */ false);
+  }
+
   private static HlsMasterPlaylist createMasterPlaylist(
       List<Variant> variants,
       List<Rendition> audios,
       List<Rendition> subtitles,
-      Format muxedAudioFormat,
+      @Nullable Format muxedAudioFormat,
       List<Format> muxedCaptionFormats) {
     return new HlsMasterPlaylist(
         "http://baseUri",
@@ -121,7 +175,12 @@ public final class HlsMediaPeriodTest {
   }
 
   private static Variant createMuxedVideoAudioVariant(int peakBitrate) {
+    return createMuxedVideoAudioVariant("https://variant", peakBitrate);
+  }
+
+  private static Variant createMuxedVideoAudioVariant(String url, int peakBitrate) {
     return createVariant(
+        url,
         new Format.Builder()
             .setContainerMimeType(MimeTypes.APPLICATION_M3U8)
             .setCodecs("avc1.100.41,mp4a.40.2")
@@ -147,7 +206,11 @@ public final class HlsMediaPeriodTest {
   }
 
   private static Variant createVariant(Format format) {
-    return new Variant(Uri.parse("https://variant"), format, null, null, null, null);
+    return createVariant("https://variant", format);
+  }
+
+  private static Variant createVariant(String url, Format format) {
+    return new Variant(Uri.parse(url), format, null, null, null, null);
   }
 
   private static Rendition createRendition(Format format, String groupId, String name) {
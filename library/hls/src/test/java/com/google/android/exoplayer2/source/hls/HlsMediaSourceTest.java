@@ -34,6 +34,7 @@ import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
 import com.google.android.exoplayer2.testutil.FakeDataSet;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.ManifestCache;
 import com.google.android.exoplayer2.util.Util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -49,6 +50,15 @@ import org.junit.runner.RunWith;
 @RunWith(AndroidJUnit4.class)
 public class HlsMediaSourceTest {
 
+  private static final String VOD_PLAYLIST =
+      "#EXTM3U\n"
+          + "#EXT-X-TARGETDURATION:4\n"
+          + "#EXT-X-VERSION:3\n"
+          + "#EXT-X-MEDIA-SEQUENCE:0\n"
+          + "#EXTINF:4.00000,\n"
+          + "fileSequence0.ts\n"
+          + "#EXT-X-ENDLIST\n";
+
   // Tests backwards compatibility
   @SuppressWarnings("deprecation")
   @Test
@@ -151,6 +161,37 @@ public class HlsMediaSourceTest {
     assertThat(hlsMediaItem.playbackProperties.streamKeys).containsExactly(mediaItemStreamKey);
   }
 
+  @Test
+  public void factorySetManifestCache_loadsPlaylistThroughCache() throws TimeoutException {
+    String playlistUri = "fake://foo.bar/media0/playlist.m3u8";
+    ManifestCache manifestCache = new ManifestCache();
+    HlsMediaSource.Factory factory =
+        createHlsMediaSourceFactory(playlistUri, VOD_PLAYLIST).setManifestCache(manifestCache);
+
+    prepareAndWaitForTimeline(factory.createMediaSource(MediaItem.fromUri(playlistUri)));
+
+    assertThat(manifestCache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void factorySetManifestCache_withStreamKeys_doesNotUseCache() throws TimeoutException {
+    String playlistUri = "fake://foo.bar/media0/playlist.m3u8";
+    ManifestCache manifestCache = new ManifestCache();
+    HlsMediaSource.Factory factory =
+        createHlsMediaSourceFactory(playlistUri, VOD_PLAYLIST).setManifestCache(manifestCache);
+    MediaItem mediaItem =
+        new MediaItem.Builder()
+            .setUri(playlistUri)
+            .setStreamKeys(
+                Collections.singletonList(
+                    new StreamKey(/* groupIndex= */ 0, /* trackIndex= */ 0)))
+            .build();
+
+    prepareAndWaitForTimeline(factory.createMediaSource(mediaItem));
+
+    assertThat(manifestCache.getMissCount()).isEqualTo(0);
+  }
+
   @Test
   public void loadPlaylist_noTargetLiveOffsetDefined_fallbackToThreeTargetDuration()
       throws TimeoutException, ParserException {
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowSystemClock;
+
+/** Unit tests for {@link PathwaySelector}. */
+@RunWith(AndroidJUnit4.class)
+public final class PathwaySelectorTest {
+
+  private static final String[] PATHWAYS = new String[] {"a", "b", "c"};
+  private static final long EXCLUSION_DURATION_MS = 5000;
+
+  @Test
+  public void selectPathway_withoutMeasurements_keepsCurrentPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(0);
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 1)).isEqualTo(1);
+  }
+
+  @Test
+  public void selectPathway_currentPathwayExcluded_selectsNextPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+
+    pathwaySelector.exclude("a", EXCLUSION_DURATION_MS);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(1);
+    assertThat(pathwaySelector.getNonExcludedPathwayCount(PATHWAYS)).isEqualTo(2);
+  }
+
+  @Test
+  public void selectPathway_currentPathwayExcluded_prefersMeasuredPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    pathwaySelector.onLatencyMeasured("c", /* latencyMs= */ 100);
+
+    pathwaySelector.exclude("a", EXCLUSION_DURATION_MS);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(2);
+  }
+
+  @Test
+  public void selectPathway_otherPathwayWithMuchLowerLatency_switchesPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 200);
+    pathwaySelector.onLatencyMeasured("b", /* latencyMs= */ 180);
+    pathwaySelector.onLatencyMeasured("c", /* latencyMs= */ 50);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(2);
+  }
+
+  @Test
+  public void selectPathway_otherPathwayWithSimilarLatency_keepsCurrentPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 200);
+    pathwaySelector.onLatencyMeasured("b", /* latencyMs= */ 180);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void selectPathway_exclusionExpired_returnsToFasterPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 50);
+    pathwaySelector.onLatencyMeasured("b", /* latencyMs= */ 200);
+    pathwaySelector.exclude("a", EXCLUSION_DURATION_MS);
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(1);
+
+    ShadowSystemClock.advanceBy(Duration.ofMillis(EXCLUSION_DURATION_MS));
+
+    assertThat(pathwaySelector.isExcluded("a")).isFalse();
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 1)).isEqualTo(0);
+  }
+
+  @Test
+  public void selectPathway_afterProbeInterval_probesLeastRecentlyMeasuredPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    pathwaySelector.onLatencyMeasured("b", /* latencyMs= */ 300);
+    pathwaySelector.onLatencyMeasured("c", /* latencyMs= */ 300);
+    for (int i = 0; i < PathwaySelector.PROBE_INTERVAL_MEASUREMENT_COUNT - 3; i++) {
+      pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 100);
+    }
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(0);
+
+    pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 100);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(1);
+    // The probed pathway is kept until it has been measured.
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 1)).isEqualTo(1);
+  }
+
+  @Test
+  public void selectPathway_probedPathwayWithHigherLatency_returnsToPreviousPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    for (int i = 0; i < PathwaySelector.PROBE_INTERVAL_MEASUREMENT_COUNT; i++) {
+      pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 100);
+    }
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(1);
+
+    pathwaySelector.onLatencyMeasured("b", /* latencyMs= */ 300);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 1)).isEqualTo(0);
+    // The next probe is only made after another probe interval.
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void selectPathway_probedPathwayWithLowerLatency_keepsProbedPathway() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+    for (int i = 0; i < PathwaySelector.PROBE_INTERVAL_MEASUREMENT_COUNT; i++) {
+      pathwaySelector.onLatencyMeasured("a", /* latencyMs= */ 100);
+    }
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0)).isEqualTo(1);
+
+    // The probed pathway is selected even though its latency is within the switching margin.
+    pathwaySelector.onLatencyMeasured("b", /* latencyMs= */ 90);
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 1)).isEqualTo(1);
+  }
+
+  @Test
+  public void selectPathway_allPathwaysExcluded_returnsIndexUnset() {
+    PathwaySelector pathwaySelector = new PathwaySelector();
+
+    for (String pathway : PATHWAYS) {
+      pathwaySelector.exclude(pathway, EXCLUSION_DURATION_MS);
+    }
+
+    assertThat(pathwaySelector.selectPathway(PATHWAYS, /* currentIndex= */ 0))
+        .isEqualTo(C.INDEX_UNSET);
+    assertThat(pathwaySelector.getNonExcludedPathwayCount(PATHWAYS)).isEqualTo(0);
+  }
+}
@@ -232,6 +232,29 @@ public class HlsMasterPlaylistParserTest {
           + "8940000/index.m3u8\n"
           + "#EXT-X-I-FRAME-STREAM-INF:BANDWIDTH=1313400,RESOLUTION=1920x1080,CODECS=\"avc1.640028\",URI=\"iframe_1313400/index.m3u8\"\n";
 
+  private static final String PLAYLIST_WITH_PATHWAYS =
+      "#EXTM3U\n"
+          + "#EXT-X-CONTENT-STEERING:SERVER-URI=\"https://example.com/steering\",PATHWAY-ID=\"CDN-B\"\n"
+          + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio-a\",NAME=\"English\",URI=\"https://a.example.com/audio.m3u8\"\n"
+          + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio-b\",NAME=\"English\",URI=\"https://b.example.com/audio.m3u8\"\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,RESOLUTION=640x360,CODECS=\"mp4a.40.2,avc1.640015\",AUDIO=\"audio-a\",PATHWAY-ID=\"CDN-A\"\n"
+          + "https://a.example.com/low.m3u8\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=2560000,RESOLUTION=1280x720,CODECS=\"mp4a.40.2,avc1.64001f\",AUDIO=\"audio-a\",PATHWAY-ID=\"CDN-A\"\n"
+          + "https://a.example.com/high.m3u8\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,RESOLUTION=640x360,CODECS=\"mp4a.40.2,avc1.640015\",AUDIO=\"audio-b\",PATHWAY-ID=\"CDN-B\"\n"
+          + "https://b.example.com/low.m3u8\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=2560000,RESOLUTION=1280x720,CODECS=\"mp4a.40.2,avc1.64001f\",AUDIO=\"audio-b\",PATHWAY-ID=\"CDN-B\"\n"
+          + "https://b.example.com/high.m3u8\n";
+
+  private static final String PLAYLIST_WITH_REDUNDANT_VARIANTS =
+      "#EXTM3U\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,RESOLUTION=640x360\n"
+          + "https://primary.example.com/low.m3u8\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=2560000,RESOLUTION=1280x720\n"
+          + "https://primary.example.com/high.m3u8\n"
+          + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,RESOLUTION=640x360\n"
+          + "https://backup.example.com/low.m3u8\n";
+
   @Test
   public void parseMasterPlaylist_withSimple_success() throws IOException {
     HlsMasterPlaylist masterPlaylist = parseMasterPlaylist(PLAYLIST_URI, PLAYLIST_SIMPLE);
@@ -452,6 +475,47 @@ public class HlsMasterPlaylistParserTest {
         .isEqualTo(C.ROLE_FLAG_TRICK_PLAY);
   }
 
+  @Test
+  public void parseMasterPlaylist_withPathways_parsesPathwayIds() throws IOException {
+    HlsMasterPlaylist playlist = parseMasterPlaylist(PLAYLIST_URI, PLAYLIST_WITH_PATHWAYS);
+
+    assertThat(playlist.contentSteeringPathwayId).isEqualTo("CDN-B");
+    assertThat(playlist.variants).hasSize(4);
+    assertThat(playlist.variants.get(0).pathwayId).isEqualTo("CDN-A");
+    assertThat(playlist.variants.get(1).pathwayId).isEqualTo("CDN-A");
+    assertThat(playlist.variants.get(2).pathwayId).isEqualTo("CDN-B");
+    assertThat(playlist.variants.get(3).pathwayId).isEqualTo("CDN-B");
+  }
+
+  @Test
+  public void getRedundantVariants_withPathways_returnsContentSteeringPathwayFirst()
+      throws IOException {
+    HlsMasterPlaylist playlist = parseMasterPlaylist(PLAYLIST_URI, PLAYLIST_WITH_PATHWAYS);
+    List<Variant> variants = playlist.variants;
+
+    assertThat(playlist.getRedundantVariants(variants.get(0)))
+        .containsExactly(variants.get(2), variants.get(0))
+        .inOrder();
+    assertThat(playlist.getRedundantVariants(variants.get(3)))
+        .containsExactly(variants.get(3), variants.get(1))
+        .inOrder();
+  }
+
+  @Test
+  public void getRedundantVariants_withoutPathways_returnsVariantsInDeclarationOrder()
+      throws IOException {
+    HlsMasterPlaylist playlist =
+        parseMasterPlaylist(PLAYLIST_URI, PLAYLIST_WITH_REDUNDANT_VARIANTS);
+    List<Variant> variants = playlist.variants;
+
+    assertThat(variants.get(0).pathwayId).isNull();
+    assertThat(playlist.contentSteeringPathwayId).isNull();
+    assertThat(playlist.getRedundantVariants(variants.get(2)))
+        .containsExactly(variants.get(0), variants.get(2))
+        .inOrder();
+    assertThat(playlist.getRedundantVariants(variants.get(1))).containsExactly(variants.get(1));
+  }
+
   private static Metadata createExtXStreamInfMetadata(HlsTrackMetadataEntry.VariantInfo... infos) {
     return new Metadata(
         new HlsTrackMetadataEntry(/* groupId= */ null, /* name= */ null, Arrays.asList(infos)));
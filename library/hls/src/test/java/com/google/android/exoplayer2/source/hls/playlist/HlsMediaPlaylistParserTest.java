@@ -635,7 +635,7 @@ public class HlsMediaPlaylistParserTest {
   }
 
   @Test
-  public void parseMediaPlaylist_withUnboundedPreloadHintTypePart_ignoresPreloadPart()
+  public void parseMediaPlaylist_withUnboundedPreloadHintTypePart_hasOpenEndedPreloadPart()
       throws IOException {
     Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
     String playlistString =
@@ -643,16 +643,19 @@ public class HlsMediaPlaylistParserTest {
             + "#EXT-X-TARGETDURATION:4\n"
             + "#EXT-X-VERSION:6\n"
             + "#EXT-X-MEDIA-SEQUENCE:266\n"
-            + "#EXT-X-PART:DURATION=2.00000,URI=\"part267.1.ts\"\n"
-            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"filePart267.2.ts,BYTERANGE-START=0\"\n";
+            + "#EXT-X-PART:DURATION=2.00000,BYTERANGE=1000@0,URI=\"fileSequence267.mp4\"\n"
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,BYTERANGE-START=1000,URI=\"fileSequence267.mp4\"\n";
     InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
 
     HlsMediaPlaylist playlist =
         (HlsMediaPlaylist) new HlsPlaylistParser().parse(playlistUri, inputStream);
 
-    assertThat(playlist.trailingParts).hasSize(1);
-    assertThat(Iterables.getLast(playlist.trailingParts).url).isEqualTo("part267.1.ts");
-    assertThat(Iterables.getLast(playlist.trailingParts).isPreload).isFalse();
+    assertThat(playlist.trailingParts).hasSize(2);
+    HlsMediaPlaylist.Part preloadPart = Iterables.getLast(playlist.trailingParts);
+    assertThat(preloadPart.url).isEqualTo("fileSequence267.mp4");
+    assertThat(preloadPart.byteRangeOffset).isEqualTo(1000);
+    assertThat(preloadPart.byteRangeLength).isEqualTo(C.LENGTH_UNSET);
+    assertThat(preloadPart.isPreload).isTrue();
   }
 
   @Test
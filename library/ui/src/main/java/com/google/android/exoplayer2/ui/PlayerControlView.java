@@ -43,6 +43,7 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ControlDispatcher;
 import com.google.android.exoplayer2.DefaultControlDispatcher;
+import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ExoPlayerLibraryInfo;
 import com.google.android.exoplayer2.PlaybackPreparer;
 import com.google.android.exoplayer2.Player;
@@ -332,6 +333,8 @@ public class PlayerControlView extends FrameLayout {
   private boolean showMultiWindowTimeBar;
   private boolean multiWindowTimeBar;
   private boolean scrubbing;
+  private boolean trickPlayScrubbingEnabled;
+  @Nullable private TrickPlayScrubber trickPlayScrubber;
   private int showTimeoutMs;
   private int timeBarMinUpdateIntervalMs;
   private @RepeatModeUtil.RepeatToggleModes int repeatToggleModes;
@@ -541,6 +544,10 @@ public class PlayerControlView extends FrameLayout {
     if (this.player != null) {
       this.player.removeListener(componentListener);
     }
+    if (trickPlayScrubber != null) {
+      trickPlayScrubber.stop(/* canceled= */ true);
+      trickPlayScrubber = null;
+    }
     this.player = player;
     if (player != null) {
       player.addListener(componentListener);
@@ -806,6 +813,22 @@ public class PlayerControlView extends FrameLayout {
     }
   }
 
+  /**
+   * Sets whether the player should seek while the user is scrubbing the time bar, so that the video
+   * follows the scrubber position. Defaults to {@code false}, in which case the player only seeks
+   * when scrubbing stops.
+   *
+   * <p>While scrubbing, the player is paused, seeks to the closest sync sample of each scrub
+   * position and prefers trick-play video tracks (for example HLS I-frame playlists). A new seek is
+   * only issued once the previous one has been rendered. This is only supported for {@link
+   * ExoPlayer} instances.
+   *
+   * @param trickPlayScrubbingEnabled Whether the player should seek while the user is scrubbing.
+   */
+  public void setTrickPlayScrubbingEnabled(boolean trickPlayScrubbingEnabled) {
+    this.trickPlayScrubbingEnabled = trickPlayScrubbingEnabled;
+  }
+
   /**
    * Sets the minimum interval between time bar position updates.
    *
@@ -1327,6 +1350,13 @@ public class PlayerControlView extends FrameLayout {
       if (positionView != null) {
         positionView.setText(Util.getStringForTime(formatBuilder, formatter, position));
       }
+      if (trickPlayScrubbingEnabled && player instanceof ExoPlayer) {
+        ExoPlayer exoPlayer = (ExoPlayer) player;
+        trickPlayScrubber =
+            new TrickPlayScrubber(
+                exoPlayer, positionMs -> seekToTimeBarPosition(exoPlayer, positionMs));
+        trickPlayScrubber.move(position);
+      }
     }
 
     @Override
@@ -1334,11 +1364,18 @@ public class PlayerControlView extends FrameLayout {
       if (positionView != null) {
         positionView.setText(Util.getStringForTime(formatBuilder, formatter, position));
       }
+      if (trickPlayScrubber != null) {
+        trickPlayScrubber.move(position);
+      }
     }
 
     @Override
     public void onScrubStop(TimeBar timeBar, long position, boolean canceled) {
       scrubbing = false;
+      if (trickPlayScrubber != null) {
+        trickPlayScrubber.stop(canceled);
+        trickPlayScrubber = null;
+      }
       if (!canceled && player != null) {
         seekToTimeBarPosition(player, position);
       }
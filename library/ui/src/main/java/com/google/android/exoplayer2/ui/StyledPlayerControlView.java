@@ -422,6 +422,8 @@ public class StyledPlayerControlView extends FrameLayout {
   private boolean showMultiWindowTimeBar;
   private boolean multiWindowTimeBar;
   private boolean scrubbing;
+  private boolean trickPlayScrubbingEnabled;
+  @Nullable private TrickPlayScrubber trickPlayScrubber;
   private int showTimeoutMs;
   private int timeBarMinUpdateIntervalMs;
   private @RepeatModeUtil.RepeatToggleModes int repeatToggleModes;
@@ -757,6 +759,10 @@ public class StyledPlayerControlView extends FrameLayout {
     if (this.player != null) {
       this.player.removeListener(componentListener);
     }
+    if (trickPlayScrubber != null) {
+      trickPlayScrubber.stop(/* canceled= */ true);
+      trickPlayScrubber = null;
+    }
     this.player = player;
     if (player != null) {
       player.addListener(componentListener);
@@ -1032,6 +1038,22 @@ public class StyledPlayerControlView extends FrameLayout {
     return controlViewLayoutManager.isAnimationEnabled();
   }
 
+  /**
+   * Sets whether the player should seek while the user is scrubbing the time bar, so that the video
+   * follows the scrubber position. Defaults to {@code false}, in which case the player only seeks
+   * when scrubbing stops.
+   *
+   * <p>While scrubbing, the player is paused, seeks to the closest sync sample of each scrub
+   * position and prefers trick-play video tracks (for example HLS I-frame playlists). A new seek is
+   * only issued once the previous one has been rendered. This is only supported for {@link
+   * ExoPlayer} instances.
+   *
+   * @param trickPlayScrubbingEnabled Whether the player should seek while the user is scrubbing.
+   */
+  public void setTrickPlayScrubbingEnabled(boolean trickPlayScrubbingEnabled) {
+    this.trickPlayScrubbingEnabled = trickPlayScrubbingEnabled;
+  }
+
   /**
    * Sets the minimum interval between time bar position updates.
    *
@@ -1790,6 +1812,13 @@ public class StyledPlayerControlView extends FrameLayout {
       if (positionView != null) {
         positionView.setText(Util.getStringForTime(formatBuilder, formatter, position));
       }
+      if (trickPlayScrubbingEnabled && player instanceof ExoPlayer) {
+        ExoPlayer exoPlayer = (ExoPlayer) player;
+        trickPlayScrubber =
+            new TrickPlayScrubber(
+                exoPlayer, positionMs -> seekToTimeBarPosition(exoPlayer, positionMs));
+        trickPlayScrubber.move(position);
+      }
       controlViewLayoutManager.removeHideCallbacks();
     }
 
@@ -1798,11 +1827,18 @@ public class StyledPlayerControlView extends FrameLayout {
       if (positionView != null) {
         positionView.setText(Util.getStringForTime(formatBuilder, formatter, position));
       }
+      if (trickPlayScrubber != null) {
+        trickPlayScrubber.move(position);
+      }
     }
 
     @Override
     public void onScrubStop(TimeBar timeBar, long position, boolean canceled) {
       scrubbing = false;
+      if (trickPlayScrubber != null) {
+        trickPlayScrubber.stop(canceled);
+        trickPlayScrubber = null;
+      }
       if (!canceled && player != null) {
         seekToTimeBarPosition(player, position);
       }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ui;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+
+/**
+ * Seeks an {@link ExoPlayer} while the user is scrubbing, so that the video follows the scrubber
+ * position.
+ *
+ * <p>While scrubbing, the player seeks to the closest sync sample, prefers trick-play video tracks
+ * (for example HLS I-frame playlists) if its track selector is a {@link DefaultTrackSelector}, and
+ * is paused. A new seek is only issued once the previous one has been rendered, with intermediate
+ * scrub positions being dropped. The player's original configuration is restored when scrubbing
+ * stops, keeping any other track selector parameters changed by the app while scrubbing.
+ */
+/* package */ final class TrickPlayScrubber implements Player.EventListener {
+
+  /** Seeks to a time bar position. */
+  public interface SeekDispatcher {
+
+    /**
+     * Seeks to a time bar position.
+     *
+     * @param positionMs The time bar position, in milliseconds.
+     */
+    void seekToTimeBarPosition(long positionMs);
+  }
+
+  private final ExoPlayer player;
+  private final SeekDispatcher seekDispatcher;
+  @Nullable private final DefaultTrackSelector trackSelector;
+  private final SeekParameters seekParametersBeforeScrubbing;
+  private final boolean preferTrickPlayVideoTracksBeforeScrubbing;
+  private final boolean playWhenReadyBeforeScrubbing;
+  private final int windowIndexBeforeScrubbing;
+  private final long positionBeforeScrubbingMs;
+
+  private long pendingPositionMs;
+  private boolean seekInProgress;
+
+  /**
+   * Starts scrubbing.
+   *
+   * @param player The {@link ExoPlayer} to seek.
+   * @param seekDispatcher The {@link SeekDispatcher} used to seek to scrub positions.
+   */
+  public TrickPlayScrubber(ExoPlayer player, SeekDispatcher seekDispatcher) {
+    this.player = player;
+    this.seekDispatcher = seekDispatcher;
+    pendingPositionMs = C.TIME_UNSET;
+    seekParametersBeforeScrubbing = player.getSeekParameters();
+    playWhenReadyBeforeScrubbing = player.getPlayWhenReady();
+    windowIndexBeforeScrubbing = player.getCurrentWindowIndex();
+    positionBeforeScrubbingMs = player.getCurrentPosition();
+    TrackSelector trackSelector = player.getTrackSelector();
+    if (trackSelector instanceof DefaultTrackSelector) {
+      this.trackSelector = (DefaultTrackSelector) trackSelector;
+      preferTrickPlayVideoTracksBeforeScrubbing =
+          this.trackSelector.getParameters().preferTrickPlayVideoTracks;
+      this.trackSelector.setParameters(
+          this.trackSelector.buildUponParameters().setPreferTrickPlayVideoTracks(true));
+    } else {
+      this.trackSelector = null;
+      preferTrickPlayVideoTracksBeforeScrubbing = false;
+    }
+    player.setSeekParameters(SeekParameters.CLOSEST_SYNC);
+    player.setPlayWhenReady(false);
+    player.addListener(this);
+  }
+
+  /**
+   * Updates the scrub position. The player seeks to it immediately if the previous seek has been
+   * rendered, and otherwise as soon as it has.
+   *
+   * @param positionMs The time bar position, in milliseconds.
+   */
+  public void move(long positionMs) {
+    pendingPositionMs = positionMs;
+    maybeSeek();
+  }
+
+  /**
+   * Stops scrubbing, restoring the player's configuration. Must be called before the final seek to
+   * the scrub position, so that it's performed with the original {@link SeekParameters}.
+   *
+   * @param canceled Whether scrubbing was canceled, in which case the player seeks back to its
+   *     position when scrubbing started.
+   */
+  public void stop(boolean canceled) {
+    player.removeListener(this);
+    pendingPositionMs = C.TIME_UNSET;
+    player.setSeekParameters(seekParametersBeforeScrubbing);
+    if (trackSelector != null) {
+      trackSelector.setParameters(
+          trackSelector
+              .buildUponParameters()
+              .setPreferTrickPlayVideoTracks(preferTrickPlayVideoTracksBeforeScrubbing));
+    }
+    if (canceled) {
+      player.seekTo(windowIndexBeforeScrubbing, positionBeforeScrubbingMs);
+    }
+    player.setPlayWhenReady(playWhenReadyBeforeScrubbing);
+  }
+
+  // Player.EventListener implementation.
+
+  @Override
+  public void onPlaybackStateChanged(@Player.State int state) {
+    if (state != Player.STATE_BUFFERING) {
+      seekInProgress = false;
+      maybeSeek();
+    }
+  }
+
+  @Override
+  public void onPlayerError(ExoPlaybackException error) {
+    seekInProgress = false;
+    pendingPositionMs = C.TIME_UNSET;
+  }
+
+  // Internal methods.
+
+  private void maybeSeek() {
+    if (seekInProgress || pendingPositionMs == C.TIME_UNSET) {
+      return;
+    }
+    long positionMs = pendingPositionMs;
+    pendingPositionMs = C.TIME_UNSET;
+    seekDispatcher.seekToTimeBarPosition(positionMs);
+    // Seeking masks the playback state as buffering until the new position can be rendered.
+    seekInProgress = player.getPlaybackState() == Player.STATE_BUFFERING;
+  }
+}
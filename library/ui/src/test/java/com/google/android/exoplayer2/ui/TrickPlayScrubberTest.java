@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ui;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+
+/** Unit tests for {@link TrickPlayScrubber}. */
+@RunWith(AndroidJUnit4.class)
+public final class TrickPlayScrubberTest {
+
+  private ExoPlayer player;
+  private DefaultTrackSelector trackSelector;
+  private List<Long> seekPositionsMs;
+
+  @Before
+  public void setUp() {
+    trackSelector = new DefaultTrackSelector(ApplicationProvider.getApplicationContext());
+    player = mock(ExoPlayer.class);
+    when(player.getTrackSelector()).thenReturn(trackSelector);
+    when(player.getSeekParameters()).thenReturn(SeekParameters.EXACT);
+    when(player.getPlayWhenReady()).thenReturn(true);
+    when(player.getPlaybackState()).thenReturn(Player.STATE_READY);
+    seekPositionsMs = new ArrayList<>();
+  }
+
+  @Test
+  public void move_whileBuffering_seeksToLatestPositionOnceSeekIsRendered() {
+    TrickPlayScrubber scrubber = new TrickPlayScrubber(player, seekPositionsMs::add);
+    when(player.getPlaybackState()).thenReturn(Player.STATE_BUFFERING);
+
+    scrubber.move(/* positionMs= */ 1000);
+    scrubber.move(/* positionMs= */ 2000);
+    scrubber.move(/* positionMs= */ 3000);
+
+    assertThat(seekPositionsMs).containsExactly(1000L);
+
+    when(player.getPlaybackState()).thenReturn(Player.STATE_READY);
+    scrubber.onPlaybackStateChanged(Player.STATE_READY);
+    scrubber.move(/* positionMs= */ 4000);
+
+    assertThat(seekPositionsMs).containsExactly(1000L, 3000L, 4000L).inOrder();
+  }
+
+  @Test
+  public void move_seekPerformedWithClosestSyncAndTrickPlayTracks() {
+    TrickPlayScrubber scrubber = new TrickPlayScrubber(player, seekPositionsMs::add);
+
+    scrubber.move(/* positionMs= */ 1000);
+
+    verify(player).setSeekParameters(SeekParameters.CLOSEST_SYNC);
+    verify(player).setPlayWhenReady(false);
+    assertThat(trackSelector.getParameters().preferTrickPlayVideoTracks).isTrue();
+    assertThat(seekPositionsMs).containsExactly(1000L);
+  }
+
+  @Test
+  public void stop_restoresSeekParametersAndKeepsTrackSelectorParametersChangedWhileScrubbing() {
+    TrickPlayScrubber scrubber = new TrickPlayScrubber(player, seekPositionsMs::add);
+    scrubber.move(/* positionMs= */ 1000);
+    trackSelector.setParameters(trackSelector.buildUponParameters().setMaxVideoBitrate(1000));
+
+    scrubber.stop(/* canceled= */ false);
+
+    InOrder inOrder = inOrder(player);
+    inOrder.verify(player).setSeekParameters(SeekParameters.CLOSEST_SYNC);
+    inOrder.verify(player).setSeekParameters(SeekParameters.EXACT);
+    inOrder.verify(player).setPlayWhenReady(true);
+    assertThat(trackSelector.getParameters().preferTrickPlayVideoTracks).isFalse();
+    assertThat(trackSelector.getParameters().maxVideoBitrate).isEqualTo(1000);
+    verify(player).removeListener(scrubber);
+  }
+
+  @Test
+  public void stop_canceled_seeksBackToStartPosition() {
+    when(player.getCurrentWindowIndex()).thenReturn(1);
+    when(player.getCurrentPosition()).thenReturn(5000L);
+    TrickPlayScrubber scrubber = new TrickPlayScrubber(player, seekPositionsMs::add);
+    scrubber.move(/* positionMs= */ 1000);
+
+    scrubber.stop(/* canceled= */ true);
+
+    verify(player).seekTo(/* windowIndex= */ 1, /* positionMs= */ 5000);
+  }
+}
@@ -37,10 +37,11 @@ public final class FakeAdaptiveDataSet extends FakeDataSet {
    */
   public static final class Factory {
 
-    private static final Random random = new Random();
+    private static final Random defaultRandom = new Random();
 
     private final long chunkDurationUs;
     private final double bitratePercentStdDev;
+    private final Random random;
 
     /**
      * Set up factory for {@link FakeAdaptiveDataSet}s with a chunk duration and the standard
@@ -52,8 +53,24 @@ public final class FakeAdaptiveDataSet extends FakeDataSet {
      *     percent (of the average size).
      */
     public Factory(long chunkDurationUs, double bitratePercentStdDev) {
+      this(chunkDurationUs, bitratePercentStdDev, defaultRandom);
+    }
+
+    /**
+     * Set up factory for {@link FakeAdaptiveDataSet}s with a chunk duration, the standard deviation
+     * of the chunk size and the {@link Random} instance used to generate chunk sizes.
+     *
+     * @param chunkDurationUs The chunk duration to use in microseconds.
+     * @param bitratePercentStdDev The standard deviation used to generate the chunk sizes centered
+     *     around the average bitrate of the {@link Format}s. The standard deviation is given in
+     *     percent (of the average size).
+     * @param random The {@link Random} instance used to generate chunk sizes. Using a seeded
+     *     instance makes the generated chunk sizes reproducible.
+     */
+    public Factory(long chunkDurationUs, double bitratePercentStdDev, Random random) {
       this.chunkDurationUs = chunkDurationUs;
       this.bitratePercentStdDev = bitratePercentStdDev;
+      this.random = random;
     }
 
     /**
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/**
+ * A recorded trace of network conditions, used to replay data transfers in virtual time.
+ *
+ * <p>A trace is a sequence of periods with constant throughput and time to first byte. It repeats
+ * from the start once its end is reached.
+ */
+public final class NetworkTrace {
+
+  /** A period of constant network conditions. */
+  public static final class Period {
+
+    /** The duration of the period, in milliseconds. */
+    public final long durationMs;
+    /** The throughput during the period, in bits per second. May be zero for an outage. */
+    public final long bitrate;
+    /** The time to first byte of requests made during the period, in milliseconds. */
+    public final long timeToFirstByteMs;
+
+    /**
+     * Creates a period.
+     *
+     * @param durationMs The duration of the period, in milliseconds.
+     * @param bitrate The throughput during the period, in bits per second.
+     * @param timeToFirstByteMs The time to first byte of requests made during the period, in
+     *     milliseconds.
+     */
+    public Period(long durationMs, long bitrate, long timeToFirstByteMs) {
+      checkArgument(durationMs > 0 && bitrate >= 0 && timeToFirstByteMs >= 0);
+      this.durationMs = durationMs;
+      this.bitrate = bitrate;
+      this.timeToFirstByteMs = timeToFirstByteMs;
+    }
+  }
+
+  /**
+   * Parses a trace. Each non-empty line that doesn't start with {@code #} describes a {@link
+   * Period} as whitespace separated values: its duration in milliseconds, its throughput in bits
+   * per second and, optionally, its time to first byte in milliseconds, which defaults to zero.
+   *
+   * @param trace The trace to parse.
+   * @return The parsed trace.
+   * @throws IllegalArgumentException If the trace is malformed.
+   */
+  public static NetworkTrace parse(String trace) {
+    ImmutableList.Builder<Period> periods = new ImmutableList.Builder<>();
+    for (String line : trace.split("\n")) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] values = line.split("\\s+");
+      checkArgument(values.length == 2 || values.length == 3);
+      periods.add(
+          new Period(
+              Long.parseLong(values[0]),
+              Long.parseLong(values[1]),
+              values.length == 3 ? Long.parseLong(values[2]) : 0));
+    }
+    return new NetworkTrace(periods.build());
+  }
+
+  private static final int DEFAULT_READ_LENGTH = 16 * 1024;
+
+  private final ImmutableList<Period> periods;
+  private final long[] periodEndTraceTimesMs;
+  private final long durationMs;
+  private final DataSource dataSource;
+  private final DataSpec dataSpec;
+
+  /**
+   * Creates a trace.
+   *
+   * @param periods The {@link Period periods} of the trace. At least one must have a non-zero
+   *     throughput.
+   */
+  public NetworkTrace(List<Period> periods) {
+    this.periods = ImmutableList.copyOf(periods);
+    periodEndTraceTimesMs = new long[periods.size()];
+    long durationMs = 0;
+    boolean hasThroughput = false;
+    for (int i = 0; i < periods.size(); i++) {
+      durationMs += periods.get(i).durationMs;
+      periodEndTraceTimesMs[i] = durationMs;
+      hasThroughput |= periods.get(i).bitrate > 0;
+    }
+    checkArgument(hasThroughput);
+    this.durationMs = durationMs;
+    dataSource = new FakeDataSource();
+    dataSpec = new DataSpec(Uri.parse("https://network.trace"));
+  }
+
+  /** Returns the duration of the trace before it repeats, in milliseconds. */
+  public long getDurationMs() {
+    return durationMs;
+  }
+
+  /** Returns the {@link Period} at the specified time, in milliseconds. */
+  public Period getPeriod(long timeMs) {
+    return periods.get(getPeriodIndex(timeMs % durationMs));
+  }
+
+  /**
+   * Returns the time needed to transfer the specified number of bytes, excluding the time to first
+   * byte, in milliseconds.
+   *
+   * @param startTimeMs The time at which the transfer starts, in milliseconds.
+   * @param bytes The number of bytes to transfer.
+   * @return The transfer duration, in milliseconds.
+   */
+  public double getTransferDurationMs(long startTimeMs, long bytes) {
+    double remainingBits = bytes * 8d;
+    double timeMs = startTimeMs;
+    while (remainingBits > 0) {
+      double traceTimeMs = timeMs % durationMs;
+      int periodIndex = getPeriodIndex(traceTimeMs);
+      Period period = periods.get(periodIndex);
+      double periodEndTimeMs = timeMs - traceTimeMs + periodEndTraceTimesMs[periodIndex];
+      double availableBits = period.bitrate * (periodEndTimeMs - timeMs) / 1000;
+      if (availableBits >= remainingBits) {
+        timeMs += remainingBits * 1000 / period.bitrate;
+        remainingBits = 0;
+      } else {
+        timeMs = periodEndTimeMs;
+        remainingBits -= availableBits;
+      }
+    }
+    return timeMs - startTimeMs;
+  }
+
+  /**
+   * Simulates a network transfer of the specified number of bytes, notifying the listener as a
+   * network {@link DataSource} would and advancing the clock in steps of 16 KiB reads.
+   *
+   * @param transferListener The {@link TransferListener} to notify.
+   * @param clock The {@link FakeClock} to advance.
+   * @param bytes The number of bytes to transfer.
+   */
+  public void simulateTransfer(TransferListener transferListener, FakeClock clock, long bytes) {
+    simulateTransfer(transferListener, clock, bytes, DEFAULT_READ_LENGTH);
+  }
+
+  /**
+   * Simulates a network transfer of the specified number of bytes, notifying the listener as a
+   * network {@link DataSource} would and advancing the clock after each read.
+   *
+   * @param transferListener The {@link TransferListener} to notify.
+   * @param clock The {@link FakeClock} to advance.
+   * @param bytes The number of bytes to transfer.
+   * @param readLength The number of bytes transferred by each read.
+   */
+  public void simulateTransfer(
+      TransferListener transferListener, FakeClock clock, long bytes, int readLength) {
+    transferListener.onTransferInitializing(dataSource, dataSpec, /* isNetwork= */ true);
+    clock.advanceTime(getPeriod(clock.elapsedRealtime()).timeToFirstByteMs);
+    transferListener.onTransferStart(dataSource, dataSpec, /* isNetwork= */ true);
+    long startTimeMs = clock.elapsedRealtime();
+    long bytesTransferred = 0;
+    while (bytesTransferred < bytes) {
+      int readBytes = (int) Math.min(readLength, bytes - bytesTransferred);
+      bytesTransferred += readBytes;
+      // Advance to the end of the read relative to the start, so that rounding errors don't add up.
+      long readEndTimeMs =
+          startTimeMs + (long) Math.ceil(getTransferDurationMs(startTimeMs, bytesTransferred));
+      clock.advanceTime(readEndTimeMs - clock.elapsedRealtime());
+      transferListener.onBytesTransferred(dataSource, dataSpec, /* isNetwork= */ true, readBytes);
+    }
+    transferListener.onTransferEnd(dataSource, dataSpec, /* isNetwork= */ true);
+  }
+
+  private int getPeriodIndex(double traceTimeMs) {
+    for (int i = 0; i < periodEndTraceTimesMs.length; i++) {
+      if (traceTimeMs < periodEndTraceTimesMs[i]) {
+        return i;
+      }
+    }
+    return periodEndTraceTimesMs.length - 1;
+  }
+}
@@ -0,0 +1,906 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkStateNotNull;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.drm.DrmSessionEventListener;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.source.ads.AdPlaybackState;
+import com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates adaptive streaming playbacks over {@link NetworkTrace network traces} in virtual time,
+ * to evaluate the quality of experience resulting from a {@link LoadControl}, an {@link
+ * ExoTrackSelection.Factory track selection} and a {@link BandwidthMeter} without a device.
+ *
+ * <p>Each simulation plays a {@link FakeAdaptiveMediaSource} with an {@link ExoPlayerTestRunner}.
+ * Chunks are loaded at the throughput and latency of the network trace, and time only advances
+ * once all in-flight transfers are waiting for their next bytes to arrive, so that results are
+ * deterministic and independent of the speed of the machine running the simulation. Minutes of
+ * playback are simulated in seconds, and {@link #simulate(List, int)} runs many simulations in
+ * parallel, for example to sweep parameters.
+ *
+ * <p>The quality of experience is measured by the video renderer on the playback thread, and
+ * returned as a {@link Result}.
+ */
+public final class PlaybackSimulator {
+
+  /** Builder for {@link PlaybackSimulator} instances. */
+  public static final class Builder {
+
+    private final Context context;
+
+    private Format[] formats;
+    private long mediaDurationMs;
+    private long chunkDurationMs;
+    private double bitratePercentStdDev;
+    private Supplier<LoadControl> loadControlProvider;
+    private Function<Clock, ExoTrackSelection.Factory> trackSelectionFactoryProvider;
+    private Function<Clock, BandwidthMeter> bandwidthMeterProvider;
+    private long timeoutMs;
+
+    /**
+     * Creates a builder.
+     *
+     * @param context A {@link Context}.
+     */
+    public Builder(Context context) {
+      this.context = context;
+      formats =
+          new Format[] {
+            createVideoFormat(/* bitrate= */ 400_000, /* width= */ 320, /* height= */ 180),
+            createVideoFormat(/* bitrate= */ 1_000_000, /* width= */ 640, /* height= */ 360),
+            createVideoFormat(/* bitrate= */ 2_500_000, /* width= */ 1280, /* height= */ 720),
+            createVideoFormat(/* bitrate= */ 5_000_000, /* width= */ 1920, /* height= */ 1080)
+          };
+      mediaDurationMs = DEFAULT_MEDIA_DURATION_MS;
+      chunkDurationMs = DEFAULT_CHUNK_DURATION_MS;
+      loadControlProvider = DefaultLoadControl::new;
+      trackSelectionFactoryProvider =
+          clock ->
+              new AdaptiveTrackSelection.Factory(
+                  AdaptiveTrackSelection.DEFAULT_MIN_DURATION_FOR_QUALITY_INCREASE_MS,
+                  AdaptiveTrackSelection.DEFAULT_MAX_DURATION_FOR_QUALITY_DECREASE_MS,
+                  AdaptiveTrackSelection.DEFAULT_MIN_DURATION_TO_RETAIN_AFTER_DISCARD_MS,
+                  AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+                  AdaptiveTrackSelection
+                      .DEFAULT_BUFFERED_FRACTION_TO_LIVE_EDGE_FOR_QUALITY_INCREASE,
+                  clock);
+      bandwidthMeterProvider =
+          clock -> new DefaultBandwidthMeter.Builder(context).setClock(clock).build();
+      timeoutMs = DEFAULT_TIMEOUT_MS;
+    }
+
+    /**
+     * Sets the video formats of the simulated media. The default is a ladder of four H.264 formats
+     * from 400 kbps to 5 Mbps.
+     *
+     * @param formats The video {@link Format formats}, which must have the same sample MIME type
+     *     and a {@link Format#bitrate}.
+     * @return This builder.
+     */
+    public Builder setFormats(Format... formats) {
+      checkArgument(formats.length > 0);
+      this.formats = formats;
+      return this;
+    }
+
+    /**
+     * Sets the duration of the simulated media. The default is {@link #DEFAULT_MEDIA_DURATION_MS}.
+     *
+     * @param mediaDurationMs The duration of the media, in milliseconds.
+     * @return This builder.
+     */
+    public Builder setMediaDurationMs(long mediaDurationMs) {
+      checkArgument(mediaDurationMs > 0);
+      this.mediaDurationMs = mediaDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the duration of the chunks of the simulated media. The default is {@link
+     * #DEFAULT_CHUNK_DURATION_MS}.
+     *
+     * @param chunkDurationMs The duration of each chunk, in milliseconds.
+     * @return This builder.
+     */
+    public Builder setChunkDurationMs(long chunkDurationMs) {
+      checkArgument(chunkDurationMs > 0);
+      this.chunkDurationMs = chunkDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the standard deviation of the chunk sizes, in percent of the average chunk size of each
+     * format. Chunk sizes are generated with a fixed seed, so they're the same in each simulation.
+     * The default is 0, meaning that all chunks of a format have the same size.
+     *
+     * @param bitratePercentStdDev The standard deviation of the chunk sizes, in percent.
+     * @return This builder.
+     */
+    public Builder setBitratePercentStdDev(double bitratePercentStdDev) {
+      checkArgument(bitratePercentStdDev >= 0);
+      this.bitratePercentStdDev = bitratePercentStdDev;
+      return this;
+    }
+
+    /**
+     * Sets the provider of the {@link LoadControl} of each simulation. The default provides a
+     * {@link DefaultLoadControl}.
+     *
+     * @param loadControlProvider A {@link Supplier} of a new {@link LoadControl} for each
+     *     simulation.
+     * @return This builder.
+     */
+    public Builder setLoadControlProvider(Supplier<LoadControl> loadControlProvider) {
+      this.loadControlProvider = loadControlProvider;
+      return this;
+    }
+
+    /**
+     * Sets the provider of the {@link ExoTrackSelection.Factory} of each simulation. The default
+     * provides an {@link AdaptiveTrackSelection.Factory} with default parameters.
+     *
+     * @param trackSelectionFactoryProvider A {@link Function} returning the {@link
+     *     ExoTrackSelection.Factory} for a simulation, given the {@link Clock} of the simulation.
+     * @return This builder.
+     */
+    public Builder setTrackSelectionFactoryProvider(
+        Function<Clock, ExoTrackSelection.Factory> trackSelectionFactoryProvider) {
+      this.trackSelectionFactoryProvider = trackSelectionFactoryProvider;
+      return this;
+    }
+
+    /**
+     * Sets the provider of the {@link BandwidthMeter} of each simulation. The default provides a
+     * {@link DefaultBandwidthMeter} with default parameters.
+     *
+     * @param bandwidthMeterProvider A {@link Function} returning a new {@link BandwidthMeter} for a
+     *     simulation, given the {@link Clock} of the simulation.
+     * @return This builder.
+     */
+    public Builder setBandwidthMeterProvider(
+        Function<Clock, BandwidthMeter> bandwidthMeterProvider) {
+      this.bandwidthMeterProvider = bandwidthMeterProvider;
+      return this;
+    }
+
+    /**
+     * Sets the maximum real time that each simulation may take. The default is {@link
+     * #DEFAULT_TIMEOUT_MS}.
+     *
+     * @param timeoutMs The timeout of each simulation, in milliseconds.
+     * @return This builder.
+     */
+    public Builder setTimeoutMs(long timeoutMs) {
+      this.timeoutMs = timeoutMs;
+      return this;
+    }
+
+    /** Builds a {@link PlaybackSimulator}. */
+    public PlaybackSimulator build() {
+      return new PlaybackSimulator(this);
+    }
+  }
+
+  /** The quality of experience of a simulated playback. */
+  public static final class Result {
+
+    /** The time from the start of the simulation until playback started, in milliseconds. */
+    public final long startupTimeMs;
+    /**
+     * The time from the start of playback until its end, including rebuffering, in milliseconds.
+     */
+    public final long playbackDurationMs;
+    /** The total time spent rebuffering after playback started, in milliseconds. */
+    public final long rebufferingTimeMs;
+    /** The number of times playback rebuffered. */
+    public final int rebufferCount;
+    /** The average bitrate of the played chunks, in bits per second. */
+    public final long averageBitrate;
+    /** The number of format switches between consecutively played chunks. */
+    public final int switchCount;
+
+    /**
+     * Creates an instance.
+     *
+     * @param startupTimeMs See {@link #startupTimeMs}.
+     * @param playbackDurationMs See {@link #playbackDurationMs}.
+     * @param rebufferingTimeMs See {@link #rebufferingTimeMs}.
+     * @param rebufferCount See {@link #rebufferCount}.
+     * @param averageBitrate See {@link #averageBitrate}.
+     * @param switchCount See {@link #switchCount}.
+     */
+    public Result(
+        long startupTimeMs,
+        long playbackDurationMs,
+        long rebufferingTimeMs,
+        int rebufferCount,
+        long averageBitrate,
+        int switchCount) {
+      this.startupTimeMs = startupTimeMs;
+      this.playbackDurationMs = playbackDurationMs;
+      this.rebufferingTimeMs = rebufferingTimeMs;
+      this.rebufferCount = rebufferCount;
+      this.averageBitrate = averageBitrate;
+      this.switchCount = switchCount;
+    }
+
+    /** Returns the fraction of the playback duration spent rebuffering. */
+    public float getRebufferRatio() {
+      return playbackDurationMs == 0 ? 0f : (float) rebufferingTimeMs / playbackDurationMs;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Result result = (Result) o;
+      return startupTimeMs == result.startupTimeMs
+          && playbackDurationMs == result.playbackDurationMs
+          && rebufferingTimeMs == result.rebufferingTimeMs
+          && rebufferCount == result.rebufferCount
+          && averageBitrate == result.averageBitrate
+          && switchCount == result.switchCount;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) startupTimeMs;
+      result = 31 * result + (int) playbackDurationMs;
+      result = 31 * result + (int) rebufferingTimeMs;
+      result = 31 * result + rebufferCount;
+      result = 31 * result + (int) averageBitrate;
+      result = 31 * result + switchCount;
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Result{startupTimeMs="
+          + startupTimeMs
+          + ", playbackDurationMs="
+          + playbackDurationMs
+          + ", rebufferingTimeMs="
+          + rebufferingTimeMs
+          + ", rebufferCount="
+          + rebufferCount
+          + ", averageBitrate="
+          + averageBitrate
+          + ", switchCount="
+          + switchCount
+          + "}";
+    }
+  }
+
+  /** The default duration of the simulated media, in milliseconds. */
+  public static final long DEFAULT_MEDIA_DURATION_MS = 10 * 60 * 1000;
+  /** The default duration of the chunks of the simulated media, in milliseconds. */
+  public static final long DEFAULT_CHUNK_DURATION_MS = 4_000;
+  /** The default maximum real time that each simulation may take, in milliseconds. */
+  public static final long DEFAULT_TIMEOUT_MS = 5 * 60 * 1000;
+
+  private static final long CHUNK_SIZE_RANDOM_SEED = 0;
+
+  private final Context context;
+  private final Format[] formats;
+  private final long mediaDurationMs;
+  private final long chunkDurationMs;
+  private final double bitratePercentStdDev;
+  private final Supplier<LoadControl> loadControlProvider;
+  private final Function<Clock, ExoTrackSelection.Factory> trackSelectionFactoryProvider;
+  private final Function<Clock, BandwidthMeter> bandwidthMeterProvider;
+  private final long timeoutMs;
+
+  private PlaybackSimulator(Builder builder) {
+    context = builder.context;
+    formats = builder.formats;
+    mediaDurationMs = builder.mediaDurationMs;
+    chunkDurationMs = builder.chunkDurationMs;
+    bitratePercentStdDev = builder.bitratePercentStdDev;
+    loadControlProvider = builder.loadControlProvider;
+    trackSelectionFactoryProvider = builder.trackSelectionFactoryProvider;
+    bandwidthMeterProvider = builder.bandwidthMeterProvider;
+    timeoutMs = builder.timeoutMs;
+  }
+
+  /**
+   * Simulates a playback over a network trace, blocking until playback has ended.
+   *
+   * @param networkTrace The {@link NetworkTrace} over which media is loaded.
+   * @return The {@link Result} of the simulation.
+   * @throws Exception If playback failed or timed out.
+   */
+  public Result simulate(NetworkTrace networkTrace) throws Exception {
+    SimulationClock clock = new SimulationClock();
+    SimulationVideoRenderer renderer =
+        new SimulationVideoRenderer(clock, chunkDurationMs * 1000);
+    DefaultTrackSelector trackSelector =
+        new DefaultTrackSelector(
+            DefaultTrackSelector.Parameters.DEFAULT_WITHOUT_CONTEXT,
+            checkStateNotNull(trackSelectionFactoryProvider.apply(clock)));
+    long mediaDurationUs = mediaDurationMs * 1000;
+    FakeTimeline timeline =
+        new FakeTimeline(
+            new TimelineWindowDefinition(
+                /* periodCount= */ 1,
+                /* id= */ 0,
+                /* isSeekable= */ true,
+                /* isDynamic= */ false,
+                /* isLive= */ false,
+                /* isPlaceholder= */ false,
+                mediaDurationUs,
+                /* defaultPositionUs= */ 0,
+                /* windowOffsetInFirstPeriodUs= */ 0,
+                AdPlaybackState.NONE));
+    FakeAdaptiveDataSet.Factory dataSetFactory =
+        new FakeAdaptiveDataSet.Factory(
+            chunkDurationMs * 1000, bitratePercentStdDev, new Random(CHUNK_SIZE_RANDOM_SEED));
+    SimulationMediaSource mediaSource =
+        new SimulationMediaSource(
+            timeline,
+            new TrackGroupArray(new TrackGroup(formats)),
+            dataSetFactory,
+            networkTrace,
+            clock);
+
+    new ExoPlayerTestRunner.Builder(context)
+        .setClock(clock)
+        .setLoadControl(checkStateNotNull(loadControlProvider.get()))
+        .setBandwidthMeter(checkStateNotNull(bandwidthMeterProvider.apply(clock)))
+        .setTrackSelector(trackSelector)
+        .setRenderers(renderer)
+        .setMediaSources(mediaSource)
+        .build()
+        .start()
+        .blockUntilEnded(timeoutMs);
+    return checkStateNotNull(renderer.result);
+  }
+
+  /**
+   * Simulates playbacks over network traces in parallel, using as many threads as there are
+   * available processors, blocking until all of them have ended.
+   *
+   * @param networkTraces The {@link NetworkTrace network traces} to simulate.
+   * @return The {@link Result results} of the simulations, in the order of the network traces.
+   * @throws Exception If any of the simulations failed or timed out.
+   */
+  public List<Result> simulate(List<NetworkTrace> networkTraces) throws Exception {
+    return simulate(networkTraces, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Simulates playbacks over network traces in parallel, blocking until all of them have ended.
+   *
+   * @param networkTraces The {@link NetworkTrace network traces} to simulate.
+   * @param parallelism The maximum number of simulations to run at the same time.
+   * @return The {@link Result results} of the simulations, in the order of the network traces.
+   * @throws Exception If any of the simulations failed or timed out.
+   */
+  public List<Result> simulate(List<NetworkTrace> networkTraces, int parallelism)
+      throws Exception {
+    checkArgument(parallelism > 0);
+    ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+    try {
+      List<Future<Result>> futures = new ArrayList<>();
+      for (NetworkTrace networkTrace : networkTraces) {
+        futures.add(executorService.submit(() -> simulate(networkTrace)));
+      }
+      List<Result> results = new ArrayList<>();
+      for (Future<Result> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof Exception ? (Exception) cause : e;
+        }
+      }
+      return Collections.unmodifiableList(results);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static Format createVideoFormat(int bitrate, int width, int height) {
+    return new Format.Builder()
+        .setSampleMimeType(MimeTypes.VIDEO_H264)
+        .setAverageBitrate(bitrate)
+        .setWidth(width)
+        .setHeight(height)
+        .build();
+  }
+
+  /**
+   * A {@link FakeClock} that advances automatically when the playback thread schedules work, but
+   * only once all in-flight transfers are waiting for their next bytes to arrive.
+   *
+   * <p>A transfer is in flight from when its load is started on the playback thread until its
+   * completion or cancelation has been handled on the playback thread. While the loading thread of
+   * a transfer is running, or its completion is pending, the playback thread does its work again at
+   * the current time instead of advancing, so that the virtual time of all events is independent
+   * of thread scheduling.
+   */
+  private static final class SimulationClock extends FakeClock {
+
+    /** The maximum real time to wait for a running transfer before doing work again. */
+    private static final long MAX_TRANSFER_WAIT_TIME_MS = 10;
+
+    private final List<Long> transferWakeUpTimesMs;
+
+    @Nullable private HandlerWrapper playbackHandler;
+    private int inFlightTransferCount;
+    private int endedTransferCount;
+
+    public SimulationClock() {
+      super(/* initialTimeMs= */ 0);
+      transferWakeUpTimesMs = new ArrayList<>();
+    }
+
+    /** Called on the playback thread when the load of a chunk has started. */
+    public synchronized void onTransferRequested() {
+      inFlightTransferCount++;
+    }
+
+    /** Called on the loading thread when the data source of a transfer has been closed. */
+    public synchronized void onTransferEnded() {
+      endedTransferCount++;
+      notifyAll();
+    }
+
+    /**
+     * Called on the playback thread when the load of a chunk has completed or was canceled, which
+     * may happen before its data source was opened.
+     */
+    public synchronized void onTransferConcluded() {
+      inFlightTransferCount--;
+      endedTransferCount = Math.min(endedTransferCount, inFlightTransferCount);
+    }
+
+    /**
+     * Blocks the loading thread of a transfer until the specified time.
+     *
+     * @param timeMs The time until which to block, in milliseconds.
+     * @return Whether the time was reached. False if the thread was interrupted, for example
+     *     because the load was canceled, in which case its interrupted status is set.
+     */
+    public synchronized boolean sleepUntil(long timeMs) {
+      if (timeMs <= elapsedRealtime()) {
+        return !Thread.currentThread().isInterrupted();
+      }
+      Long wakeUpTimeMs = timeMs;
+      transferWakeUpTimesMs.add(wakeUpTimeMs);
+      notifyAll();
+      while (elapsedRealtime() < timeMs) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          transferWakeUpTimesMs.remove(wakeUpTimeMs);
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    protected synchronized boolean addHandlerMessageAtTime(
+        HandlerWrapper handler, int message, long timeMs) {
+      if (playbackHandler == null) {
+        playbackHandler = handler;
+      }
+      if (handler != playbackHandler) {
+        return super.addHandlerMessageAtTime(handler, message, timeMs);
+      }
+      while (true) {
+        long nowMs = elapsedRealtime();
+        if (timeMs <= nowMs) {
+          return super.addHandlerMessageAtTime(handler, message, timeMs);
+        }
+        if (inFlightTransferCount > transferWakeUpTimesMs.size()) {
+          // A transfer is starting, running or its conclusion is pending. Wait for the transfer to
+          // block or end, and do the work again at the current time if it's still in flight.
+          if (endedTransferCount == 0) {
+            try {
+              wait(MAX_TRANSFER_WAIT_TIME_MS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          if (inFlightTransferCount > transferWakeUpTimesMs.size()) {
+            return handler.sendEmptyMessage(message);
+          }
+          continue;
+        }
+        long nextTimeMs = timeMs;
+        for (int i = 0; i < transferWakeUpTimesMs.size(); i++) {
+          nextTimeMs = Math.min(nextTimeMs, transferWakeUpTimesMs.get(i));
+        }
+        if (nextTimeMs == timeMs) {
+          boolean result = super.addHandlerMessageAtTime(handler, message, timeMs);
+          advanceTimeAndWakeUpTransfers(timeMs - nowMs);
+          return result;
+        }
+        advanceTimeAndWakeUpTransfers(nextTimeMs - nowMs);
+      }
+    }
+
+    private void advanceTimeAndWakeUpTransfers(long timeDiffMs) {
+      advanceTime(timeDiffMs);
+      long nowMs = elapsedRealtime();
+      for (int i = transferWakeUpTimesMs.size() - 1; i >= 0; i--) {
+        if (transferWakeUpTimesMs.get(i) <= nowMs) {
+          transferWakeUpTimesMs.remove(i);
+        }
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * A {@link FakeAdaptiveMediaSource} that reports the loads of its chunks to the {@link
+   * SimulationClock}, and whose transfers are delivered at the time to first byte and throughput of
+   * a {@link NetworkTrace}.
+   */
+  private static final class SimulationMediaSource extends FakeAdaptiveMediaSource
+      implements MediaSourceEventListener {
+
+    private final NetworkTrace networkTrace;
+    private final SimulationClock clock;
+
+    public SimulationMediaSource(
+        Timeline timeline,
+        TrackGroupArray trackGroupArray,
+        FakeAdaptiveDataSet.Factory dataSetFactory,
+        NetworkTrace networkTrace,
+        SimulationClock clock) {
+      super(
+          timeline,
+          trackGroupArray,
+          new FakeChunkSource.Factory(
+              dataSetFactory, new FakeDataSource.Factory().setIsNetwork(true)));
+      this.networkTrace = networkTrace;
+      this.clock = clock;
+    }
+
+    @Override
+    public synchronized void prepareSourceInternal(
+        @Nullable TransferListener mediaTransferListener) {
+      super.prepareSourceInternal(mediaTransferListener);
+      // Listen on the playback thread, so that loads are reported to the clock before it can
+      // advance.
+      addEventListener(Util.createHandlerForCurrentLooper(), /* eventListener= */ this);
+    }
+
+    @Override
+    protected MediaPeriod createMediaPeriod(
+        MediaPeriodId id,
+        TrackGroupArray trackGroupArray,
+        Allocator allocator,
+        MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher,
+        DrmSessionManager drmSessionManager,
+        DrmSessionEventListener.EventDispatcher drmEventDispatcher,
+        @Nullable TransferListener transferListener) {
+      return super.createMediaPeriod(
+          id,
+          trackGroupArray,
+          allocator,
+          mediaSourceEventDispatcher,
+          drmSessionManager,
+          drmEventDispatcher,
+          new SimulationTransferListener(transferListener, networkTrace, clock));
+    }
+
+    @Override
+    protected void releaseSourceInternal() {
+      removeEventListener(/* eventListener= */ this);
+      super.releaseSourceInternal();
+    }
+
+    // MediaSourceEventListener implementation.
+
+    @Override
+    public void onLoadStarted(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData) {
+      if (mediaLoadData.dataType == C.DATA_TYPE_MEDIA) {
+        clock.onTransferRequested();
+      }
+    }
+
+    @Override
+    public void onLoadCompleted(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData) {
+      if (mediaLoadData.dataType == C.DATA_TYPE_MEDIA) {
+        clock.onTransferConcluded();
+      }
+    }
+
+    @Override
+    public void onLoadCanceled(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData) {
+      if (mediaLoadData.dataType == C.DATA_TYPE_MEDIA) {
+        clock.onTransferConcluded();
+      }
+    }
+
+    @Override
+    public void onLoadError(
+        int windowIndex,
+        @Nullable MediaPeriodId mediaPeriodId,
+        LoadEventInfo loadEventInfo,
+        MediaLoadData mediaLoadData,
+        IOException error,
+        boolean wasCanceled) {
+      // Loads that aren't canceled are retried without being started again.
+      if (mediaLoadData.dataType == C.DATA_TYPE_MEDIA && wasCanceled) {
+        clock.onTransferConcluded();
+      }
+    }
+  }
+
+  /**
+   * A {@link TransferListener} that blocks the loading thread of each transfer until its data is
+   * delivered according to a {@link NetworkTrace}, before forwarding it to the {@link
+   * TransferListener} of the player.
+   *
+   * <p>The state of each transfer is tracked by its {@link DataSource}.
+   */
+  private static final class SimulationTransferListener implements TransferListener {
+
+    @Nullable private final TransferListener playerTransferListener;
+    private final NetworkTrace networkTrace;
+    private final SimulationClock clock;
+    private final Map<DataSource, TransferState> transferStates;
+
+    public SimulationTransferListener(
+        @Nullable TransferListener playerTransferListener,
+        NetworkTrace networkTrace,
+        SimulationClock clock) {
+      this.playerTransferListener = playerTransferListener;
+      this.networkTrace = networkTrace;
+      this.clock = clock;
+      transferStates = new HashMap<>();
+    }
+
+    @Override
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      if (playerTransferListener != null) {
+        playerTransferListener.onTransferInitializing(source, dataSpec, isNetwork);
+      }
+      long nowMs = clock.elapsedRealtime();
+      clock.sleepUntil(nowMs + networkTrace.getPeriod(nowMs).timeToFirstByteMs);
+    }
+
+    @Override
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      synchronized (transferStates) {
+        transferStates.put(source, new TransferState(clock.elapsedRealtime()));
+      }
+      if (playerTransferListener != null) {
+        playerTransferListener.onTransferStart(source, dataSpec, isNetwork);
+      }
+    }
+
+    @Override
+    public void onBytesTransferred(
+        DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+      TransferState transferState;
+      synchronized (transferStates) {
+        transferState = checkStateNotNull(transferStates.get(source));
+      }
+      transferState.bytesTransferred += bytesTransferred;
+      // Deliver the data at the end of its transfer relative to the start, so that rounding errors
+      // don't add up.
+      double transferDurationMs =
+          networkTrace.getTransferDurationMs(
+              transferState.startTimeMs, transferState.bytesTransferred);
+      if (!clock.sleepUntil(transferState.startTimeMs + (long) Math.ceil(transferDurationMs))) {
+        // The load was canceled, and will fail on its next read.
+        return;
+      }
+      if (playerTransferListener != null) {
+        playerTransferListener.onBytesTransferred(source, dataSpec, isNetwork, bytesTransferred);
+      }
+    }
+
+    @Override
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      synchronized (transferStates) {
+        transferStates.remove(source);
+      }
+      if (playerTransferListener != null) {
+        playerTransferListener.onTransferEnd(source, dataSpec, isNetwork);
+      }
+      clock.onTransferEnded();
+    }
+
+    private static final class TransferState {
+
+      public final long startTimeMs;
+
+      public long bytesTransferred;
+
+      public TransferState(long startTimeMs) {
+        this.startTimeMs = startTimeMs;
+      }
+    }
+  }
+
+  /**
+   * A {@link FakeRenderer} for video that measures the quality of experience of the playback.
+   *
+   * <p>Each chunk consists of a single sample, so the renderer is ready until the end of the chunk
+   * of the last sample it read, rather than only until the start of that chunk.
+   */
+  private static final class SimulationVideoRenderer extends FakeRenderer {
+
+    private final Clock clock;
+    private final long chunkDurationUs;
+
+    @Nullable private volatile Result result;
+
+    @Nullable private Format format;
+    @Nullable private Format lastPlayedFormat;
+    private long playbackPositionUs;
+    private long lastSampleTimeUs;
+    private long startupTimeMs;
+    private long rebufferStartTimeMs;
+    private long rebufferingTimeMs;
+    private int rebufferCount;
+    private long playedBitrateSum;
+    private int playedChunkCount;
+    private int switchCount;
+
+    public SimulationVideoRenderer(Clock clock, long chunkDurationUs) {
+      super(C.TRACK_TYPE_VIDEO);
+      this.clock = clock;
+      this.chunkDurationUs = chunkDurationUs;
+      lastSampleTimeUs = C.TIME_UNSET;
+      startupTimeMs = C.TIME_UNSET;
+      rebufferStartTimeMs = C.TIME_UNSET;
+    }
+
+    @Override
+    public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+      playbackPositionUs = positionUs;
+      super.render(positionUs, elapsedRealtimeUs);
+      if (isEnded() && result == null && startupTimeMs != C.TIME_UNSET) {
+        result =
+            new Result(
+                startupTimeMs,
+                /* playbackDurationMs= */ clock.elapsedRealtime() - startupTimeMs,
+                rebufferingTimeMs,
+                rebufferCount,
+                /* averageBitrate= */ playedChunkCount == 0
+                    ? 0
+                    : playedBitrateSum / playedChunkCount,
+                switchCount);
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return super.isReady()
+          || (lastSampleTimeUs != C.TIME_UNSET
+              && playbackPositionUs < lastSampleTimeUs + chunkDurationUs);
+    }
+
+    @Override
+    protected void onPositionReset(long positionUs, boolean joining)
+        throws ExoPlaybackException {
+      super.onPositionReset(positionUs, joining);
+      playbackPositionUs = positionUs;
+      lastSampleTimeUs = C.TIME_UNSET;
+    }
+
+    @Override
+    protected void onStarted() throws ExoPlaybackException {
+      super.onStarted();
+      long nowMs = clock.elapsedRealtime();
+      if (startupTimeMs == C.TIME_UNSET) {
+        startupTimeMs = nowMs;
+      } else if (rebufferStartTimeMs != C.TIME_UNSET) {
+        rebufferingTimeMs += nowMs - rebufferStartTimeMs;
+        rebufferCount++;
+      }
+      rebufferStartTimeMs = C.TIME_UNSET;
+    }
+
+    @Override
+    protected void onStopped() {
+      super.onStopped();
+      if (!isEnded()) {
+        rebufferStartTimeMs = clock.elapsedRealtime();
+      }
+    }
+
+    @Override
+    protected void onFormatChanged(Format format) {
+      this.format = format;
+    }
+
+    @Override
+    protected boolean shouldProcessBuffer(long bufferTimeUs, long playbackPositionUs) {
+      boolean shouldProcess = super.shouldProcessBuffer(bufferTimeUs, playbackPositionUs);
+      if (shouldProcess) {
+        Format format = checkStateNotNull(this.format);
+        if (lastPlayedFormat != null && format != lastPlayedFormat) {
+          switchCount++;
+        }
+        lastPlayedFormat = format;
+        playedBitrateSum += format.bitrate;
+        playedChunkCount++;
+        lastSampleTimeUs = bufferTimeUs;
+      }
+      return shouldProcess;
+    }
+  }
+}
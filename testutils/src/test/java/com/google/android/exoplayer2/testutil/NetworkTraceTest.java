@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link NetworkTrace}. */
+@RunWith(AndroidJUnit4.class)
+public final class NetworkTraceTest {
+
+  @Test
+  public void parse_readsPeriodsAndSkipsComments() {
+    NetworkTrace networkTrace =
+        NetworkTrace.parse("# duration bitrate ttfb\n1000 8000000 50\n\n500 0\n");
+
+    assertThat(networkTrace.getDurationMs()).isEqualTo(1500);
+    assertThat(networkTrace.getPeriod(999).bitrate).isEqualTo(8_000_000);
+    assertThat(networkTrace.getPeriod(999).timeToFirstByteMs).isEqualTo(50);
+    assertThat(networkTrace.getPeriod(1000).bitrate).isEqualTo(0);
+    assertThat(networkTrace.getPeriod(1000).timeToFirstByteMs).isEqualTo(0);
+    // The trace repeats.
+    assertThat(networkTrace.getPeriod(1500).bitrate).isEqualTo(8_000_000);
+  }
+
+  @Test
+  public void getTransferDurationMs_acrossPeriods_accountsForEachPeriodThroughput() {
+    // 1 second at 8 Mbps, a 1 second outage, then 1 second at 4 Mbps.
+    NetworkTrace networkTrace = NetworkTrace.parse("1000 8000000\n1000 0\n1000 4000000");
+
+    // 500 kB at 8 Mbps, 0 bytes during the outage, then 250 kB at 4 Mbps.
+    assertThat(networkTrace.getTransferDurationMs(/* startTimeMs= */ 500, /* bytes= */ 750_000))
+        .isWithin(1e-6)
+        .of(2000);
+  }
+
+  @Test
+  public void simulateTransfer_advancesClockByTimeToFirstByteAndTransferDuration() {
+    NetworkTrace networkTrace = NetworkTrace.parse("10000 8000000 100");
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    ByteCountingTransferListener transferListener = new ByteCountingTransferListener();
+
+    networkTrace.simulateTransfer(transferListener, clock, /* bytes= */ 100_000);
+
+    assertThat(transferListener.bytesTransferred).isEqualTo(100_000);
+    assertThat(clock.elapsedRealtime()).isEqualTo(200);
+  }
+
+  private static final class ByteCountingTransferListener implements TransferListener {
+
+    public long bytesTransferred;
+
+    @Override
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+    @Override
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+    @Override
+    public void onBytesTransferred(
+        DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+      this.bytesTransferred += bytesTransferred;
+    }
+
+    @Override
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.PlaybackSimulator.Result;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PlaybackSimulator}. */
+@RunWith(AndroidJUnit4.class)
+public final class PlaybackSimulatorTest {
+
+  private static final NetworkTrace FAST_NETWORK_TRACE = NetworkTrace.parse("60000 20000000 20");
+  private static final NetworkTrace OUTAGE_NETWORK_TRACE =
+      NetworkTrace.parse("8000 4000000 50\n10000 0\n60000 4000000 50");
+
+  private PlaybackSimulator playbackSimulator;
+
+  @Before
+  public void setUp() {
+    playbackSimulator =
+        new PlaybackSimulator.Builder(ApplicationProvider.getApplicationContext())
+            .setMediaDurationMs(30_000)
+            .setChunkDurationMs(2_000)
+            .build();
+  }
+
+  @Test
+  public void simulate_fastNetwork_playsWithoutRebuffering() throws Exception {
+    Result result = playbackSimulator.simulate(FAST_NETWORK_TRACE);
+
+    assertThat(result.startupTimeMs).isGreaterThan(0);
+    assertThat(result.rebufferCount).isEqualTo(0);
+    assertThat(result.rebufferingTimeMs).isEqualTo(0);
+    assertThat(result.averageBitrate).isAtLeast(1_000_000);
+    assertThat(result.playbackDurationMs).isAtLeast(30_000);
+  }
+
+  @Test
+  public void simulate_networkOutage_rebuffers() throws Exception {
+    Result result = playbackSimulator.simulate(OUTAGE_NETWORK_TRACE);
+
+    assertThat(result.rebufferCount).isAtLeast(1);
+    assertThat(result.rebufferingTimeMs).isGreaterThan(0);
+    assertThat(result.getRebufferRatio()).isGreaterThan(0f);
+    assertThat(result.playbackDurationMs).isAtLeast(30_000 + result.rebufferingTimeMs);
+  }
+
+  @Test
+  public void simulate_sameNetworkTrace_isDeterministic() throws Exception {
+    Result result1 = playbackSimulator.simulate(OUTAGE_NETWORK_TRACE);
+    Result result2 = playbackSimulator.simulate(OUTAGE_NETWORK_TRACE);
+
+    assertThat(result2).isEqualTo(result1);
+  }
+
+  @Test
+  public void simulate_multipleNetworkTraces_returnsResultsInOrder() throws Exception {
+    Result fastResult = playbackSimulator.simulate(FAST_NETWORK_TRACE);
+    Result outageResult = playbackSimulator.simulate(OUTAGE_NETWORK_TRACE);
+
+    List<Result> results =
+        playbackSimulator.simulate(
+            ImmutableList.of(FAST_NETWORK_TRACE, OUTAGE_NETWORK_TRACE), /* parallelism= */ 2);
+
+    assertThat(results).containsExactly(fastResult, outageResult).inOrder();
+  }
+}